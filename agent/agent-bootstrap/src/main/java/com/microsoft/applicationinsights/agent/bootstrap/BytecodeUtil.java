@@ -14,6 +14,7 @@ import java.net.URI;
 import java.net.URL;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
 
@@ -51,6 +52,11 @@ public class BytecodeUtil {
                   null,
                   null);
             }
+
+            @Override
+            public void trackMetrics(List<MicrometerUtil.Metric> metrics) {
+              delegate.trackMicrometerMetrics(metrics);
+            }
           });
     }
   }
@@ -370,6 +376,9 @@ public class BytecodeUtil {
         @Nullable String connectionString,
         @Nullable String instrumentationKey);
 
+    // all metrics of a single micrometer publish, with no timestamp, tags or connection string
+    void trackMicrometerMetrics(List<MicrometerUtil.Metric> metrics);
+
     void trackDependency(
         @Nullable Date timestamp,
         String name,
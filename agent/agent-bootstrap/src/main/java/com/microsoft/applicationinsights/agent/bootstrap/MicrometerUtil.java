@@ -3,6 +3,7 @@
 
 package com.microsoft.applicationinsights.agent.bootstrap;
 
+import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
 
@@ -27,6 +28,13 @@ public class MicrometerUtil {
     }
   }
 
+  /** Tracks all the metrics of a single publish in one call. */
+  public static void trackMetrics(List<Metric> metrics) {
+    if (delegate != null) {
+      delegate.trackMetrics(metrics);
+    }
+  }
+
   public interface MicrometerUtilDelegate {
 
     void trackMetric(
@@ -37,6 +45,79 @@ public class MicrometerUtil {
         Double min,
         Double max,
         Map<String, String> properties);
+
+    default void trackMetrics(List<Metric> metrics) {
+      for (Metric metric : metrics) {
+        trackMetric(
+            metric.getName(),
+            metric.getNamespace(),
+            metric.getValue(),
+            metric.getCount(),
+            metric.getMin(),
+            metric.getMax(),
+            metric.getProperties());
+      }
+    }
+  }
+
+  public static final class Metric {
+
+    private final String name;
+    @Nullable private final String namespace;
+    private final double value;
+    @Nullable private final Integer count;
+    @Nullable private final Double min;
+    @Nullable private final Double max;
+    private final Map<String, String> properties;
+
+    public Metric(
+        String name,
+        @Nullable String namespace,
+        double value,
+        @Nullable Integer count,
+        @Nullable Double min,
+        @Nullable Double max,
+        Map<String, String> properties) {
+      this.name = name;
+      this.namespace = namespace;
+      this.value = value;
+      this.count = count;
+      this.min = min;
+      this.max = max;
+      this.properties = properties;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    @Nullable
+    public String getNamespace() {
+      return namespace;
+    }
+
+    public double getValue() {
+      return value;
+    }
+
+    @Nullable
+    public Integer getCount() {
+      return count;
+    }
+
+    @Nullable
+    public Double getMin() {
+      return min;
+    }
+
+    @Nullable
+    public Double getMax() {
+      return max;
+    }
+
+    public Map<String, String> getProperties() {
+      return properties;
+    }
   }
 
   private MicrometerUtil() {}
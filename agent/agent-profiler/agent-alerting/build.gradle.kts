@@ -1,5 +1,6 @@
 plugins {
   id("ai.java-conventions")
+  id("ai.jmh-conventions")
 }
 
 dependencies {
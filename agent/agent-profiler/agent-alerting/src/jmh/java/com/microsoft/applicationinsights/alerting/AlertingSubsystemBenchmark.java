@@ -0,0 +1,88 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.alerting;
+
+import com.microsoft.applicationinsights.alerting.analysis.TimeSource;
+import com.microsoft.applicationinsights.alerting.analysis.aggregations.ThresholdBreachRatioAggregation;
+import com.microsoft.applicationinsights.alerting.analysis.data.TelemetryDataPoint;
+import com.microsoft.applicationinsights.alerting.analysis.filter.AlertRequestFilter;
+import com.microsoft.applicationinsights.alerting.analysis.pipelines.SingleAlertPipeline;
+import com.microsoft.applicationinsights.alerting.config.AlertConfiguration;
+import com.microsoft.applicationinsights.alerting.config.AlertMetricType;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost that request threads pay to feed request durations into the alerting
+ * subsystem, which is what the request trigger span processor does at the end of every request
+ * span, with all of the threads updating the same windowed aggregation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@Threads(32)
+public class AlertingSubsystemBenchmark {
+
+  private static final int DATA_POINTS = 1024;
+
+  @State(Scope.Benchmark)
+  public static class BenchmarkState {
+
+    private AlertingSubsystem alertingSubsystem;
+    private TelemetryDataPoint[] dataPoints;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      alertingSubsystem = AlertingSubsystem.create(alertBreach -> {}, TimeSource.DEFAULT);
+
+      // same pipeline as a request trigger, with a threshold that the ratio never exceeds
+      AlertConfiguration alertConfiguration =
+          AlertConfiguration.builder()
+              .setType(AlertMetricType.REQUEST)
+              .setEnabled(true)
+              .setThreshold(1.0f)
+              .setProfileDurationSeconds(30)
+              .setCooldownSeconds(14400)
+              .build();
+      alertingSubsystem.setPipeline(
+          AlertMetricType.REQUEST,
+          SingleAlertPipeline.create(
+              new AlertRequestFilter.AcceptAll(),
+              new ThresholdBreachRatioAggregation(500, 10, 60, TimeSource.DEFAULT, false),
+              alertConfiguration,
+              alertBreach -> {}));
+
+      dataPoints = new TelemetryDataPoint[DATA_POINTS];
+      for (int i = 0; i < DATA_POINTS; i++) {
+        dataPoints[i] =
+            TelemetryDataPoint.create(
+                AlertMetricType.REQUEST, TimeSource.DEFAULT.getNow(), "GET /", i);
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    private int next;
+  }
+
+  @Benchmark
+  public void trackTelemetryDataPoint(BenchmarkState state, ThreadState threadState) {
+    TelemetryDataPoint dataPoint = state.dataPoints[threadState.next++ & (DATA_POINTS - 1)];
+    state.alertingSubsystem.trackTelemetryDataPoint(dataPoint);
+  }
+}
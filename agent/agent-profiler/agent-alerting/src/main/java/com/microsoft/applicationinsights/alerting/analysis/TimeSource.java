@@ -9,11 +9,21 @@ import java.time.Instant;
 public abstract class TimeSource {
   public abstract Instant getNow();
 
+  /** Same as {@link #getNow()}, in epoch milliseconds, without allocating an {@link Instant}. */
+  public long getNowMillis() {
+    return getNow().toEpochMilli();
+  }
+
   public static final TimeSource DEFAULT =
       new TimeSource() {
         @Override
         public Instant getNow() {
           return Instant.now();
         }
+
+        @Override
+        public long getNowMillis() {
+          return System.currentTimeMillis();
+        }
       };
 }
@@ -4,16 +4,15 @@
 package com.microsoft.applicationinsights.alerting.analysis.aggregations;
 
 import com.microsoft.applicationinsights.alerting.analysis.TimeSource;
-import com.microsoft.applicationinsights.alerting.analysis.aggregations.windowed.BucketData;
 import com.microsoft.applicationinsights.alerting.analysis.aggregations.windowed.WindowedAggregation;
-import java.util.List;
 import java.util.OptionalDouble;
 
 public class BreachedRatio {
 
   private final long minimumSamples;
 
-  private final WindowedAggregation<BreachedCountBucket, Boolean> windowedAggregation;
+  // the average of 1 (breached) and 0 (not breached) samples is the breached ratio
+  private final WindowedAggregation windowedAggregation;
 
   public BreachedRatio(
       long windowLengthInSec,
@@ -21,46 +20,15 @@ public class BreachedRatio {
       TimeSource timeSource,
       boolean trackCurrentBucket) {
     this.windowedAggregation =
-        new WindowedAggregation<>(
-            windowLengthInSec, timeSource, BreachedCountBucket::new, trackCurrentBucket);
+        new WindowedAggregation(windowLengthInSec, timeSource, trackCurrentBucket);
     this.minimumSamples = minimumSamples;
   }
 
-  private static class BreachedCountBucket implements BucketData<Boolean> {
-    int totalCount = 0;
-    int breachedCount = 0;
-
-    @Override
-    public void update(Boolean breached) {
-      if (breached) {
-        breachedCount++;
-      }
-      totalCount++;
-    }
-  }
-
   public void update(boolean breached) {
-    windowedAggregation.update(breached);
+    windowedAggregation.update(breached ? 1 : 0);
   }
 
   public OptionalDouble calculateRatio() {
-    List<BreachedCountBucket> buckets = windowedAggregation.getData();
-
-    if (buckets.isEmpty()) {
-      return OptionalDouble.empty();
-    }
-
-    int total = buckets.stream().mapToInt(it -> it.totalCount).sum();
-
-    if (total < minimumSamples) {
-      return OptionalDouble.empty();
-    }
-
-    int breached = buckets.stream().mapToInt(it -> it.breachedCount).sum();
-
-    if (total == 0) {
-      return OptionalDouble.empty();
-    }
-    return OptionalDouble.of((double) breached / (double) total);
+    return windowedAggregation.getAverage(minimumSamples);
   }
 }
@@ -4,99 +4,241 @@
 package com.microsoft.applicationinsights.alerting.analysis.aggregations.windowed;
 
 import com.microsoft.applicationinsights.alerting.analysis.TimeSource;
-import java.time.Instant;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.function.Supplier;
-import java.util.stream.Collectors;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.OptionalDouble;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
 
 /**
- * Holds a series of buckets of fixed duration. Each bucket aggregates data gathered within that
- * time period.
+ * Holds a series of buckets of fixed duration. Each bucket aggregates the count and the sum of the
+ * samples gathered within that time period.
+ *
+ * <p>The buckets are aligned to epoch millis / bucket duration, and are held in a ring of
+ * primitive slots that is large enough for the whole window, so that a slot is reused once its
+ * bucket has fallen out of the window. Each slot is striped across threads to reduce contention,
+ * since every request thread updates the same (current) bucket.
  */
-public class WindowedAggregation<T extends BucketData<U>, U> {
+public class WindowedAggregation {
   public static final int BUCKET_DURATION_SECONDS = 2;
-  private final long windowLengthInSec;
-  private final TimeSource timeSource;
 
-  private final Object bucketLock = new Object();
-  private final List<WindowedAggregationBucket<T, U>> buckets =
-      Collections.synchronizedList(new ArrayList<>());
-  private WindowedAggregationBucket<T, U> currentBucket;
-  private final Supplier<T> bucketFactory;
+  private static final long BUCKET_DURATION_MILLIS = BUCKET_DURATION_SECONDS * 1000L;
+
+  // marks a slot while the thread that moved it to a new bucket is zeroing its stripes
+  private static final long RESETTING = Long.MIN_VALUE;
+
+  private static final int MAX_STRIPES = 8;
+
+  // Thread.onSpinWait() is only available on Java 9+
+  @Nullable private static final MethodHandle ON_SPIN_WAIT = findOnSpinWait();
+
+  private final long windowLengthMillis;
+  private final TimeSource timeSource;
 
   // Determines if the current bucket that is in the process of being calculated is included
   // in the returned data
   private final boolean trackCurrentBucket;
 
+  private final int slots;
+  private final int stripeMask;
+
+  // bucket (epoch millis / bucket duration) currently held by each slot
+  private final AtomicLongArray bucketIds;
+  // indexed by stripe * slots + slot, so that the stripes of a slot are on separate cache lines
+  private final AtomicLongArray counts;
+  private final AtomicLongArray sums; // Double.doubleToRawLongBits
+
+  // totals of the completed buckets, which don't change until the window moves, so they are only
+  // recomputed when it does
+  private volatile CompletedTotals completedTotals = new CompletedTotals(0, -1, 0, 0);
+
+  // a writer that read the time just before the current bucket started can still be adding its
+  // sample to the bucket that just completed, so the totals are only kept once no writer was in
+  // flight after the current bucket started
+  private final LongAdder writersStarted = new LongAdder();
+  private final LongAdder writersFinished = new LongAdder();
+
   public WindowedAggregation(
-      long windowLengthInSec,
-      TimeSource timeSource,
-      Supplier<T> bucketFactory,
-      boolean trackCurrentBucket) {
-    this.windowLengthInSec = windowLengthInSec;
+      long windowLengthInSec, TimeSource timeSource, boolean trackCurrentBucket) {
+    this.windowLengthMillis = windowLengthInSec * 1000;
     this.timeSource = timeSource;
-    this.bucketFactory = bucketFactory;
     this.trackCurrentBucket = trackCurrentBucket;
 
-    Instant now = timeSource.getNow();
-    currentBucket =
-        new WindowedAggregationBucket<>(
-            now.plusSeconds(BUCKET_DURATION_SECONDS), bucketFactory.get());
-    if (trackCurrentBucket) {
-      buckets.add(currentBucket);
-    }
-  }
+    // the window overlaps at most this many buckets (including the current one)
+    slots = (int) (windowLengthMillis / BUCKET_DURATION_MILLIS) + 3;
+    int stripes =
+        Math.min(nextPowerOfTwo(Runtime.getRuntime().availableProcessors()), MAX_STRIPES);
+    stripeMask = stripes - 1;
+
+    bucketIds = new AtomicLongArray(slots);
+    counts = new AtomicLongArray(slots * stripes);
+    sums = new AtomicLongArray(slots * stripes);
 
-  public void update(U breached) {
-    getBucket().update(breached);
+    long currentBucketId = getBucketId(timeSource.getNowMillis());
+    for (int i = 0; i < slots; i++) {
+      // no bucket yet
+      bucketIds.set(i, currentBucketId - slots);
+    }
   }
 
-  public List<T> getData() {
-    Instant now = timeSource.getNow();
-    Instant cutoff = now.minusSeconds(windowLengthInSec);
-    removeBucketsBeforeCutoff(cutoff);
-    return buckets.stream().map(WindowedAggregationBucket::getData).collect(Collectors.toList());
+  public void update(double value) {
+    writersStarted.increment();
+    try {
+      doUpdate(value);
+    } finally {
+      writersFinished.increment();
+    }
   }
 
-  private WindowedAggregationBucket<T, U> getBucket() {
-    synchronized (bucketLock) {
-      Instant now = timeSource.getNow();
+  private void doUpdate(double value) {
+    long bucketId = getBucketId(timeSource.getNowMillis());
+    int slot = (int) Math.floorMod(bucketId, (long) slots);
 
-      if (currentBucket.getBucketEnd().isBefore(now)) {
-        // Gone past end of current bucket, close it off and create a new bucket
+    while (true) {
+      long slotBucketId = bucketIds.get(slot);
+      if (slotBucketId == bucketId) {
+        break;
+      }
+      if (slotBucketId == RESETTING) {
+        // another thread is moving the slot to a new bucket, which is only a few writes
+        onSpinWait();
+        continue;
+      }
+      if (slotBucketId > bucketId) {
+        // the sample is so late that its bucket has already fallen out of the window
+        return;
+      }
+      if (bucketIds.compareAndSet(slot, slotBucketId, RESETTING)) {
+        for (int index = slot; index < counts.length(); index += slots) {
+          counts.set(index, 0);
+          sums.set(index, 0);
+        }
+        bucketIds.set(slot, bucketId);
+        break;
+      }
+    }
 
-        Instant cutoff = now.minusSeconds(windowLengthInSec);
+    int index = stripe() * slots + slot;
+    counts.incrementAndGet(index);
+    while (true) {
+      long sum = sums.get(index);
+      if (sums.compareAndSet(
+          index, sum, Double.doubleToRawLongBits(Double.longBitsToDouble(sum) + value))) {
+        return;
+      }
+      onSpinWait();
+    }
+  }
 
-        // Remove old buckets
-        removeBucketsBeforeCutoff(cutoff);
+  /**
+   * Returns the average of the samples within the window, or empty if there are fewer than {@code
+   * minimumSamples} (or no) samples.
+   */
+  public OptionalDouble getAverage(long minimumSamples) {
+    long nowMillis = timeSource.getNowMillis();
+    long currentBucketId = getBucketId(nowMillis);
+
+    // buckets that ended before the start of the window are excluded
+    long minBucketId = -Math.floorDiv(windowLengthMillis - nowMillis, BUCKET_DURATION_MILLIS) - 1;
+
+    CompletedTotals totals = completedTotals;
+    if (totals.minBucketId != minBucketId || totals.maxBucketId != currentBucketId - 1) {
+      // checked before computing the totals, since writers that start after this read a time in the
+      // current bucket (or later), so they can't add to the completed buckets anymore
+      boolean quiescent = isQuiescent();
+      totals = computeCompletedTotals(minBucketId, currentBucketId - 1);
+      if (quiescent) {
+        completedTotals = totals;
+      }
+    }
 
-        if (!trackCurrentBucket) {
-          // If we are lazily adding to the data set, add the completed bucket
-          buckets.add(currentBucket);
+    long count = totals.count;
+    double sum = totals.sum;
+    if (trackCurrentBucket) {
+      int slot = (int) Math.floorMod(currentBucketId, (long) slots);
+      if (bucketIds.get(slot) == currentBucketId) {
+        for (int index = slot; index < counts.length(); index += slots) {
+          count += counts.get(index);
+          sum += Double.longBitsToDouble(sums.get(index));
         }
+      }
+    }
 
-        currentBucket =
-            new WindowedAggregationBucket<>(
-                now.plusSeconds(BUCKET_DURATION_SECONDS), bucketFactory.get());
+    if (count == 0 || count < minimumSamples) {
+      return OptionalDouble.empty();
+    }
+    return OptionalDouble.of(sum / count);
+  }
 
-        if (trackCurrentBucket) {
-          // If we are eagerly adding to the data set, add it now
-          buckets.add(currentBucket);
+  private CompletedTotals computeCompletedTotals(long minBucketId, long maxBucketId) {
+    long count = 0;
+    double sum = 0;
+    for (int slot = 0; slot < slots; slot++) {
+      long bucketId = bucketIds.get(slot);
+      if (bucketId >= minBucketId && bucketId <= maxBucketId) {
+        for (int index = slot; index < counts.length(); index += slots) {
+          count += counts.get(index);
+          sum += Double.longBitsToDouble(sums.get(index));
         }
       }
-
-      return currentBucket;
     }
+    return new CompletedTotals(minBucketId, maxBucketId, count, sum);
   }
 
-  private void removeBucketsBeforeCutoff(Instant cutoff) {
-    synchronized (bucketLock) {
-      // Remove buckets that ended before the cutoff
-      while (buckets.size() > 0 && buckets.get(0).getBucketEnd().isBefore(cutoff)) {
-        buckets.remove(0);
+  private boolean isQuiescent() {
+    // read in this order, since writersFinished never gets ahead of writersStarted, if they are
+    // equal then there was a point in between when no writer was in flight
+    long finished = writersFinished.sum();
+    return finished == writersStarted.sum();
+  }
+
+  private int stripe() {
+    return (int) Thread.currentThread().getId() & stripeMask;
+  }
+
+  private static long getBucketId(long epochMillis) {
+    return Math.floorDiv(epochMillis, BUCKET_DURATION_MILLIS);
+  }
+
+  private static void onSpinWait() {
+    if (ON_SPIN_WAIT != null) {
+      try {
+        ON_SPIN_WAIT.invokeExact();
+      } catch (Throwable t) {
+        // Thread.onSpinWait() doesn't throw
+        throw new IllegalStateException(t);
       }
     }
   }
+
+  @Nullable
+  private static MethodHandle findOnSpinWait() {
+    try {
+      return MethodHandles.publicLookup()
+          .findStatic(Thread.class, "onSpinWait", MethodType.methodType(void.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      // Java 8
+      return null;
+    }
+  }
+
+  private static int nextPowerOfTwo(int value) {
+    return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+  }
+
+  private static class CompletedTotals {
+    private final long minBucketId;
+    private final long maxBucketId;
+    private final long count;
+    private final double sum;
+
+    private CompletedTotals(long minBucketId, long maxBucketId, long count, double sum) {
+      this.minBucketId = minBucketId;
+      this.maxBucketId = maxBucketId;
+      this.count = count;
+      this.sum = sum;
+    }
+  }
 }
@@ -0,0 +1,135 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.alerting;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.microsoft.applicationinsights.alerting.analysis.aggregations.windowed.WindowedAggregation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class WindowedAggregationTest {
+
+  @Test
+  void tracksCurrentBucket() {
+    TestTimeSource timeSource = new TestTimeSource();
+    WindowedAggregation windowedAggregation = new WindowedAggregation(60, timeSource, true);
+
+    windowedAggregation.update(1.0);
+    windowedAggregation.update(3.0);
+
+    assertThat(windowedAggregation.getAverage(0)).isEqualTo(OptionalDouble.of(2.0));
+  }
+
+  @Test
+  void excludesCurrentBucketUntilComplete() {
+    TestTimeSource timeSource = new TestTimeSource();
+    WindowedAggregation windowedAggregation = new WindowedAggregation(60, timeSource, false);
+
+    windowedAggregation.update(1.0);
+    assertThat(windowedAggregation.getAverage(0)).isEmpty();
+
+    timeSource.increment(WindowedAggregation.BUCKET_DURATION_SECONDS * 1000);
+    windowedAggregation.update(3.0);
+    assertThat(windowedAggregation.getAverage(0)).isEqualTo(OptionalDouble.of(1.0));
+  }
+
+  @Test
+  void requiresMinimumSamples() {
+    TestTimeSource timeSource = new TestTimeSource();
+    WindowedAggregation windowedAggregation = new WindowedAggregation(60, timeSource, true);
+
+    for (int i = 0; i < 9; i++) {
+      windowedAggregation.update(1.0);
+    }
+    assertThat(windowedAggregation.getAverage(10)).isEmpty();
+
+    windowedAggregation.update(1.0);
+    assertThat(windowedAggregation.getAverage(10)).isEqualTo(OptionalDouble.of(1.0));
+  }
+
+  @Test
+  void reusesSlotsAsWindowMoves() {
+    TestTimeSource timeSource = new TestTimeSource();
+    WindowedAggregation windowedAggregation = new WindowedAggregation(10, timeSource, true);
+
+    // goes around the ring several times
+    for (int i = 0; i < 100; i++) {
+      windowedAggregation.update(i);
+      timeSource.increment(1000);
+    }
+
+    // only the last 10 seconds (plus the bucket that overlaps the start of the window)
+    assertThat(windowedAggregation.getAverage(0).getAsDouble()).isBetween(88.0, 99.0);
+  }
+
+  @Test
+  void countsConcurrentUpdates() throws InterruptedException {
+    TestTimeSource timeSource = new TestTimeSource();
+    WindowedAggregation windowedAggregation = new WindowedAggregation(60, timeSource, true);
+
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      double value = i % 2 == 0 ? 0.0 : 1.0;
+      Thread thread =
+          new Thread(
+              () -> {
+                for (int j = 0; j < 10000; j++) {
+                  windowedAggregation.update(value);
+                }
+              });
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(windowedAggregation.getAverage(80000)).isEqualTo(OptionalDouble.of(0.5));
+  }
+
+  @Test
+  void includesLateSampleFromWriterThatStartedBeforeBucketCompleted() throws Exception {
+    CountDownLatch timeRead = new CountDownLatch(1);
+    CountDownLatch proceed = new CountDownLatch(1);
+    AtomicReference<Thread> lateWriter = new AtomicReference<>();
+    TestTimeSource timeSource =
+        new TestTimeSource() {
+          @Override
+          public long getNowMillis() {
+            long nowMillis = super.getNowMillis();
+            if (Thread.currentThread() == lateWriter.get()) {
+              // the writer has read the time, but hasn't added its sample yet
+              timeRead.countDown();
+              try {
+                proceed.await(10, TimeUnit.SECONDS);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            }
+            return nowMillis;
+          }
+        };
+    WindowedAggregation windowedAggregation = new WindowedAggregation(60, timeSource, false);
+
+    Thread writer = new Thread(() -> windowedAggregation.update(5.0));
+    lateWriter.set(writer);
+    writer.start();
+    timeRead.await(10, TimeUnit.SECONDS);
+
+    // the bucket completes while the writer is still in flight
+    timeSource.increment(WindowedAggregation.BUCKET_DURATION_SECONDS * 1000);
+    assertThat(windowedAggregation.getAverage(0)).isEmpty();
+
+    proceed.countDown();
+    writer.join();
+
+    assertThat(windowedAggregation.getAverage(0)).isEqualTo(OptionalDouble.of(5.0));
+  }
+}
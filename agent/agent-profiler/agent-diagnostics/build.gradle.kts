@@ -18,4 +18,8 @@ dependencies {
 
   compileOnly("com.google.auto.service:auto-service")
   annotationProcessor("com.google.auto.service:auto-service")
+
+  testImplementation("org.slf4j:slf4j-api")
+  testImplementation("org.junit.jupiter:junit-jupiter")
+  testImplementation("org.assertj:assertj-core")
 }
@@ -104,8 +104,8 @@ public class SystemStatsReader implements Closeable {
             (double) counters.getProcsRunnable(),
             (double) tcpStats.getTotalReceivedQueuesSize(),
             (double) tcpStats.getTotalTransferredQueuesSize(),
-            netStats.getTotalReceived().doubleValue(),
-            netStats.getTotalWrite().doubleValue(),
+            (double) netStats.getTotalReceived(),
+            (double) netStats.getTotalWrite(),
             (double) memoryInfo.getTotalInKb(),
             (double) memoryInfo.getFreeInKb(),
             (double) memoryInfo.getVirtualMemoryTotalInKb(),
@@ -117,18 +117,18 @@ public class SystemStatsReader implements Closeable {
             (double) diskstats.getTotalRead(),
             (double) diskstats.getTotalWrite(),
             (double) diskstats.getTotalIo(),
-            processCpuStats.getUserTime().doubleValue(),
-            processCpuStats.getSystemTime().doubleValue(),
-            processCpuStats.getPriority().doubleValue(),
-            processCpuStats.getNice().doubleValue(),
-            processCpuStats.getNumThreads().doubleValue(),
-            processCpuStats.getVmSize().doubleValue(),
-            processCpuStats.getRss().doubleValue(),
-            processCpuStats.getSwapped().doubleValue(),
-            ioStats.getDiskRead().doubleValue(),
-            ioStats.getDiskWrite().doubleValue(),
-            ioStats.getIoRead().doubleValue(),
-            ioStats.getIoWrite().doubleValue());
+            (double) processCpuStats.getUserTime(),
+            (double) processCpuStats.getSystemTime(),
+            (double) processCpuStats.getPriority(),
+            (double) processCpuStats.getNice(),
+            (double) processCpuStats.getNumThreads(),
+            (double) processCpuStats.getVmSize(),
+            (double) processCpuStats.getRss(),
+            (double) processCpuStats.getSwapped(),
+            (double) ioStats.getDiskRead(),
+            (double) ioStats.getDiskWrite(),
+            (double) ioStats.getIoRead(),
+            (double) ioStats.getIoWrite());
 
     if (telemetry != null) {
       ArrayList<Double> tmp = new ArrayList<>();
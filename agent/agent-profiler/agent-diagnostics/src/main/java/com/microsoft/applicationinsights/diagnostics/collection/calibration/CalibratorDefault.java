@@ -87,7 +87,7 @@ public class CalibratorDefault implements Calibrator {
   }
 
   private static double getProcessCpuTime(Process process) {
-    return process.getCpuStats().getTotalTime().doubleValue();
+    return (double) process.getCpuStats().getTotalTime();
   }
 
   private long getContextSwitches() throws OperatingSystemInteractionException {
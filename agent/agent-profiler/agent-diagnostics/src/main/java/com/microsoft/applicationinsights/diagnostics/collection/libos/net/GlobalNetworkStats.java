@@ -3,10 +3,8 @@
 
 package com.microsoft.applicationinsights.diagnostics.collection.libos.net;
 
-import java.math.BigInteger;
-
 public interface GlobalNetworkStats {
-  BigInteger getTotalWrite();
+  long getTotalWrite();
 
-  BigInteger getTotalReceived();
+  long getTotalReceived();
 }
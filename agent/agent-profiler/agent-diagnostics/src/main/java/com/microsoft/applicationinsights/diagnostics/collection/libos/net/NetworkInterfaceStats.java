@@ -3,18 +3,17 @@
 
 package com.microsoft.applicationinsights.diagnostics.collection.libos.net;
 
-import com.microsoft.applicationinsights.diagnostics.collection.libos.BigIncrementalCounter;
-import java.math.BigInteger;
+import com.microsoft.applicationinsights.diagnostics.collection.libos.IncrementalCounter;
 
 public class NetworkInterfaceStats {
   private final String name;
-  private final BigIncrementalCounter bytesSent;
-  private final BigIncrementalCounter bytesReceived;
+  private final IncrementalCounter bytesSent;
+  private final IncrementalCounter bytesReceived;
 
   public NetworkInterfaceStats(String name) {
     this.name = name;
-    this.bytesSent = new BigIncrementalCounter();
-    this.bytesReceived = new BigIncrementalCounter();
+    this.bytesSent = new IncrementalCounter();
+    this.bytesReceived = new IncrementalCounter();
   }
 
   public String getName() {
@@ -22,18 +21,18 @@ public class NetworkInterfaceStats {
   }
 
   public void newSentValue(long value) {
-    bytesSent.newValue(BigInteger.valueOf(value));
+    bytesSent.newValue(value);
   }
 
   public void newReceivedValue(long value) {
-    bytesReceived.newValue(BigInteger.valueOf(value));
+    bytesReceived.newValue(value);
   }
 
-  public BigInteger getSent() {
+  public long getSent() {
     return bytesSent.getIncrement();
   }
 
-  public BigInteger getReceived() {
+  public long getReceived() {
     return bytesReceived.getIncrement();
   }
 }
@@ -7,10 +7,10 @@ import static com.microsoft.applicationinsights.diagnostics.collection.libos.os.
 
 import com.microsoft.applicationinsights.diagnostics.collection.libos.kernel.DiskStats;
 import com.microsoft.applicationinsights.diagnostics.collection.libos.kernel.GlobalDiskStats;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
 
 /** Extracts Disk IO stats (read/write volumes) from /proc */
 public class LinuxGlobalDiskIoStats extends TwoStepProcReader implements GlobalDiskStats {
@@ -20,72 +20,85 @@ public class LinuxGlobalDiskIoStats extends TwoStepProcReader implements GlobalD
   private static final int READ_TIME = 4;
   private static final int WRITE_TIME = 8;
   private static final int IO_TIME = 10;
-  public static final Pattern LETTERS = Pattern.compile("[A-Za-z]");
 
-  private final Map<String, DiskStats> stats = new HashMap<>();
-
-  private int indexOffset = -1;
-
-  public static final String NAME_PATTERN = "^([^ ]+)";
-  private static final Pattern NAME_MATCHER = Pattern.compile(NAME_PATTERN);
+  // disks are looked up by comparing the raw name bytes, so a name is only turned into a string
+  // the first time it is seen
+  private final List<DiskStats> stats = new ArrayList<>();
+  private final List<String> ignoredNames = new ArrayList<>();
 
   public LinuxGlobalDiskIoStats() {
-    super(DISKSTAT_FILE_LOCATION);
+    this(new File(DISKSTAT_FILE_LOCATION));
   }
 
-  @Override
-  protected void parseLine(String line) {
-    int indexOffset = getOffset(line);
-
-    line = line.substring(indexOffset);
-
-    Matcher nameMatcher = NAME_MATCHER.matcher(line);
-    if (nameMatcher.find()) {
-      String interfaceName = nameMatcher.group(0);
+  LinuxGlobalDiskIoStats(File diskstats) {
+    super(diskstats);
+  }
 
-      // Remove common lines
-      if (interfaceName.startsWith("ram") || interfaceName.startsWith("loop")) {
-        return;
+  @Override
+  protected void parse(ProcTokenizer tokenizer) {
+    // <major> <minor> <name> <field 1> ... <field 10> ...
+    while (tokenizer.nextLine()) {
+      if (!tokenizer.skipTokens(2) || !tokenizer.nextToken()) {
+        continue;
+      }
+      DiskStats disk = diskFor(tokenizer);
+      if (disk == null) {
+        continue;
       }
 
-      if (matchesDiskName(interfaceName)) {
-        String[] data = line.split(" ");
-        long readTime = Long.parseLong(data[READ_TIME]);
-        long writeTime = Long.parseLong(data[WRITE_TIME]);
-        long ioTime = Long.parseLong(data[IO_TIME]);
+      long readTime = -1;
+      long writeTime = -1;
+      long ioTime = -1;
+      int field = 0;
+      while (field < IO_TIME && tokenizer.nextToken()) {
+        field++;
+        if (field == READ_TIME) {
+          readTime = tokenizer.tokenAsLong();
+        } else if (field == WRITE_TIME) {
+          writeTime = tokenizer.tokenAsLong();
+        } else if (field == IO_TIME) {
+          ioTime = tokenizer.tokenAsLong();
+        }
+      }
 
-        updateDisk(interfaceName, readTime, writeTime, ioTime);
+      if (field == IO_TIME) {
+        disk.newReadTime(readTime);
+        disk.newWriteTime(writeTime);
+        disk.newIoTime(ioTime);
       }
     }
   }
 
-  private int getOffset(String line) {
-    if (indexOffset == -1) {
-      Matcher matcher = LETTERS.matcher(line);
-      if (matcher.find()) {
-        indexOffset = matcher.start();
+  @Nullable
+  private DiskStats diskFor(ProcTokenizer tokenizer) {
+    for (int i = 0; i < stats.size(); i++) {
+      DiskStats disk = stats.get(i);
+      if (tokenizer.tokenEquals(disk.getName())) {
+        return disk;
+      }
+    }
+    for (int i = 0; i < ignoredNames.size(); i++) {
+      if (tokenizer.tokenEquals(ignoredNames.get(i))) {
+        return null;
       }
     }
-    return indexOffset;
-  }
-
-  private void updateDisk(String diskName, long readTime, long writeTime, long ioTime) {
-    DiskStats disk = stats.get(diskName);
 
-    if (disk == null) {
-      disk = new DiskStats(diskName);
-      this.stats.put(diskName, disk);
+    String diskName = tokenizer.tokenAsString();
+    // Remove common lines
+    if (diskName.startsWith("ram") || diskName.startsWith("loop") || !matchesDiskName(diskName)) {
+      ignoredNames.add(diskName);
+      return null;
     }
-    disk.newReadTime(readTime);
-    disk.newWriteTime(writeTime);
-    disk.newIoTime(ioTime);
+    DiskStats disk = new DiskStats(diskName);
+    stats.add(disk);
+    return disk;
   }
 
   @Override
   public long getTotalWrite() {
     long accumulator = 0;
-    for (DiskStats stat : stats.values()) {
-      accumulator += stat.getWriteTime();
+    for (int i = 0; i < stats.size(); i++) {
+      accumulator += stats.get(i).getWriteTime();
     }
     return accumulator;
   }
@@ -93,8 +106,8 @@ public class LinuxGlobalDiskIoStats extends TwoStepProcReader implements GlobalD
   @Override
   public long getTotalRead() {
     long accumulator = 0;
-    for (DiskStats stat : stats.values()) {
-      accumulator += stat.getReadTime();
+    for (int i = 0; i < stats.size(); i++) {
+      accumulator += stats.get(i).getReadTime();
     }
     return accumulator;
   }
@@ -102,14 +115,9 @@ public class LinuxGlobalDiskIoStats extends TwoStepProcReader implements GlobalD
   @Override
   public long getTotalIo() {
     long accumulator = 0;
-    for (DiskStats stat : stats.values()) {
-      accumulator += stat.getIoTime();
+    for (int i = 0; i < stats.size(); i++) {
+      accumulator += stats.get(i).getIoTime();
     }
     return accumulator;
   }
-
-  @Override
-  protected boolean trim() {
-    return false;
-  }
 }
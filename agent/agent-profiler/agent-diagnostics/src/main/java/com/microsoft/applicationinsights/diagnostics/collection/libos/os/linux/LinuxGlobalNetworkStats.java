@@ -5,77 +5,110 @@ package com.microsoft.applicationinsights.diagnostics.collection.libos.os.linux;
 
 import com.microsoft.applicationinsights.diagnostics.collection.libos.net.GlobalNetworkStats;
 import com.microsoft.applicationinsights.diagnostics.collection.libos.net.NetworkInterfaceStats;
-import java.math.BigInteger;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 
 /** Extracts global network statistics from /proc */
 class LinuxGlobalNetworkStats extends TwoStepProcReader implements GlobalNetworkStats {
 
   private static final String NETSTAT_FILE_LOCATION = "/proc/net/dev";
-  private static final Pattern DATA_LINE = Pattern.compile("^[A-Za-z0-9]+: .*");
+  private static final Pattern INTERFACE_NAME = Pattern.compile("[A-Za-z0-9]+");
 
-  private static final int NAME_INDEX = 0;
   private static final int RECIEVED_INDEX = 1;
   private static final int TRANSMIT_INDEX = 9;
 
-  private final Map<String, NetworkInterfaceStats> stats = new HashMap<>();
+  // interfaces are looked up by comparing the raw name bytes, so a name is only turned into a
+  // string the first time it is seen
+  private final List<NetworkInterfaceStats> stats = new ArrayList<>();
+  private final List<String> ignoredNames = new ArrayList<>();
 
   public LinuxGlobalNetworkStats() {
-    super(NETSTAT_FILE_LOCATION);
+    this(new File(NETSTAT_FILE_LOCATION));
   }
 
-  @Override
-  protected void parseLine(String line) {
-
-    String trimmed = line.trim();
-    if (DATA_LINE.matcher(trimmed).matches()) {
-      String[] data = line.split(" +");
+  LinuxGlobalNetworkStats(File netDev) {
+    super(netDev);
+  }
 
-      String interfaceName = data[NAME_INDEX].replace(":", "");
+  @Override
+  protected void parse(ProcTokenizer tokenizer) {
+    // <name>: <field 1> ... <field 16>, the two header lines have no name followed by a colon
+    while (tokenizer.nextLine()) {
+      if (!tokenizer.nextTokenBefore(':')) {
+        continue;
+      }
+      NetworkInterfaceStats interf = interfaceFor(tokenizer);
+      if (interf == null) {
+        continue;
+      }
 
-      long receivedBytes = Long.parseLong(data[RECIEVED_INDEX]);
-      long sentBytes = Long.parseLong(data[TRANSMIT_INDEX]);
+      long receivedBytes = -1;
+      long sentBytes = -1;
+      int index = 0;
+      while (index < TRANSMIT_INDEX && tokenizer.nextToken()) {
+        index++;
+        if (index == RECIEVED_INDEX) {
+          receivedBytes = tokenizer.tokenAsLong();
+        } else if (index == TRANSMIT_INDEX) {
+          sentBytes = tokenizer.tokenAsLong();
+        }
+      }
 
-      updateInterface(interfaceName, receivedBytes, sentBytes);
+      if (index == TRANSMIT_INDEX) {
+        interf.newReceivedValue(receivedBytes);
+        interf.newSentValue(sentBytes);
+      }
     }
   }
 
-  private void updateInterface(String interfaceName, long recievedBytes, long sentBytes) {
-    NetworkInterfaceStats interf = stats.get(interfaceName);
+  @Nullable
+  private NetworkInterfaceStats interfaceFor(ProcTokenizer tokenizer) {
+    for (int i = 0; i < stats.size(); i++) {
+      NetworkInterfaceStats interf = stats.get(i);
+      if (tokenizer.tokenEquals(interf.getName())) {
+        return interf;
+      }
+    }
+    for (int i = 0; i < ignoredNames.size(); i++) {
+      if (tokenizer.tokenEquals(ignoredNames.get(i))) {
+        return null;
+      }
+    }
 
-    if (interf == null) {
-      interf = new NetworkInterfaceStats(interfaceName);
-      stats.put(interfaceName, interf);
+    String interfaceName = tokenizer.tokenAsString();
+    if (!INTERFACE_NAME.matcher(interfaceName).matches()) {
+      ignoredNames.add(interfaceName);
+      return null;
     }
-    interf.newReceivedValue(recievedBytes);
-    interf.newSentValue(sentBytes);
+    NetworkInterfaceStats interf = new NetworkInterfaceStats(interfaceName);
+    stats.add(interf);
+    return interf;
   }
 
   @Override
-  public BigInteger getTotalWrite() {
-    BigInteger accumulator = BigInteger.ZERO;
-    for (NetworkInterfaceStats stat : stats.values()) {
-      BigInteger sent = stat.getSent();
-      if (sent != null) {
-        accumulator = accumulator.add(sent);
+  public long getTotalWrite() {
+    long accumulator = 0;
+    for (int i = 0; i < stats.size(); i++) {
+      long sent = stats.get(i).getSent();
+      if (sent > 0) {
+        accumulator += sent;
       }
     }
-
     return accumulator;
   }
 
   @Override
-  public BigInteger getTotalReceived() {
-    BigInteger accumulator = BigInteger.ZERO;
-    for (NetworkInterfaceStats stat : stats.values()) {
-      BigInteger received = stat.getReceived();
-      if (received != null) {
-        accumulator = accumulator.add(received);
+  public long getTotalReceived() {
+    long accumulator = 0;
+    for (int i = 0; i < stats.size(); i++) {
+      long received = stats.get(i).getReceived();
+      if (received > 0) {
+        accumulator += received;
       }
     }
-
     return accumulator;
   }
 }
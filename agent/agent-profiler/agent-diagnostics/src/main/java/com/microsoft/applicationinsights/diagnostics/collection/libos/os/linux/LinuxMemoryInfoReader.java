@@ -9,13 +9,8 @@ import java.io.File;
 
 /** Reads memory usage info from /proc/meminfo */
 public class LinuxMemoryInfoReader extends TwoStepProcReader implements MemoryInfoReader {
-  private static final int MEMINFO_LINE_SUFFIX = " kB".length();
   private static final String MEMINFO = "/proc/meminfo";
 
-  private int totalInKbIndex = -1;
-  private int freeInKbIndex = -1;
-  private int virtualMemoryTotalInKbIndex = -1;
-  private int virtualMemoryUsedInKbIndex = -1;
   private MemoryInfo memoryInfo =
       new MemoryInfo()
           .setTotalInKb(-1)
@@ -24,54 +19,43 @@ public class LinuxMemoryInfoReader extends TwoStepProcReader implements MemoryIn
           .setVirtualMemoryUsedInKb(-1);
 
   public LinuxMemoryInfoReader() {
-    super(new File(MEMINFO));
+    this(new File(MEMINFO));
   }
 
-  public MemoryInfo readMemoryInfo(String content) {
-    String[] lines = content.split("\n");
-
-    if (totalInKbIndex == -1) {
-      totalInKbIndex = LinuxKernelStats.lineIndexFor(lines, "MemTotal");
-    }
-
-    if (freeInKbIndex == -1) {
-      freeInKbIndex = LinuxKernelStats.lineIndexFor(lines, "MemFree");
-    }
-
-    if (virtualMemoryTotalInKbIndex == -1) {
-      virtualMemoryTotalInKbIndex = LinuxKernelStats.lineIndexFor(lines, "VmallocTotal");
-    }
-
-    if (virtualMemoryUsedInKbIndex == -1) {
-      virtualMemoryUsedInKbIndex = LinuxKernelStats.lineIndexFor(lines, "VmallocUsed");
-    }
-
-    long totalInKb = readMemoryNumber(lines[totalInKbIndex]);
-    long freeInKb = readMemoryNumber(lines[freeInKbIndex]);
-    long virtualMemoryTotalInKb = readMemoryNumber(lines[virtualMemoryTotalInKbIndex]);
-    long virtualMemoryUsedInKb = readMemoryNumber(lines[virtualMemoryUsedInKbIndex]);
-
-    return new MemoryInfo()
-        .setTotalInKb(totalInKb)
-        .setFreeInKb(freeInKb)
-        .setVirtualMemoryTotalInKb(virtualMemoryTotalInKb)
-        .setVirtualMemoryUsedInKb(virtualMemoryUsedInKb);
-  }
-
-  private static long readMemoryNumber(String line) {
-    int start = line.indexOf(':') + 1;
-    int end = line.length() - MEMINFO_LINE_SUFFIX;
-    String number = line.substring(start, end).trim();
-    return Long.parseLong(number);
+  LinuxMemoryInfoReader(File meminfo) {
+    super(meminfo);
   }
 
   @Override
-  public void update() {
-    this.memoryInfo = readMemoryInfo(contents);
-  }
+  protected void parse(ProcTokenizer tokenizer) {
+    long totalInKb = -1;
+    long freeInKb = -1;
+    long virtualMemoryTotalInKb = -1;
+    long virtualMemoryUsedInKb = -1;
+
+    // <name>:   <value> kB
+    while (tokenizer.nextLine()) {
+      if (!tokenizer.nextTokenBefore(':')) {
+        continue;
+      }
+      if (tokenizer.tokenEquals("MemTotal")) {
+        totalInKb = tokenizer.nextLong();
+      } else if (tokenizer.tokenEquals("MemFree")) {
+        freeInKb = tokenizer.nextLong();
+      } else if (tokenizer.tokenEquals("VmallocTotal")) {
+        virtualMemoryTotalInKb = tokenizer.nextLong();
+      } else if (tokenizer.tokenEquals("VmallocUsed")) {
+        virtualMemoryUsedInKb = tokenizer.nextLong();
+      }
+    }
 
-  @Override
-  protected void parseLine(String line) {}
+    this.memoryInfo =
+        new MemoryInfo()
+            .setTotalInKb(totalInKb)
+            .setFreeInKb(freeInKb)
+            .setVirtualMemoryTotalInKb(virtualMemoryTotalInKb)
+            .setVirtualMemoryUsedInKb(virtualMemoryUsedInKb);
+  }
 
   @Override
   public MemoryInfo getMemoryInfo() {
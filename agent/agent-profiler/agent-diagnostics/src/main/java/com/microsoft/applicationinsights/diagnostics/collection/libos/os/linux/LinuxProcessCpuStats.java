@@ -3,10 +3,9 @@
 
 package com.microsoft.applicationinsights.diagnostics.collection.libos.os.linux;
 
-import com.microsoft.applicationinsights.diagnostics.collection.libos.BigIncrementalCounter;
+import com.microsoft.applicationinsights.diagnostics.collection.libos.IncrementalCounter;
 import com.microsoft.applicationinsights.diagnostics.collection.libos.process.ProcessCpuStats;
 import java.io.File;
-import java.math.BigInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,119 +21,111 @@ public class LinuxProcessCpuStats extends TwoStepProcReader implements ProcessCp
   private static final int N_SWAPPED_OFFSET_FROM_NAME = 34;
   private static final Logger LOGGER = LoggerFactory.getLogger(LinuxProcessCpuStats.class);
 
-  private final BigIncrementalCounter userTime;
-  private final BigIncrementalCounter systemTime;
-  private final BigIncrementalCounter priority;
-  private final BigIncrementalCounter nice;
-  private final BigIncrementalCounter numThreads;
-  private final BigIncrementalCounter vmSize;
-  private final BigIncrementalCounter rss;
-  private final BigIncrementalCounter swapped;
+  private final IncrementalCounter userTime = new IncrementalCounter();
+  private final IncrementalCounter systemTime = new IncrementalCounter();
+  private long priority = -1;
+  private long nice = -1;
+  private long numThreads = -1;
+  private long vmSize = -1;
+  private long rss = -1;
+  private long swapped = -1;
 
   public LinuxProcessCpuStats(File candidate) {
     super(new File(candidate, "stat"));
-    this.userTime = new BigIncrementalCounter();
-    this.systemTime = new BigIncrementalCounter();
-    this.priority = new BigIncrementalCounter();
-    this.nice = new BigIncrementalCounter();
-    this.numThreads = new BigIncrementalCounter();
-    this.vmSize = new BigIncrementalCounter();
-    this.rss = new BigIncrementalCounter();
-    this.swapped = new BigIncrementalCounter();
   }
 
   @Override
-  public void update() {
-    updateProcessTimes(contents, contents.indexOf(')'));
-  }
-
-  private void updateProcessTimes(String contents, int nameEnd) {
-    String userTime = getVaule(contents, nameEnd, USER_TIME_OFFSET_FROM_NAME);
-    String systemTime = getVaule(contents, nameEnd, SYSTEM_TIME_OFFSET_FROM_NAME);
-    String priority = getVaule(contents, nameEnd, PRIORITY_OFFSET_FROM_NAME);
-    String nice = getVaule(contents, nameEnd, NICE_TIME_OFFSET_FROM_NAME);
-    String numThreads = getVaule(contents, nameEnd, NUM_THREADS_OFFSET_FROM_NAME);
-    String vmSize = getVaule(contents, nameEnd, VM_SIZE_OFFSET_FROM_NAME);
-    String rss = getVaule(contents, nameEnd, RSS_OFFSET_FROM_NAME);
-    String swapped = getVaule(contents, nameEnd, N_SWAPPED_OFFSET_FROM_NAME);
-
-    setValue(this.userTime, userTime);
-    setValue(this.systemTime, systemTime);
-    setValue(this.priority, priority);
-    setValue(this.nice, nice);
-    setValue(this.numThreads, numThreads);
-    setValue(this.vmSize, vmSize);
-    setValue(this.rss, rss);
-    setValue(this.swapped, swapped);
-  }
-
-  private static void setValue(BigIncrementalCounter userTime, String userTime1) {
+  protected void parse(ProcTokenizer tokenizer) {
+    // the process name is in brackets and may itself contain spaces and brackets, offsets are
+    // therefore counted from the last closing bracket
+    if (!tokenizer.nextLine() || !tokenizer.skipPastLast(')')) {
+      return;
+    }
+    int offset = 0;
     try {
-      userTime.newValue(new BigInteger(userTime1));
+      while (offset < N_SWAPPED_OFFSET_FROM_NAME && tokenizer.nextToken()) {
+        offset++;
+        switch (offset) {
+          case USER_TIME_OFFSET_FROM_NAME:
+            userTime.newValue(tokenizer.tokenAsLong());
+            break;
+          case SYSTEM_TIME_OFFSET_FROM_NAME:
+            systemTime.newValue(tokenizer.tokenAsLong());
+            break;
+          case PRIORITY_OFFSET_FROM_NAME:
+            priority = tokenizer.tokenAsLong();
+            break;
+          case NICE_TIME_OFFSET_FROM_NAME:
+            nice = tokenizer.tokenAsLong();
+            break;
+          case NUM_THREADS_OFFSET_FROM_NAME:
+            numThreads = tokenizer.tokenAsLong();
+            break;
+          case VM_SIZE_OFFSET_FROM_NAME:
+            vmSize = tokenizer.tokenAsLong();
+            break;
+          case RSS_OFFSET_FROM_NAME:
+            rss = tokenizer.tokenAsLong();
+            break;
+          case N_SWAPPED_OFFSET_FROM_NAME:
+            swapped = tokenizer.tokenAsLong();
+            break;
+          default:
+            break;
+        }
+      }
     } catch (NumberFormatException e) {
-      LOGGER.trace("Failed to parse {}", userTime1);
-    }
-  }
-
-  private static String getVaule(String contents, int nameEnd, int index) {
-    int start = spaceOffset(contents, nameEnd, index) + 1;
-    int end = contents.indexOf(' ', start + 1);
-    return contents.substring(start, end);
-  }
-
-  private static int spaceOffset(String s, int fromIndex, int numberOfSpaces) {
-    int index;
-    for (index = fromIndex; numberOfSpaces > 0; numberOfSpaces--) {
-      index = s.indexOf(' ', index + 1);
+      LOGGER.trace("Failed to parse field {}", offset, e);
     }
-    return index;
   }
 
   @Override
-  protected void parseLine(String line) {}
-
-  @Override
-  public BigInteger getUserTime() {
+  public long getUserTime() {
     return userTime.getIncrement();
   }
 
   @Override
-  public BigInteger getSystemTime() {
+  public long getSystemTime() {
     return systemTime.getIncrement();
   }
 
   @Override
-  public BigInteger getTotalTime() {
-    return getUserTime().add(getSystemTime());
+  public long getTotalTime() {
+    long user = getUserTime();
+    long system = getSystemTime();
+    if (user < 0 || system < 0) {
+      return -1;
+    }
+    return user + system;
   }
 
   @Override
-  public BigInteger getPriority() {
-    return priority.getValue();
+  public long getPriority() {
+    return priority;
   }
 
   @Override
-  public BigInteger getNice() {
-    return nice.getValue();
+  public long getNice() {
+    return nice;
   }
 
   @Override
-  public BigInteger getNumThreads() {
-    return this.numThreads.getValue();
+  public long getNumThreads() {
+    return numThreads;
   }
 
   @Override
-  public BigInteger getVmSize() {
-    return vmSize.getValue();
+  public long getVmSize() {
+    return vmSize;
   }
 
   @Override
-  public BigInteger getRss() {
-    return rss.getValue();
+  public long getRss() {
+    return rss;
   }
 
   @Override
-  public BigInteger getSwapped() {
-    return swapped.getValue();
+  public long getSwapped() {
+    return swapped;
   }
 }
@@ -3,12 +3,10 @@
 
 package com.microsoft.applicationinsights.diagnostics.collection.libos.os.linux;
 
-import com.microsoft.applicationinsights.diagnostics.collection.libos.BigIncrementalCounter;
+import com.microsoft.applicationinsights.diagnostics.collection.libos.IncrementalCounter;
 import com.microsoft.applicationinsights.diagnostics.collection.libos.process.ProcessIoStats;
 import java.io.File;
-import java.math.BigInteger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,25 +14,16 @@ import org.slf4j.LoggerFactory;
 public class LinuxProcessIoStats extends TwoStepProcReader implements ProcessIoStats {
   private static final Logger LOGGER = LoggerFactory.getLogger(LinuxProcessIoStats.class);
 
-  private static final Pattern IO_READ_PATTERN =
-      Pattern.compile("^rchar: (\\d+)$", Pattern.MULTILINE);
-  private static final Pattern IO_WRITE_PATTERN =
-      Pattern.compile("^wchar: (\\d+)$", Pattern.MULTILINE);
-  private static final Pattern DISK_READ_PATTERN =
-      Pattern.compile("^read_bytes: (\\d+)$", Pattern.MULTILINE);
-  private static final Pattern DISK_WRITE_PATTERN =
-      Pattern.compile("^write_bytes: (\\d+)$", Pattern.MULTILINE);
-
-  protected final BigIncrementalCounter ioRead = new BigIncrementalCounter();
-  protected final BigIncrementalCounter ioWrite = new BigIncrementalCounter();
-  protected final BigIncrementalCounter diskRead = new BigIncrementalCounter();
-  protected final BigIncrementalCounter diskWrite = new BigIncrementalCounter();
+  protected final IncrementalCounter ioRead = new IncrementalCounter();
+  protected final IncrementalCounter ioWrite = new IncrementalCounter();
+  protected final IncrementalCounter diskRead = new IncrementalCounter();
+  protected final IncrementalCounter diskWrite = new IncrementalCounter();
 
   private boolean canBeInspected = true;
 
   public LinuxProcessIoStats(File candidate) {
     super(new File(candidate, "io"), true);
-    if (this.file == null) {
+    if (!isOpen()) {
       // Generally indicates this process cannot be probed by this user
       this.canBeInspected = false;
     }
@@ -47,51 +36,57 @@ public class LinuxProcessIoStats extends TwoStepProcReader implements ProcessIoS
     }
   }
 
-  private static boolean findBigIntegerValue(
-      Pattern pattern, String contents, BigIncrementalCounter counter) {
-    Matcher matcher = pattern.matcher(contents);
-    if (matcher.find()) {
-      try {
-        counter.newValue(new BigInteger(matcher.group(1)));
-      } catch (NumberFormatException e) {
-        LOGGER.trace("Failed to parse {}", matcher.group(1));
+  @Override
+  protected void parse(ProcTokenizer tokenizer) {
+    while (tokenizer.nextLine()) {
+      if (!tokenizer.nextTokenBefore(':')) {
+        continue;
+      }
+      IncrementalCounter counter = counterFor(tokenizer);
+      if (counter != null) {
+        try {
+          counter.newValue(tokenizer.nextLong());
+        } catch (NumberFormatException e) {
+          LOGGER.trace("Failed to parse io value", e);
+        }
       }
-      return true;
     }
-    return false;
   }
 
-  @Override
-  protected void parseLine(String line) {
-    if (findBigIntegerValue(DISK_WRITE_PATTERN, line, diskWrite)) {
-      return;
+  @Nullable
+  private IncrementalCounter counterFor(ProcTokenizer tokenizer) {
+    if (tokenizer.tokenEquals("write_bytes")) {
+      return diskWrite;
+    }
+    if (tokenizer.tokenEquals("read_bytes")) {
+      return diskRead;
     }
-    if (findBigIntegerValue(DISK_READ_PATTERN, line, diskRead)) {
-      return;
+    if (tokenizer.tokenEquals("wchar")) {
+      return ioWrite;
     }
-    if (findBigIntegerValue(IO_WRITE_PATTERN, line, ioWrite)) {
-      return;
+    if (tokenizer.tokenEquals("rchar")) {
+      return ioRead;
     }
-    findBigIntegerValue(IO_READ_PATTERN, line, ioRead);
+    return null;
   }
 
   @Override
-  public BigInteger getIoRead() {
+  public long getIoRead() {
     return ioRead.getIncrement();
   }
 
   @Override
-  public BigInteger getIoWrite() {
+  public long getIoWrite() {
     return ioWrite.getIncrement();
   }
 
   @Override
-  public BigInteger getDiskRead() {
+  public long getDiskRead() {
     return diskRead.getIncrement();
   }
 
   @Override
-  public BigInteger getDiskWrite() {
+  public long getDiskWrite() {
     return diskWrite.getIncrement();
   }
 }
@@ -3,8 +3,6 @@
 
 package com.microsoft.applicationinsights.diagnostics.collection.libos.os.linux;
 
-import static java.lang.Integer.parseInt;
-
 import com.microsoft.applicationinsights.diagnostics.collection.libos.net.TcpStats;
 import com.microsoft.applicationinsights.diagnostics.collection.libos.net.TcpStatsReader;
 import java.io.File;
@@ -14,11 +12,8 @@ import javax.annotation.concurrent.NotThreadSafe;
 @NotThreadSafe
 public class LinuxTcpStatsReader extends TwoStepProcReader implements TcpStatsReader {
 
-  private static final int RX_END = 54;
-  private static final int RX_START = 47;
-
-  private static final int TX_END = 45;
-  private static final int TX_START = 38;
+  // sl, local_address, rem_address and st precede the tx_queue:rx_queue column
+  private static final int COLUMNS_BEFORE_QUEUES = 3;
 
   private static final int AS_HEX = 16;
 
@@ -26,33 +21,37 @@ public class LinuxTcpStatsReader extends TwoStepProcReader implements TcpStatsRe
 
   private TcpStats stats;
 
-  private long transferredQueue = 0;
-  private long receivedQueue = 0;
-
   public LinuxTcpStatsReader() {
-    super(new File(PROC_FILE));
+    this(new File(PROC_FILE));
   }
 
-  @Override
-  protected void parseLine(String line) {
-    try {
-      if (line.contains("sl")) {
-        return;
-      }
-      transferredQueue += parseInt(line.substring(TX_START, TX_END), AS_HEX);
-      String received = line.substring(RX_START, RX_END);
-      receivedQueue += parseInt(received, AS_HEX);
-    } catch (RuntimeException e) {
-      // ignore
-    }
+  LinuxTcpStatsReader(File tcp) {
+    super(tcp);
   }
 
   @Override
-  public void update() {
-    transferredQueue = 0;
-    receivedQueue = 0;
-
-    super.update();
+  protected void parse(ProcTokenizer tokenizer) {
+    long transferredQueue = 0;
+    long receivedQueue = 0;
+
+    while (tokenizer.nextLine()) {
+      try {
+        // the header line starts with "sl" rather than "<sl>:"
+        if (!tokenizer.nextTokenBefore(':')
+            || !tokenizer.skipTokens(COLUMNS_BEFORE_QUEUES)
+            || !tokenizer.nextTokenBefore(':')) {
+          continue;
+        }
+        long transferred = tokenizer.tokenAsLong(AS_HEX);
+        if (tokenizer.nextToken()) {
+          long received = tokenizer.tokenAsLong(AS_HEX);
+          transferredQueue += transferred;
+          receivedQueue += received;
+        }
+      } catch (RuntimeException e) {
+        // ignore
+      }
+    }
 
     stats = new TcpStats(receivedQueue, transferredQueue);
   }
@@ -61,9 +60,4 @@ public class LinuxTcpStatsReader extends TwoStepProcReader implements TcpStatsRe
   public TcpStats getTcpStats() {
     return stats;
   }
-
-  @Override
-  protected boolean trim() {
-    return false;
-  }
 }
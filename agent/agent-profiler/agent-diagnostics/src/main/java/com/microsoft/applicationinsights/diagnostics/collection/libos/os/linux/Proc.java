@@ -14,22 +14,17 @@ final class Proc {
   static final File TOP_DIR = new File("/proc/");
 
   private static final int BUFFER_SIZE = 1024 * 3;
-  private static final byte[] buffer = new byte[BUFFER_SIZE];
 
   private Proc() {}
 
   static String read(File file) throws IOException {
     try (RandomAccessFile resource = new RandomAccessFile(file, "r")) {
-      return read(resource);
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int totalRead = resource.read(buffer, 0, buffer.length);
+      if (totalRead == -1) {
+        return "";
+      }
+      return new String(buffer, 0, totalRead, StandardCharsets.UTF_8);
     }
   }
-
-  static String read(RandomAccessFile resource) throws IOException {
-    resource.seek(0);
-    int totalRead = resource.read(buffer, 0, buffer.length);
-    if (totalRead == -1) {
-      return "";
-    }
-    return new String(buffer, 0, totalRead, StandardCharsets.UTF_8);
-  }
 }
@@ -0,0 +1,66 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.diagnostics.collection.libos.os.linux;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A /proc (or cgroup) file that is kept open and re-read in place into a reusable direct buffer.
+ *
+ * <p>Each read is a positional read from offset 0, so polling a file does not allocate. The buffer
+ * grows (up to {@link #MAX_BUFFER_SIZE}) the first time the contents do not fit, after which it is
+ * reused for every subsequent read.
+ */
+final class ProcFile implements Closeable {
+
+  private static final int INITIAL_BUFFER_SIZE = 1024 * 3;
+  private static final int MAX_BUFFER_SIZE = 1024 * 1024;
+
+  private final FileChannel channel;
+  private final ProcTokenizer tokenizer = new ProcTokenizer();
+  private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+
+  private ProcFile(FileChannel channel) {
+    this.channel = channel;
+    buffer.limit(0);
+  }
+
+  static ProcFile open(File file) throws IOException {
+    return new ProcFile(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+  }
+
+  /** Reads the current contents of the file, returning the number of bytes read. */
+  int read() throws IOException {
+    while (true) {
+      buffer.clear();
+      long position = 0;
+      int read;
+      while (buffer.hasRemaining() && (read = channel.read(buffer, position)) > 0) {
+        position += read;
+      }
+      if (buffer.hasRemaining() || buffer.capacity() >= MAX_BUFFER_SIZE) {
+        break;
+      }
+      buffer = ByteBuffer.allocateDirect(Math.min(buffer.capacity() * 2, MAX_BUFFER_SIZE));
+    }
+    buffer.flip();
+    return buffer.limit();
+  }
+
+  /** Returns a tokenizer positioned ahead of the first line of the last read contents. */
+  ProcTokenizer tokenizer() {
+    tokenizer.reset(buffer);
+    return tokenizer;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
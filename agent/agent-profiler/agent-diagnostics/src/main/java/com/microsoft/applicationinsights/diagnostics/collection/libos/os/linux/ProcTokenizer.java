@@ -0,0 +1,186 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.diagnostics.collection.libos.os.linux;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Allocation free tokenizer over the raw bytes of a /proc or cgroup file.
+ *
+ * <p>Lines are separated by {@code '\n'} and tokens within a line by spaces or tabs. Numbers are
+ * parsed straight from the bytes so that parsing a file does not create intermediate strings.
+ */
+public final class ProcTokenizer {
+
+  private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+  private ByteBuffer buffer = EMPTY;
+  private int limit;
+  private int nextLineStart;
+  private int lineEnd;
+  private int position;
+  private int tokenStart;
+  private int tokenEnd;
+
+  ProcTokenizer() {}
+
+  /** Resets this tokenizer to just ahead of the first line of {@code contents}. */
+  void reset(ByteBuffer contents) {
+    buffer = contents;
+    limit = contents.limit();
+    nextLineStart = 0;
+    lineEnd = 0;
+    position = 0;
+    tokenStart = 0;
+    tokenEnd = 0;
+  }
+
+  /** Moves to the start of the next line, returns false if there are no more lines. */
+  public boolean nextLine() {
+    if (nextLineStart >= limit) {
+      return false;
+    }
+    position = nextLineStart;
+    int end = position;
+    while (end < limit && buffer.get(end) != '\n') {
+      end++;
+    }
+    lineEnd = end;
+    nextLineStart = end + 1;
+    tokenStart = position;
+    tokenEnd = position;
+    return true;
+  }
+
+  /** Moves to the next token on the current line, returns false if the line has no more. */
+  public boolean nextToken() {
+    skipWhitespace();
+    if (position >= lineEnd) {
+      return false;
+    }
+    tokenStart = position;
+    while (position < lineEnd && !isWhitespace(buffer.get(position))) {
+      position++;
+    }
+    tokenEnd = position;
+    return true;
+  }
+
+  /**
+   * Moves to the next token that is terminated by {@code delimiter}, e.g. the {@code MemTotal} of
+   * {@code MemTotal: 16384 kB}, and consumes the delimiter. Returns false if the next token is not
+   * terminated by the delimiter.
+   */
+  public boolean nextTokenBefore(char delimiter) {
+    skipWhitespace();
+    tokenStart = position;
+    while (position < lineEnd) {
+      byte b = buffer.get(position);
+      if (b == delimiter) {
+        tokenEnd = position++;
+        return true;
+      }
+      if (isWhitespace(b)) {
+        break;
+      }
+      position++;
+    }
+    tokenEnd = position;
+    return false;
+  }
+
+  /** Skips {@code count} tokens, returns false if the line ran out of tokens first. */
+  public boolean skipTokens(int count) {
+    for (int i = 0; i < count; i++) {
+      if (!nextToken()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Moves past the last occurrence of {@code c} on the rest of the current line. */
+  public boolean skipPastLast(char c) {
+    for (int i = lineEnd - 1; i >= position; i--) {
+      if (buffer.get(i) == c) {
+        position = i + 1;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Moves to the next token and parses it as a decimal number. */
+  public long nextLong() {
+    if (!nextToken()) {
+      throw new NumberFormatException("Missing value");
+    }
+    return tokenAsLong();
+  }
+
+  public long tokenAsLong() {
+    return tokenAsLong(10);
+  }
+
+  /**
+   * Parses the current token as a number in the given radix. Unsigned 64 bit kernel counters above
+   * {@link Long#MAX_VALUE} wrap around to negative values, which {@code IncrementalCounter} treats
+   * as a counter wrap.
+   */
+  public long tokenAsLong(int radix) {
+    int index = tokenStart;
+    boolean negative = false;
+    if (index < tokenEnd && buffer.get(index) == '-') {
+      negative = true;
+      index++;
+    }
+    if (index >= tokenEnd) {
+      throw new NumberFormatException("Missing value");
+    }
+    long value = 0;
+    for (; index < tokenEnd; index++) {
+      int digit = Character.digit(buffer.get(index), radix);
+      if (digit < 0) {
+        throw new NumberFormatException("Invalid number: " + tokenAsString());
+      }
+      value = value * radix + digit;
+    }
+    return negative ? -value : value;
+  }
+
+  public boolean tokenEquals(String value) {
+    return tokenEnd - tokenStart == value.length() && tokenStartsWith(value);
+  }
+
+  public boolean tokenStartsWith(String prefix) {
+    if (tokenEnd - tokenStart < prefix.length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (buffer.get(tokenStart + i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Copies the current token into a new string, intended for values that are seen once. */
+  public String tokenAsString() {
+    char[] chars = new char[tokenEnd - tokenStart];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = (char) (buffer.get(tokenStart + i) & 0xFF);
+    }
+    return new String(chars);
+  }
+
+  private void skipWhitespace() {
+    while (position < lineEnd && isWhitespace(buffer.get(position))) {
+      position++;
+    }
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\t' || b == '\r';
+  }
+}
@@ -6,18 +6,21 @@ package com.microsoft.applicationinsights.diagnostics.collection.libos.os.linux;
 import com.microsoft.applicationinsights.diagnostics.collection.libos.TwoStepUpdatable;
 import java.io.Closeable;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Polls a proc file into a reusable buffer and hands the raw bytes to {@link
+ * #parse(ProcTokenizer)} on update.
+ */
 public abstract class TwoStepProcReader implements TwoStepUpdatable, Closeable {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(TwoStepProcReader.class);
 
-  protected RandomAccessFile file;
-  protected String contents;
+  @Nullable private final ProcFile file;
+  private boolean hasContents;
 
   TwoStepProcReader(String fileLocation) {
     this(new File(fileLocation));
@@ -29,16 +32,23 @@ public abstract class TwoStepProcReader implements TwoStepUpdatable, Closeable {
 
   public TwoStepProcReader(File candidate, boolean supressError) {
     super();
+    ProcFile file = null;
     try {
-      file = new RandomAccessFile(candidate, "r");
-    } catch (FileNotFoundException e) {
+      file = ProcFile.open(candidate);
+    } catch (IOException e) {
       if (!supressError) {
         LOGGER.error("Failed to open proc net file", e);
       }
     }
+    this.file = file;
   }
 
-  protected abstract void parseLine(String line);
+  /** Parses the contents read by the last {@link #poll()}. */
+  protected abstract void parse(ProcTokenizer tokenizer);
+
+  protected boolean isOpen() {
+    return file != null;
+  }
 
   @Override
   public void close() throws IOException {
@@ -51,27 +61,19 @@ public abstract class TwoStepProcReader implements TwoStepUpdatable, Closeable {
   public void poll() {
     try {
       if (file != null) {
-        contents = Proc.read(file);
+        file.read();
+        hasContents = true;
       }
     } catch (IOException e) {
+      hasContents = false;
       LOGGER.error("Failed to read stats for file", e);
     }
   }
 
   @Override
   public void update() {
-    if (contents != null) {
-      String[] lines = contents.split("\n");
-      for (String line : lines) {
-        if (trim()) {
-          line = line.trim();
-        }
-        parseLine(line);
-      }
+    if (file != null && hasContents) {
+      parse(file.tokenizer());
     }
   }
-
-  protected boolean trim() {
-    return true;
-  }
 }
@@ -3,21 +3,26 @@
 
 package com.microsoft.applicationinsights.diagnostics.collection.libos.os.linux.cgroups;
 
-import com.microsoft.applicationinsights.diagnostics.collection.libos.BigIncrementalCounter;
+import com.microsoft.applicationinsights.diagnostics.collection.libos.IncrementalCounter;
+import com.microsoft.applicationinsights.diagnostics.collection.libos.os.linux.ProcTokenizer;
 import com.microsoft.applicationinsights.diagnostics.collection.libos.os.linux.TwoStepProcReader;
 import java.io.File;
 
 @SuppressWarnings("checkstyle:AbbreviationAsWordInName")
 public class CGroupStatReader extends TwoStepProcReader {
-  private final BigIncrementalCounter user = new BigIncrementalCounter();
-  private final BigIncrementalCounter system = new BigIncrementalCounter();
+  private final IncrementalCounter user = new IncrementalCounter();
+  private final IncrementalCounter system = new IncrementalCounter();
 
   public CGroupStatReader() {
-    super(new File("/sys/fs/cgroup/cpu,cpuacct/cpuacct.stat"), true);
+    this(new File("/sys/fs/cgroup/cpu,cpuacct/cpuacct.stat"));
+  }
+
+  CGroupStatReader(File cpuacctStat) {
+    super(cpuacctStat, true);
   }
 
   @Override
-  protected void parseLine(String line) {
+  protected void parse(ProcTokenizer tokenizer) {
     /*
      Example contents:
      ```
@@ -25,22 +30,23 @@ public class CGroupStatReader extends TwoStepProcReader {
        system 127178
      ```
     */
-    String[] tokens = line.split(" ");
-
-    if (tokens.length == 2) {
-      if ("user".equals(tokens[0])) {
-        user.newValue(Long.parseLong(tokens[1]));
-      } else if ("system".equals(tokens[0])) {
-        system.newValue(Long.parseLong(tokens[1]));
+    while (tokenizer.nextLine()) {
+      if (!tokenizer.nextToken()) {
+        continue;
+      }
+      if (tokenizer.tokenEquals("user")) {
+        user.newValue(tokenizer.nextLong());
+      } else if (tokenizer.tokenEquals("system")) {
+        system.newValue(tokenizer.nextLong());
       }
     }
   }
 
-  public BigIncrementalCounter getUser() {
+  public IncrementalCounter getUser() {
     return user;
   }
 
-  public BigIncrementalCounter getSystem() {
+  public IncrementalCounter getSystem() {
     return system;
   }
 }
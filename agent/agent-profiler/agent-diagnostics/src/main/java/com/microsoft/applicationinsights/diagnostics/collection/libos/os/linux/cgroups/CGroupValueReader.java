@@ -3,25 +3,27 @@
 
 package com.microsoft.applicationinsights.diagnostics.collection.libos.os.linux.cgroups;
 
-import com.microsoft.applicationinsights.diagnostics.collection.libos.BigIncrementalCounter;
+import com.microsoft.applicationinsights.diagnostics.collection.libos.IncrementalCounter;
+import com.microsoft.applicationinsights.diagnostics.collection.libos.os.linux.ProcTokenizer;
 import com.microsoft.applicationinsights.diagnostics.collection.libos.os.linux.TwoStepProcReader;
 import java.io.File;
 
 @SuppressWarnings("checkstyle:AbbreviationAsWordInName")
 public abstract class CGroupValueReader extends TwoStepProcReader {
-  private final BigIncrementalCounter usage = new BigIncrementalCounter();
+  private final IncrementalCounter usage = new IncrementalCounter();
 
   public CGroupValueReader(String fileName) {
     super(new File(fileName), true);
   }
 
   @Override
-  protected void parseLine(String line) {
-    long newUsage = Long.parseLong(line);
-    usage.newValue(newUsage);
+  protected void parse(ProcTokenizer tokenizer) {
+    if (tokenizer.nextLine()) {
+      usage.newValue(tokenizer.nextLong());
+    }
   }
 
-  public BigIncrementalCounter getUsage() {
+  public IncrementalCounter getUsage() {
     return usage;
   }
 }
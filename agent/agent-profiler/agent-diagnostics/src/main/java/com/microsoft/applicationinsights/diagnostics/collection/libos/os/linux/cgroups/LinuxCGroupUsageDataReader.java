@@ -5,9 +5,8 @@ package com.microsoft.applicationinsights.diagnostics.collection.libos.os.linux.
 
 import com.microsoft.applicationinsights.diagnostics.collection.libos.kernel.CGroupUsageDataReader;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @SuppressWarnings("checkstyle:AbbreviationAsWordInName")
 public class LinuxCGroupUsageDataReader implements CGroupUsageDataReader {
@@ -38,21 +37,13 @@ public class LinuxCGroupUsageDataReader implements CGroupUsageDataReader {
 
   @Override
   public List<Double> getTelemetry() {
-    return Stream.of(
-            cgroupCpuUsageReader.getUsage().getIncrement(),
-            cgroupCpuUserReader.getUsage().getIncrement(),
-            cgroupCpuSystemReader.getUsage().getIncrement(),
-            cgroupStatReader.getUser().getIncrement(),
-            cgroupStatReader.getSystem().getIncrement())
-        .map(
-            value -> {
-              if (value == null) {
-                return -1.0d;
-              } else {
-                return value.doubleValue();
-              }
-            })
-        .collect(Collectors.toList());
+    // increments are -1 until two values have been read
+    return Arrays.asList(
+        (double) cgroupCpuUsageReader.getUsage().getIncrement(),
+        (double) cgroupCpuUserReader.getUsage().getIncrement(),
+        (double) cgroupCpuSystemReader.getUsage().getIncrement(),
+        (double) cgroupStatReader.getUser().getIncrement(),
+        (double) cgroupStatReader.getSystem().getIncrement());
   }
 
   @Override
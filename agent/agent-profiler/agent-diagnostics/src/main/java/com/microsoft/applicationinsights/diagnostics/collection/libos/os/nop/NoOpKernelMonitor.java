@@ -9,7 +9,6 @@ import com.microsoft.applicationinsights.diagnostics.collection.libos.kernel.Ker
 import com.microsoft.applicationinsights.diagnostics.collection.libos.net.GlobalNetworkStats;
 import com.microsoft.applicationinsights.diagnostics.collection.libos.net.TcpStats;
 import java.io.IOException;
-import java.math.BigInteger;
 
 public class NoOpKernelMonitor implements KernelMonitorDeviceDriver {
 
@@ -27,13 +26,13 @@ public class NoOpKernelMonitor implements KernelMonitorDeviceDriver {
   public GlobalNetworkStats getNetworkStats() {
     return new GlobalNetworkStats() {
       @Override
-      public BigInteger getTotalWrite() {
-        return BigInteger.valueOf(-1);
+      public long getTotalWrite() {
+        return -1;
       }
 
       @Override
-      public BigInteger getTotalReceived() {
-        return BigInteger.valueOf(-1);
+      public long getTotalReceived() {
+        return -1;
       }
     };
   }
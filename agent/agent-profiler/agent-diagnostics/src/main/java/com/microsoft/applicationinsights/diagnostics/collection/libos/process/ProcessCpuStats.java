@@ -5,25 +5,24 @@ package com.microsoft.applicationinsights.diagnostics.collection.libos.process;
 
 import com.microsoft.applicationinsights.diagnostics.collection.libos.TwoStepUpdatable;
 import java.io.Closeable;
-import java.math.BigInteger;
 
 public interface ProcessCpuStats extends Closeable, TwoStepUpdatable {
 
-  BigInteger getUserTime();
+  long getUserTime();
 
-  BigInteger getSystemTime();
+  long getSystemTime();
 
-  BigInteger getTotalTime();
+  long getTotalTime();
 
-  BigInteger getPriority();
+  long getPriority();
 
-  BigInteger getNice();
+  long getNice();
 
-  BigInteger getNumThreads();
+  long getNumThreads();
 
-  BigInteger getVmSize();
+  long getVmSize();
 
-  BigInteger getRss();
+  long getRss();
 
-  BigInteger getSwapped();
+  long getSwapped();
 }
@@ -0,0 +1,182 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.diagnostics.collection.libos.os.linux;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.microsoft.applicationinsights.diagnostics.collection.libos.OperatingSystemInteractionException;
+import com.microsoft.applicationinsights.diagnostics.collection.libos.hardware.MemoryInfo;
+import com.microsoft.applicationinsights.diagnostics.collection.libos.kernel.KernelCounters;
+import com.microsoft.applicationinsights.diagnostics.collection.libos.net.TcpStats;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LinuxProcReadersTest {
+
+  @TempDir Path procDir;
+
+  @Test
+  void readsKernelStats() throws Exception {
+    Path stat = ProcFixtures.write("t0", "stat", procDir.resolve("stat"));
+    try (LinuxKernelStats reader = new LinuxKernelStats(stat.toString())) {
+      pollAndUpdate(reader);
+      ProcFixtures.write("t1", "stat", stat);
+      pollAndUpdate(reader);
+
+      KernelCounters counters = reader.getCounters();
+      assertThat(counters.getContextSwitches()).isEqualTo(1500);
+      // 100 user, 50 system, 300 idle and 50 wait jiffies, as a percentage of the total
+      assertThat(counters.getUserTime()).isEqualTo(20);
+      assertThat(counters.getSystemTime()).isEqualTo(10);
+      assertThat(counters.getIdleTime()).isEqualTo(60);
+      assertThat(counters.getWaitTime()).isEqualTo(10);
+      assertThat(counters.getProcsRunnable()).isEqualTo(5);
+      assertThat(counters.getProcsBlocked()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  void readsMemoryInfo() throws IOException {
+    Path meminfo = ProcFixtures.write("t0", "meminfo", procDir.resolve("meminfo"));
+    try (LinuxMemoryInfoReader reader = new LinuxMemoryInfoReader(meminfo.toFile())) {
+      reader.poll();
+      reader.update();
+
+      MemoryInfo memoryInfo = reader.getMemoryInfo();
+      assertThat(memoryInfo.getTotalInKb()).isEqualTo(16318440);
+      assertThat(memoryInfo.getFreeInKb()).isEqualTo(8123456);
+      assertThat(memoryInfo.getVirtualMemoryTotalInKb()).isEqualTo(34359738367L);
+      assertThat(memoryInfo.getVirtualMemoryUsedInKb()).isEqualTo(45678);
+    }
+  }
+
+  @Test
+  void readsProcessCpuStats() throws IOException {
+    Path stat = ProcFixtures.write("t0", "pid-stat", procDir.resolve("stat"));
+    try (LinuxProcessCpuStats reader = new LinuxProcessCpuStats(procDir.toFile())) {
+      reader.poll();
+      reader.update();
+      assertThat(reader.getUserTime()).isEqualTo(-1);
+      assertThat(reader.getTotalTime()).isEqualTo(-1);
+
+      ProcFixtures.write("t1", "pid-stat", stat);
+      reader.poll();
+      reader.update();
+
+      assertThat(reader.getUserTime()).isEqualTo(250);
+      assertThat(reader.getSystemTime()).isEqualTo(40);
+      assertThat(reader.getTotalTime()).isEqualTo(290);
+      assertThat(reader.getPriority()).isEqualTo(20);
+      assertThat(reader.getNice()).isEqualTo(0);
+      assertThat(reader.getNumThreads()).isEqualTo(44);
+      assertThat(reader.getVmSize()).isEqualTo(5368709120L);
+      assertThat(reader.getRss()).isEqualTo(65536);
+      assertThat(reader.getSwapped()).isEqualTo(5);
+    }
+  }
+
+  @Test
+  void readsProcessIoStats() throws IOException {
+    Path io = ProcFixtures.write("t0", "io", procDir.resolve("io"));
+    try (LinuxProcessIoStats reader = new LinuxProcessIoStats(procDir.toFile())) {
+      reader.poll();
+      reader.update();
+      ProcFixtures.write("t1", "io", io);
+      reader.poll();
+      reader.update();
+
+      assertThat(reader.getIoRead()).isEqualTo(50000);
+      assertThat(reader.getIoWrite()).isEqualTo(20000);
+      assertThat(reader.getDiskRead()).isEqualTo(8192);
+      assertThat(reader.getDiskWrite()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  void processIoStatsAreUnavailableWithoutFile() throws IOException {
+    try (LinuxProcessIoStats reader = new LinuxProcessIoStats(procDir.toFile())) {
+      reader.poll();
+      reader.update();
+
+      assertThat(reader.getIoRead()).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  void readsDiskStatsOfPhysicalDisksOnly() throws IOException {
+    Path diskstats = ProcFixtures.write("t0", "diskstats", procDir.resolve("diskstats"));
+    try (LinuxGlobalDiskIoStats reader = new LinuxGlobalDiskIoStats(diskstats.toFile())) {
+      reader.poll();
+      reader.update();
+      ProcFixtures.write("t1", "diskstats", diskstats);
+      reader.poll();
+      reader.update();
+
+      // sda and nvme0n1, loop, ram and partition lines are skipped
+      assertThat(reader.getTotalRead()).isEqualTo(30 + 40);
+      assertThat(reader.getTotalWrite()).isEqualTo(50 + 90);
+      assertThat(reader.getTotalIo()).isEqualTo(60 + 100);
+    }
+  }
+
+  @Test
+  void readsNetworkStats() throws IOException {
+    Path netDev = ProcFixtures.write("t0", "net-dev", procDir.resolve("dev"));
+    try (LinuxGlobalNetworkStats reader = new LinuxGlobalNetworkStats(netDev.toFile())) {
+      reader.poll();
+      reader.update();
+      assertThat(reader.getTotalReceived()).isEqualTo(0);
+
+      ProcFixtures.write("t1", "net-dev", netDev);
+      reader.poll();
+      reader.update();
+
+      // lo and eth0, interface names outside [A-Za-z0-9] are skipped
+      assertThat(reader.getTotalReceived()).isEqualTo(500 + 4000);
+      assertThat(reader.getTotalWrite()).isEqualTo(500 + 1000);
+    }
+  }
+
+  @Test
+  void readsTcpQueues() throws IOException {
+    Path tcp = ProcFixtures.write("t0", "tcp", procDir.resolve("tcp"));
+    try (LinuxTcpStatsReader reader = new LinuxTcpStatsReader(tcp.toFile())) {
+      reader.poll();
+      reader.update();
+
+      TcpStats stats = reader.getTcpStats();
+      assertThat(stats.getTotalTransferredQueuesSize()).isEqualTo(0x10 + 0x1);
+      assertThat(stats.getTotalReceivedQueuesSize()).isEqualTo(0x200 + 0xA);
+    }
+  }
+
+  @Test
+  void readsFilesLargerThanTheInitialBuffer() throws IOException {
+    StringBuilder contents = new StringBuilder();
+    contents.append("  sl  local_address rem_address   st tx_queue rx_queue\n");
+    for (int i = 0; i < 1000; i++) {
+      contents.append(i).append(": 00000000:1F90 00000000:0000 0A 00000001:00000002 00:00\n");
+    }
+    File tcp = procDir.resolve("tcp").toFile();
+    Files.write(tcp.toPath(), contents.toString().getBytes("US-ASCII"));
+
+    try (LinuxTcpStatsReader reader = new LinuxTcpStatsReader(tcp)) {
+      reader.poll();
+      reader.update();
+
+      assertThat(reader.getTcpStats().getTotalTransferredQueuesSize()).isEqualTo(1000);
+      assertThat(reader.getTcpStats().getTotalReceivedQueuesSize()).isEqualTo(2000);
+    }
+  }
+
+  private static void pollAndUpdate(LinuxKernelStats reader)
+      throws OperatingSystemInteractionException {
+    reader.poll();
+    reader.update();
+  }
+}
@@ -0,0 +1,36 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.diagnostics.collection.libos.os.linux;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** Copies the canned /proc contents under {@code src/test/resources/proc} into place. */
+public final class ProcFixtures {
+
+  /**
+   * Rewrites {@code target} in place with the {@code name} fixture of the given snapshot, so that
+   * readers holding the file open observe the new contents on their next poll.
+   */
+  public static Path write(String snapshot, String name, Path target) throws IOException {
+    String resource = "/proc/" + snapshot + "/" + name;
+    try (InputStream in = ProcFixtures.class.getResourceAsStream(resource);
+        OutputStream out = Files.newOutputStream(target)) {
+      if (in == null) {
+        throw new IllegalArgumentException("Missing fixture " + resource);
+      }
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+    }
+    return target;
+  }
+
+  private ProcFixtures() {}
+}
@@ -0,0 +1,102 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.diagnostics.collection.libos.os.linux;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class ProcTokenizerTest {
+
+  @Test
+  void iteratesLinesAndTokens() {
+    ProcTokenizer tokenizer = tokenizerFor("cpu  1 2\t3\n\nctxt 42");
+
+    assertThat(tokenizer.nextLine()).isTrue();
+    assertThat(tokenizer.nextToken()).isTrue();
+    assertThat(tokenizer.tokenEquals("cpu")).isTrue();
+    assertThat(tokenizer.nextLong()).isEqualTo(1);
+    assertThat(tokenizer.nextLong()).isEqualTo(2);
+    assertThat(tokenizer.nextLong()).isEqualTo(3);
+    assertThat(tokenizer.nextToken()).isFalse();
+
+    assertThat(tokenizer.nextLine()).isTrue();
+    assertThat(tokenizer.nextToken()).isFalse();
+
+    assertThat(tokenizer.nextLine()).isTrue();
+    assertThat(tokenizer.nextToken()).isTrue();
+    assertThat(tokenizer.tokenAsString()).isEqualTo("ctxt");
+    assertThat(tokenizer.nextLong()).isEqualTo(42);
+
+    assertThat(tokenizer.nextLine()).isFalse();
+  }
+
+  @Test
+  void readsTokensBeforeDelimiter() {
+    ProcTokenizer tokenizer = tokenizerFor("MemTotal:  16 kB\n eth0:123 4\nface |bytes");
+
+    tokenizer.nextLine();
+    assertThat(tokenizer.nextTokenBefore(':')).isTrue();
+    assertThat(tokenizer.tokenEquals("MemTotal")).isTrue();
+    assertThat(tokenizer.nextLong()).isEqualTo(16);
+
+    tokenizer.nextLine();
+    assertThat(tokenizer.nextTokenBefore(':')).isTrue();
+    assertThat(tokenizer.tokenEquals("eth0")).isTrue();
+    assertThat(tokenizer.nextLong()).isEqualTo(123);
+
+    tokenizer.nextLine();
+    assertThat(tokenizer.nextTokenBefore(':')).isFalse();
+  }
+
+  @Test
+  void skipsPastLastOccurrence() {
+    ProcTokenizer tokenizer = tokenizerFor("1 (a) b) S 7");
+
+    tokenizer.nextLine();
+    assertThat(tokenizer.skipPastLast(')')).isTrue();
+    assertThat(tokenizer.nextToken()).isTrue();
+    assertThat(tokenizer.tokenEquals("S")).isTrue();
+    assertThat(tokenizer.nextLong()).isEqualTo(7);
+    assertThat(tokenizer.skipPastLast(')')).isFalse();
+  }
+
+  @Test
+  void parsesNumbers() {
+    ProcTokenizer tokenizer = tokenizerFor("-1 0000001F 18446744073709551615 12a");
+
+    tokenizer.nextLine();
+    assertThat(tokenizer.nextLong()).isEqualTo(-1);
+    tokenizer.nextToken();
+    assertThat(tokenizer.tokenAsLong(16)).isEqualTo(31);
+    // unsigned 64 bit values wrap around
+    assertThat(tokenizer.nextLong()).isEqualTo(-1);
+    assertThatThrownBy(tokenizer::nextLong).isInstanceOf(NumberFormatException.class);
+    assertThatThrownBy(tokenizer::nextLong).isInstanceOf(NumberFormatException.class);
+  }
+
+  @Test
+  void comparesTokens() {
+    ProcTokenizer tokenizer = tokenizerFor("procs_running 3");
+
+    tokenizer.nextLine();
+    tokenizer.nextToken();
+    assertThat(tokenizer.tokenEquals("procs_running")).isTrue();
+    assertThat(tokenizer.tokenEquals("procs")).isFalse();
+    assertThat(tokenizer.tokenStartsWith("procs")).isTrue();
+    assertThat(tokenizer.tokenStartsWith("procs_running_")).isFalse();
+  }
+
+  private static ProcTokenizer tokenizerFor(String contents) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(contents.length());
+    buffer.put(contents.getBytes(StandardCharsets.US_ASCII));
+    buffer.flip();
+    ProcTokenizer tokenizer = new ProcTokenizer();
+    tokenizer.reset(buffer);
+    return tokenizer;
+  }
+}
@@ -0,0 +1,50 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.diagnostics.collection.libos.os.linux.cgroups;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.microsoft.applicationinsights.diagnostics.collection.libos.os.linux.ProcFixtures;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@SuppressWarnings("checkstyle:AbbreviationAsWordInName")
+class CGroupReadersTest {
+
+  @TempDir Path cgroupDir;
+
+  @Test
+  void readsCpuacctStat() throws IOException {
+    Path stat = ProcFixtures.write("t0", "cpuacct.stat", cgroupDir.resolve("cpuacct.stat"));
+    try (CGroupStatReader reader = new CGroupStatReader(stat.toFile())) {
+      reader.poll();
+      reader.update();
+      assertThat(reader.getUser().getIncrement()).isEqualTo(-1);
+
+      ProcFixtures.write("t1", "cpuacct.stat", stat);
+      reader.poll();
+      reader.update();
+
+      assertThat(reader.getUser().getIncrement()).isEqualTo(1000);
+      assertThat(reader.getSystem().getIncrement()).isEqualTo(500);
+    }
+  }
+
+  @Test
+  void readsCpuacctValue() throws IOException {
+    Path usage = ProcFixtures.write("t0", "cpuacct.usage", cgroupDir.resolve("cpuacct.usage"));
+    try (CGroupValueReader reader = new CGroupValueReader(usage.toString()) {}) {
+      reader.poll();
+      reader.update();
+      ProcFixtures.write("t1", "cpuacct.usage", usage);
+      reader.poll();
+      reader.update();
+
+      assertThat(reader.getUsage().getValue()).isEqualTo(123556789);
+      assertThat(reader.getUsage().getIncrement()).isEqualTo(100000);
+    }
+  }
+}
@@ -0,0 +1,27 @@
+plugins {
+  id("ai.java-conventions")
+  id("ai.jmh-conventions")
+}
+
+// microbenchmarks for the agent-tooling code that runs on every request, nothing here touches the
+// network, and the results are written to build/results/jmh/results.json so that they can be
+// compared between commits:
+//   ./gradlew :agent:agent-tooling-benchmarks:jmh
+dependencies {
+  jmhImplementation(project(":agent:agent-tooling"))
+  jmhImplementation(project(":agent:agent-bootstrap"))
+
+  // these are implementation dependencies of agent-tooling, so they are not exposed on this
+  // module's compile classpath, but the benchmarks build exporter and pipeline types directly
+  jmhImplementation("com.azure:azure-monitor-opentelemetry-autoconfigure:1.0.0-beta.3")
+  jmhImplementation("com.azure:azure-core")
+
+  jmhImplementation("io.opentelemetry.javaagent:opentelemetry-javaagent-bootstrap")
+  jmhImplementation("io.opentelemetry:opentelemetry-sdk")
+  jmhImplementation("io.opentelemetry:opentelemetry-sdk-logs")
+  jmhImplementation("io.opentelemetry:opentelemetry-sdk-testing")
+  jmhImplementation("io.opentelemetry.instrumentation:opentelemetry-instrumentation-api")
+  jmhImplementation("io.opentelemetry.instrumentation:opentelemetry-instrumentation-api-incubator")
+
+  jmhImplementation("com.azure:azure-core-test")
+}
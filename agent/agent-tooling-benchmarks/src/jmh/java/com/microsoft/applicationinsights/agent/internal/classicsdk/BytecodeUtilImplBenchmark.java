@@ -0,0 +1,146 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.classicsdk;
+
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.ContextTagKeys;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.TelemetryItem;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.statsbeat.StatsbeatModule;
+import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
+import io.opentelemetry.sdk.resources.Resource;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures what a classic SDK call pays in the bridge, from the {@link BytecodeUtilImpl} entry
+ * point up to {@link TelemetryClient#trackAsync(TelemetryItem)}, which is stubbed out so that the
+ * score doesn't include the export queue (see {@code TelemetryClientTrackAsyncBenchmark} for that).
+ *
+ * <p>Events are sampled using the configured sampling percentage, so at 0 they measure the
+ * sampled-out path. Metrics are never sampled, and local metric aggregation is not enabled, so
+ * every call builds a metric item. Most classic SDK metrics don't have properties, and pass the
+ * instrumentation key of their telemetry client, which {@link #trackMetricWithoutProperties}
+ * measures.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BytecodeUtilImplBenchmark {
+
+  @Param({"100", "0"})
+  public float samplingPercentage;
+
+  private final BytecodeUtilImpl bytecodeUtil = new BytecodeUtilImpl();
+
+  private Map<String, String> properties;
+  private Map<String, String> tags;
+
+  @Setup
+  public void setup() {
+    // the active telemetry client can only be set once, and each benchmark runs in its own fork
+    if (TelemetryClient.getActive() == null) {
+      TelemetryClient telemetryClient =
+          new NoopTrackTelemetryClient(
+              TelemetryClient.builder()
+                  .setCustomDimensions(Collections.singletonMap("environment", "benchmark"))
+                  .setStatsbeatModule(new StatsbeatModule(response -> {}))
+                  .setConnectionStrings(
+                      "InstrumentationKey=00000000-0000-0000-0000-000000000000;"
+                          + "IngestionEndpoint=http://localhost:4318/"));
+      telemetryClient.setOtelResource(Resource.getDefault());
+      TelemetryClient.setActive(telemetryClient);
+    }
+    BytecodeUtilImpl.samplingPercentage = samplingPercentage;
+
+    properties = new HashMap<>();
+    properties.put("region", "westus");
+    properties.put("tenant", "contoso");
+    // the operation id makes the standalone sampling decision deterministic
+    tags =
+        Collections.singletonMap(
+            ContextTagKeys.AI_OPERATION_ID.toString(), "ff01020304050600ff0a0b0c0d0e0f00");
+  }
+
+  @TearDown
+  public void tearDown() {
+    BytecodeUtilImpl.samplingPercentage = 0;
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void trackMetric() {
+    bytecodeUtil.trackMetric(
+        null,
+        "benchmark-metric",
+        null,
+        1.0,
+        null,
+        null,
+        null,
+        null,
+        properties,
+        Collections.emptyMap(),
+        null,
+        null);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void trackMetricWithoutProperties() {
+    bytecodeUtil.trackMetric(
+        null,
+        "benchmark-metric",
+        null,
+        1.0,
+        null,
+        null,
+        null,
+        null,
+        Collections.emptyMap(),
+        Collections.emptyMap(),
+        null,
+        "00000000-0000-0000-0000-000000000000");
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void trackEvent() {
+    bytecodeUtil.trackEvent(
+        null, "benchmark-event", properties, tags, Collections.emptyMap(), null, null);
+  }
+
+  // the items are built as usual, but they are dropped instead of being queued for export, the
+  // last one is kept so that the JIT can't eliminate building them
+  private static class NoopTrackTelemetryClient extends TelemetryClient {
+
+    @SuppressWarnings("unused")
+    private TelemetryItem lastItem;
+
+    private NoopTrackTelemetryClient(TelemetryClient.Builder builder) {
+      super(builder);
+    }
+
+    @Override
+    public void trackAsync(TelemetryItem telemetryItem) {
+      lastItem = telemetryItem;
+    }
+  }
+}
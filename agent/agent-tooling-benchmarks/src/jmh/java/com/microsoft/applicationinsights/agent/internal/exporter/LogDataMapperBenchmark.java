@@ -0,0 +1,102 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.exporter;
+
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.LogDataMapper;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.TelemetryItem;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.statsbeat.StatsbeatModule;
+import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.logs.Severity;
+import io.opentelemetry.sdk.logs.data.LogRecordData;
+import io.opentelemetry.sdk.testing.logs.TestLogRecordData;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link LogDataMapper#map(LogRecordData, String, Double)} for a log message (mapped to a
+ * trace) and for a log with an exception (mapped to an exception, which includes parsing the
+ * stack trace), including the telemetry defaults populated by {@link
+ * TelemetryClient#populateDefaults}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LogDataMapperBenchmark {
+
+  private LogDataMapper mapper;
+  private LogRecordData message;
+  private LogRecordData exception;
+  private String stack;
+
+  @Setup
+  public void setup() {
+    TelemetryClient telemetryClient =
+        TelemetryClient.builder()
+            .setCustomDimensions(Collections.singletonMap("environment", "benchmark"))
+            .setMetricFilters(new ArrayList<>())
+            .setStatsbeatModule(new StatsbeatModule(response -> {}))
+            .setConnectionStrings("InstrumentationKey=00000000-0000-0000-0000-000000000000")
+            .build();
+    mapper = new LogDataMapper(true, false, telemetryClient::populateDefaults);
+
+    Attributes attributes =
+        Attributes.builder()
+            .put("thread.name", "http-nio-8080-exec-1")
+            .put("code.namespace", "com.example.OrderController")
+            .put("order.id", "123")
+            .build();
+    message =
+        TestLogRecordData.builder()
+            .setBody("Processing order 123")
+            .setSeverity(Severity.INFO)
+            .setSeverityText("INFO")
+            .setAttributes(attributes)
+            .setTimestamp(1, TimeUnit.MILLISECONDS)
+            .build();
+
+    StringWriter stackWriter = new StringWriter();
+    new IllegalStateException("benchmark").printStackTrace(new PrintWriter(stackWriter));
+    stack = stackWriter.toString();
+    exception =
+        TestLogRecordData.builder()
+            .setBody("Failed to process order 123")
+            .setSeverity(Severity.ERROR)
+            .setSeverityText("ERROR")
+            .setAttributes(
+                attributes.toBuilder()
+                    .put("exception.type", IllegalStateException.class.getName())
+                    .put("exception.message", "benchmark")
+                    .put("exception.stacktrace", stack)
+                    .build())
+            .setTimestamp(1, TimeUnit.MILLISECONDS)
+            .build();
+  }
+
+  @Benchmark
+  public TelemetryItem message() {
+    return mapper.map(message, null, null);
+  }
+
+  @Benchmark
+  public TelemetryItem exception() {
+    return mapper.map(exception, stack, null);
+  }
+}
@@ -0,0 +1,107 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.exporter;
+
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.SpanDataMapper;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.statsbeat.StatsbeatModule;
+import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link SpanDataMapper#map(SpanData, java.util.function.Consumer)} for the spans that
+ * make up most of the telemetry: http server spans (mapped to requests) and http client spans
+ * (mapped to remote dependencies), including the telemetry defaults populated by {@link
+ * TelemetryClient#populateDefaults}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SpanDataMapperBenchmark {
+
+  private SpanDataMapper mapper;
+  private SpanData serverSpan;
+  private SpanData clientSpan;
+
+  @Setup
+  public void setup() {
+    TelemetryClient telemetryClient =
+        TelemetryClient.builder()
+            .setCustomDimensions(Collections.singletonMap("environment", "benchmark"))
+            .setMetricFilters(new ArrayList<>())
+            .setStatsbeatModule(new StatsbeatModule(response -> {}))
+            .setConnectionStrings("InstrumentationKey=00000000-0000-0000-0000-000000000000")
+            .build();
+    mapper =
+        new SpanDataMapper(
+            false,
+            telemetryClient::populateDefaults,
+            (event, instrumentationName) -> false,
+            (span, event) -> false);
+
+    Tracer tracer = SdkTracerProvider.builder().build().get("io.opentelemetry.tomcat-10.0");
+    serverSpan =
+        toSpanData(
+            tracer
+                .spanBuilder("GET /api/orders/{id}")
+                .setSpanKind(SpanKind.SERVER)
+                .setAttribute("http.request.method", "GET")
+                .setAttribute("url.scheme", "http")
+                .setAttribute("url.path", "/api/orders/123")
+                .setAttribute("http.route", "/api/orders/{id}")
+                .setAttribute("server.address", "localhost")
+                .setAttribute("server.port", 8080L)
+                .setAttribute("client.address", "10.0.0.1")
+                .setAttribute("user_agent.original", "benchmark")
+                .setAttribute("http.response.status_code", 200L)
+                .startSpan());
+    clientSpan =
+        toSpanData(
+            tracer
+                .spanBuilder("GET")
+                .setSpanKind(SpanKind.CLIENT)
+                .setAttribute("http.request.method", "GET")
+                .setAttribute("url.full", "https://example.com:8443/api/items?page=1")
+                .setAttribute("server.address", "example.com")
+                .setAttribute("server.port", 8443L)
+                .setAttribute("http.response.status_code", 200L)
+                .startSpan());
+  }
+
+  @Benchmark
+  public void serverSpan(Blackhole blackhole) {
+    mapper.map(serverSpan, blackhole::consume);
+  }
+
+  @Benchmark
+  public void clientSpan(Blackhole blackhole) {
+    mapper.map(clientSpan, blackhole::consume);
+  }
+
+  private static SpanData toSpanData(Span span) {
+    span.end();
+    return ((ReadableSpan) span).toSpanData();
+  }
+}
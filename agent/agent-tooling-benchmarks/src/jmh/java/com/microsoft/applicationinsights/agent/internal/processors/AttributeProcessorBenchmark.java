@@ -0,0 +1,102 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.processors;
+
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorAction;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorActionType;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorConfig;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorType;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link AttributeProcessor#processActions(SpanData)} on spans with 30 attributes as the
+ * number of actions grows.
+ *
+ * <p>The actions cycle through update, insert, mask and hash so that every action changes the
+ * attributes, which is the worst case for copying attributes per action.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AttributeProcessorBenchmark {
+
+  private static final int ATTRIBUTES = 30;
+
+  @Param({"1", "5", "20"})
+  public int actions;
+
+  private AttributeProcessor processor;
+  private SpanData span;
+
+  @Setup
+  public void setup() {
+    ProcessorConfig config = new ProcessorConfig();
+    config.type = ProcessorType.ATTRIBUTE;
+    config.id = "benchmark";
+    config.actions = createActions(actions);
+    processor = AttributeProcessor.create(config, false);
+
+    Tracer tracer = SdkTracerProvider.builder().build().get("benchmark");
+    SpanBuilder spanBuilder = tracer.spanBuilder("benchmark");
+    for (int i = 0; i < ATTRIBUTES; i++) {
+      spanBuilder.setAttribute("attribute" + i, "value-" + i + "-1234567890");
+    }
+    Span span = spanBuilder.startSpan();
+    span.end();
+    this.span = ((ReadableSpan) span).toSpanData();
+  }
+
+  @Benchmark
+  public SpanData processActions() {
+    return processor.processActions(span);
+  }
+
+  private static List<ProcessorAction> createActions(int count) {
+    List<ProcessorAction> actions = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      String key = "attribute" + (i % ATTRIBUTES);
+      switch (i % 4) {
+        case 0:
+          actions.add(
+              new ProcessorAction(key, ProcessorActionType.UPDATE, "updated", null, null, null));
+          break;
+        case 1:
+          actions.add(
+              new ProcessorAction(
+                  "inserted" + i, ProcessorActionType.INSERT, "inserted", null, null, null));
+          break;
+        case 2:
+          actions.add(
+              new ProcessorAction(key, ProcessorActionType.MASK, null, null, "[0-9]+", "*"));
+          break;
+        default:
+          actions.add(new ProcessorAction(key, ProcessorActionType.HASH, null, null, null, null));
+          break;
+      }
+    }
+    return actions;
+  }
+}
@@ -0,0 +1,110 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.sampling;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the {@link AiSampler} decision for a parentless server span and for a span with a
+ * remote parent, which are the spans that can't reuse the local parent decision.
+ *
+ * <p>The sampling percentage is either fixed, or rate limited (where the current percentage is
+ * recomputed from the rate at which spans are being sampled).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AiSamplerBenchmark {
+
+  private static final String TRACE_ID = "ff01020304050600ff0a0b0c0d0e0f00";
+
+  @Param({"FIXED_100", "FIXED_10", "RATE_LIMITED_5"})
+  public String samplingPercentage;
+
+  private AiSampler sampler;
+  private Context remoteParent;
+  private Attributes attributes;
+
+  @Setup
+  public void setup() {
+    SamplingPercentage percentage;
+    switch (samplingPercentage) {
+      case "FIXED_100":
+        percentage = SamplingPercentage.fixed(100);
+        break;
+      case "FIXED_10":
+        percentage = SamplingPercentage.fixed(10);
+        break;
+      case "RATE_LIMITED_5":
+        percentage = SamplingPercentage.rateLimited(5);
+        break;
+      default:
+        throw new IllegalArgumentException(samplingPercentage);
+    }
+    sampler = AiSampler.create(percentage, percentage, true);
+
+    SpanContext remoteSpanContext =
+        SpanContext.createFromRemoteParent(
+            TRACE_ID, "ff00000000000041", TraceFlags.getSampled(), TraceState.getDefault());
+    remoteParent = Context.root().with(Span.wrap(remoteSpanContext));
+    attributes =
+        Attributes.builder()
+            .put("http.request.method", "GET")
+            .put("url.path", "/api/orders")
+            .put("server.address", "localhost")
+            .build();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public SamplingResult parentless() {
+    return shouldSample(Context.root());
+  }
+
+  @Benchmark
+  @Threads(4)
+  public SamplingResult parentlessThreads04() {
+    return shouldSample(Context.root());
+  }
+
+  @Benchmark
+  @Threads(1)
+  public SamplingResult remoteParent() {
+    return shouldSample(remoteParent);
+  }
+
+  private SamplingResult shouldSample(Context parentContext) {
+    return sampler.shouldSample(
+        parentContext,
+        TRACE_ID,
+        "GET /api/orders",
+        SpanKind.SERVER,
+        attributes,
+        Collections.emptyList());
+  }
+}
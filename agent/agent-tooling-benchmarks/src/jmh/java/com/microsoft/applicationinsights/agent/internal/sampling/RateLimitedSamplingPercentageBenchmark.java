@@ -0,0 +1,112 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.sampling;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the cost of a sampling decision under contention, between the previous {@link
+ * RateLimitedSamplingPercentage} (an {@link AtomicReference} to an immutable state that is
+ * replaced on every call) and the current one (a striped counter that is folded into the rate
+ * estimate at most once per fold interval).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@Threads(16)
+public class RateLimitedSamplingPercentageBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class BenchmarkState {
+
+    @Param({"ATOMIC_REFERENCE", "STRIPED"})
+    public String design;
+
+    private SamplingPercentage samplingPercentage;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      // same settings as SamplingPercentage.rateLimited()
+      samplingPercentage =
+          design.equals("STRIPED")
+              ? new RateLimitedSamplingPercentage(5, 0.1)
+              : new AtomicReferenceSamplingPercentage(5, 0.1);
+    }
+  }
+
+  @Benchmark
+  public double get(BenchmarkState state) {
+    return state.samplingPercentage.get();
+  }
+
+  /** Replica of the previous implementation. */
+  private static class AtomicReferenceSamplingPercentage implements SamplingPercentage {
+
+    private static final class State {
+      private final double effectiveWindowCount;
+      private final double effectiveWindowNanos;
+      private final long lastNanoTime;
+
+      private State(double effectiveWindowCount, double effectiveWindowNanos, long lastNanoTime) {
+        this.effectiveWindowCount = effectiveWindowCount;
+        this.effectiveWindowNanos = effectiveWindowNanos;
+        this.lastNanoTime = lastNanoTime;
+      }
+    }
+
+    private final double inverseAdaptationTimeNanos;
+    private final double targetSpansPerNanosecondLimit;
+    private final AtomicReference<State> state;
+
+    private AtomicReferenceSamplingPercentage(
+        double targetSpansPerSecondLimit, double adaptationTimeSeconds) {
+      inverseAdaptationTimeNanos = 1e-9 / adaptationTimeSeconds;
+      targetSpansPerNanosecondLimit = 1e-9 * targetSpansPerSecondLimit;
+      state = new AtomicReference<>(new State(0, 0, System.nanoTime()));
+    }
+
+    private State updateState(State oldState, long currentNanoTime) {
+      if (currentNanoTime <= oldState.lastNanoTime) {
+        return new State(
+            oldState.effectiveWindowCount + 1,
+            oldState.effectiveWindowNanos,
+            oldState.lastNanoTime);
+      }
+      long nanoTimeDelta = currentNanoTime - oldState.lastNanoTime;
+      double decayFactor = Math.exp(-nanoTimeDelta * inverseAdaptationTimeNanos);
+      double currentEffectiveWindowCount = oldState.effectiveWindowCount * decayFactor + 1;
+      double currentEffectiveWindowNanos =
+          oldState.effectiveWindowNanos * decayFactor + nanoTimeDelta;
+      return new State(currentEffectiveWindowCount, currentEffectiveWindowNanos, currentNanoTime);
+    }
+
+    @Override
+    public double get() {
+      long currentNanoTime = System.nanoTime();
+      State currentState = state.updateAndGet(s -> updateState(s, currentNanoTime));
+
+      double samplingProbability =
+          (currentState.effectiveWindowNanos * targetSpansPerNanosecondLimit)
+              / currentState.effectiveWindowCount;
+
+      return 100 * Math.min(samplingProbability, 1);
+    }
+  }
+}
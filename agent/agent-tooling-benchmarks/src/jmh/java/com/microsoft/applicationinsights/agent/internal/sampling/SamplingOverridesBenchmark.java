@@ -0,0 +1,92 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.sampling;
+
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.MatchType;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.SamplingOverride;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.SamplingOverrideAttribute;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link SamplingOverrides#getOverride(Attributes)} as the number of configured overrides
+ * grows, for strict and regular expression matching.
+ *
+ * <p>Each override matches a different {@code url.path}, and the attributes either match the last
+ * override or none of them, which are the two cases where every override has to be considered.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SamplingOverridesBenchmark {
+
+  private static final AttributeKey<String> URL_PATH = AttributeKey.stringKey("url.path");
+
+  @Param({"1", "10", "50"})
+  public int overrides;
+
+  @Param({"STRICT", "REGEXP"})
+  public MatchType matchType;
+
+  private SamplingOverrides samplingOverrides;
+  private Attributes lastMatch;
+  private Attributes noMatch;
+
+  @Setup
+  public void setup() {
+    List<SamplingOverride> samplingOverrideList = new ArrayList<>();
+    for (int i = 0; i < overrides; i++) {
+      SamplingOverrideAttribute attribute = new SamplingOverrideAttribute();
+      attribute.key = URL_PATH.getKey();
+      attribute.value = matchType == MatchType.STRICT ? "/api/path" + i : "/api/path" + i + "/.*";
+      attribute.matchType = matchType;
+      SamplingOverride override = new SamplingOverride();
+      override.attributes = Collections.singletonList(attribute);
+      override.percentage = 0.0;
+      samplingOverrideList.add(override);
+    }
+    samplingOverrides = new SamplingOverrides(samplingOverrideList);
+
+    String lastPath = "/api/path" + (overrides - 1);
+    lastMatch = attributes(matchType == MatchType.STRICT ? lastPath : lastPath + "/items");
+    noMatch = attributes("/health");
+  }
+
+  @Benchmark
+  public Object lastMatch() {
+    return samplingOverrides.getOverride(lastMatch);
+  }
+
+  @Benchmark
+  public Object noMatch() {
+    return samplingOverrides.getOverride(noMatch);
+  }
+
+  private static Attributes attributes(String urlPath) {
+    return Attributes.builder()
+        .put("http.request.method", "GET")
+        .put(URL_PATH, urlPath)
+        .put("server.address", "localhost")
+        .put("http.response.status_code", 200L)
+        .build();
+  }
+}
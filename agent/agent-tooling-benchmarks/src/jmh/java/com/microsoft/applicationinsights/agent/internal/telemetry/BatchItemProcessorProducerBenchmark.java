@@ -0,0 +1,194 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import io.opentelemetry.internal.shaded.jctools.queues.MpscArrayQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the cost that application threads pay to enqueue into a {@link BatchItemProcessor}
+ * worker queue under contention, between the previous wakeup scheme (reading the queue size and a
+ * shared items-needed counter on every enqueue, signaling through an {@link ArrayBlockingQueue})
+ * and the current one (comparing the producer index against a wakeup index published by the parked
+ * worker, and unparking it with {@link LockSupport}).
+ *
+ * <p>Both schemes are replicated here around the same queue and a consumer that discards items, so
+ * that only the producer path is measured and not the export.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BatchItemProcessorProducerBenchmark {
+
+  private static final int QUEUE_CAPACITY = 65536;
+  private static final int BATCH_SIZE = 512;
+
+  private static final Object ITEM = new Object();
+
+  @State(Scope.Benchmark)
+  public static class BenchmarkState {
+
+    @Param({"SIGNAL_QUEUE", "PARK"})
+    public String design;
+
+    private WakeupScheme scheme;
+    private Thread consumer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      MpscArrayQueue<Object> queue = new MpscArrayQueue<>(QUEUE_CAPACITY);
+      scheme = design.equals("PARK") ? new ParkScheme(queue) : new SignalQueueScheme(queue);
+      consumer = new Thread(scheme::drain, "benchmark-consumer");
+      consumer.setDaemon(true);
+      consumer.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+      consumer.interrupt();
+      consumer.join();
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public boolean threads01(BenchmarkState state) {
+    return state.scheme.add(ITEM);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public boolean threads04(BenchmarkState state) {
+    return state.scheme.add(ITEM);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public boolean threads16(BenchmarkState state) {
+    return state.scheme.add(ITEM);
+  }
+
+  @Benchmark
+  @Threads(64)
+  public boolean threads64(BenchmarkState state) {
+    return state.scheme.add(ITEM);
+  }
+
+  private abstract static class WakeupScheme {
+
+    final MpscArrayQueue<Object> queue;
+
+    WakeupScheme(MpscArrayQueue<Object> queue) {
+      this.queue = queue;
+    }
+
+    abstract boolean add(Object item);
+
+    void discardBatch() {
+      for (int i = 0; i < BATCH_SIZE && queue.poll() != null; i++) {
+        // discard
+      }
+    }
+
+    // discards items in batches, waiting for a full batch between drains like the worker does
+    abstract void drain();
+  }
+
+  private static final class SignalQueueScheme extends WakeupScheme {
+
+    private final AtomicInteger itemsNeeded = new AtomicInteger(Integer.MAX_VALUE);
+    private final BlockingQueue<Boolean> signal = new ArrayBlockingQueue<>(1);
+
+    SignalQueueScheme(MpscArrayQueue<Object> queue) {
+      super(queue);
+    }
+
+    @Override
+    boolean add(Object item) {
+      if (!queue.offer(item)) {
+        return false;
+      }
+      if (queue.size() >= itemsNeeded.get()) {
+        signal.offer(true);
+      }
+      return true;
+    }
+
+    @Override
+    void drain() {
+      while (!Thread.currentThread().isInterrupted()) {
+        discardBatch();
+        if (queue.isEmpty()) {
+          try {
+            itemsNeeded.set(BATCH_SIZE);
+            signal.poll(1, TimeUnit.SECONDS);
+            itemsNeeded.set(Integer.MAX_VALUE);
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+      }
+    }
+  }
+
+  private static final class ParkScheme extends WakeupScheme {
+
+    private static final long NOT_WAITING = Long.MAX_VALUE;
+
+    private volatile long wakeupIndex = NOT_WAITING;
+    private volatile Thread consumerThread;
+
+    ParkScheme(MpscArrayQueue<Object> queue) {
+      super(queue);
+    }
+
+    @Override
+    boolean add(Object item) {
+      if (!queue.offer(item)) {
+        return false;
+      }
+      long wakeupIndex = this.wakeupIndex;
+      if (wakeupIndex != NOT_WAITING && queue.lvProducerIndex() >= wakeupIndex) {
+        LockSupport.unpark(consumerThread);
+      }
+      return true;
+    }
+
+    @Override
+    void drain() {
+      consumerThread = Thread.currentThread();
+      while (!Thread.currentThread().isInterrupted()) {
+        discardBatch();
+        if (queue.isEmpty()) {
+          long wakeupIndex = queue.lvConsumerIndex() + BATCH_SIZE;
+          this.wakeupIndex = wakeupIndex;
+          if (queue.lvProducerIndex() < wakeupIndex) {
+            LockSupport.parkNanos(this, TimeUnit.SECONDS.toNanos(1));
+          }
+          this.wakeupIndex = NOT_WAITING;
+        }
+      }
+    }
+  }
+}
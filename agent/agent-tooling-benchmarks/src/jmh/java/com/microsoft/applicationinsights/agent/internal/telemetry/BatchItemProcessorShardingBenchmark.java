@@ -0,0 +1,76 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.TelemetryItem;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ExportQueueShardSelection;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how many items per millisecond the worker side of {@link BatchItemProcessor} can drain
+ * and export as the number of shards grows.
+ *
+ * <p>Each invocation enqueues a burst of items (spread over the shards by operation id) and then
+ * waits for {@link BatchItemProcessor#forceFlush()}, so the score reflects the export throughput
+ * rather than how quickly items can be dropped once a queue is full.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchItemProcessorShardingBenchmark {
+
+  private static final int BURST_SIZE = 16384;
+
+  @Param({"1", "2", "4", "8"})
+  public int shards;
+
+  private BatchItemProcessor processor;
+  private TelemetryItem[] items;
+
+  @Setup
+  public void setup() {
+    processor =
+        BatchItemProcessor.builder(BenchmarkTelemetry.createExporter())
+            // large enough that no shard drops items during a burst
+            .setMaxQueueSize(BURST_SIZE * 2)
+            .setMaxExportBatchSize(512)
+            .setMaxPendingExports(100)
+            .setShards(shards, ExportQueueShardSelection.HASH)
+            .build("benchmark");
+    items = new TelemetryItem[BURST_SIZE];
+    for (int i = 0; i < BURST_SIZE; i++) {
+      items[i] = BenchmarkTelemetry.createMetricItem(Integer.toHexString(i));
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    processor.shutdown().join(10, TimeUnit.SECONDS);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BURST_SIZE)
+  public void exportBurst() {
+    for (TelemetryItem item : items) {
+      processor.trackAsync(item);
+    }
+    processor.forceFlush().join(10, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,48 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import com.azure.core.http.HttpPipeline;
+import com.azure.core.http.HttpPipelineBuilder;
+import com.azure.core.test.http.MockHttpResponse;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.builders.MetricTelemetryBuilder;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.configuration.ConnectionString;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.ContextTagKeys;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.TelemetryItem;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.pipeline.TelemetryItemExporter;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.pipeline.TelemetryPipeline;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.pipeline.TelemetryPipelineListener;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.utils.FormattedTime;
+import reactor.core.publisher.Mono;
+
+// shared fixtures for the export pipeline benchmarks, nothing here touches the network
+final class BenchmarkTelemetry {
+
+  static final String CONNECTION_STRING_VALUE =
+      "InstrumentationKey=00000000-0000-0000-0000-000000000000;"
+          + "IngestionEndpoint=http://localhost:4318/";
+
+  static final ConnectionString CONNECTION_STRING = ConnectionString.parse(CONNECTION_STRING_VALUE);
+
+  // the full serialization and compression path runs, but the ingestion service immediately
+  // responds with 200
+  static TelemetryItemExporter createExporter() {
+    HttpPipeline httpPipeline =
+        new HttpPipelineBuilder()
+            .httpClient(request -> Mono.just(new MockHttpResponse(request, 200)))
+            .build();
+    TelemetryPipeline telemetryPipeline = new TelemetryPipeline(httpPipeline, () -> {});
+    return new TelemetryItemExporter(telemetryPipeline, TelemetryPipelineListener.noop());
+  }
+
+  static TelemetryItem createMetricItem(String operationId) {
+    MetricTelemetryBuilder builder = MetricTelemetryBuilder.create("benchmark-metric", 1.0);
+    builder.setConnectionString(CONNECTION_STRING);
+    builder.setTime(FormattedTime.offSetDateTimeFromNow());
+    builder.addTag(ContextTagKeys.AI_OPERATION_ID.toString(), operationId);
+    return builder.build();
+  }
+
+  private BenchmarkTelemetry() {}
+}
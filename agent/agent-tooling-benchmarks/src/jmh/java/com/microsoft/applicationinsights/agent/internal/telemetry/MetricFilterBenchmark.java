@@ -0,0 +1,64 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.MatchType;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorConfig;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorIncludeExclude;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link MetricFilter#shouldSkip(String, List)}, which runs for every metric point that
+ * is tracked, as the number of metric filters grows.
+ *
+ * <p>Each filter excludes a single metric name, and the metric name that is checked is not
+ * excluded by any of them, so that every filter is evaluated.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricFilterBenchmark {
+
+  @Param({"0", "1", "10"})
+  public int filters;
+
+  @Param({"STRICT", "REGEXP"})
+  public MatchType matchType;
+
+  private List<MetricFilter> metricFilters;
+
+  @Setup
+  public void setup() {
+    metricFilters = new ArrayList<>();
+    for (int i = 0; i < filters; i++) {
+      ProcessorConfig config = new ProcessorConfig();
+      config.exclude = new ProcessorIncludeExclude();
+      config.exclude.matchType = matchType;
+      config.exclude.metricNames.add(
+          matchType == MatchType.STRICT ? "excluded.metric" + i : "excluded\\.metric" + i + ".*");
+      metricFilters.add(new MetricFilter(config));
+    }
+  }
+
+  @Benchmark
+  public boolean shouldSkip() {
+    return MetricFilter.shouldSkip("http.server.request.duration", metricFilters);
+  }
+}
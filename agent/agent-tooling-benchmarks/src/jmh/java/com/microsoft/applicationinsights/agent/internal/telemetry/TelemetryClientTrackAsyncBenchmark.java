@@ -0,0 +1,130 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.builders.MessageTelemetryBuilder;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.TelemetryItem;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.statsbeat.StatsbeatModule;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.utils.FormattedTime;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.MatchType;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorConfig;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorIncludeExclude;
+import io.opentelemetry.sdk.resources.Resource;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures what application threads pay in {@link TelemetryClient#trackAsync(TelemetryItem)}: the
+ * metric filters, the telemetry observers and the enqueue into the batch item processors.
+ *
+ * <p>The batch item processors export through {@link BenchmarkTelemetry#createExporter()}, so the
+ * worker side runs as usual without touching the network. The queues are sized so that they don't
+ * fill up between worker drains, otherwise the score would mostly measure dropping items.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TelemetryClientTrackAsyncBenchmark {
+
+  private static final int QUEUE_SIZE = 1 << 20;
+
+  private TelemetryClient telemetryClient;
+  private TelemetryItem messageItem;
+  private TelemetryItem metricItem;
+
+  @Setup
+  public void setup() {
+    ProcessorConfig metricFilterConfig = new ProcessorConfig();
+    metricFilterConfig.exclude = new ProcessorIncludeExclude();
+    metricFilterConfig.exclude.matchType = MatchType.STRICT;
+    metricFilterConfig.exclude.metricNames = Collections.singletonList("excluded-metric");
+
+    telemetryClient =
+        new BenchmarkTelemetryClient(
+            TelemetryClient.builder()
+                .setCustomDimensions(Collections.singletonMap("environment", "benchmark"))
+                .setMetricFilters(Collections.singletonList(new MetricFilter(metricFilterConfig)))
+                .setStatsbeatModule(new StatsbeatModule(response -> {}))
+                .setConnectionStrings(BenchmarkTelemetry.CONNECTION_STRING_VALUE));
+
+    MessageTelemetryBuilder messageBuilder = MessageTelemetryBuilder.create();
+    telemetryClient.populateDefaults(messageBuilder, Resource.getDefault());
+    messageBuilder.setMessage("benchmark message");
+    messageBuilder.setTime(FormattedTime.offSetDateTimeFromNow());
+    messageItem = messageBuilder.build();
+
+    metricItem = BenchmarkTelemetry.createMetricItem("operation");
+  }
+
+  @TearDown
+  public void tearDown() {
+    telemetryClient.getGeneralBatchItemProcessor().shutdown().join(10, TimeUnit.SECONDS);
+    telemetryClient.getMetricsBatchItemProcessor().shutdown().join(10, TimeUnit.SECONDS);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void message() {
+    telemetryClient.trackAsync(messageItem);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void messageThreads04() {
+    telemetryClient.trackAsync(messageItem);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void metric() {
+    telemetryClient.trackAsync(metricItem);
+  }
+
+  // overrides the lazily created, network backed batch item processors
+  private static class BenchmarkTelemetryClient extends TelemetryClient {
+
+    private final BatchItemProcessor generalBatchItemProcessor =
+        createBatchItemProcessor("general", 512);
+    private final BatchItemProcessor metricsBatchItemProcessor =
+        createBatchItemProcessor("metrics", 2048);
+
+    private BenchmarkTelemetryClient(TelemetryClient.Builder builder) {
+      super(builder);
+    }
+
+    @Override
+    public BatchItemProcessor getGeneralBatchItemProcessor() {
+      return generalBatchItemProcessor;
+    }
+
+    @Override
+    public BatchItemProcessor getMetricsBatchItemProcessor() {
+      return metricsBatchItemProcessor;
+    }
+  }
+
+  private static BatchItemProcessor createBatchItemProcessor(
+      String queueName, int maxExportBatchSize) {
+    return BatchItemProcessor.builder(BenchmarkTelemetry.createExporter())
+        .setMaxQueueSize(QUEUE_SIZE)
+        .setMaxExportBatchSize(maxExportBatchSize)
+        .setMaxPendingExports(100)
+        .build(queueName);
+  }
+}
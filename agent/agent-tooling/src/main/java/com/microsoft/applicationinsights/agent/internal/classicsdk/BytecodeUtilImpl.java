@@ -20,6 +20,7 @@ import com.azure.monitor.opentelemetry.autoconfigure.implementation.builders.Met
 import com.azure.monitor.opentelemetry.autoconfigure.implementation.builders.PageViewTelemetryBuilder;
 import com.azure.monitor.opentelemetry.autoconfigure.implementation.builders.RemoteDependencyTelemetryBuilder;
 import com.azure.monitor.opentelemetry.autoconfigure.implementation.builders.RequestTelemetryBuilder;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.configuration.ConnectionString;
 import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.ContextTagKeys;
 import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.SeverityLevel;
 import com.azure.monitor.opentelemetry.autoconfigure.implementation.statsbeat.Feature;
@@ -28,6 +29,7 @@ import com.azure.monitor.opentelemetry.autoconfigure.implementation.utils.Format
 import com.azure.monitor.opentelemetry.autoconfigure.implementation.utils.FormattedTime;
 import com.azure.monitor.opentelemetry.autoconfigure.implementation.utils.Strings;
 import com.microsoft.applicationinsights.agent.bootstrap.BytecodeUtil.BytecodeUtilDelegate;
+import com.microsoft.applicationinsights.agent.bootstrap.MicrometerUtil;
 import com.microsoft.applicationinsights.agent.internal.init.RuntimeConfiguration;
 import com.microsoft.applicationinsights.agent.internal.init.RuntimeConfigurator;
 import com.microsoft.applicationinsights.agent.internal.legacyheaders.AiLegacyPropagator;
@@ -37,8 +39,12 @@ import io.opentelemetry.api.trace.SpanContext;
 import io.opentelemetry.sdk.trace.ReadableSpan;
 import java.net.URI;
 import java.net.URL;
+import java.time.OffsetDateTime;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
@@ -51,6 +57,14 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
 
   private static final AtomicBoolean alreadyLoggedError = new AtomicBoolean();
 
+  // converted once, since the bridge can be called in tight loops (e.g. trackMetric)
+  private static final String AI_OPERATION_ID = ContextTagKeys.AI_OPERATION_ID.toString();
+  private static final String AI_OPERATION_PARENT_ID =
+      ContextTagKeys.AI_OPERATION_PARENT_ID.toString();
+  private static final String AI_OPERATION_NAME = ContextTagKeys.AI_OPERATION_NAME.toString();
+  private static final String AI_INTERNAL_SDK_VERSION =
+      ContextTagKeys.AI_INTERNAL_SDK_VERSION.toString();
+
   // in Azure Functions consumption pool, we don't know at startup whether to enable or not
   // TODO (trask) convert this from float to double?
   public static volatile float samplingPercentage = 0;
@@ -59,8 +73,33 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
 
   public static volatile RuntimeConfigurator runtimeConfigurator;
   public static volatile boolean connectionStringConfiguredAtRuntime;
+
+  @Nullable private static volatile MetricAggregator metricAggregator;
   private static final AtomicBoolean showConnectionStringInfoMessage = new AtomicBoolean(true);
 
+  // the classic SDK passes its connection string (or instrumentation key) on every call, and it is
+  // almost always the same one, so the last one is kept parsed
+  @Nullable private static volatile ParsedConnectionString lastConnectionString;
+
+  /**
+   * Aggregates {@link #trackMetric} calls locally per metric interval, instead of sending each call
+   * as a separate metric.
+   */
+  public static void enableMetricAggregation(int maxSeries, long intervalMillis) {
+    MetricAggregator metricAggregator =
+        new MetricAggregator(maxSeries, BytecodeUtilImpl::trackAggregatedMetric);
+    metricAggregator.start(intervalMillis);
+    BytecodeUtilImpl.metricAggregator = metricAggregator;
+  }
+
+  /** Sends the metrics that have been aggregated so far, e.g. before the JVM shuts down. */
+  public static void flushAggregatedMetrics() {
+    MetricAggregator metricAggregator = BytecodeUtilImpl.metricAggregator;
+    if (metricAggregator != null) {
+      metricAggregator.flush();
+    }
+  }
+
   @Override
   public void setConnectionString(String connectionString) {
     if (!connectionStringConfiguredAtRuntime) {
@@ -100,25 +139,22 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     if (Strings.isNullOrEmpty(name)) {
       return;
     }
+    TrackContext context = startTrack(EventTelemetryBuilder.class, tags, true);
+    if (context == null) {
+      // sampled out
+      return;
+    }
     EventTelemetryBuilder telemetryBuilder = TelemetryClient.getActive().newEventTelemetryBuilder();
 
     telemetryBuilder.setName(name);
-    for (Map.Entry<String, Double> entry : measurements.entrySet()) {
-      telemetryBuilder.addMeasurement(entry.getKey(), entry.getValue());
-    }
-    for (Map.Entry<String, String> entry : properties.entrySet()) {
-      telemetryBuilder.addProperty(entry.getKey(), entry.getValue());
-    }
+    addMeasurements(telemetryBuilder, measurements);
+    addProperties(telemetryBuilder, properties);
 
-    if (timestamp != null) {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromEpochMillis(timestamp.getTime()));
-    } else {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromNow());
-    }
+    telemetryBuilder.setTime(getTime(timestamp));
     selectivelySetTags(telemetryBuilder, tags);
     setConnectionStringOnTelemetry(telemetryBuilder, connectionString, instrumentationKey);
 
-    track(telemetryBuilder, tags, true);
+    track(telemetryBuilder, tags, context);
   }
 
   // TODO do not track if perf counter (?)
@@ -140,8 +176,113 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     if (Strings.isNullOrEmpty(name)) {
       return;
     }
+    MetricAggregator metricAggregator = BytecodeUtilImpl.metricAggregator;
+    if (metricAggregator != null
+        && timestamp == null
+        && count == null
+        && min == null
+        && max == null
+        && stdDev == null
+        && Double.isFinite(value)) {
+      // values that are already aggregated, or that are for a specific time, are sent as they are
+      metricAggregator.record(
+          name,
+          namespace,
+          value,
+          properties,
+          tags,
+          getConnectionString(connectionString, instrumentationKey));
+      if (featureStatsbeat != null) {
+        featureStatsbeat.addFeature(Feature.SDK_2X_BRIDGE_VIA_3X_AGENT);
+      }
+      return;
+    }
+
+    // metrics are never sampled, so only the span of the trace they are part of (if any) is needed
+    Span span = getSpanOfTheCurrentTrace(tags);
+    MetricTelemetryBuilder telemetryBuilder =
+        newMetricTelemetryBuilder(
+            TelemetryClient.getActive(),
+            name,
+            namespace,
+            value,
+            count,
+            min,
+            max,
+            stdDev,
+            properties);
+
+    telemetryBuilder.setTime(getTime(timestamp));
+    selectivelySetTags(telemetryBuilder, tags);
+    setConnectionStringOnTelemetry(telemetryBuilder, connectionString, instrumentationKey);
+
+    track(telemetryBuilder, tags, span, null);
+  }
+
+  private static void trackAggregatedMetric(MetricAggregator.AggregatedMetric metric) {
+    // same as the 2.x SDK's pre-aggregated metrics, the value is the sum
     MetricTelemetryBuilder telemetryBuilder =
-        TelemetryClient.getActive().newMetricTelemetryBuilder();
+        newMetricTelemetryBuilder(
+            TelemetryClient.getActive(),
+            metric.getName(),
+            metric.getNamespace(),
+            metric.getSum(),
+            (int) Math.min(metric.getCount(), Integer.MAX_VALUE),
+            metric.getMin(),
+            metric.getMax(),
+            metric.getStdDev(),
+            metric.getProperties());
+
+    // the aggregated metrics are not part of a trace, so the operation tags are not set
+    telemetryBuilder.setTime(
+        FormattedTime.offSetDateTimeFromEpochMillis(metric.getStartEpochMillis()));
+    selectivelySetTags(telemetryBuilder, metric.getTags());
+    setConnectionStringOnTelemetry(telemetryBuilder, metric.getConnectionString(), null);
+
+    TelemetryClient.getActive().trackAsync(telemetryBuilder.build());
+  }
+
+  @Override
+  public void trackMicrometerMetrics(List<MicrometerUtil.Metric> metrics) {
+    if (metrics.isEmpty()) {
+      return;
+    }
+    // the metrics were all collected by the same publish, so they share the span and timestamp
+    Span span = getSpanOfTheCurrentTrace(Collections.emptyMap());
+    TelemetryClient telemetryClient = TelemetryClient.getActive();
+    OffsetDateTime time = FormattedTime.offSetDateTimeFromNow();
+    for (MicrometerUtil.Metric metric : metrics) {
+      if (Strings.isNullOrEmpty(metric.getName())) {
+        continue;
+      }
+      MetricTelemetryBuilder telemetryBuilder =
+          newMetricTelemetryBuilder(
+              telemetryClient,
+              metric.getName(),
+              metric.getNamespace(),
+              metric.getValue(),
+              metric.getCount(),
+              metric.getMin(),
+              metric.getMax(),
+              null,
+              metric.getProperties());
+      telemetryBuilder.setTime(time);
+
+      track(telemetryBuilder, Collections.emptyMap(), span, null);
+    }
+  }
+
+  private static MetricTelemetryBuilder newMetricTelemetryBuilder(
+      TelemetryClient telemetryClient,
+      String name,
+      @Nullable String namespace,
+      double value,
+      @Nullable Integer count,
+      @Nullable Double min,
+      @Nullable Double max,
+      @Nullable Double stdDev,
+      Map<String, String> properties) {
+    MetricTelemetryBuilder telemetryBuilder = telemetryClient.newMetricTelemetryBuilder();
 
     MetricPointBuilder point = new MetricPointBuilder();
     point.setName(name);
@@ -153,19 +294,8 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     point.setStdDev(stdDev);
     telemetryBuilder.setMetricPoint(point);
 
-    for (Map.Entry<String, String> entry : properties.entrySet()) {
-      telemetryBuilder.addProperty(entry.getKey(), entry.getValue());
-    }
-
-    if (timestamp != null) {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromEpochMillis(timestamp.getTime()));
-    } else {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromNow());
-    }
-    selectivelySetTags(telemetryBuilder, tags);
-    setConnectionStringOnTelemetry(telemetryBuilder, connectionString, instrumentationKey);
-
-    track(telemetryBuilder, tags, false);
+    addProperties(telemetryBuilder, properties);
+    return telemetryBuilder;
   }
 
   @Override
@@ -188,6 +318,11 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     if (Strings.isNullOrEmpty(name)) {
       return;
     }
+    TrackContext context = startTrack(RemoteDependencyTelemetryBuilder.class, tags, true);
+    if (context == null) {
+      // sampled out
+      return;
+    }
     RemoteDependencyTelemetryBuilder telemetryBuilder =
         TelemetryClient.getActive().newRemoteDependencyTelemetryBuilder();
 
@@ -205,22 +340,14 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     telemetryBuilder.setData(commandName);
     telemetryBuilder.setType(type);
     telemetryBuilder.setTarget(target);
-    for (Map.Entry<String, Double> entry : measurements.entrySet()) {
-      telemetryBuilder.addMeasurement(entry.getKey(), entry.getValue());
-    }
-    for (Map.Entry<String, String> entry : properties.entrySet()) {
-      telemetryBuilder.addProperty(entry.getKey(), entry.getValue());
-    }
+    addMeasurements(telemetryBuilder, measurements);
+    addProperties(telemetryBuilder, properties);
 
-    if (timestamp != null) {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromEpochMillis(timestamp.getTime()));
-    } else {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromNow());
-    }
+    telemetryBuilder.setTime(getTime(timestamp));
     selectivelySetTags(telemetryBuilder, tags);
     setConnectionStringOnTelemetry(telemetryBuilder, connectionString, instrumentationKey);
 
-    track(telemetryBuilder, tags, true);
+    track(telemetryBuilder, tags, context);
   }
 
   @Override
@@ -238,6 +365,11 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     if (Strings.isNullOrEmpty(name)) {
       return;
     }
+    TrackContext context = startTrack(PageViewTelemetryBuilder.class, tags, true);
+    if (context == null) {
+      // sampled out
+      return;
+    }
     PageViewTelemetryBuilder telemetryBuilder =
         TelemetryClient.getActive().newPageViewTelemetryBuilder();
 
@@ -246,22 +378,14 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
       telemetryBuilder.setUrl(uri.toString());
     }
     telemetryBuilder.setDuration(FormattedDuration.fromNanos(MILLISECONDS.toNanos(totalMillis)));
-    for (Map.Entry<String, Double> entry : measurements.entrySet()) {
-      telemetryBuilder.addMeasurement(entry.getKey(), entry.getValue());
-    }
-    for (Map.Entry<String, String> entry : properties.entrySet()) {
-      telemetryBuilder.addProperty(entry.getKey(), entry.getValue());
-    }
+    addMeasurements(telemetryBuilder, measurements);
+    addProperties(telemetryBuilder, properties);
 
-    if (timestamp != null) {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromEpochMillis(timestamp.getTime()));
-    } else {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromNow());
-    }
+    telemetryBuilder.setTime(getTime(timestamp));
     selectivelySetTags(telemetryBuilder, tags);
     setConnectionStringOnTelemetry(telemetryBuilder, connectionString, instrumentationKey);
 
-    track(telemetryBuilder, tags, true);
+    track(telemetryBuilder, tags, context);
   }
 
   @Override
@@ -276,6 +400,11 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     if (message == null) {
       return;
     }
+    TrackContext context = startTrack(MessageTelemetryBuilder.class, tags, true);
+    if (context == null) {
+      // sampled out
+      return;
+    }
     MessageTelemetryBuilder telemetryBuilder =
         TelemetryClient.getActive().newMessageTelemetryBuilder();
 
@@ -284,19 +413,13 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
       telemetryBuilder.setSeverityLevel(getSeverityLevel(severityLevel));
     }
 
-    for (Map.Entry<String, String> entry : properties.entrySet()) {
-      telemetryBuilder.addProperty(entry.getKey(), entry.getValue());
-    }
+    addProperties(telemetryBuilder, properties);
 
-    if (timestamp != null) {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromEpochMillis(timestamp.getTime()));
-    } else {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromNow());
-    }
+    telemetryBuilder.setTime(getTime(timestamp));
     selectivelySetTags(telemetryBuilder, tags);
     setConnectionStringOnTelemetry(telemetryBuilder, connectionString, instrumentationKey);
 
-    track(telemetryBuilder, tags, true);
+    track(telemetryBuilder, tags, context);
   }
 
   @Override
@@ -317,6 +440,11 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     if (Strings.isNullOrEmpty(name)) {
       return;
     }
+    TrackContext context = startTrack(RequestTelemetryBuilder.class, tags, true);
+    if (context == null) {
+      // sampled out
+      return;
+    }
     RequestTelemetryBuilder telemetryBuilder =
         TelemetryClient.getActive().newRequestTelemetryBuilder();
 
@@ -335,22 +463,14 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     telemetryBuilder.setResponseCode(responseCode);
     telemetryBuilder.setSuccess(success);
     telemetryBuilder.setSource(source);
-    for (Map.Entry<String, Double> entry : measurements.entrySet()) {
-      telemetryBuilder.addMeasurement(entry.getKey(), entry.getValue());
-    }
-    for (Map.Entry<String, String> entry : properties.entrySet()) {
-      telemetryBuilder.addProperty(entry.getKey(), entry.getValue());
-    }
+    addMeasurements(telemetryBuilder, measurements);
+    addProperties(telemetryBuilder, properties);
 
-    if (timestamp != null) {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromEpochMillis(timestamp.getTime()));
-    } else {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromNow());
-    }
+    telemetryBuilder.setTime(getTime(timestamp));
     selectivelySetTags(telemetryBuilder, tags);
     setConnectionStringOnTelemetry(telemetryBuilder, connectionString, instrumentationKey);
 
-    track(telemetryBuilder, tags, true);
+    track(telemetryBuilder, tags, context);
   }
 
   @Override
@@ -366,6 +486,11 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     if (throwable == null) {
       return;
     }
+    TrackContext context = startTrack(ExceptionTelemetryBuilder.class, tags, true);
+    if (context == null) {
+      // sampled out
+      return;
+    }
     ExceptionTelemetryBuilder telemetryBuilder =
         TelemetryClient.getActive().newExceptionTelemetryBuilder();
 
@@ -375,22 +500,14 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     } else {
       telemetryBuilder.setSeverityLevel(SeverityLevel.ERROR);
     }
-    for (Map.Entry<String, Double> entry : measurements.entrySet()) {
-      telemetryBuilder.addMeasurement(entry.getKey(), entry.getValue());
-    }
-    for (Map.Entry<String, String> entry : properties.entrySet()) {
-      telemetryBuilder.addProperty(entry.getKey(), entry.getValue());
-    }
+    addMeasurements(telemetryBuilder, measurements);
+    addProperties(telemetryBuilder, properties);
 
-    if (timestamp != null) {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromEpochMillis(timestamp.getTime()));
-    } else {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromNow());
-    }
+    telemetryBuilder.setTime(getTime(timestamp));
     selectivelySetTags(telemetryBuilder, tags);
     setConnectionStringOnTelemetry(telemetryBuilder, connectionString, instrumentationKey);
 
-    track(telemetryBuilder, tags, true);
+    track(telemetryBuilder, tags, context);
   }
 
   @Override
@@ -411,6 +528,11 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     if (Strings.isNullOrEmpty(name)) {
       return;
     }
+    TrackContext context = startTrack(AvailabilityTelemetryBuilder.class, tags, false);
+    if (context == null) {
+      // sampled out
+      return;
+    }
     AvailabilityTelemetryBuilder telemetryBuilder =
         TelemetryClient.getActive().newAvailabilityTelemetryBuilder();
 
@@ -426,22 +548,14 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     telemetryBuilder.setSuccess(success);
     telemetryBuilder.setRunLocation(runLocation);
     telemetryBuilder.setMessage(message);
-    for (Map.Entry<String, Double> entry : measurements.entrySet()) {
-      telemetryBuilder.addMeasurement(entry.getKey(), entry.getValue());
-    }
-    for (Map.Entry<String, String> entry : properties.entrySet()) {
-      telemetryBuilder.addProperty(entry.getKey(), entry.getValue());
-    }
+    addMeasurements(telemetryBuilder, measurements);
+    addProperties(telemetryBuilder, properties);
 
-    if (timestamp != null) {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromEpochMillis(timestamp.getTime()));
-    } else {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromNow());
-    }
+    telemetryBuilder.setTime(getTime(timestamp));
     selectivelySetTags(telemetryBuilder, tags);
     setConnectionStringOnTelemetry(telemetryBuilder, connectionString, instrumentationKey);
 
-    track(telemetryBuilder, tags, false);
+    track(telemetryBuilder, tags, context);
   }
 
   @Nullable
@@ -465,6 +579,7 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
 
   @Override
   public void flush() {
+    flushAggregatedMetrics();
     // this is not null because sdk instrumentation is not added until TelemetryClient.setActive()
     // is called
     TelemetryClient.getActive().forceFlush().join(10, SECONDS);
@@ -482,49 +597,91 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     return sample(operationId, samplingPercentage);
   }
 
-  private static void track(
-      AbstractTelemetryBuilder telemetryBuilder, Map<String, String> tags, boolean applySampling) {
+  /**
+   * Makes the sampling decision, this is done before the telemetry builder is created so that
+   * nothing is allocated for items that are sampled out.
+   *
+   * @return null if the item is sampled out
+   */
+  @Nullable
+  private static TrackContext startTrack(
+      Class<? extends AbstractTelemetryBuilder> type,
+      Map<String, String> tags,
+      boolean applySampling) {
 
-    String existingOperationId = tags.get(ContextTagKeys.AI_OPERATION_ID.toString());
+    String existingOperationId = tags.get(AI_OPERATION_ID);
 
     Span span = Span.current();
     SpanContext spanContext = span.getSpanContext();
 
-    boolean isPartOfTheCurrentTrace =
-        spanContext.isValid()
-            && (existingOperationId == null
-                || existingOperationId.equals(spanContext.getTraceId()));
+    boolean isPartOfTheCurrentTrace = isPartOfTheCurrentTrace(spanContext, existingOperationId);
 
     if (isPartOfTheCurrentTrace && applySampling && !spanContext.isSampled()) {
       // no need to do anything more, sampled out
-      return;
+      return null;
     }
 
     if (isPartOfTheCurrentTrace) {
-      setOperationTagsFromTheCurrentSpan(
-          telemetryBuilder, tags, existingOperationId, spanContext, span);
+      Float sampleRate = null;
+      if (applySampling && span instanceof ReadableSpan) {
+        Double spanSampleRate =
+            ((ReadableSpan) span).getAttribute(AiSemanticAttributes.SAMPLE_RATE);
+        if (spanSampleRate != null) {
+          sampleRate = spanSampleRate.floatValue();
+        }
+      }
+      return new TrackContext(span, sampleRate);
     }
 
-    if (isPartOfTheCurrentTrace && applySampling && span instanceof ReadableSpan) {
-      Double sampleRate = ((ReadableSpan) span).getAttribute(AiSemanticAttributes.SAMPLE_RATE);
-      if (sampleRate != null) {
-        telemetryBuilder.setSampleRate(sampleRate.floatValue());
-      }
+    if (!applySampling) {
+      return TrackContext.STANDALONE;
     }
 
-    if (!isPartOfTheCurrentTrace && applySampling) {
-      // standalone sampling is done using the configured sampling percentage
-      float samplingPercentage = BytecodeUtilImpl.samplingPercentage;
-      if (!sample(existingOperationId, samplingPercentage)) {
-        logger.debug("Item {} sampled out", telemetryBuilder.getClass().getSimpleName());
-        // sampled out
-        return;
-      }
-      // sampled in
+    // standalone sampling is done using the configured sampling percentage
+    float samplingPercentage = BytecodeUtilImpl.samplingPercentage;
+    if (!sample(existingOperationId, samplingPercentage)) {
+      logger.debug("Item {} sampled out", type.getSimpleName());
+      // sampled out
+      return null;
+    }
+    // sampled in
 
-      if (samplingPercentage != 100) {
-        telemetryBuilder.setSampleRate(samplingPercentage);
-      }
+    if (samplingPercentage != 100) {
+      return new TrackContext(null, samplingPercentage);
+    }
+    return TrackContext.STANDALONE;
+  }
+
+  // for items that are never sampled, which don't need a TrackContext
+  @Nullable
+  private static Span getSpanOfTheCurrentTrace(Map<String, String> tags) {
+    Span span = Span.current();
+    return isPartOfTheCurrentTrace(span.getSpanContext(), tags.get(AI_OPERATION_ID)) ? span : null;
+  }
+
+  private static boolean isPartOfTheCurrentTrace(
+      SpanContext spanContext, @Nullable String existingOperationId) {
+    return spanContext.isValid()
+        && (existingOperationId == null || existingOperationId.equals(spanContext.getTraceId()));
+  }
+
+  private static void track(
+      AbstractTelemetryBuilder telemetryBuilder, Map<String, String> tags, TrackContext context) {
+    track(telemetryBuilder, tags, context.span, context.sampleRate);
+  }
+
+  private static void track(
+      AbstractTelemetryBuilder telemetryBuilder,
+      Map<String, String> tags,
+      @Nullable Span span,
+      @Nullable Float sampleRate) {
+
+    if (span != null) {
+      setOperationTagsFromTheCurrentSpan(telemetryBuilder, tags, span);
+    }
+
+    if (sampleRate != null) {
+      telemetryBuilder.setSampleRate(sampleRate);
     }
 
     // this is not null because sdk instrumentation is not added until TelemetryClient.setActive()
@@ -539,23 +696,20 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
   private static void setOperationTagsFromTheCurrentSpan(
       AbstractTelemetryBuilder telemetryBuilder,
       Map<String, String> tags,
-      String existingOperationId,
-      SpanContext spanContext,
       Span span) {
 
-    if (existingOperationId == null) {
-      telemetryBuilder.addTag(ContextTagKeys.AI_OPERATION_ID.toString(), spanContext.getTraceId());
+    SpanContext spanContext = span.getSpanContext();
+    if (tags.get(AI_OPERATION_ID) == null) {
+      telemetryBuilder.addTag(AI_OPERATION_ID, spanContext.getTraceId());
     }
-    String existingOperationParentId = tags.get(ContextTagKeys.AI_OPERATION_PARENT_ID.toString());
+    String existingOperationParentId = tags.get(AI_OPERATION_PARENT_ID);
     if (existingOperationParentId == null) {
-      telemetryBuilder.addTag(
-          ContextTagKeys.AI_OPERATION_PARENT_ID.toString(), spanContext.getSpanId());
+      telemetryBuilder.addTag(AI_OPERATION_PARENT_ID, spanContext.getSpanId());
     }
-    String existingOperationName = tags.get(ContextTagKeys.AI_OPERATION_NAME.toString());
+    String existingOperationName = tags.get(AI_OPERATION_NAME);
     if (existingOperationName == null && span instanceof ReadableSpan) {
       telemetryBuilder.addTag(
-          ContextTagKeys.AI_OPERATION_NAME.toString(),
-          OperationNames.getOperationName((ReadableSpan) span));
+          AI_OPERATION_NAME, OperationNames.getOperationName((ReadableSpan) span));
     }
   }
 
@@ -563,12 +717,24 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
       AbstractTelemetryBuilder telemetryBuilder,
       @Nullable String connectionString,
       @Nullable String instrumentationKey) {
-    if (connectionString == null && instrumentationKey != null) {
-      connectionString = "InstrumentationKey=" + instrumentationKey;
+    if (connectionString == null && instrumentationKey == null) {
+      return;
+    }
+    ParsedConnectionString parsed = lastConnectionString;
+    if (parsed == null || !parsed.isFor(connectionString, instrumentationKey)) {
+      parsed = new ParsedConnectionString(connectionString, instrumentationKey);
+      lastConnectionString = parsed;
     }
-    if (connectionString != null) {
-      telemetryBuilder.setConnectionString(connectionString);
+    telemetryBuilder.setConnectionString(parsed.connectionString);
+  }
+
+  @Nullable
+  private static String getConnectionString(
+      @Nullable String connectionString, @Nullable String instrumentationKey) {
+    if (connectionString == null && instrumentationKey != null) {
+      return "InstrumentationKey=" + instrumentationKey;
     }
+    return connectionString;
   }
 
   private static boolean sample(String operationId, double samplingPercentage) {
@@ -581,10 +747,82 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
 
   private static void selectivelySetTags(
       AbstractTelemetryBuilder telemetryBuilder, Map<String, String> sourceTags) {
+    if (sourceTags.isEmpty()) {
+      return;
+    }
     for (Map.Entry<String, String> entry : sourceTags.entrySet()) {
-      if (!entry.getKey().equals(ContextTagKeys.AI_INTERNAL_SDK_VERSION.toString())) {
+      if (!entry.getKey().equals(AI_INTERNAL_SDK_VERSION)) {
         telemetryBuilder.addTag(entry.getKey(), entry.getValue());
       }
     }
   }
+
+  // the empty checks avoid allocating an iterator, since most calls don't pass any properties or
+  // measurements
+  private static void addProperties(
+      AbstractTelemetryBuilder telemetryBuilder, Map<String, String> properties) {
+    if (properties.isEmpty()) {
+      return;
+    }
+    for (Map.Entry<String, String> entry : properties.entrySet()) {
+      telemetryBuilder.addProperty(entry.getKey(), entry.getValue());
+    }
+  }
+
+  private static void addMeasurements(
+      AbstractTelemetryBuilder telemetryBuilder, Map<String, Double> measurements) {
+    if (measurements.isEmpty()) {
+      return;
+    }
+    for (Map.Entry<String, Double> entry : measurements.entrySet()) {
+      telemetryBuilder.addMeasurement(entry.getKey(), entry.getValue());
+    }
+  }
+
+  private static OffsetDateTime getTime(@Nullable Date timestamp) {
+    if (timestamp != null) {
+      return FormattedTime.offSetDateTimeFromEpochMillis(timestamp.getTime());
+    }
+    return FormattedTime.offSetDateTimeFromNow();
+  }
+
+  private static class TrackContext {
+
+    // not part of the current trace, and no sample rate to set
+    private static final TrackContext STANDALONE = new TrackContext(null, null);
+
+    // only set when the item is part of the current trace
+    @Nullable private final Span span;
+
+    @Nullable private final Float sampleRate;
+
+    private TrackContext(@Nullable Span span, @Nullable Float sampleRate) {
+      this.span = span;
+      this.sampleRate = sampleRate;
+    }
+  }
+
+  private static class ParsedConnectionString {
+
+    // the arguments it was parsed from
+    @Nullable private final String rawConnectionString;
+    @Nullable private final String instrumentationKey;
+
+    private final ConnectionString connectionString;
+
+    private ParsedConnectionString(
+        @Nullable String rawConnectionString, @Nullable String instrumentationKey) {
+      this.rawConnectionString = rawConnectionString;
+      this.instrumentationKey = instrumentationKey;
+      connectionString =
+          ConnectionString.parse(
+              Objects.requireNonNull(getConnectionString(rawConnectionString, instrumentationKey)));
+    }
+
+    private boolean isFor(
+        @Nullable String rawConnectionString, @Nullable String instrumentationKey) {
+      return Objects.equals(this.rawConnectionString, rawConnectionString)
+          && Objects.equals(this.instrumentationKey, instrumentationKey);
+    }
+  }
 }
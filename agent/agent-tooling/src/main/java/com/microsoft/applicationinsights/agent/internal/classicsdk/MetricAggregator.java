@@ -0,0 +1,433 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.classicsdk;
+
+import static java.util.Collections.singletonMap;
+
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.utils.ThreadPoolUtils;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Aggregates the 2.x SDK's {@code TelemetryClient.trackMetric()} calls in the agent, similar to the
+ * {@code GetMetric()} model of the .NET SDK, so that a metric which is tracked in a tight loop is
+ * sent as a single pre-aggregated metric (count, sum, min, max and standard deviation) per series
+ * and interval, instead of one metric per call.
+ *
+ * <p>Recording never blocks: series are looked up in a concurrent map, and values are folded into
+ * the striped accumulators of the series' active {@code Cells}. On flush, each series swaps in its
+ * spare cells, waits for the writers that were still recording into the previous ones, and only
+ * then drains them, so the count, sum, min and max that are exported for an interval always
+ * describe the same values. Series that weren't recorded into for a whole interval are removed when
+ * the interval is flushed.
+ *
+ * <p>Once there are {@code maxSeries} series, values for new series are recorded in an "other"
+ * series per metric (name, namespace and connection string) instead, which only has the {@link
+ * #OVERFLOW_PROPERTY} dimension (the same one that OpenTelemetry uses for its cardinality limit).
+ * There are at most {@code maxSeries} of those as well, values for metrics beyond that are dropped.
+ */
+final class MetricAggregator {
+
+  private static final Logger logger = LoggerFactory.getLogger(MetricAggregator.class);
+
+  static final String OVERFLOW_PROPERTY = "otel.metric.overflow";
+
+  private static final Map<String, String> OVERFLOW_PROPERTIES =
+      singletonMap(OVERFLOW_PROPERTY, "true");
+
+  private final int maxSeries;
+  private final Consumer<AggregatedMetric> exporter;
+
+  private final ConcurrentMap<SeriesKey, Series> series = new ConcurrentHashMap<>();
+  private final AtomicInteger seriesCount = new AtomicInteger();
+  private final AtomicInteger overflowSeriesCount = new AtomicInteger();
+  private final AtomicBoolean alreadyLoggedDrop = new AtomicBoolean();
+
+  private final ScheduledExecutorService scheduledExecutor =
+      Executors.newSingleThreadScheduledExecutor(
+          ThreadPoolUtils.createDaemonThreadFactory(MetricAggregator.class));
+
+  // guarded by this
+  private long intervalStartMillis = System.currentTimeMillis();
+
+  MetricAggregator(int maxSeries, Consumer<AggregatedMetric> exporter) {
+    this.maxSeries = maxSeries;
+    this.exporter = exporter;
+  }
+
+  void start(long intervalMillis) {
+    scheduledExecutor.scheduleAtFixedRate(
+        this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  void record(
+      String name,
+      @Nullable String namespace,
+      double value,
+      Map<String, String> properties,
+      Map<String, String> tags,
+      @Nullable String connectionString) {
+
+    SeriesKey key = new SeriesKey(name, namespace, properties, tags, connectionString);
+    while (true) {
+      Series existing = series.get(key);
+      if (existing == null) {
+        existing = getOrCreate(key);
+        if (existing == null) {
+          if (!alreadyLoggedDrop.getAndSet(true)) {
+            logger.warn(
+                "Dropping values of metric {}, since the limits of {} series and {} overflow"
+                    + " series have been reached",
+                name,
+                maxSeries,
+                maxSeries);
+          }
+          return;
+        }
+      }
+      if (existing.record(value)) {
+        return;
+      }
+      // removed by a concurrent flush, after it was looked up
+    }
+  }
+
+  /** Exports the series that were recorded since the last flush. */
+  synchronized void flush() {
+    long startMillis = intervalStartMillis;
+    intervalStartMillis = System.currentTimeMillis();
+
+    for (Map.Entry<SeriesKey, Series> entry : series.entrySet()) {
+      SeriesKey key = entry.getKey();
+      Series value = entry.getValue();
+      AggregatedMetric metric = value.swapAndDrain(key, startMillis);
+      if (metric == null) {
+        // a concurrent record() either sees this and records into a new series, or got past the
+        // check already, and its value is drained below
+        value.removed = true;
+        series.remove(key, value);
+        (value.overflow ? overflowSeriesCount : seriesCount).decrementAndGet();
+        metric = value.swapAndDrain(key, startMillis);
+        if (metric == null) {
+          continue;
+        }
+      }
+      try {
+        exporter.accept(metric);
+      } catch (RuntimeException e) {
+        // otherwise the scheduled flushes would stop
+        logger.error("Error exporting aggregated metric: {}", key.name, e);
+      }
+    }
+  }
+
+  @Nullable
+  private Series getOrCreate(SeriesKey key) {
+    // the key is copied, since the maps that it was created with belong to the caller
+    Series created = createIfUnderLimit(key, seriesCount, false);
+    if (created != null) {
+      return created;
+    }
+    SeriesKey overflowKey = key.toOverflow();
+    Series overflow = series.get(overflowKey);
+    if (overflow != null) {
+      return overflow;
+    }
+    return createIfUnderLimit(overflowKey, overflowSeriesCount, true);
+  }
+
+  @Nullable
+  private Series createIfUnderLimit(SeriesKey key, AtomicInteger count, boolean overflow) {
+    // checked first, so that calls for overflowing series don't all contend on the counter
+    if (count.get() < maxSeries) {
+      if (count.incrementAndGet() <= maxSeries) {
+        Series created = new Series(overflow);
+        Series existing = series.putIfAbsent(overflow ? key : key.copy(), created);
+        if (existing == null) {
+          return created;
+        }
+        // created concurrently by another thread
+        count.decrementAndGet();
+        return existing;
+      }
+      count.decrementAndGet();
+    }
+    return null;
+  }
+
+  // visible for testing
+  int getSeriesCount() {
+    return seriesCount.get();
+  }
+
+  // visible for testing
+  int getOverflowSeriesCount() {
+    return overflowSeriesCount.get();
+  }
+
+  private static class Series {
+
+    private final boolean overflow;
+
+    private volatile Cells active = new Cells();
+    // set once the series has been removed from the map, it can't be recorded into after that
+    private volatile boolean removed;
+
+    // only accessed by flush()
+    private Cells spare = new Cells();
+
+    private Series(boolean overflow) {
+      this.overflow = overflow;
+    }
+
+    private boolean record(double value) {
+      while (true) {
+        Cells cells = active;
+        cells.writersStarted.increment();
+        if (cells != active) {
+          // swapped out concurrently, the flush may already be draining it
+          cells.writersFinished.increment();
+          continue;
+        }
+        if (removed) {
+          cells.writersFinished.increment();
+          return false;
+        }
+        cells.record(value);
+        cells.writersFinished.increment();
+        return true;
+      }
+    }
+
+    @Nullable
+    private AggregatedMetric swapAndDrain(SeriesKey key, long startMillis) {
+      Cells cells = active;
+      active = spare;
+      // writers that start after this see the swap and retry with the new cells, so this only
+      // waits for the ones that were already recording
+      while (!cells.isQuiescent()) {
+        Thread.yield();
+      }
+      spare = cells;
+
+      long count = cells.count.sumThenReset();
+      double sum = cells.sum.sumThenReset();
+      double shiftedSum = cells.shiftedSum.sumThenReset();
+      double shiftedSumOfSquares = cells.shiftedSumOfSquares.sumThenReset();
+      double min = cells.min.getThenReset();
+      double max = cells.max.getThenReset();
+      cells.shiftBits.set(Cells.NO_SHIFT);
+      if (count == 0) {
+        return null;
+      }
+      double shiftedMean = shiftedSum / count;
+      double variance = Math.max(shiftedSumOfSquares / count - shiftedMean * shiftedMean, 0);
+      return new AggregatedMetric(key, startMillis, count, sum, min, max, Math.sqrt(variance));
+    }
+  }
+
+  // the accumulators of one interval
+  //
+  // the variance is computed from the sums of the values shifted by the first value of the
+  // interval, since the sum of squares of the values themselves loses the precision of values that
+  // are large compared to their variance
+  private static class Cells {
+
+    // not the bits of any double that Double.doubleToRawLongBits() returns for a finite value
+    private static final long NO_SHIFT = Double.doubleToRawLongBits(Double.NaN);
+
+    private final LongAdder writersStarted = new LongAdder();
+    private final LongAdder writersFinished = new LongAdder();
+
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+    private final DoubleAdder shiftedSum = new DoubleAdder();
+    private final DoubleAdder shiftedSumOfSquares = new DoubleAdder();
+    private final DoubleAccumulator min =
+        new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+    private final DoubleAccumulator max =
+        new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+
+    private final AtomicLong shiftBits = new AtomicLong(NO_SHIFT);
+
+    private void record(double value) {
+      long bits = shiftBits.get();
+      if (bits == NO_SHIFT) {
+        // the first value of the interval, or a concurrent one that is recorded at the same time
+        shiftBits.compareAndSet(NO_SHIFT, Double.doubleToRawLongBits(value));
+        bits = shiftBits.get();
+      }
+      double shifted = value - Double.longBitsToDouble(bits);
+      count.increment();
+      sum.add(value);
+      shiftedSum.add(shifted);
+      shiftedSumOfSquares.add(shifted * shifted);
+      min.accumulate(value);
+      max.accumulate(value);
+    }
+
+    private boolean isQuiescent() {
+      // read in this order, since writersFinished never gets ahead of writersStarted, if they are
+      // equal then there was a point in between when no writer was recording
+      long finished = writersFinished.sum();
+      return finished == writersStarted.sum();
+    }
+  }
+
+  private static class SeriesKey {
+
+    private final String name;
+    @Nullable private final String namespace;
+    private final Map<String, String> properties;
+    private final Map<String, String> tags;
+    @Nullable private final String connectionString;
+    private final int hashCode;
+
+    private SeriesKey(
+        String name,
+        @Nullable String namespace,
+        Map<String, String> properties,
+        Map<String, String> tags,
+        @Nullable String connectionString) {
+      this.name = name;
+      this.namespace = namespace;
+      this.properties = properties;
+      this.tags = tags;
+      this.connectionString = connectionString;
+      // not Objects.hash(), which would allocate an array on every record()
+      int hashCode = name.hashCode();
+      hashCode = 31 * hashCode + Objects.hashCode(namespace);
+      hashCode = 31 * hashCode + properties.hashCode();
+      hashCode = 31 * hashCode + tags.hashCode();
+      hashCode = 31 * hashCode + Objects.hashCode(connectionString);
+      this.hashCode = hashCode;
+    }
+
+    private SeriesKey copy() {
+      return new SeriesKey(name, namespace, copyOf(properties), copyOf(tags), connectionString);
+    }
+
+    private SeriesKey toOverflow() {
+      return new SeriesKey(
+          name, namespace, OVERFLOW_PROPERTIES, Collections.emptyMap(), connectionString);
+    }
+
+    private static Map<String, String> copyOf(Map<String, String> map) {
+      return map.isEmpty() ? Collections.emptyMap() : new HashMap<>(map);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof SeriesKey)) {
+        return false;
+      }
+      SeriesKey other = (SeriesKey) obj;
+      return hashCode == other.hashCode
+          && name.equals(other.name)
+          && Objects.equals(namespace, other.namespace)
+          && properties.equals(other.properties)
+          && tags.equals(other.tags)
+          && Objects.equals(connectionString, other.connectionString);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  static class AggregatedMetric {
+
+    private final SeriesKey key;
+    private final long startEpochMillis;
+    private final long count;
+    private final double sum;
+    private final double min;
+    private final double max;
+    private final double stdDev;
+
+    private AggregatedMetric(
+        SeriesKey key,
+        long startEpochMillis,
+        long count,
+        double sum,
+        double min,
+        double max,
+        double stdDev) {
+      this.key = key;
+      this.startEpochMillis = startEpochMillis;
+      this.count = count;
+      this.sum = sum;
+      this.min = min;
+      this.max = max;
+      this.stdDev = stdDev;
+    }
+
+    String getName() {
+      return key.name;
+    }
+
+    @Nullable
+    String getNamespace() {
+      return key.namespace;
+    }
+
+    Map<String, String> getProperties() {
+      return key.properties;
+    }
+
+    Map<String, String> getTags() {
+      return key.tags;
+    }
+
+    @Nullable
+    String getConnectionString() {
+      return key.connectionString;
+    }
+
+    long getStartEpochMillis() {
+      return startEpochMillis;
+    }
+
+    long getCount() {
+      return count;
+    }
+
+    double getSum() {
+      return sum;
+    }
+
+    double getMin() {
+      return min;
+    }
+
+    double getMax() {
+      return max;
+    }
+
+    double getStdDev() {
+      return stdDev;
+    }
+  }
+}
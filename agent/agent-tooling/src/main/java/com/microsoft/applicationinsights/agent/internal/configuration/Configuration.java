@@ -124,6 +124,31 @@ public class Configuration {
     MASK
   }
 
+  public enum ExportQueueShardSelection {
+    // items are routed to a shard based on the producing thread, which avoids contention between
+    // application threads that enqueue concurrently
+    @JsonProperty("thread")
+    THREAD,
+    // items are routed to a shard based on their operation id, which keeps telemetry from the same
+    // operation together in the same export batch
+    @JsonProperty("hash")
+    HASH
+  }
+
+  public enum ExportQueueOverflowPolicy {
+    // the item being queued is dropped, regardless of its priority
+    @JsonProperty("drop-newest")
+    DROP_NEWEST,
+    // the oldest item in the lowest priority lane that has any items is dropped to make room
+    // (requests and dependencies are never dropped to make room for other telemetry)
+    @JsonProperty("drop-oldest-lowest-priority")
+    DROP_OLDEST_LOWEST_PRIORITY,
+    // once the queue is half full, lower priority items are sampled with a probability that drops
+    // to zero as the queue fills up, and their sample rate is adjusted so that counts stay accurate
+    @JsonProperty("sample-on-overflow")
+    SAMPLE_ON_OVERFLOW
+  }
+
   public enum ProcessorType {
     @JsonProperty("attribute")
     ATTRIBUTE("an attribute"),
@@ -373,6 +398,26 @@ public class Configuration {
     // telemetry (they are much smaller so a larger queue size is ok)
     public int metricsExportQueueCapacity = 65536;
 
+    // when set, the export queues are also bounded by the estimated size of the telemetry that they
+    // hold, which makes the agent's memory usage predictable when telemetry items vary a lot in
+    // size (e.g. logs with large stack traces), 0 means that the queues are only bounded by the
+    // item count capacities above
+    public int generalExportQueueMaxSizeMb;
+    public int metricsExportQueueMaxSizeMb;
+
+    // number of independent export queues (each drained by its own worker thread) that the general
+    // and metrics export queue capacities are spread across, on hosts with many cores a single
+    // worker thread can become the bottleneck
+    public int exportQueueShards = 1;
+    public ExportQueueShardSelection exportQueueShardSelection = ExportQueueShardSelection.THREAD;
+
+    public AdaptiveExportBatching adaptiveExportBatching = new AdaptiveExportBatching();
+
+    public ExportQueuePriority generalExportQueuePriority = new ExportQueuePriority();
+
+    public ClassicSdkMetricAggregation classicSdkMetricAggregation =
+        new ClassicSdkMetricAggregation();
+
     // disk persistence has a default capacity of 50MB
     public int diskPersistenceMaxSizeMb = 50;
 
@@ -408,6 +453,37 @@ public class Configuration {
       for (ProcessorConfig processorConfig : processors) {
         processorConfig.validate();
       }
+      if (adaptiveExportBatching.enabled && adaptiveExportBatching.maxPayloadSizeKb < 1) {
+        throw new FriendlyException(
+            "The \"adaptiveExportBatching\" configuration \"maxPayloadSizeKb\" must be at least 1: "
+                + adaptiveExportBatching.maxPayloadSizeKb,
+            "Please provide a positive value for \"maxPayloadSizeKb\" configuration.");
+      }
+      if (generalExportQueueMaxSizeMb < 0) {
+        throw new FriendlyException(
+            "The \"generalExportQueueMaxSizeMb\" configuration must not be negative: "
+                + generalExportQueueMaxSizeMb,
+            "Please provide a non-negative value for \"generalExportQueueMaxSizeMb\""
+                + " configuration.");
+      }
+      if (metricsExportQueueMaxSizeMb < 0) {
+        throw new FriendlyException(
+            "The \"metricsExportQueueMaxSizeMb\" configuration must not be negative: "
+                + metricsExportQueueMaxSizeMb,
+            "Please provide a non-negative value for \"metricsExportQueueMaxSizeMb\""
+                + " configuration.");
+      }
+      if (classicSdkMetricAggregation.enabled && classicSdkMetricAggregation.maxSeries < 1) {
+        throw new FriendlyException(
+            "The \"classicSdkMetricAggregation\" configuration \"maxSeries\" must be at least 1: "
+                + classicSdkMetricAggregation.maxSeries,
+            "Please provide a positive value for \"maxSeries\" configuration.");
+      }
+      if (exportQueueShards < 1) {
+        throw new FriendlyException(
+            "The \"exportQueueShards\" configuration must be at least 1: " + exportQueueShards,
+            "Please provide a positive value for \"exportQueueShards\" configuration.");
+      }
       for (String additionalPropagator : additionalPropagators) {
         if (!VALID_ADDITIONAL_PROPAGATORS.contains(additionalPropagator)) {
           throw new FriendlyException(
@@ -419,6 +495,30 @@ public class Configuration {
     }
   }
 
+  public static class AdaptiveExportBatching {
+    public boolean enabled;
+    // batches are closed once their estimated serialized (uncompressed) size reaches this
+    public int maxPayloadSizeKb = 1024;
+    // the schedule delay adapts between this and the default schedule delay (5 seconds)
+    public long minScheduleDelayMillis = 100;
+  }
+
+  public static class ClassicSdkMetricAggregation {
+    // when enabled, TelemetryClient.trackMetric() calls from the 2.x SDK are aggregated per metric
+    // interval (metricIntervalSeconds) into a single metric per name, namespace and dimensions,
+    // instead of being sent one by one
+    public boolean enabled;
+    // series beyond this are aggregated into an "other" series per metric name
+    public int maxSeries = 1000;
+  }
+
+  public static class ExportQueuePriority {
+    // when enabled, requests and dependencies are exported ahead of exceptions, which are exported
+    // ahead of traces and everything else, and the overflow policy decides what gets dropped
+    public boolean enabled;
+    public ExportQueueOverflowPolicy overflowPolicy = ExportQueueOverflowPolicy.DROP_NEWEST;
+  }
+
   public static class InheritedAttribute {
     public String key;
     public AttributeType type;
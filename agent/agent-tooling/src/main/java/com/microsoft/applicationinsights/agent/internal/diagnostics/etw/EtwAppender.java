@@ -16,24 +16,65 @@ import com.microsoft.applicationinsights.agent.internal.diagnostics.etw.events.I
 import com.microsoft.applicationinsights.agent.internal.diagnostics.etw.events.IpaVerbose;
 import com.microsoft.applicationinsights.agent.internal.diagnostics.etw.events.IpaWarn;
 import com.microsoft.applicationinsights.agent.internal.diagnostics.etw.events.model.IpaEtwEventBase;
+import com.microsoft.applicationinsights.agent.internal.diagnostics.etw.events.model.IpaEtwEventErrorBase;
 import com.microsoft.applicationinsights.agent.internal.diagnostics.status.StatusFile;
+import java.util.Locale;
 import java.util.Map;
+import javax.annotation.Nullable;
 import org.slf4j.LoggerFactory;
 
 public class EtwAppender extends AppenderBase<ILoggingEvent> {
 
-  private final EtwProvider etwProvider;
+  private final EtwEventWriter etwProvider;
   private final IpaEtwEventBase proto;
 
+  private boolean async;
+  private int queueSize = 1024;
+  private long coalesceWindowMillis = 5000;
+
+  @Nullable private volatile EtwEventDispatcher dispatcher;
+
   public EtwAppender() {
-    ApplicationMetadataFactory metadata = DiagnosticsHelper.getMetadataFactory();
+    this(DiagnosticsHelper.getMetadataFactory());
+  }
+
+  private EtwAppender(ApplicationMetadataFactory metadata) {
+    this(
+        createProto(metadata),
+        new EtwProvider(metadata.getSdkVersion().getValue(System::getenv)));
+  }
+
+  // visible for testing
+  EtwAppender(IpaEtwEventBase proto, EtwEventWriter etwProvider) {
+    this.proto = proto;
+    this.etwProvider = etwProvider;
+  }
 
-    proto = new IpaInfo();
+  private static IpaEtwEventBase createProto(ApplicationMetadataFactory metadata) {
+    IpaEtwEventBase proto = new IpaInfo();
     proto.setAppName(metadata.getSiteName().getValue(System::getenv));
     proto.setExtensionVersion(metadata.getSdkVersion().getValue(System::getenv));
     proto.setSubscriptionId(metadata.getSubscriptionId().getValue(System::getenv));
     proto.setInstrumentationKey(metadata.getInstrumentationKey().getValue(System::getenv));
-    etwProvider = new EtwProvider(metadata.getSdkVersion().getValue(System::getenv));
+    return proto;
+  }
+
+  /**
+   * When async, events are written to ETW from a background thread instead of from the thread that
+   * is logging, see {@link EtwEventDispatcher}.
+   */
+  public void setAsync(boolean async) {
+    this.async = async;
+  }
+
+  /** The maximum number of events waiting to be written when async, any more are dropped. */
+  public void setQueueSize(int queueSize) {
+    this.queueSize = queueSize;
+  }
+
+  /** The window within which identical events are coalesced into a single event when async. */
+  public void setCoalesceWindowMillis(long coalesceWindowMillis) {
+    this.coalesceWindowMillis = coalesceWindowMillis;
   }
 
   @Override
@@ -56,9 +97,42 @@ public class EtwAppender extends AppenderBase<ILoggingEvent> {
     }
 
     StatusFile.putValueAndWrite("EtwProviderInitialized", "true");
+    if (async) {
+      EtwEventDispatcher dispatcher =
+          new EtwEventDispatcher(etwProvider, proto, this, queueSize, coalesceWindowMillis);
+      dispatcher.start();
+      this.dispatcher = dispatcher;
+    } else {
+      this.dispatcher = null;
+    }
     super.start();
   }
 
+  @Override
+  public void stop() {
+    super.stop();
+    EtwEventDispatcher dispatcher = this.dispatcher;
+    if (dispatcher != null) {
+      try {
+        dispatcher.stop(1000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  // visible for testing
+  long getDroppedCount() {
+    EtwEventDispatcher dispatcher = this.dispatcher;
+    return dispatcher == null ? 0 : dispatcher.getDroppedCount();
+  }
+
+  // visible for testing
+  long getCoalescedCount() {
+    EtwEventDispatcher dispatcher = this.dispatcher;
+    return dispatcher == null ? 0 : dispatcher.getCoalescedCount();
+  }
+
   @Override
   protected void append(ILoggingEvent logEvent) {
     String logger = logEvent.getLoggerName();
@@ -70,17 +144,12 @@ public class EtwAppender extends AppenderBase<ILoggingEvent> {
 
     Level level = logEvent.getLevel();
     IpaEtwEventBase event;
-    // empty if no throwable
     switch (level.levelInt) {
       case Level.ERROR_INT:
-        IpaError error = new IpaError(proto);
-        error.setStacktrace(ThrowableProxyUtil.asString(logEvent.getThrowableProxy()));
-        event = error;
+        event = new IpaError(proto);
         break;
       case Level.WARN_INT:
-        IpaWarn warn = new IpaWarn(proto);
-        warn.setStacktrace(ThrowableProxyUtil.asString(logEvent.getThrowableProxy()));
-        event = warn;
+        event = new IpaWarn(proto);
         break;
       case Level.INFO_INT:
         event = new IpaInfo(proto);
@@ -103,8 +172,29 @@ public class EtwAppender extends AppenderBase<ILoggingEvent> {
       }
     }
     event.setLogger(logger);
+
+    EtwEventDispatcher dispatcher = this.dispatcher;
+    if (dispatcher != null) {
+      // the arguments can still be changed by the caller once this returns, so the message is
+      // formatted here and only the resulting string is queued (the same way that
+      // IpaEtwEventBase.getFormattedMessage() applies them)
+      String message = logEvent.getMessage();
+      Object[] args = logEvent.getArgumentArray();
+      if (message != null && args != null && args.length != 0) {
+        message = String.format(Locale.ROOT, message, args);
+      }
+      event.setMessageFormat(message);
+      // the stack trace is rendered by the dispatcher, off of the logging thread
+      dispatcher.offer(event, message, logEvent.getThrowableProxy());
+      return;
+    }
     event.setMessageFormat(logEvent.getMessage());
     event.setMessageArgs(logEvent.getArgumentArray());
+    if (event instanceof IpaEtwEventErrorBase) {
+      // empty if no throwable
+      ((IpaEtwEventErrorBase) event)
+          .setStacktrace(ThrowableProxyUtil.asString(logEvent.getThrowableProxy()));
+    }
     try {
       etwProvider.writeEvent(event);
     } catch (ApplicationInsightsEtwException e) {
@@ -0,0 +1,288 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.diagnostics.etw;
+
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+import ch.qos.logback.core.spi.ContextAware;
+import com.microsoft.applicationinsights.agent.internal.diagnostics.etw.events.IpaWarn;
+import com.microsoft.applicationinsights.agent.internal.diagnostics.etw.events.model.IpaEtwEventBase;
+import com.microsoft.applicationinsights.agent.internal.diagnostics.etw.events.model.IpaEtwEventErrorBase;
+import io.opentelemetry.internal.shaded.jctools.queues.MpscArrayQueue;
+import io.opentelemetry.sdk.internal.DaemonThreadFactory;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.Nullable;
+
+/**
+ * Writes ETW events from a single background thread, so that the (JNI) writes and the rendering of
+ * stack traces don't happen on the application threads that are logging.
+ *
+ * <p>Events are handed over through a bounded queue, and are dropped (and counted) when the queue
+ * is full. Identical events (same level, message id and formatted message) that are written within
+ * the coalescing window of the first one are only counted, and are written as a single event with
+ * the repeat count once the window has passed.
+ *
+ * <p>If the worker thread fails with an unexpected error (e.g. an {@link UnsatisfiedLinkError} from
+ * the JNI write), no more events are written, and the events that are still queued or offered
+ * afterwards are counted as dropped.
+ */
+final class EtwEventDispatcher {
+
+  private static final String WORKER_THREAD_NAME =
+      EtwEventDispatcher.class.getSimpleName() + "_WorkerThread";
+
+  // bounds the memory used for tracking repeats, events beyond this are written without coalescing
+  private static final int MAX_COALESCED_KEYS = 256;
+
+  private final EtwEventWriter writer;
+  private final IpaEtwEventBase proto;
+  private final ContextAware status;
+  private final long coalesceWindowNanos;
+
+  private final Queue<QueuedEvent> queue;
+  private final Thread workerThread;
+  // set by the worker thread before it parks waiting for events
+  private final AtomicBoolean sleeping = new AtomicBoolean();
+  private volatile boolean continueWork = true;
+  private volatile boolean failed;
+
+  private final LongAdder droppedCount = new LongAdder();
+  private final LongAdder coalescedCount = new LongAdder();
+
+  // only accessed by the worker thread
+  private final Map<String, Repeats> repeats = new HashMap<>();
+  private long reportedDroppedCount;
+
+  EtwEventDispatcher(
+      EtwEventWriter writer,
+      IpaEtwEventBase proto,
+      ContextAware status,
+      int queueSize,
+      long coalesceWindowMillis) {
+    this.writer = writer;
+    this.proto = proto;
+    this.status = status;
+    this.coalesceWindowNanos = TimeUnit.MILLISECONDS.toNanos(coalesceWindowMillis);
+    this.queue = new MpscArrayQueue<>(queueSize);
+    this.workerThread = new DaemonThreadFactory(WORKER_THREAD_NAME).newThread(this::work);
+  }
+
+  void start() {
+    workerThread.start();
+  }
+
+  /**
+   * Writes out everything that was queued and any pending repeat counts, waiting up to the given
+   * timeout for the worker thread to finish.
+   */
+  void stop(long timeoutMillis) throws InterruptedException {
+    continueWork = false;
+    LockSupport.unpark(workerThread);
+    workerThread.join(timeoutMillis);
+  }
+
+  /**
+   * Queues the event to be written, the stack trace is only rendered on the worker thread (and only
+   * for error and warning events).
+   *
+   * <p>The event must not reference anything that can still change, such as the logging call's
+   * arguments, so its message is already formatted and passed in as well.
+   *
+   * @return false if the event was dropped because the queue is full or writing has failed
+   */
+  boolean offer(
+      IpaEtwEventBase event, @Nullable String message, @Nullable IThrowableProxy throwable) {
+    if (failed || !queue.offer(new QueuedEvent(event, message, throwable))) {
+      droppedCount.increment();
+      return false;
+    }
+    if (sleeping.get() && sleeping.compareAndSet(true, false)) {
+      LockSupport.unpark(workerThread);
+    }
+    return true;
+  }
+
+  long getDroppedCount() {
+    return droppedCount.sum();
+  }
+
+  long getCoalescedCount() {
+    return coalescedCount.sum();
+  }
+
+  private void work() {
+    try {
+      doWork();
+    } catch (Throwable t) {
+      fail(t);
+    }
+    if (failed) {
+      while (queue.poll() != null) {
+        droppedCount.increment();
+      }
+    }
+  }
+
+  private void doWork() {
+    while (continueWork && !failed) {
+      QueuedEvent queued = queue.poll();
+      if (queued != null) {
+        process(queued);
+        continue;
+      }
+      long now = System.nanoTime();
+      writeRepeats(now, false);
+      reportDropped();
+
+      sleeping.set(true);
+      // re-checked after setting the flag, otherwise an event offered in between would be missed
+      if (queue.isEmpty() && continueWork) {
+        long parkNanos = nanosUntilNextRepeatsExpiry(now);
+        if (parkNanos == Long.MAX_VALUE) {
+          LockSupport.park(this);
+        } else {
+          LockSupport.parkNanos(this, parkNanos);
+        }
+      }
+      sleeping.set(false);
+    }
+    if (failed) {
+      return;
+    }
+
+    QueuedEvent queued;
+    while (!failed && (queued = queue.poll()) != null) {
+      process(queued);
+    }
+    writeRepeats(System.nanoTime(), true);
+    reportDropped();
+  }
+
+  private void fail(Throwable t) {
+    if (!failed) {
+      failed = true;
+      status.addError("Error writing ETW events, no more ETW events will be written", t);
+    }
+  }
+
+  private void process(QueuedEvent queued) {
+    try {
+      IpaEtwEventBase event = queued.event;
+      if (event instanceof IpaEtwEventErrorBase) {
+        // empty if no throwable
+        ((IpaEtwEventErrorBase) event)
+            .setStacktrace(ThrowableProxyUtil.asString(queued.throwable));
+      }
+      String key = event.id() + ":" + event.getMsgId() + ":" + event.getFormattedMessage();
+
+      long now = System.nanoTime();
+      Repeats existing = repeats.get(key);
+      if (existing != null) {
+        if (now - existing.windowEnd < 0) {
+          existing.count++;
+          coalescedCount.increment();
+          return;
+        }
+        repeats.remove(key);
+        writeRepeats(existing);
+      }
+      if (repeats.size() < MAX_COALESCED_KEYS) {
+        repeats.put(key, new Repeats(queued, now + coalesceWindowNanos));
+      }
+      write(event);
+    } catch (RuntimeException e) {
+      status.addError("Exception writing ETW event: " + e.getLocalizedMessage(), e);
+    }
+  }
+
+  private void writeRepeats(long now, boolean all) {
+    Iterator<Repeats> i = repeats.values().iterator();
+    while (i.hasNext()) {
+      Repeats entry = i.next();
+      if (all || now - entry.windowEnd >= 0) {
+        i.remove();
+        writeRepeats(entry);
+      }
+    }
+  }
+
+  private void writeRepeats(Repeats entry) {
+    if (entry.count == 0) {
+      return;
+    }
+    // the first occurrence has already been written, so the event can be reused
+    IpaEtwEventBase event = entry.first.event;
+    event.setMessageFormat(entry.first.message + " (repeated " + entry.count + " more times)");
+    write(event);
+  }
+
+  private long nanosUntilNextRepeatsExpiry(long now) {
+    long next = Long.MAX_VALUE;
+    for (Repeats entry : repeats.values()) {
+      next = Math.min(next, Math.max(entry.windowEnd - now, 1));
+    }
+    return next;
+  }
+
+  private void reportDropped() {
+    long dropped = droppedCount.sum();
+    if (dropped > reportedDroppedCount) {
+      IpaWarn event = new IpaWarn(proto);
+      event.setMessageFormat(
+          (dropped - reportedDroppedCount)
+              + " ETW events were dropped because the ETW event queue was full");
+      reportedDroppedCount = dropped;
+      write(event);
+    }
+  }
+
+  private void write(IpaEtwEventBase event) {
+    if (failed) {
+      droppedCount.increment();
+      return;
+    }
+    try {
+      writer.writeEvent(event);
+    } catch (ApplicationInsightsEtwException | RuntimeException e) {
+      status.addError("Exception from EtwProvider: " + e.getLocalizedMessage(), e);
+    } catch (Error e) {
+      // e.g. a LinkageError from the JNI write, which would fail again for every event
+      droppedCount.increment();
+      fail(e);
+    }
+  }
+
+  private static class QueuedEvent {
+
+    private final IpaEtwEventBase event;
+    @Nullable private final String message;
+    @Nullable private final IThrowableProxy throwable;
+
+    private QueuedEvent(
+        IpaEtwEventBase event, @Nullable String message, @Nullable IThrowableProxy throwable) {
+      this.event = event;
+      this.message = message;
+      this.throwable = throwable;
+    }
+  }
+
+  private static class Repeats {
+
+    private final QueuedEvent first;
+    private final long windowEnd;
+    private int count;
+
+    private Repeats(QueuedEvent first, long windowEnd) {
+      this.first = first;
+      this.windowEnd = windowEnd;
+    }
+  }
+}
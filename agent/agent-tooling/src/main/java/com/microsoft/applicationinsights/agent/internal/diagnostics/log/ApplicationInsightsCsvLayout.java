@@ -9,9 +9,13 @@ import ch.qos.logback.classic.spi.IThrowableProxy;
 import ch.qos.logback.classic.spi.ThrowableProxy;
 import com.microsoft.applicationinsights.agent.internal.diagnostics.ApplicationMetadataFactory;
 import com.microsoft.applicationinsights.agent.internal.diagnostics.DiagnosticsHelper;
+import com.microsoft.applicationinsights.agent.internal.diagnostics.DiagnosticsValueFinder;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Objects;
+import java.util.function.Function;
+import javax.annotation.Nullable;
 
 public class ApplicationInsightsCsvLayout extends PatternLayout {
 
@@ -19,9 +23,33 @@ public class ApplicationInsightsCsvLayout extends PatternLayout {
 
   private static final ApplicationMetadataFactory applicationMetadataFactory =
       DiagnosticsHelper.getMetadataFactory();
+
+  private final DiagnosticsValueFinder siteNameFinder;
+  private final DiagnosticsValueFinder instrumentationKeyFinder;
+  private final Function<String, String> envVarsFunction;
   private final String qualifiedSdkVersion;
 
+  // the columns after the message only change when the environment does (e.g. when an Azure
+  // Functions placeholder is specialized), so they are only rendered again then
+  @Nullable private volatile Suffix suffix;
+
   public ApplicationInsightsCsvLayout(String qualifiedSdkVersion) {
+    this(
+        applicationMetadataFactory.getSiteName(),
+        applicationMetadataFactory.getInstrumentationKey(),
+        System::getenv,
+        qualifiedSdkVersion);
+  }
+
+  // visible for testing
+  ApplicationInsightsCsvLayout(
+      DiagnosticsValueFinder siteNameFinder,
+      DiagnosticsValueFinder instrumentationKeyFinder,
+      Function<String, String> envVarsFunction,
+      String qualifiedSdkVersion) {
+    this.siteNameFinder = siteNameFinder;
+    this.instrumentationKeyFinder = instrumentationKeyFinder;
+    this.envVarsFunction = envVarsFunction;
     this.qualifiedSdkVersion = qualifiedSdkVersion;
   }
 
@@ -30,6 +58,7 @@ public class ApplicationInsightsCsvLayout extends PatternLayout {
       value = "ERRMSG", // Information exposure through an error message
       justification = "Error message is not exposed to an end user of the instrumented application")
   public String doLayout(ILoggingEvent event) {
+    // everything that could log is called before the buffer is in use
     String message = event.getFormattedMessage();
     IThrowableProxy throwableProxy = event.getThrowableProxy();
     Throwable throwable = null;
@@ -38,36 +67,90 @@ public class ApplicationInsightsCsvLayout extends PatternLayout {
       // and it is only used for logging exceptions over the wire
       throwable = ((ThrowableProxy) throwableProxy).getThrowable();
     }
+    String stackTrace = null;
     if (throwable != null) {
-      message += " ";
       StringWriter sw = new StringWriter();
       throwable.printStackTrace(new PrintWriter(sw, true));
-      message += sw;
+      stackTrace = sw.toString();
+    }
+    Suffix suffix = getSuffix();
+
+    StringBuilder sb = LayoutBuffer.get();
+    sb.append(PREFIX)
+        .append(' ')
+        .append(event.getTimeStamp())
+        .append(',')
+        .append(event.getLevel().toString())
+        .append(',')
+        .append(event.getLoggerName())
+        .append(",\"");
+    if (stackTrace == null) {
+      appendForCsv(sb, message);
+    } else {
+      appendForCsv(sb, String.valueOf(message));
+      sb.append(' ');
+      appendForCsv(sb, stackTrace);
+    }
+    sb.append('"').append(suffix.text);
+    return LayoutBuffer.toStringAndRelease(sb);
+  }
+
+  private Suffix getSuffix() {
+    String siteName = siteNameFinder.getValue(envVarsFunction);
+    String instrumentationKey = instrumentationKeyFinder.getValue(envVarsFunction);
+    Suffix suffix = this.suffix;
+    if (suffix == null || !suffix.isFor(siteName, instrumentationKey)) {
+      suffix = new Suffix(siteName, instrumentationKey, qualifiedSdkVersion);
+      this.suffix = suffix;
     }
-    return PREFIX
-        + " "
-        + event.getTimeStamp()
-        + ","
-        + event.getLevel().toString()
-        + ","
-        + event.getLoggerName()
-        + ","
-        + "\""
-        + formatForCsv(message)
-        + "\""
-        + ","
-        + applicationMetadataFactory.getSiteName().getValue(System::getenv)
-        + ","
-        + applicationMetadataFactory.getInstrumentationKey().getValue(System::getenv)
-        + ","
-        + qualifiedSdkVersion
-        + ","
-        + "java"
-        + System.getProperty("line.separator");
+    return suffix;
   }
 
-  private static String formatForCsv(String str) {
+  private static void appendForCsv(StringBuilder sb, String str) {
     // convert both windows and linux newlines just to be safe
-    return str.replace("\r\n", " ").replace("\n", " ").replace('\"', '\'');
+    int length = str.length();
+    for (int i = 0; i < length; i++) {
+      char c = str.charAt(i);
+      if (c == '\r' && i + 1 < length && str.charAt(i + 1) == '\n') {
+        sb.append(' ');
+        i++;
+      } else if (c == '\n') {
+        sb.append(' ');
+      } else if (c == '"') {
+        sb.append('\'');
+      } else {
+        sb.append(c);
+      }
+    }
+  }
+
+  private static class Suffix {
+
+    @Nullable private final String siteName;
+    @Nullable private final String instrumentationKey;
+    private final String text;
+
+    private Suffix(
+        @Nullable String siteName,
+        @Nullable String instrumentationKey,
+        String qualifiedSdkVersion) {
+      this.siteName = siteName;
+      this.instrumentationKey = instrumentationKey;
+      text =
+          ","
+              + siteName
+              + ","
+              + instrumentationKey
+              + ","
+              + qualifiedSdkVersion
+              + ","
+              + "java"
+              + System.getProperty("line.separator");
+    }
+
+    private boolean isFor(@Nullable String siteName, @Nullable String instrumentationKey) {
+      return Objects.equals(this.siteName, siteName)
+          && Objects.equals(this.instrumentationKey, instrumentationKey);
+    }
   }
 }
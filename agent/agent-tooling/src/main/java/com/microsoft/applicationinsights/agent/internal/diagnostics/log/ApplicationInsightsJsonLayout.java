@@ -5,14 +5,30 @@ package com.microsoft.applicationinsights.agent.internal.diagnostics.log;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.contrib.json.classic.JsonLayout;
+import ch.qos.logback.core.CoreConstants;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
 import com.microsoft.applicationinsights.agent.internal.diagnostics.ApplicationMetadataFactory;
 import com.microsoft.applicationinsights.agent.internal.diagnostics.DiagnosticsHelper;
 import com.microsoft.applicationinsights.agent.internal.diagnostics.DiagnosticsValueFinder;
+import java.text.DateFormat;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TimeZone;
+import javax.annotation.Nullable;
 
+/**
+ * Renders each event as a single line of JSON.
+ *
+ * <p>When the {@link JacksonJsonFormatter} is used, the line is written directly into a reusable
+ * buffer instead of going through {@link #toJsonMap(ILoggingEvent)}, with the same output as
+ * serializing the map: the same field order, omitting the same null fields, and escaping strings
+ * the same way as Jackson does. The metadata from the value finders doesn't change, so it is only
+ * rendered once.
+ */
 public class ApplicationInsightsJsonLayout extends JsonLayout {
 
   public static final String TIMESTAMP_PROP_NAME = "time";
@@ -22,9 +38,19 @@ public class ApplicationInsightsJsonLayout extends JsonLayout {
   // visible for testing
   static final String UNKNOWN_VALUE = "unknown";
 
+  private static final JsonStringEncoder jsonStringEncoder = JsonStringEncoder.getInstance();
+
   // visible for testing
   final List<DiagnosticsValueFinder> valueFinders = new ArrayList<>();
 
+  // SimpleDateFormat is not thread safe, and is too expensive to create for every event (not
+  // static, since the format and time zone are configured per layout)
+  @SuppressWarnings("ThreadLocalUsage")
+  private final ThreadLocal<DateFormat> dateFormats = ThreadLocal.withInitial(this::newDateFormat);
+
+  // the rest of the line after the per-event properties, rendered on first use
+  @Nullable private volatile String propertiesSuffix;
+
   public ApplicationInsightsJsonLayout() {
     ApplicationMetadataFactory mf = DiagnosticsHelper.getMetadataFactory();
     valueFinders.add(mf.getSiteName());
@@ -34,6 +60,101 @@ public class ApplicationInsightsJsonLayout extends JsonLayout {
     valueFinders.add(mf.getSubscriptionId());
   }
 
+  @Override
+  public String doLayout(ILoggingEvent event) {
+    if (!(getJsonFormatter() instanceof JacksonJsonFormatter)) {
+      return super.doLayout(event);
+    }
+    // everything that could log is called before the buffer is in use
+    String timestamp = formatTime(event.getTimeStamp());
+    String message = event.getFormattedMessage();
+    String exception = getThrowableInfo(event);
+    String propertiesSuffix = getPropertiesSuffix();
+
+    StringBuilder sb = LayoutBuffer.get();
+    sb.append('{');
+    // the timestamp is never null, so it is the only field that isn't preceded by a comma
+    appendString(sb, TIMESTAMP_PROP_NAME, timestamp);
+    appendField(sb, LEVEL_ATTR_NAME, String.valueOf(event.getLevel()));
+    appendField(sb, LOGGER_ATTR_NAME, event.getLoggerName());
+    appendField(sb, FORMATTED_MESSAGE_ATTR_NAME, message);
+    appendField(sb, EXCEPTION_ATTR_NAME, exception);
+    // the properties are never empty, since they always include the language
+    sb.append(",\"").append(CUSTOM_FIELDS_PROP_NAME).append("\":{");
+    appendProperty(sb, OPERATION_NAME_PROP_NAME, getOperationName(event));
+    appendProperty(sb, DiagnosticsHelper.MDC_MESSAGE_ID, getMessageId(event));
+    sb.append(propertiesSuffix);
+    if (isAppendLineSeparator()) {
+      sb.append(CoreConstants.LINE_SEPARATOR);
+    }
+    return LayoutBuffer.toStringAndRelease(sb);
+  }
+
+  private String formatTime(long timestamp) {
+    // same as JsonLayoutBase.formatTimestamp(), but without creating a new DateFormat each time
+    if (getTimestampFormat() == null || timestamp < 0) {
+      return String.valueOf(timestamp);
+    }
+    return dateFormats.get().format(new Date(timestamp));
+  }
+
+  private DateFormat newDateFormat() {
+    DateFormat format = createDateFormat(getTimestampFormat());
+    String timezoneId = getTimestampFormatTimezoneId();
+    if (timezoneId != null) {
+      format.setTimeZone(TimeZone.getTimeZone(timezoneId));
+    }
+    return format;
+  }
+
+  @Nullable
+  private String getThrowableInfo(ILoggingEvent event) {
+    if (event.getThrowableProxy() == null) {
+      return null;
+    }
+    Map<String, Object> map = new HashMap<>();
+    addThrowableInfo(EXCEPTION_ATTR_NAME, true, event, map);
+    return (String) map.get(EXCEPTION_ATTR_NAME);
+  }
+
+  private String getPropertiesSuffix() {
+    String suffix = propertiesSuffix;
+    if (suffix == null) {
+      StringBuilder sb = new StringBuilder();
+      for (DiagnosticsValueFinder finder : valueFinders) {
+        String value = finder.getValue(null);
+        appendProperty(
+            sb, finder.getName(), value == null || value.isEmpty() ? UNKNOWN_VALUE : value);
+      }
+      sb.append("\"language\":\"java\"}}");
+      suffix = sb.toString();
+      propertiesSuffix = suffix;
+    }
+    return suffix;
+  }
+
+  private static void appendField(StringBuilder sb, String name, @Nullable String value) {
+    if (value != null) {
+      sb.append(',');
+      appendString(sb, name, value);
+    }
+  }
+
+  private static void appendProperty(StringBuilder sb, String name, @Nullable String value) {
+    if (value != null) {
+      appendString(sb, name, value);
+      sb.append(',');
+    }
+  }
+
+  private static void appendString(StringBuilder sb, String name, String value) {
+    sb.append('"');
+    jsonStringEncoder.quoteAsString(name, sb);
+    sb.append("\":\"");
+    jsonStringEncoder.quoteAsString(value, sb);
+    sb.append('"');
+  }
+
   @Override
   protected Map toJsonMap(ILoggingEvent event) {
     Map<String, Object> jsonMap = new LinkedHashMap<>();
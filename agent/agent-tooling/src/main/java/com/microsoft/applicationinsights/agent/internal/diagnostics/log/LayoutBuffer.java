@@ -0,0 +1,39 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.diagnostics.log;
+
+/**
+ * A per-thread {@link StringBuilder} that the layouts render into, since layouts are called
+ * concurrently by the appenders.
+ *
+ * <p>Nothing that can log should be called while the buffer is in use, otherwise the nested
+ * layout call on the same thread would overwrite it.
+ */
+final class LayoutBuffer {
+
+  private static final int INITIAL_CAPACITY = 512;
+
+  // so that a thread doesn't hold on to the buffer for a single huge message (e.g. a deep stack
+  // trace)
+  private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+  private static final ThreadLocal<StringBuilder> buffers =
+      ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_CAPACITY));
+
+  static StringBuilder get() {
+    StringBuilder sb = buffers.get();
+    sb.setLength(0);
+    return sb;
+  }
+
+  static String toStringAndRelease(StringBuilder sb) {
+    String result = sb.toString();
+    if (sb.capacity() > MAX_RETAINED_CAPACITY) {
+      buffers.remove();
+    }
+    return result;
+  }
+
+  private LayoutBuffer() {}
+}
@@ -4,9 +4,7 @@
 package com.microsoft.applicationinsights.agent.internal.diagnostics.status;
 
 import static com.microsoft.applicationinsights.agent.internal.diagnostics.DiagnosticsHelper.LINUX_DEFAULT;
-import static com.microsoft.applicationinsights.agent.internal.diagnostics.MsgId.STATUS_FILE_ERROR;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.microsoft.applicationinsights.agent.internal.diagnostics.ApplicationMetadataFactory;
 import com.microsoft.applicationinsights.agent.internal.diagnostics.DiagnosticsHelper;
 import com.microsoft.applicationinsights.agent.internal.diagnostics.DiagnosticsValueFinder;
@@ -14,12 +12,8 @@ import com.microsoft.applicationinsights.agent.internal.diagnostics.MachineNameF
 import com.microsoft.applicationinsights.agent.internal.diagnostics.PidFinder;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.File;
-import java.io.IOException;
-import java.io.OutputStream;
 import java.lang.management.ManagementFactory;
 import java.lang.management.RuntimeMXBean;
-import java.nio.file.Files;
-import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -27,13 +21,10 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import javax.annotation.Nullable;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.slf4j.MDC;
 
 public class StatusFile {
 
@@ -80,14 +71,26 @@ public class StatusFile {
   // guarded by lock
   private static String uniqueId;
 
-  // guarded by lock
-  private static OutputStream buffer;
+  // visible for testing
+  static volatile Function<String, String> envVarsFunction = System::getenv;
+
+  // updates are often made in bursts (e.g. during startup), so they are coalesced into a single
+  // write of the status file
+  private static final long WRITE_DEBOUNCE_MILLIS = 250;
+
+  private static final ScheduledThreadPoolExecutor WRITER_THREAD =
+      new ScheduledThreadPoolExecutor(1, StatusFile::newThread);
 
-  private static final ThreadPoolExecutor WRITER_THREAD =
-      new ThreadPoolExecutor(
-          1, 1, 750L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), StatusFile::newThread);
+  private static final StatusFileWriter WRITER =
+      new StatusFileWriter(
+          WRITER_THREAD,
+          WRITE_DEBOUNCE_MILLIS,
+          StatusFile::getJsonMap,
+          map -> new File(directory, constructFileName(map)),
+          DiagnosticsHelper.isOsWindows());
 
   static {
+    WRITER_THREAD.setKeepAliveTime(750L, TimeUnit.MILLISECONDS);
     WRITER_THREAD.allowCoreThreadTimeOut(true);
     CONSTANT_VALUES.put("AppType", "java");
     ApplicationMetadataFactory mf = DiagnosticsHelper.getMetadataFactory();
@@ -159,70 +162,11 @@ public class StatusFile {
     write(false);
   }
 
-  @SuppressWarnings("SystemOut")
   private static void write(boolean loggingInitialized) {
     if (!writable()) {
       return;
     }
-    WRITER_THREAD.submit(
-        new Runnable() {
-          @Override
-          @SuppressFBWarnings(
-              value = "SECPTI", // Potential Path Traversal
-              justification =
-                  "The constructed file path cannot be controlled by an end user of the instrumented application")
-          public void run() {
-            Map<String, Object> map = getJsonMap();
-
-            String fileName = constructFileName(map);
-
-            // the executor should prevent more than one thread from executing this block.
-            // this is just a safeguard
-            synchronized (lock) {
-              File file = new File(directory, fileName);
-              boolean dirsWereCreated = file.getParentFile().mkdirs();
-
-              Logger logger = loggingInitialized ? LoggerFactory.getLogger(StatusFile.class) : null;
-
-              if (dirsWereCreated || file.getParentFile().exists()) {
-                OutputStream b = null;
-                try {
-                  b = getBuffer(file);
-                  new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(b, map);
-                  b.flush();
-                } catch (Exception e) {
-                  if (logger != null) {
-                    try (MDC.MDCCloseable ignored = STATUS_FILE_ERROR.makeActive()) {
-                      logger.error("Error writing {}", file.getAbsolutePath(), e);
-                    }
-                  } else {
-                    e.printStackTrace();
-                  }
-                  if (b != null) {
-                    try {
-                      b.close();
-                    } catch (IOException ex) {
-                      // ignore this
-                    }
-                  }
-                }
-              } else {
-                if (logger != null) {
-                  try (MDC.MDCCloseable ignored = STATUS_FILE_ERROR.makeActive()) {
-                    logger.error(
-                        "Parent directories for status file could not be created: {}",
-                        file.getAbsolutePath());
-                  }
-                } else {
-                  System.err.println(
-                      "Parent directories for status file could not be created: "
-                          + file.getAbsolutePath());
-                }
-              }
-            }
-          }
-        },
-        "StatusFileJsonWrite");
+    WRITER.requestWrite(loggingInitialized);
   }
 
   @SuppressFBWarnings(
@@ -236,43 +180,24 @@ public class StatusFile {
     return new File(logDir).canWrite();
   }
 
-  private static OutputStream getBuffer(File file) throws IOException {
-    synchronized (lock) {
-      if (buffer != null) {
-        buffer.close();
-      }
-      if (DiagnosticsHelper.isOsWindows()) {
-        buffer =
-            Files.newOutputStream(
-                file.toPath(),
-                StandardOpenOption.CREATE,
-                StandardOpenOption.DELETE_ON_CLOSE,
-                StandardOpenOption.WRITE,
-                StandardOpenOption.TRUNCATE_EXISTING);
-      } else { // on linux, the file is deleted/unlinked immediately using DELETE_ON_CLOSE making it
-        // unavailable to other processes. Using shutdown hook instead.
-        buffer =
-            Files.newOutputStream(
-                file.toPath(),
-                StandardOpenOption.CREATE,
-                StandardOpenOption.WRITE,
-                StandardOpenOption.TRUNCATE_EXISTING);
-        file.deleteOnExit();
-      }
-      return buffer;
-    }
-  }
-
   // visible for testing
   static Map<String, Object> getJsonMap() {
     Map<String, Object> map = new LinkedHashMap<>(CONSTANT_VALUES);
+    map.putAll(getFinderValues());
+    return map;
+  }
+
+  // most finders cache their value (see CachedDiagnosticsValueFinder), but the instrumentation key
+  // is re-read on every write, since it changes when Azure Functions specializes the placeholder
+  private static Map<String, String> getFinderValues() {
+    Map<String, String> values = new LinkedHashMap<>();
     for (DiagnosticsValueFinder finder : VALUE_FINDERS) {
-      String value = finder.getValue(System::getenv);
+      String value = finder.getValue(envVarsFunction);
       if (value != null && !value.isEmpty()) {
-        map.put(capitalize(finder.getName()), value);
+        values.put(capitalize(finder.getName()), value);
       }
     }
-    return map;
+    return values;
   }
 
   /**
@@ -0,0 +1,180 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.diagnostics.status;
+
+import static com.microsoft.applicationinsights.agent.internal.diagnostics.MsgId.STATUS_FILE_ERROR;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+/**
+ * Writes the status file in the background, coalescing all of the updates that are requested
+ * within the debounce window into a single write.
+ *
+ * <p>The status file lives on slow network-backed storage on App Service, so instead of truncating
+ * and rewriting it in place, the contents are written to a temp file which is then renamed over
+ * the status file, so that readers never see a partially written file.
+ */
+final class StatusFileWriter {
+
+  private static final ObjectWriter OBJECT_WRITER =
+      new ObjectMapper().writerWithDefaultPrettyPrinter();
+
+  private final ScheduledExecutorService executor;
+  private final long debounceMillis;
+  private final Supplier<Map<String, Object>> contents;
+  private final Function<Map<String, Object>, File> fileForContents;
+  private final boolean deleteOnClose;
+
+  // set when a write has been requested that hasn't started yet
+  private final AtomicBoolean dirty = new AtomicBoolean();
+  private volatile boolean loggingInitialized;
+
+  // only accessed by the executor thread
+  @Nullable private SeekableByteChannel deleteOnCloseChannel;
+
+  // visible for testing
+  final AtomicInteger writeCount = new AtomicInteger();
+
+  /**
+   * Creates a writer.
+   *
+   * @param deleteOnClose keep the status file open with {@link StandardOpenOption#DELETE_ON_CLOSE}
+   *     so that it is removed when the process exits, however it exits (this is only supported on
+   *     Windows, on Linux the file would be unlinked immediately, so {@link File#deleteOnExit()} is
+   *     used instead)
+   */
+  StatusFileWriter(
+      ScheduledExecutorService executor,
+      long debounceMillis,
+      Supplier<Map<String, Object>> contents,
+      Function<Map<String, Object>, File> fileForContents,
+      boolean deleteOnClose) {
+    this.executor = executor;
+    this.debounceMillis = debounceMillis;
+    this.contents = contents;
+    this.fileForContents = fileForContents;
+    this.deleteOnClose = deleteOnClose;
+  }
+
+  void requestWrite(boolean loggingInitialized) {
+    if (loggingInitialized) {
+      this.loggingInitialized = true;
+    }
+    if (dirty.compareAndSet(false, true)) {
+      executor.schedule(this::write, debounceMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @SuppressWarnings("SystemOut")
+  @SuppressFBWarnings(
+      value = "SECPTI", // Potential Path Traversal
+      justification =
+          "The constructed file path cannot be controlled by an end user of the instrumented application")
+  private void write() {
+    // cleared before reading the contents, so that any update made while writing is written again
+    dirty.set(false);
+    Map<String, Object> map = contents.get();
+    File file = fileForContents.apply(map);
+    Logger logger = loggingInitialized ? LoggerFactory.getLogger(StatusFile.class) : null;
+
+    File parent = file.getParentFile();
+    if (!parent.mkdirs() && !parent.exists()) {
+      if (logger != null) {
+        try (MDC.MDCCloseable ignored = STATUS_FILE_ERROR.makeActive()) {
+          logger.error(
+              "Parent directories for status file could not be created: {}",
+              file.getAbsolutePath());
+        }
+      } else {
+        System.err.println(
+            "Parent directories for status file could not be created: " + file.getAbsolutePath());
+      }
+      return;
+    }
+
+    Path target = file.toPath();
+    Path temp = target.resolveSibling(file.getName() + ".tmp");
+    try {
+      try (OutputStream out = Files.newOutputStream(temp)) {
+        OBJECT_WRITER.writeValue(out, map);
+      }
+      replace(temp, target);
+      writeCount.incrementAndGet();
+    } catch (Exception e) {
+      if (logger != null) {
+        try (MDC.MDCCloseable ignored = STATUS_FILE_ERROR.makeActive()) {
+          logger.error("Error writing {}", file.getAbsolutePath(), e);
+        }
+      } else {
+        e.printStackTrace();
+      }
+      try {
+        Files.deleteIfExists(temp);
+      } catch (IOException ex) {
+        // ignore this
+      }
+    }
+  }
+
+  private void replace(Path temp, Path target) throws IOException {
+    try {
+      // the previous file is held open with FILE_SHARE_DELETE (which NIO always requests on
+      // Windows), so it can be replaced while it is open, and closing the channel afterwards only
+      // deletes the replaced file, there is no point at which the status file is missing
+      move(temp, target);
+    } catch (FileSystemException e) {
+      if (deleteOnCloseChannel == null) {
+        throw e;
+      }
+      // file systems that don't allow replacing a file that is open, this removes it
+      closeDeleteOnCloseChannel();
+      move(temp, target);
+    }
+    closeDeleteOnCloseChannel();
+    if (deleteOnClose) {
+      deleteOnCloseChannel =
+          Files.newByteChannel(target, StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+    } else {
+      target.toFile().deleteOnExit();
+    }
+  }
+
+  private void closeDeleteOnCloseChannel() throws IOException {
+    if (deleteOnCloseChannel != null) {
+      deleteOnCloseChannel.close();
+      deleteOnCloseChannel = null;
+    }
+  }
+
+  private static void move(Path temp, Path target) throws IOException {
+    try {
+      Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+}
@@ -23,14 +23,20 @@ import javax.annotation.Nullable;
 //     .getContext().getCloud().setRole(...)
 public class AiContextCustomizer<R> implements ContextCustomizer<R> {
 
-  private final List<Configuration.ConnectionStringOverride> connectionStringOverrides;
-  private final List<Configuration.RoleNameOverride> roleNameOverrides;
+  private final PathPrefixMatcher connectionStringOverrides;
+  private final PathPrefixMatcher roleNameOverrides;
 
   public AiContextCustomizer(
       List<Configuration.ConnectionStringOverride> connectionStringOverrides,
       List<Configuration.RoleNameOverride> roleNameOverrides) {
-    this.connectionStringOverrides = connectionStringOverrides;
-    this.roleNameOverrides = roleNameOverrides;
+    this.connectionStringOverrides =
+        PathPrefixMatcher.create(
+            connectionStringOverrides,
+            override -> override.httpPathPrefix,
+            override -> override.connectionString);
+    this.roleNameOverrides =
+        PathPrefixMatcher.create(
+            roleNameOverrides, override -> override.httpPathPrefix, override -> override.roleName);
   }
 
   @Override
@@ -73,12 +79,7 @@ public class AiContextCustomizer<R> implements ContextCustomizer<R> {
     if (target == null) {
       return null;
     }
-    for (Configuration.ConnectionStringOverride override : connectionStringOverrides) {
-      if (target.startsWith(override.httpPathPrefix)) {
-        return override.connectionString;
-      }
-    }
-    return null;
+    return connectionStringOverrides.getValue(target);
   }
 
   @Nullable
@@ -86,12 +87,7 @@ public class AiContextCustomizer<R> implements ContextCustomizer<R> {
     if (target == null) {
       return null;
     }
-    for (Configuration.RoleNameOverride override : roleNameOverrides) {
-      if (target.startsWith(override.httpPathPrefix)) {
-        return override.roleName;
-      }
-    }
-    return null;
+    return roleNameOverrides.getValue(target);
   }
 
   private static <T> T getStableAttribute(
@@ -267,6 +267,9 @@ public class LoggingConfigurator {
     EtwAppender appender = new EtwAppender();
     appender.setContext(loggerContext);
     appender.setName("ETW_PROVIDER");
+    // applicationinsights.etw.sync setting writes the events from the logging thread, which can
+    // be useful when troubleshooting missing ETW events
+    appender.setAsync(!Boolean.getBoolean("applicationinsights.etw.sync"));
 
     ApplicationInsightsDiagnosticsLogFilter filter = new ApplicationInsightsDiagnosticsLogFilter();
     filter.setContext(loggerContext);
@@ -0,0 +1,112 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.init;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+
+/**
+ * Resolves the value configured for the first http path prefix (in configuration order) that a
+ * path starts with.
+ *
+ * <p>The prefixes are compiled into a trie, so a lookup walks the path once instead of comparing
+ * it against every prefix, and doesn't allocate.
+ */
+final class PathPrefixMatcher {
+
+  private static final int NO_MATCH = Integer.MAX_VALUE;
+
+  // the trie is flattened into arrays indexed by node, with node 0 being the root
+  private final char[][] edgeChars; // sorted, for binary search
+  private final int[][] edgeNodes;
+  // configuration order of the first prefix that ends at the node, or NO_MATCH
+  private final int[] nodeOrder;
+  // lowest nodeOrder of the node and all of its descendants, to stop walking early
+  private final int[] subtreeOrder;
+
+  private final String[] values;
+
+  static <T> PathPrefixMatcher create(
+      List<T> overrides, Function<T, String> prefixGetter, Function<T, String> valueGetter) {
+    Node root = new Node();
+    String[] values = new String[overrides.size()];
+    for (int i = 0; i < overrides.size(); i++) {
+      T override = overrides.get(i);
+      Node node = root;
+      String prefix = prefixGetter.apply(override);
+      for (int j = 0; j < prefix.length(); j++) {
+        node = node.children.computeIfAbsent(prefix.charAt(j), c -> new Node());
+      }
+      node.order = Math.min(node.order, i);
+      values[i] = valueGetter.apply(override);
+    }
+    return new PathPrefixMatcher(root, values);
+  }
+
+  private PathPrefixMatcher(Node root, String[] values) {
+    List<Node> nodes = new ArrayList<>();
+    root.index = 0;
+    nodes.add(root);
+    // breadth first, so that each node's children are numbered once it is reached
+    for (int i = 0; i < nodes.size(); i++) {
+      for (Node child : nodes.get(i).children.values()) {
+        child.index = nodes.size();
+        nodes.add(child);
+      }
+    }
+
+    edgeChars = new char[nodes.size()][];
+    edgeNodes = new int[nodes.size()][];
+    nodeOrder = new int[nodes.size()];
+    subtreeOrder = new int[nodes.size()];
+    // children always come after their parent, so walking backwards visits them first
+    for (int i = nodes.size() - 1; i >= 0; i--) {
+      Node node = nodes.get(i);
+      edgeChars[i] = new char[node.children.size()];
+      edgeNodes[i] = new int[node.children.size()];
+      nodeOrder[i] = node.order;
+      subtreeOrder[i] = node.order;
+      int j = 0;
+      for (Map.Entry<Character, Node> entry : node.children.entrySet()) {
+        int childIndex = entry.getValue().index;
+        edgeChars[i][j] = entry.getKey();
+        edgeNodes[i][j] = childIndex;
+        subtreeOrder[i] = Math.min(subtreeOrder[i], subtreeOrder[childIndex]);
+        j++;
+      }
+    }
+    this.values = values;
+  }
+
+  @Nullable
+  String getValue(String path) {
+    int node = 0;
+    int match = nodeOrder[0];
+    for (int i = 0; i < path.length(); i++) {
+      int edge = Arrays.binarySearch(edgeChars[node], path.charAt(i));
+      if (edge < 0) {
+        break;
+      }
+      node = edgeNodes[node][edge];
+      if (subtreeOrder[node] >= match) {
+        // nothing further down was configured before the prefix already matched
+        break;
+      }
+      match = Math.min(match, nodeOrder[node]);
+    }
+    return match == NO_MATCH ? null : values[match];
+  }
+
+  private static class Node {
+
+    private final TreeMap<Character, Node> children = new TreeMap<>();
+    private int order = NO_MATCH;
+    private int index;
+  }
+}
@@ -12,7 +12,7 @@ import com.microsoft.applicationinsights.agent.internal.perfcounter.DeadLockDete
 import com.microsoft.applicationinsights.agent.internal.perfcounter.FreeMemoryPerformanceCounter;
 import com.microsoft.applicationinsights.agent.internal.perfcounter.GcPerformanceCounter;
 import com.microsoft.applicationinsights.agent.internal.perfcounter.JmxAttributeData;
-import com.microsoft.applicationinsights.agent.internal.perfcounter.JmxDataFetcher;
+import com.microsoft.applicationinsights.agent.internal.perfcounter.JmxMetricCollector;
 import com.microsoft.applicationinsights.agent.internal.perfcounter.JmxMetricPerformanceCounter;
 import com.microsoft.applicationinsights.agent.internal.perfcounter.JvmHeapMemoryUsedPerformanceCounter;
 import com.microsoft.applicationinsights.agent.internal.perfcounter.OshiPerformanceCounter;
@@ -22,6 +22,7 @@ import com.microsoft.applicationinsights.agent.internal.perfcounter.ProcessMemor
 import io.opentelemetry.api.GlobalOpenTelemetry;
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.Meter;
 import io.opentelemetry.api.metrics.ObservableDoubleMeasurement;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadMXBean;
@@ -29,8 +30,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -157,14 +160,16 @@ public class PerformanceCounterInitializer {
     createMeterPerAttribute(data);
   }
 
-  // Create a meter for each attribute & declare the callback that reports the metric in the meter.
+  // Create a gauge for each attribute & declare a single callback that collects all of the
+  // attributes and records them in their gauges.
   private static void createMeterPerAttribute(
       Map<String, Collection<JmxAttributeData>> objectAndAttributesMap) {
-    for (Map.Entry<String, Collection<JmxAttributeData>> entry :
-        objectAndAttributesMap.entrySet()) {
-      String objectName = entry.getKey();
+    Meter meter = GlobalOpenTelemetry.getMeter("com.microsoft.applicationinsights.jmx");
 
-      for (JmxAttributeData jmxAttributeData : entry.getValue()) {
+    Map<JmxAttributeData, JmxGauge> gauges = new IdentityHashMap<>();
+    List<ObservableDoubleMeasurement> measurements = new ArrayList<>();
+    for (Collection<JmxAttributeData> attributes : objectAndAttributesMap.values()) {
+      for (JmxAttributeData jmxAttributeData : attributes) {
 
         String otelMetricName;
         if (jmxAttributeData.metricName.matches(METRIC_NAME_REGEXP)) {
@@ -173,66 +178,81 @@ public class PerformanceCounterInitializer {
           otelMetricName = jmxAttributeData.metricName.replaceAll(INVALID_CHARACTER_REGEXP, "_");
         }
 
-        GlobalOpenTelemetry.getMeter("com.microsoft.applicationinsights.jmx")
-            .gaugeBuilder(otelMetricName)
-            .buildWithCallback(
-                observableDoubleMeasurement -> {
-                  calculateAndRecordValueForAttribute(
-                      observableDoubleMeasurement, objectName, jmxAttributeData);
-                });
+        ObservableDoubleMeasurement measurement =
+            meter.gaugeBuilder(otelMetricName).buildObserver();
+        gauges.put(jmxAttributeData, new JmxGauge(measurement, jmxAttributeData.metricName));
+        measurements.add(measurement);
       }
     }
+    if (measurements.isEmpty()) {
+      return;
+    }
+
+    LazyJmxMetricCollector collector = new LazyJmxMetricCollector(objectAndAttributesMap);
+    meter.batchCallback(
+        () -> {
+          JmxMetricCollector jmxMetricCollector = collector.get();
+          if (jmxMetricCollector == null) {
+            return;
+          }
+          jmxMetricCollector.collect(
+              (jmxAttributeData, value) -> {
+                JmxGauge gauge = gauges.get(jmxAttributeData);
+                if (gauge != null) {
+                  gauge.measurement.record(value, gauge.attributes);
+                }
+              });
+        },
+        measurements.get(0),
+        measurements.subList(1, measurements.size()).toArray(new ObservableDoubleMeasurement[0]));
   }
 
-  private static void calculateAndRecordValueForAttribute(
-      ObservableDoubleMeasurement observableDoubleMeasurement,
-      String objectName,
-      JmxAttributeData jmxAttributeData) {
-    try {
-      List<Object> result =
-          JmxDataFetcher.fetch(
-              objectName, jmxAttributeData.attribute); // should return the [val, ...] here
-
-      logger.trace(
-          "Size of the JmxDataFetcher.fetch result: {}, for objectName:{} and metricName:{}",
-          result.size(),
-          objectName,
-          jmxAttributeData.metricName);
-
-      boolean ok = true;
-      double value = 0.0;
-      for (Object obj : result) {
-        try {
-          if (obj instanceof Boolean) {
-            value = ((Boolean) obj).booleanValue() ? 1 : 0;
-          } else {
-            value += Double.parseDouble(String.valueOf(obj));
+  // the collector is only created on the first collection, the same as the MBeanServer used to be
+  // first accessed by the first gauge callback, since creating it gets the platform MBeanServer,
+  // which some application servers (e.g. JBoss/WildFly) need to set up themselves before that
+  private static class LazyJmxMetricCollector {
+    private final Map<String, Collection<JmxAttributeData>> objectAndAttributesMap;
+    @Nullable private volatile JmxMetricCollector collector;
+
+    private LazyJmxMetricCollector(
+        Map<String, Collection<JmxAttributeData>> objectAndAttributesMap) {
+      this.objectAndAttributesMap = objectAndAttributesMap;
+    }
+
+    @Nullable
+    private JmxMetricCollector get() {
+      JmxMetricCollector collector = this.collector;
+      if (collector != null) {
+        return collector;
+      }
+      synchronized (this) {
+        collector = this.collector;
+        if (collector == null) {
+          try {
+            collector = new JmxMetricCollector(objectAndAttributesMap);
+          } catch (RuntimeException e) {
+            // tried again on the next collection
+            try (MDC.MDCCloseable ignored = CUSTOM_JMX_METRIC_ERROR.makeActive()) {
+              logger.error("Failed to access the platform MBeanServer: {}", e.toString());
+            }
+            return null;
           }
-        } catch (RuntimeException e) {
-          ok = false;
-          break;
+          this.collector = collector;
         }
+        return collector;
       }
-      if (ok) {
-        logger.trace(
-            "value {} for objectName:{} and metricName{}",
-            value,
-            objectName,
-            jmxAttributeData.metricName);
-        observableDoubleMeasurement.record(
-            value,
-            Attributes.of(
-                AttributeKey.stringKey("applicationinsights.internal.metric_name"),
-                jmxAttributeData.metricName));
-      }
-    } catch (Exception e) {
-      try (MDC.MDCCloseable ignored = CUSTOM_JMX_METRIC_ERROR.makeActive()) {
-        logger.error(
-            "Failed to calculate the metric value for objectName {} and metric name {}",
-            objectName,
-            jmxAttributeData.metricName);
-        logger.error("Exception: {}", e.toString());
-      }
+    }
+  }
+
+  private static class JmxGauge {
+    private final ObservableDoubleMeasurement measurement;
+    private final Attributes attributes;
+
+    private JmxGauge(ObservableDoubleMeasurement measurement, String metricName) {
+      this.measurement = measurement;
+      attributes =
+          Attributes.of(
+              AttributeKey.stringKey("applicationinsights.internal.metric_name"), metricName);
     }
   }
 
@@ -40,10 +40,8 @@ import com.microsoft.applicationinsights.agent.internal.exporter.AgentMetricExpo
 import com.microsoft.applicationinsights.agent.internal.exporter.AgentSpanExporter;
 import com.microsoft.applicationinsights.agent.internal.httpclient.LazyHttpClient;
 import com.microsoft.applicationinsights.agent.internal.legacyheaders.AiLegacyHeaderSpanProcessor;
-import com.microsoft.applicationinsights.agent.internal.processors.ExporterWithLogProcessor;
-import com.microsoft.applicationinsights.agent.internal.processors.ExporterWithSpanProcessor;
-import com.microsoft.applicationinsights.agent.internal.processors.LogExporterWithAttributeProcessor;
-import com.microsoft.applicationinsights.agent.internal.processors.SpanExporterWithAttributeProcessor;
+import com.microsoft.applicationinsights.agent.internal.processors.LogExporterWithProcessors;
+import com.microsoft.applicationinsights.agent.internal.processors.SpanExporterWithProcessors;
 import com.microsoft.applicationinsights.agent.internal.profiler.triggers.AlertTriggerSpanProcessor;
 import com.microsoft.applicationinsights.agent.internal.sampling.AiFixedPercentageSampler;
 import com.microsoft.applicationinsights.agent.internal.sampling.SamplingOverrides;
@@ -70,7 +68,6 @@ import io.opentelemetry.sdk.trace.export.SpanExporter;
 import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -138,6 +135,14 @@ public class SecondEntryPoint
             .setTempDir(tempDir)
             .setGeneralExportQueueSize(configuration.preview.generalExportQueueCapacity)
             .setMetricsExportQueueSize(configuration.preview.metricsExportQueueCapacity)
+            .setExportQueueMaxSizeMb(
+                configuration.preview.generalExportQueueMaxSizeMb,
+                configuration.preview.metricsExportQueueMaxSizeMb)
+            .setExportQueueShards(
+                configuration.preview.exportQueueShards,
+                configuration.preview.exportQueueShardSelection)
+            .setAdaptiveExportBatching(configuration.preview.adaptiveExportBatching)
+            .setGeneralExportQueuePriority(configuration.preview.generalExportQueuePriority)
             .setAadAuthentication(configuration.authentication)
             .setConnectionStrings(configuration.connectionString)
             .setRoleName(configuration.role.name)
@@ -184,6 +189,11 @@ public class SecondEntryPoint
     BytecodeUtilImpl.runtimeConfigurator = runtimeConfigurator;
     BytecodeUtilImpl.connectionStringConfiguredAtRuntime =
         configuration.connectionStringConfiguredAtRuntime;
+    if (configuration.preview.classicSdkMetricAggregation.enabled) {
+      BytecodeUtilImpl.enableMetricAggregation(
+          configuration.preview.classicSdkMetricAggregation.maxSeries,
+          TimeUnit.SECONDS.toMillis(configuration.metricIntervalSeconds));
+    }
 
     if (ConfigurationBuilder.inAzureFunctionsConsumptionWorker()) {
       AzureFunctions.setup(
@@ -606,21 +616,8 @@ public class SecondEntryPoint
     // NOTE if changing the span processor to something async, flush it in the shutdown hook before
     // flushing TelemetryClient
     if (!processorConfigs.isEmpty()) {
-      // Reversing the order of processors before passing it Span processor
-      Collections.reverse(processorConfigs);
-      for (ProcessorConfig processorConfig : processorConfigs) {
-        switch (processorConfig.type) {
-          case ATTRIBUTE:
-            spanExporter = new SpanExporterWithAttributeProcessor(processorConfig, spanExporter);
-            break;
-          case SPAN:
-            spanExporter = new ExporterWithSpanProcessor(processorConfig, spanExporter);
-            break;
-          default:
-            throw new IllegalStateException(
-                "Not an expected ProcessorType: " + processorConfig.type);
-        }
-      }
+      // all the processors are applied (in order) in a single pass over each batch
+      spanExporter = new SpanExporterWithProcessors(processorConfigs, spanExporter);
     }
 
     return spanExporter;
@@ -699,21 +696,8 @@ public class SecondEntryPoint
 
     List<ProcessorConfig> processorConfigs = getLogProcessorConfigs(configuration);
     if (!processorConfigs.isEmpty()) {
-      // Reversing the order of processors before passing it Log processor
-      Collections.reverse(processorConfigs);
-      for (ProcessorConfig processorConfig : processorConfigs) {
-        switch (processorConfig.type) {
-          case ATTRIBUTE:
-            logExporter = new LogExporterWithAttributeProcessor(processorConfig, logExporter);
-            break;
-          case LOG:
-            logExporter = new ExporterWithLogProcessor(processorConfig, logExporter);
-            break;
-          default:
-            throw new IllegalStateException(
-                "Not an expected ProcessorType: " + processorConfig.type);
-        }
-      }
+      // all the processors are applied (in order) in a single pass over each batch
+      logExporter = new LogExporterWithProcessors(processorConfigs, logExporter);
     }
     return logExporter;
   }
@@ -765,6 +749,7 @@ public class SecondEntryPoint
         () -> {
           // IMPORTANT: the metric reader flush will fail if the periodic metric reader is already
           // mid-exporter
+          BytecodeUtilImpl.flushAggregatedMetrics();
           CompletableResultCode telemetryClientResult = telemetryClient.forceFlush();
           telemetryClientResult.whenComplete(
               () -> {
@@ -43,7 +43,7 @@ public abstract class AbstractJmxPerformanceCounter implements PerformanceCounte
             if (obj instanceof Boolean) {
               value = ((Boolean) obj).booleanValue() ? 1 : 0;
             } else {
-              value += Double.parseDouble(String.valueOf(obj));
+              value += JmxMetricCollector.toDouble(obj);
             }
           } catch (RuntimeException e) {
             ok = false;
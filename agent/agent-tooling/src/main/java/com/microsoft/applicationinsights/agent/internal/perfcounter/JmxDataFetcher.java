@@ -126,7 +126,7 @@ public class JmxDataFetcher {
 
   // This code is copied in from upstream otel java instrumentation repository
   // until we move to upstream version
-  private static List<String> splitByDot(String rawName) {
+  static List<String> splitByDot(String rawName) {
     List<String> components = new ArrayList<>();
     try {
       StringBuilder currentSegment = new StringBuilder();
@@ -0,0 +1,351 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.perfcounter;
+
+import static com.microsoft.applicationinsights.agent.internal.diagnostics.MsgId.CUSTOM_JMX_METRIC_ERROR;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjDoubleConsumer;
+import javax.annotation.Nullable;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerDelegate;
+import javax.management.MBeanServerNotification;
+import javax.management.MalformedObjectNameException;
+import javax.management.Notification;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+/**
+ * Collects the configured JMX metrics in one pass.
+ *
+ * <p>Compared to calling {@link JmxDataFetcher} for each metric, the object names that match each
+ * configured object name (pattern) are cached until an MBean that matches it is registered or
+ * unregistered, all of the attributes that are configured for the same object name are fetched
+ * with a single {@link MBeanServer#getAttributes(ObjectName, String[])} call per matching MBean,
+ * and the composite data paths are split when the collector is created instead of on every
+ * collection.
+ */
+public class JmxMetricCollector {
+
+  private static final Logger logger = LoggerFactory.getLogger(JmxMetricCollector.class);
+
+  private static final Object NOT_FOUND = new Object();
+
+  private final MBeanServer server;
+  private final List<ObjectNameGroup> groups;
+
+  // if the notification listener can't be registered, the object names are queried every time
+  private final boolean cacheObjectNames;
+
+  /**
+   * Creates a collector for the given attributes, which are keyed by the object name (pattern)
+   * that they belong to.
+   */
+  public JmxMetricCollector(Map<String, Collection<JmxAttributeData>> objectAndAttributesMap) {
+    this(ManagementFactory.getPlatformMBeanServer(), objectAndAttributesMap);
+  }
+
+  // visible for testing
+  JmxMetricCollector(
+      MBeanServer server, Map<String, Collection<JmxAttributeData>> objectAndAttributesMap) {
+    this.server = server;
+    groups = new ArrayList<>();
+    for (Map.Entry<String, Collection<JmxAttributeData>> entry :
+        objectAndAttributesMap.entrySet()) {
+      ObjectNameGroup group = ObjectNameGroup.create(entry.getKey(), entry.getValue());
+      if (group != null) {
+        groups.add(group);
+      }
+    }
+
+    boolean cacheObjectNames;
+    try {
+      server.addNotificationListener(
+          MBeanServerDelegate.DELEGATE_NAME,
+          (notification, handback) -> onNotification(notification),
+          null,
+          null);
+      cacheObjectNames = true;
+    } catch (InstanceNotFoundException e) {
+      logger.debug("Unable to listen for MBean registrations: {}", e.toString());
+      cacheObjectNames = false;
+    }
+    this.cacheObjectNames = cacheObjectNames;
+  }
+
+  /**
+   * Collects all of the attributes, passing the value of each attribute that could be collected to
+   * the given consumer. A failure to collect (or consume) one attribute is logged, and doesn't stop
+   * the others from being collected.
+   */
+  public void collect(ObjDoubleConsumer<JmxAttributeData> consumer) {
+    for (ObjectNameGroup group : groups) {
+      try {
+        collect(group, consumer);
+      } catch (RuntimeException e) {
+        // e.g. from queryNames()
+        logFailures(group, group.attributes, e);
+      }
+    }
+  }
+
+  private void onNotification(Notification notification) {
+    if (!(notification instanceof MBeanServerNotification)) {
+      return;
+    }
+    ObjectName mbeanName = ((MBeanServerNotification) notification).getMBeanName();
+    for (ObjectNameGroup group : groups) {
+      if (group.objectName.apply(mbeanName)) {
+        group.invalidate();
+      }
+    }
+  }
+
+  private void collect(ObjectNameGroup group, ObjDoubleConsumer<JmxAttributeData> consumer) {
+    Set<ObjectName> objectNames = group.cachedObjectNames;
+    if (objectNames == null) {
+      int invalidations = group.invalidations.get();
+      objectNames = server.queryNames(group.objectName, null);
+      logger.trace("Matching object names for pattern {}: {}", group.objectName, objectNames);
+      // don't cache the result if an MBean was (un)registered while querying
+      if (cacheObjectNames && invalidations == group.invalidations.get()) {
+        group.cachedObjectNames = objectNames;
+      }
+    }
+    if (objectNames.isEmpty()) {
+      String errorMsg =
+          String.format(Locale.ROOT, "Cannot find object name '%s'", group.objectNameString);
+      logFailures(group, group.attributes, new IllegalArgumentException(errorMsg));
+      return;
+    }
+
+    int numAttributes = group.attributes.length;
+    double[] values = new double[numAttributes];
+    // set when an attribute could not be fetched, or its value could not be converted
+    boolean[] failed = new boolean[numAttributes];
+    Object[] fetched = new Object[group.attributeNames.length];
+
+    for (ObjectName objectName : objectNames) {
+      AttributeList attributeList;
+      try {
+        attributeList = server.getAttributes(objectName, group.attributeNames);
+      } catch (Exception e) {
+        // the MBean may have just been unregistered
+        group.invalidate();
+        logFailures(group, group.attributes, e);
+        return;
+      }
+      fetch(group, attributeList, fetched);
+
+      for (int i = 0; i < numAttributes; i++) {
+        if (failed[i]) {
+          continue;
+        }
+        CompiledAttribute attribute = group.attributes[i];
+        Object value = fetched[attribute.attributeNameIndex];
+        if (value == NOT_FOUND) {
+          failed[i] = true;
+          logFailure(
+              group,
+              attribute,
+              new AttributeNotFoundException(
+                  "No such attribute: " + group.attributeNames[attribute.attributeNameIndex]));
+          continue;
+        }
+        try {
+          value = attribute.walkCompositePath(value);
+        } catch (RuntimeException e) {
+          failed[i] = true;
+          logFailure(group, attribute, e);
+          continue;
+        }
+        if (value == null) {
+          continue;
+        }
+        try {
+          if (value instanceof Boolean) {
+            values[i] = ((Boolean) value).booleanValue() ? 1 : 0;
+          } else {
+            values[i] += toDouble(value);
+          }
+        } catch (RuntimeException e) {
+          failed[i] = true;
+        }
+      }
+    }
+
+    for (int i = 0; i < numAttributes; i++) {
+      if (!failed[i]) {
+        JmxAttributeData attribute = group.attributes[i].data;
+        logger.trace(
+            "value {} for objectName:{} and metricName{}",
+            values[i],
+            group.objectNameString,
+            attribute.metricName);
+        try {
+          consumer.accept(attribute, values[i]);
+        } catch (RuntimeException e) {
+          logFailure(group, group.attributes[i], e);
+        }
+      }
+    }
+  }
+
+  // getAttributes() omits the attributes that could not be fetched
+  private static void fetch(ObjectNameGroup group, AttributeList attributeList, Object[] fetched) {
+    for (int i = 0; i < fetched.length; i++) {
+      fetched[i] = NOT_FOUND;
+    }
+    for (Attribute attribute : attributeList.asList()) {
+      String name = attribute.getName();
+      for (int i = 0; i < group.attributeNames.length; i++) {
+        if (group.attributeNames[i].equals(name)) {
+          fetched[i] = attribute.getValue();
+          break;
+        }
+      }
+    }
+  }
+
+  /** Converts a JMX attribute value to a double, without going through a string for numbers. */
+  static double toDouble(Object value) {
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    }
+    return Double.parseDouble(String.valueOf(value));
+  }
+
+  private static void logFailures(
+      ObjectNameGroup group, CompiledAttribute[] attributes, Exception e) {
+    for (CompiledAttribute attribute : attributes) {
+      logFailure(group, attribute, e);
+    }
+  }
+
+  private static void logFailure(ObjectNameGroup group, CompiledAttribute attribute, Exception e) {
+    try (MDC.MDCCloseable ignored = CUSTOM_JMX_METRIC_ERROR.makeActive()) {
+      logger.error(
+          "Failed to calculate the metric value for objectName {} and metric name {}",
+          group.objectNameString,
+          attribute.data.metricName);
+      logger.error("Exception: {}", e.toString());
+    }
+  }
+
+  private static class ObjectNameGroup {
+
+    private final String objectNameString;
+    private final ObjectName objectName;
+    // the distinct (top level) attribute names, in the order that they are passed to
+    // getAttributes()
+    private final String[] attributeNames;
+    private final CompiledAttribute[] attributes;
+
+    @Nullable private volatile Set<ObjectName> cachedObjectNames;
+    private final AtomicInteger invalidations = new AtomicInteger();
+
+    private ObjectNameGroup(
+        String objectNameString,
+        ObjectName objectName,
+        String[] attributeNames,
+        CompiledAttribute[] attributes) {
+      this.objectNameString = objectNameString;
+      this.objectName = objectName;
+      this.attributeNames = attributeNames;
+      this.attributes = attributes;
+    }
+
+    private void invalidate() {
+      invalidations.incrementAndGet();
+      cachedObjectNames = null;
+    }
+
+    @Nullable
+    private static ObjectNameGroup create(
+        String objectNameString, Collection<JmxAttributeData> attributeDatas) {
+      ObjectName objectName;
+      try {
+        objectName = new ObjectName(objectNameString);
+      } catch (MalformedObjectNameException e) {
+        try (MDC.MDCCloseable ignored = CUSTOM_JMX_METRIC_ERROR.makeActive()) {
+          logger.error("Invalid JMX object name '{}': {}", objectNameString, e.toString());
+        }
+        return null;
+      }
+
+      List<String> attributeNames = new ArrayList<>();
+      List<CompiledAttribute> attributes = new ArrayList<>();
+      for (JmxAttributeData attributeData : attributeDatas) {
+        List<String> segments;
+        try {
+          segments = JmxDataFetcher.splitByDot(attributeData.attribute);
+        } catch (IllegalArgumentException e) {
+          try (MDC.MDCCloseable ignored = CUSTOM_JMX_METRIC_ERROR.makeActive()) {
+            logger.error(
+                "Invalid JMX attribute for objectName {} and metric name {}: {}",
+                objectNameString,
+                attributeData.metricName,
+                e.getMessage());
+          }
+          continue;
+        }
+        String attributeName = segments.get(0);
+        int attributeNameIndex = attributeNames.indexOf(attributeName);
+        if (attributeNameIndex == -1) {
+          attributeNameIndex = attributeNames.size();
+          attributeNames.add(attributeName);
+        }
+        String[] compositePath = segments.subList(1, segments.size()).toArray(new String[0]);
+        attributes.add(new CompiledAttribute(attributeData, attributeNameIndex, compositePath));
+      }
+      if (attributes.isEmpty()) {
+        return null;
+      }
+      return new ObjectNameGroup(
+          objectNameString,
+          objectName,
+          attributeNames.toArray(new String[0]),
+          attributes.toArray(new CompiledAttribute[0]));
+    }
+  }
+
+  private static class CompiledAttribute {
+
+    private final JmxAttributeData data;
+    private final int attributeNameIndex;
+    private final String[] compositePath;
+
+    private CompiledAttribute(
+        JmxAttributeData data, int attributeNameIndex, String[] compositePath) {
+      this.data = data;
+      this.attributeNameIndex = attributeNameIndex;
+      this.compositePath = compositePath;
+    }
+
+    @Nullable
+    private Object walkCompositePath(@Nullable Object value) {
+      for (String key : compositePath) {
+        if (value == null) {
+          return null;
+        }
+        value = ((CompositeData) value).get(key);
+      }
+      return value;
+    }
+  }
+}
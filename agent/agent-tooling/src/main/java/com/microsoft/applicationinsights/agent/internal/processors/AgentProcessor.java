@@ -9,15 +9,25 @@ import com.microsoft.applicationinsights.agent.internal.configuration.Configurat
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 
 public abstract class AgentProcessor {
 
+  // processors frequently repeat the same include/exclude criteria, sharing a single matcher
+  // between them means that a span (or log) which passes through several of those processors
+  // unchanged is only matched once
+  private static final ConcurrentMap<List<Object>, IncludeExclude> includeExcludes =
+      new ConcurrentHashMap<>();
+
   @Nullable private final IncludeExclude include;
   @Nullable private final IncludeExclude exclude;
 
@@ -28,9 +38,28 @@ public abstract class AgentProcessor {
 
   protected static IncludeExclude getNormalizedIncludeExclude(
       ProcessorIncludeExclude includeExclude, boolean isLog) {
-    return includeExclude.matchType == MatchType.STRICT
-        ? AgentProcessor.StrictIncludeExclude.create(includeExclude, isLog)
-        : AgentProcessor.RegexpIncludeExclude.create(includeExclude, isLog);
+    return includeExcludes.computeIfAbsent(
+        getIncludeExcludeKey(includeExclude, isLog),
+        key ->
+            includeExclude.matchType == MatchType.STRICT
+                ? AgentProcessor.StrictIncludeExclude.create(includeExclude, isLog)
+                : AgentProcessor.RegexpIncludeExclude.create(includeExclude, isLog));
+  }
+
+  private static List<Object> getIncludeExcludeKey(
+      ProcessorIncludeExclude includeExclude, boolean isLog) {
+    List<String> names = isLog ? includeExclude.logBodies : includeExclude.spanNames;
+    List<List<Object>> attributes = new ArrayList<>();
+    if (includeExclude.attributes != null) {
+      for (ProcessorAttribute attribute : includeExclude.attributes) {
+        attributes.add(Arrays.asList(attribute.key, attribute.type, attribute.value));
+      }
+    }
+    return Arrays.asList(
+        includeExclude.matchType,
+        isLog,
+        names == null ? new ArrayList<>() : new ArrayList<>(names),
+        attributes);
   }
 
   @Nullable
@@ -44,16 +73,55 @@ public abstract class AgentProcessor {
   }
 
   public abstract static class IncludeExclude {
+
+    // the result for the last span/log that was matched on each thread, attributes are immutable
+    // so the same attributes and name instances are guaranteed to give the same result
+    //
+    // a span/log passes through all of the processors on the same thread, so this still hits for
+    // the processors after the first one, while spans/logs that are exported concurrently don't
+    // keep replacing each other's entry (matchers are shared and live as long as the processors)
+    @SuppressWarnings("ThreadLocalUsage")
+    private final ThreadLocal<LastMatch> lastMatch = ThreadLocal.withInitial(LastMatch::new);
+
     // Function to compare span/log with user provided span/log names or span/log patterns
-    public abstract boolean isMatch(Attributes attributes, String name);
+    // (identity comparison is intentional, equal but distinct instances just miss the memo)
+    @SuppressWarnings({"ReferenceEquality", "StringEquality"})
+    public boolean isMatch(Attributes attributes, String name) {
+      LastMatch lastMatch = this.lastMatch.get();
+      if (lastMatch.attributes == attributes && lastMatch.name == name) {
+        return lastMatch.result;
+      }
+      boolean result = matches(attributes, name);
+      lastMatch.attributes = attributes;
+      lastMatch.name = name;
+      lastMatch.result = result;
+      return result;
+    }
+
+    protected abstract boolean matches(Attributes attributes, String name);
+  }
+
+  // only ever accessed by the thread that owns it
+  private static class LastMatch {
+    @Nullable private Attributes attributes;
+    @Nullable private String name;
+    private boolean result;
   }
 
   public static class StrictIncludeExclude extends IncludeExclude {
-    private final List<ProcessorAttribute> processorAttributes;
-    private final List<String> names;
+    private final AttributeKey<?>[] attributeKeys;
+    // null entries only require the attribute to be present
+    private final Object[] attributeValues;
+    private final Set<String> names;
 
-    private StrictIncludeExclude(List<ProcessorAttribute> processorAttributes, List<String> names) {
-      this.processorAttributes = processorAttributes;
+    private StrictIncludeExclude(List<ProcessorAttribute> processorAttributes, Set<String> names) {
+      attributeKeys = new AttributeKey<?>[processorAttributes.size()];
+      attributeValues = new Object[processorAttributes.size()];
+      for (int i = 0; i < processorAttributes.size(); i++) {
+        ProcessorAttribute attribute = processorAttributes.get(i);
+        attributeKeys[i] = attribute.getAttributeKey();
+        attributeValues[i] = attribute.value != null ? attribute.getAttributeValue() : null;
+      }
       this.names = names;
     }
 
@@ -65,15 +133,13 @@ public abstract class AgentProcessor {
       }
 
       List<String> names = isLog ? includeExclude.logBodies : includeExclude.spanNames;
-      if (names == null) {
-        names = new ArrayList<>();
-      }
-      return new StrictIncludeExclude(attributes, names);
+      return new StrictIncludeExclude(
+          attributes, names == null ? new HashSet<>() : new HashSet<>(names));
     }
 
     // compare span/log with user provided span/log names
     @Override
-    public boolean isMatch(Attributes attributes, String name) {
+    protected boolean matches(Attributes attributes, String name) {
       if (!names.isEmpty() && !names.contains(name)) {
         return false;
       }
@@ -83,14 +149,15 @@ public abstract class AgentProcessor {
 
     // Function to compare span with user provided attributes list
     private boolean checkAttributes(Attributes attributes) {
-      for (ProcessorAttribute attribute : processorAttributes) {
+      for (int i = 0; i < attributeKeys.length; i++) {
         // All of these attributes must match exactly for a match to occur.
-        Object valueObject = attributes.get(attribute.getAttributeKey());
+        Object valueObject = attributes.get(attributeKeys[i]);
         if (valueObject == null) {
           // user specified key not found
           return false;
         }
-        if (attribute.value != null && !valueObject.equals(attribute.getAttributeValue())) {
+        Object attributeValue = attributeValues[i];
+        if (attributeValue != null && !valueObject.equals(attributeValue)) {
           // user specified value doesn't match
           return false;
         }
@@ -103,19 +170,22 @@ public abstract class AgentProcessor {
   public static class RegexpIncludeExclude extends IncludeExclude {
 
     // pattern to match against span names or log bodies
-    private final List<Pattern> patterns;
-    private final Map<AttributeKey<?>, Pattern> attributeValuePatterns;
+    private final LiteralPrefilteredPattern[] patterns;
+    private final AttributeKey<?>[] attributeKeys;
+    private final Pattern[] attributeValuePatterns;
 
     private RegexpIncludeExclude(
-        List<Pattern> patterns, Map<AttributeKey<?>, Pattern> attributeValuePatterns) {
-      this.patterns = patterns;
-      this.attributeValuePatterns = attributeValuePatterns;
+        List<LiteralPrefilteredPattern> patterns,
+        Map<AttributeKey<?>, Pattern> attributeValuePatterns) {
+      this.patterns = patterns.toArray(new LiteralPrefilteredPattern[0]);
+      this.attributeKeys = attributeValuePatterns.keySet().toArray(new AttributeKey<?>[0]);
+      this.attributeValuePatterns = attributeValuePatterns.values().toArray(new Pattern[0]);
     }
 
     public static RegexpIncludeExclude create(
         ProcessorIncludeExclude includeExclude, boolean isLog) {
       List<ProcessorAttribute> attributes = includeExclude.attributes;
-      Map<AttributeKey<?>, Pattern> attributeKeyValuePatterns = new HashMap<>();
+      Map<AttributeKey<?>, Pattern> attributeKeyValuePatterns = new LinkedHashMap<>();
       if (attributes != null) {
         for (ProcessorAttribute attribute : attributes) {
           if (attribute.value != null) {
@@ -125,18 +195,11 @@ public abstract class AgentProcessor {
         }
       }
 
-      List<Pattern> patterns = new ArrayList<>();
-      if (isLog) {
-        if (includeExclude.logBodies != null) {
-          for (String regex : includeExclude.logBodies) {
-            patterns.add(Pattern.compile(regex));
-          }
-        }
-      } else {
-        if (includeExclude.spanNames != null) {
-          for (String regex : includeExclude.spanNames) {
-            patterns.add(Pattern.compile(regex));
-          }
+      List<LiteralPrefilteredPattern> patterns = new ArrayList<>();
+      List<String> regexes = isLog ? includeExclude.logBodies : includeExclude.spanNames;
+      if (regexes != null) {
+        for (String regex : regexes) {
+          patterns.add(new LiteralPrefilteredPattern(regex));
         }
       }
 
@@ -148,9 +211,9 @@ public abstract class AgentProcessor {
       return valuePattern.matcher(attributeValue).find();
     }
 
-    private static boolean isPatternFound(String name, List<Pattern> patterns) {
-      for (Pattern pattern : patterns) {
-        if (pattern.matcher(name).find()) {
+    private boolean isPatternFound(String name) {
+      for (LiteralPrefilteredPattern pattern : patterns) {
+        if (pattern.find(name)) {
           // pattern matches the span!!!
           return true;
         }
@@ -161,8 +224,8 @@ public abstract class AgentProcessor {
 
     // Function to compare span/log with user provided span patterns/log patterns
     @Override
-    public boolean isMatch(Attributes attributes, String name) {
-      if (!patterns.isEmpty() && !isPatternFound(name, patterns)) {
+    protected boolean matches(Attributes attributes, String name) {
+      if (patterns.length != 0 && !isPatternFound(name)) {
         return false;
       }
 
@@ -171,13 +234,12 @@ public abstract class AgentProcessor {
 
     // Function to compare span with user provided attributes list
     private boolean checkAttributes(Attributes attributes) {
-      for (Entry<AttributeKey<?>, Pattern> attributeEntry : attributeValuePatterns.entrySet()) {
+      for (int i = 0; i < attributeKeys.length; i++) {
         // All of these attributes must match exactly for a match to occur.
 
-        Object existingAttributeValue = attributes.get(attributeEntry.getKey());
-        if (attributeEntry.getValue() != null
-            && !isAttributeValueMatch(
-                String.valueOf(existingAttributeValue), attributeEntry.getValue())) {
+        Object existingAttributeValue = attributes.get(attributeKeys[i]);
+        if (!isAttributeValueMatch(
+            String.valueOf(existingAttributeValue), attributeValuePatterns[i])) {
           // user specified value doesn't match
           return false;
         }
@@ -186,4 +248,72 @@ public abstract class AgentProcessor {
       return true;
     }
   }
+
+  // a regex along with the literal text that any match of it has to contain, which is checked
+  // first so that most non-matching names never reach the regex engine (and regexes which are
+  // nothing but literal text never do)
+  static class LiteralPrefilteredPattern {
+
+    private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    private final Pattern pattern;
+    private final String literal;
+    // the literal has to be at the start of the name (the regex starts with "^")
+    private final boolean anchored;
+    // the regex is nothing but the literal
+    private final boolean exact;
+
+    LiteralPrefilteredPattern(String regex) {
+      pattern = Pattern.compile(regex);
+
+      int i = 0;
+      anchored = regex.startsWith("^");
+      if (anchored) {
+        i++;
+      }
+      StringBuilder literal = new StringBuilder();
+      int lastLiteralStart = -1;
+      while (i < regex.length()) {
+        char c = regex.charAt(i);
+        if (c == '\\'
+            && i + 1 < regex.length()
+            && !Character.isLetterOrDigit(regex.charAt(i + 1))) {
+          // escaped punctuation is literal
+          lastLiteralStart = literal.length();
+          literal.append(regex.charAt(i + 1));
+          i += 2;
+        } else if (METACHARACTERS.indexOf(c) == -1) {
+          lastLiteralStart = literal.length();
+          literal.append(c);
+          i++;
+        } else {
+          break;
+        }
+      }
+      boolean exact = i == regex.length();
+      if (!exact && lastLiteralStart != -1 && isQuantifier(regex.charAt(i))) {
+        // the quantifier applies to the last literal character, which may then not be present
+        literal.setLength(lastLiteralStart);
+      }
+      if (regex.indexOf('|') != -1) {
+        // an alternation can make the literal optional
+        literal.setLength(0);
+        exact = false;
+      }
+      this.literal = literal.toString();
+      this.exact = exact;
+    }
+
+    private static boolean isQuantifier(char c) {
+      return c == '?' || c == '*' || c == '+' || c == '{';
+    }
+
+    boolean find(String name) {
+      boolean literalFound = anchored ? name.startsWith(literal) : name.contains(literal);
+      if (exact || !literalFound) {
+        return literalFound;
+      }
+      return pattern.matcher(name).find();
+    }
+  }
 }
@@ -0,0 +1,143 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.processors;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+// mutable view of span/log attributes that all the actions of an attribute processor are applied
+// to, so that the attributes are copied (at most) once on the way in and once on the way out,
+// instead of once per action
+//
+// follows the same rules as Attributes: lookups are by key (name and type), while keys with the
+// same name but a different type replace each other
+final class AttributeBuffer {
+
+  private final Attributes original;
+
+  // null until first needed, reads go to the original attributes until then
+  @Nullable private Map<String, Entry> entries;
+  // the result of the last toAttributes() call, null when the entries have been modified since
+  @Nullable private Attributes attributes;
+
+  AttributeBuffer(Attributes original) {
+    this.original = original;
+    this.attributes = original;
+  }
+
+  @Nullable
+  <T> T get(AttributeKey<T> key) {
+    Map<String, Entry> entries = this.entries;
+    if (entries == null) {
+      return original.get(key);
+    }
+    Entry entry = entries.get(key.getKey());
+    if (entry == null || !entry.key.equals(key)) {
+      return null;
+    }
+    @SuppressWarnings("unchecked")
+    T value = (T) entry.value;
+    return value;
+  }
+
+  // adds the attribute only if there is no attribute with the same name (of any type)
+  void putIfAbsent(AttributeKey<String> key, String value) {
+    if (containsName(key.getKey())) {
+      return;
+    }
+    put(key, value);
+  }
+
+  void put(AttributeKey<String> key, @Nullable String value) {
+    if (value == null) {
+      // same as AttributesBuilder
+      return;
+    }
+    mutableEntries().put(key.getKey(), new Entry(key, value));
+  }
+
+  void remove(AttributeKey<?> key) {
+    if (get(key) == null) {
+      return;
+    }
+    mutableEntries().remove(key.getKey());
+  }
+
+  Attributes toAttributes() {
+    Attributes attributes = this.attributes;
+    if (attributes != null) {
+      return attributes;
+    }
+    AttributesBuilder builder = Attributes.builder();
+    Map<String, Entry> entries = this.entries;
+    if (entries != null) {
+      for (Entry entry : entries.values()) {
+        putIntoBuilder(builder, entry.key, entry.value);
+      }
+    }
+    attributes = builder.build();
+    this.attributes = attributes;
+    return attributes;
+  }
+
+  private boolean containsName(String name) {
+    return entries().containsKey(name);
+  }
+
+  private Map<String, Entry> mutableEntries() {
+    Map<String, Entry> entries = entries();
+    attributes = null;
+    return entries;
+  }
+
+  private Map<String, Entry> entries() {
+    Map<String, Entry> entries = this.entries;
+    if (entries == null) {
+      Map<String, Entry> copy = new HashMap<>(original.size() * 2);
+      original.forEach((key, value) -> copy.put(key.getKey(), new Entry(key, value)));
+      entries = copy;
+      this.entries = entries;
+    }
+    return entries;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void putIntoBuilder(AttributesBuilder builder, AttributeKey<?> key, Object value) {
+    switch (key.getType()) {
+      case STRING:
+        builder.put((AttributeKey<String>) key, (String) value);
+        break;
+      case LONG:
+        builder.put((AttributeKey<Long>) key, (Long) value);
+        break;
+      case BOOLEAN:
+        builder.put((AttributeKey<Boolean>) key, (Boolean) value);
+        break;
+      case DOUBLE:
+        builder.put((AttributeKey<Double>) key, (Double) value);
+        break;
+      case STRING_ARRAY:
+      case LONG_ARRAY:
+      case BOOLEAN_ARRAY:
+      case DOUBLE_ARRAY:
+        builder.put((AttributeKey<List<?>>) key, (List<?>) value);
+        break;
+    }
+  }
+
+  private static final class Entry {
+    private final AttributeKey<?> key;
+    private final Object value;
+
+    private Entry(AttributeKey<?> key, Object value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+}
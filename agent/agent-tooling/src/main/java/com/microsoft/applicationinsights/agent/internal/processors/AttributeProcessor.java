@@ -8,7 +8,6 @@ import com.microsoft.applicationinsights.agent.internal.configuration.Configurat
 import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorConfig;
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
-import io.opentelemetry.api.common.AttributesBuilder;
 import io.opentelemetry.sdk.logs.data.LogRecordData;
 import io.opentelemetry.sdk.trace.data.SpanData;
 import java.util.List;
@@ -39,209 +38,211 @@ public class AttributeProcessor extends AgentProcessor {
     return new AttributeProcessor(config.actions, normalizedInclude, normalizedExclude);
   }
 
-  // Process actions on SpanData
-  public SpanData processActions(SpanData span) {
-    SpanData result = span;
-    for (ProcessorAction actionObj : actions) {
-      result = new MySpanData(result, processAction(result.getAttributes(), actionObj));
+  // applies this processor to the span, unless the span is filtered out by include/exclude
+  public SpanData process(SpanData span) {
+    IncludeExclude include = getInclude();
+    if (include != null && !include.isMatch(span.getAttributes(), span.getName())) {
+      // If not included we can skip further processing
+      return span;
+    }
+    IncludeExclude exclude = getExclude();
+    if (exclude != null && exclude.isMatch(span.getAttributes(), span.getName())) {
+      // If excluded we can skip further processing
+      return span;
+    }
+    return processActions(span);
+  }
+
+  // applies this processor to the log, unless the log is filtered out by include/exclude
+  public LogRecordData process(LogRecordData log) {
+    IncludeExclude include = getInclude();
+    IncludeExclude exclude = getExclude();
+    if (include != null || exclude != null) {
+      String body = log.getBody().asString();
+      if (include != null && !include.isMatch(log.getAttributes(), body)) {
+        // If not included we can skip further processing
+        return log;
+      }
+      if (exclude != null && exclude.isMatch(log.getAttributes(), body)) {
+        // If excluded we can skip further processing
+        return log;
+      }
     }
+    return processActions(log);
+  }
 
-    return result;
+  // Process actions on SpanData
+  public SpanData processActions(SpanData span) {
+    Attributes attributes = processActions(span.getAttributes());
+    return attributes == span.getAttributes() ? span : new MySpanData(span, attributes);
   }
 
   // Process actions on LogRecordData
   public LogRecordData processActions(LogRecordData log) {
-    LogRecordData result = log;
+    Attributes attributes = processActions(log.getAttributes());
+    return attributes == log.getAttributes() ? log : new MyLogData(log, attributes);
+  }
+
+  // all actions are applied to a single buffer, so the attributes are only copied once no matter
+  // how many actions there are (and not at all if none of the actions change anything)
+  private Attributes processActions(Attributes attributes) {
+    AttributeBuffer buffer = new AttributeBuffer(attributes);
     for (ProcessorAction actionObj : actions) {
-      result = new MyLogData(result, processAction(result.getAttributes(), actionObj));
+      processAction(buffer, actionObj);
     }
-
-    return result;
+    return buffer.toAttributes();
   }
 
-  private static Attributes processAction(Attributes attributes, ProcessorAction actionObj) {
+  private static void processAction(AttributeBuffer buffer, ProcessorAction actionObj) {
     switch (actionObj.action) {
       case INSERT:
-        return processInsertAction(attributes, actionObj);
+        processInsertAction(buffer, actionObj);
+        return;
       case UPDATE:
-        return processUpdateAction(attributes, actionObj);
+        processUpdateAction(buffer, actionObj);
+        return;
       case DELETE:
-        return processDeleteAction(attributes, actionObj);
+        processDeleteAction(buffer, actionObj);
+        return;
       case HASH:
-        return processHashAction(attributes, actionObj);
+        processHashAction(buffer, actionObj);
+        return;
       case EXTRACT:
-        return processExtractAction(attributes, actionObj);
+        processExtractAction(buffer, actionObj);
+        return;
       case MASK:
-        return processMaskAction(attributes, actionObj);
+        processMaskAction(buffer, actionObj);
+        return;
     }
-    return attributes;
   }
 
-  private static Attributes processInsertAction(Attributes attributes, ProcessorAction actionObj) {
-    Attributes existingAttributes = attributes;
-
+  private static void processInsertAction(AttributeBuffer buffer, ProcessorAction actionObj) {
     // Update from existing attribute
     if (actionObj.value != null) {
       // update to new value
-      AttributesBuilder builder = Attributes.builder();
-      builder.put(actionObj.key, actionObj.value);
-      builder.putAll(existingAttributes);
-      return builder.build();
+      buffer.putIfAbsent(actionObj.key, actionObj.value);
+      return;
     }
 
-    String fromAttributeValue = existingAttributes.get(actionObj.fromAttribute);
+    String fromAttributeValue = buffer.get(actionObj.fromAttribute);
     if (fromAttributeValue != null) {
-      AttributesBuilder builder = Attributes.builder();
-      builder.put(actionObj.key, fromAttributeValue);
-      builder.putAll(existingAttributes);
-      return builder.build();
+      buffer.putIfAbsent(actionObj.key, fromAttributeValue);
     }
-
-    return attributes;
   }
 
-  private static Attributes processUpdateAction(Attributes attributes, ProcessorAction actionObj) {
-    Attributes existingAttributes = attributes;
-
+  private static void processUpdateAction(AttributeBuffer buffer, ProcessorAction actionObj) {
     // Currently we only support String
-    String existingValue = existingAttributes.get(actionObj.key);
+    String existingValue = buffer.get(actionObj.key);
 
     AttributeKey<String> attributeKey = actionObj.key;
     // support backward compatibility for http.url
     if (actionObj.key.getKey().equals("http.url")) {
-      HttpUrlKeyValuePair pair = processHttpUrl(attributes);
+      HttpUrlKeyValuePair pair = processHttpUrl(buffer.toAttributes());
       attributeKey = AttributeKey.stringKey(pair.key);
       existingValue = pair.value;
     }
 
     if (existingValue == null) {
-      return existingAttributes;
+      return;
     }
 
     // Update from existing attribute
     if (actionObj.value != null) {
       // update to new value
-      AttributesBuilder builder = existingAttributes.toBuilder();
-      builder.put(attributeKey, actionObj.value);
-      return builder.build();
+      buffer.put(attributeKey, actionObj.value);
+      return;
     }
 
-    String fromAttributeValue = existingAttributes.get(actionObj.fromAttribute);
+    String fromAttributeValue = buffer.get(actionObj.fromAttribute);
     if (fromAttributeValue != null) {
-      AttributesBuilder builder = existingAttributes.toBuilder();
-      builder.put(attributeKey, fromAttributeValue);
-      return builder.build();
+      buffer.put(attributeKey, fromAttributeValue);
     }
-
-    return attributes;
   }
 
-  private static Attributes processDeleteAction(Attributes attributes, ProcessorAction actionObj) {
-    Attributes existingAttributes = attributes;
-
+  private static void processDeleteAction(AttributeBuffer buffer, ProcessorAction actionObj) {
     // Currently we only support String
-    String existingValue = existingAttributes.get(actionObj.key);
+    String existingValue = buffer.get(actionObj.key);
 
     AttributeKey<String> attributeKey = actionObj.key;
     // support backward compatibility for http.url
     if (actionObj.key.getKey().equals("http.url")) {
-      HttpUrlKeyValuePair pair = processHttpUrl(attributes);
+      HttpUrlKeyValuePair pair = processHttpUrl(buffer.toAttributes());
       attributeKey = AttributeKey.stringKey(pair.key);
       existingValue = pair.value;
     }
 
     if (existingValue == null) {
-      return existingAttributes;
+      return;
     }
 
-    AttributesBuilder builder = Attributes.builder();
-    AttributeKey<String> finalAttributeKey = attributeKey;
-    existingAttributes.forEach(
-        (key, value) -> {
-          if (!key.equals(finalAttributeKey)) {
-            putIntoBuilder(builder, key, value);
-          }
-        });
-    return builder.build();
+    buffer.remove(attributeKey);
   }
 
-  private static Attributes processHashAction(Attributes attributes, ProcessorAction actionObj) {
-    Attributes existingAttributes = attributes;
-
+  private static void processHashAction(AttributeBuffer buffer, ProcessorAction actionObj) {
     // Currently we only support String
-    String existingValue = existingAttributes.get(actionObj.key);
+    String existingValue = buffer.get(actionObj.key);
 
     AttributeKey<String> attributeKey = actionObj.key;
     // support backward compatibility for http.url
     if (actionObj.key.getKey().equals("http.url")) {
-      HttpUrlKeyValuePair pair = processHttpUrl(attributes);
+      HttpUrlKeyValuePair pair = processHttpUrl(buffer.toAttributes());
       attributeKey = AttributeKey.stringKey(pair.key);
       existingValue = pair.value;
     }
 
     if (existingValue == null) {
-      return existingAttributes;
+      return;
     }
 
-    AttributesBuilder builderCopy = existingAttributes.toBuilder();
-    builderCopy.put(attributeKey, DigestUtils.sha256Hex(existingValue));
-    return builderCopy.build();
+    buffer.put(attributeKey, DigestUtils.sha256Hex(existingValue));
   }
 
-  private static Attributes processExtractAction(Attributes attributes, ProcessorAction actionObj) {
-    Attributes existingAttributes = attributes;
-
-    String existingValue = existingAttributes.get(actionObj.key);
+  private static void processExtractAction(AttributeBuffer buffer, ProcessorAction actionObj) {
+    String existingValue = buffer.get(actionObj.key);
 
     // support backward compatibility for http.url
     if (actionObj.key.getKey().equals("http.url")) {
-      HttpUrlKeyValuePair pair = processHttpUrl(attributes);
+      HttpUrlKeyValuePair pair = processHttpUrl(buffer.toAttributes());
       existingValue = pair.value;
     }
 
     // Currently we only support String
     if (existingValue == null) {
-      return existingAttributes;
+      return;
     }
     Matcher matcher = actionObj.extractAttribute.pattern.matcher(existingValue);
     if (!matcher.matches()) {
-      return existingAttributes;
+      return;
     }
 
-    AttributesBuilder builder = existingAttributes.toBuilder();
     for (String groupName : actionObj.extractAttribute.groupNames) {
-      builder.put(groupName, matcher.group(groupName));
+      buffer.put(AttributeKey.stringKey(groupName), matcher.group(groupName));
     }
-    return builder.build();
   }
 
-  private static Attributes processMaskAction(Attributes attributes, ProcessorAction actionObj) {
-    Attributes existingAttributes = attributes;
-
+  private static void processMaskAction(AttributeBuffer buffer, ProcessorAction actionObj) {
     // Currently we only support String
-    String existingValue = existingAttributes.get(actionObj.key);
+    String existingValue = buffer.get(actionObj.key);
 
     AttributeKey<String> attributeKey = actionObj.key;
     // support backward compatibility for http.url
     if (actionObj.key.getKey().equals("http.url")) {
-      HttpUrlKeyValuePair pair = processHttpUrl(attributes);
+      HttpUrlKeyValuePair pair = processHttpUrl(buffer.toAttributes());
       attributeKey = AttributeKey.stringKey(pair.key);
       existingValue = pair.value;
     }
 
     if (existingValue == null) {
-      return existingAttributes;
+      return;
     }
 
     Matcher matcher = actionObj.maskAttribute.pattern.matcher(existingValue);
     String newValue = matcher.replaceAll(actionObj.maskAttribute.replace);
     if (newValue.equals(existingValue)) {
-      return existingAttributes;
+      return;
     }
 
-    AttributesBuilder builder = existingAttributes.toBuilder();
-    builder.put(attributeKey, newValue);
-    return builder.build();
+    buffer.put(attributeKey, newValue);
   }
 
   // support backward compatibility for http.url
@@ -262,28 +263,4 @@ public class AttributeProcessor extends AgentProcessor {
       this.value = value;
     }
   }
-
-  @SuppressWarnings("unchecked")
-  private static void putIntoBuilder(AttributesBuilder builder, AttributeKey<?> key, Object value) {
-    switch (key.getType()) {
-      case STRING:
-        builder.put((AttributeKey<String>) key, (String) value);
-        break;
-      case LONG:
-        builder.put((AttributeKey<Long>) key, (Long) value);
-        break;
-      case BOOLEAN:
-        builder.put((AttributeKey<Boolean>) key, (Boolean) value);
-        break;
-      case DOUBLE:
-        builder.put((AttributeKey<Double>) key, (Double) value);
-        break;
-      case STRING_ARRAY:
-      case LONG_ARRAY:
-      case BOOLEAN_ARRAY:
-      case DOUBLE_ARRAY:
-        builder.put((AttributeKey<List<?>>) key, (List<?>) value);
-        break;
-    }
-  }
 }
@@ -0,0 +1,87 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.processors;
+
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorConfig;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.logs.data.LogRecordData;
+import io.opentelemetry.sdk.logs.export.LogRecordExporter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+// applies all of the configured log and attribute processors (in order) in a single pass over each
+// batch, instead of nesting one exporter (and one copy of the batch) per processor
+public class LogExporterWithProcessors implements LogRecordExporter {
+
+  private final LogRecordExporter delegate;
+  private final List<UnaryOperator<LogRecordData>> processors;
+
+  // caller should check config.isValid before creating
+  public LogExporterWithProcessors(List<ProcessorConfig> configs, LogRecordExporter delegate) {
+    processors = new ArrayList<>(configs.size());
+    for (ProcessorConfig config : configs) {
+      config.validate();
+      switch (config.type) {
+        case ATTRIBUTE:
+          processors.add(AttributeProcessor.create(config, true)::process);
+          break;
+        case LOG:
+          processors.add(LogProcessor.create(config)::process);
+          break;
+        default:
+          throw new IllegalStateException("Not an expected ProcessorType: " + config.type);
+      }
+    }
+    this.delegate = delegate;
+  }
+
+  @Override
+  public CompletableResultCode export(Collection<LogRecordData> logs) {
+    // the batch is only copied once a processor changes one of the logs
+    List<LogRecordData> copy = null;
+    int i = 0;
+    for (LogRecordData log : logs) {
+      LogRecordData processed = process(log);
+      if (copy == null && processed != log) {
+        copy = new ArrayList<>(logs.size());
+        copyFirst(logs, i, copy);
+      }
+      if (copy != null) {
+        copy.add(processed);
+      }
+      i++;
+    }
+    return delegate.export(copy == null ? logs : copy);
+  }
+
+  private LogRecordData process(LogRecordData log) {
+    for (UnaryOperator<LogRecordData> processor : processors) {
+      log = processor.apply(log);
+    }
+    return log;
+  }
+
+  private static void copyFirst(
+      Collection<LogRecordData> logs, int count, List<LogRecordData> copy) {
+    int i = 0;
+    for (LogRecordData log : logs) {
+      if (i++ == count) {
+        return;
+      }
+      copy.add(log);
+    }
+  }
+
+  @Override
+  public CompletableResultCode flush() {
+    return delegate.flush();
+  }
+
+  @Override
+  public CompletableResultCode shutdown() {
+    return delegate.shutdown();
+  }
+}
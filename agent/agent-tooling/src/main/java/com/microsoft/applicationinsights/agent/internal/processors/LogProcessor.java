@@ -69,6 +69,25 @@ public class LogProcessor extends AgentProcessor {
         separator);
   }
 
+  // applies this processor to the log, unless the log is filtered out by include/exclude
+  public LogRecordData process(LogRecordData log) {
+    IncludeExclude include = getInclude();
+    IncludeExclude exclude = getExclude();
+    if (include != null || exclude != null) {
+      String body = log.getBody().asString();
+      if (include != null && !include.isMatch(log.getAttributes(), body)) {
+        // If Not included we can skip further processing
+        return log;
+      }
+      if (exclude != null && exclude.isMatch(log.getAttributes(), body)) {
+        return log;
+      }
+    }
+
+    LogRecordData updatedLog = processFromAttributes(log);
+    return processToAttributes(updatedLog);
+  }
+
   // fromAttributes represents the attribute keys to pull the values from to generate the new log
   // body.
   public LogRecordData processFromAttributes(LogRecordData log) {
@@ -0,0 +1,86 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.processors;
+
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorConfig;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+// applies all of the configured span and attribute processors (in order) in a single pass over each
+// batch, instead of nesting one exporter (and one copy of the batch) per processor
+public class SpanExporterWithProcessors implements SpanExporter {
+
+  private final SpanExporter delegate;
+  private final List<UnaryOperator<SpanData>> processors;
+
+  // caller should check config.isValid before creating
+  public SpanExporterWithProcessors(List<ProcessorConfig> configs, SpanExporter delegate) {
+    processors = new ArrayList<>(configs.size());
+    for (ProcessorConfig config : configs) {
+      config.validate();
+      switch (config.type) {
+        case ATTRIBUTE:
+          processors.add(AttributeProcessor.create(config, false)::process);
+          break;
+        case SPAN:
+          processors.add(SpanProcessor.create(config)::process);
+          break;
+        default:
+          throw new IllegalStateException("Not an expected ProcessorType: " + config.type);
+      }
+    }
+    this.delegate = delegate;
+  }
+
+  @Override
+  public CompletableResultCode export(Collection<SpanData> spans) {
+    // the batch is only copied once a processor changes one of the spans
+    List<SpanData> copy = null;
+    int i = 0;
+    for (SpanData span : spans) {
+      SpanData processed = process(span);
+      if (copy == null && processed != span) {
+        copy = new ArrayList<>(spans.size());
+        copyFirst(spans, i, copy);
+      }
+      if (copy != null) {
+        copy.add(processed);
+      }
+      i++;
+    }
+    return delegate.export(copy == null ? spans : copy);
+  }
+
+  private SpanData process(SpanData span) {
+    for (UnaryOperator<SpanData> processor : processors) {
+      span = processor.apply(span);
+    }
+    return span;
+  }
+
+  private static void copyFirst(Collection<SpanData> spans, int count, List<SpanData> copy) {
+    int i = 0;
+    for (SpanData span : spans) {
+      if (i++ == count) {
+        return;
+      }
+      copy.add(span);
+    }
+  }
+
+  @Override
+  public CompletableResultCode flush() {
+    return delegate.flush();
+  }
+
+  @Override
+  public CompletableResultCode shutdown() {
+    return delegate.shutdown();
+  }
+}
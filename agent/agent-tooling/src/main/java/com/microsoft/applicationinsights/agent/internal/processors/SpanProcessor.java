@@ -69,6 +69,22 @@ public class SpanProcessor extends AgentProcessor {
         separator);
   }
 
+  // applies this processor to the span, unless the span is filtered out by include/exclude
+  public SpanData process(SpanData span) {
+    IncludeExclude include = getInclude();
+    if (include != null && !include.isMatch(span.getAttributes(), span.getName())) {
+      // If Not included we can skip further processing
+      return span;
+    }
+    IncludeExclude exclude = getExclude();
+    if (exclude != null && exclude.isMatch(span.getAttributes(), span.getName())) {
+      return span;
+    }
+
+    SpanData updatedSpan = processFromAttributes(span);
+    return processToAttributes(updatedSpan);
+  }
+
   // fromAttributes represents the attribute keys to pull the values from to generate the new span
   // name.
   public SpanData processFromAttributes(SpanData span) {
@@ -0,0 +1,212 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.profiler.upload;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * A trace file that is gzipped on the fly while it is being uploaded, rather than being copied to
+ * a compressed temp file first.
+ *
+ * <p>Compressed chunks are only produced as the uploader requests them, so the memory held is
+ * bounded by the blocks the blob client is currently staging.
+ */
+final class CompressedTrace implements Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(CompressedTrace.class);
+
+  static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+  private final InputStream traceStream;
+  @Nullable private final Path retainedCopy;
+  @Nullable private final OutputStream retainedCopyStream;
+  private final int chunkSize;
+
+  private CompressedTrace(
+      InputStream traceStream, @Nullable Path retainedCopy, int chunkSize) throws IOException {
+    this.traceStream = traceStream;
+    this.retainedCopy = retainedCopy;
+    this.retainedCopyStream = retainedCopy == null ? null : Files.newOutputStream(retainedCopy);
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Opens the trace file up front. The file is opened with NIO, which allows it to be deleted by
+   * the caller while it is still being read, on Windows as well.
+   *
+   * @param retainCopy also writes the compressed trace next to the trace file, for debugging
+   */
+  @SuppressFBWarnings(
+      value = "SECPTI", // Potential Path Traversal
+      justification =
+          "The constructed file path cannot be controlled by an end user of the instrumented application")
+  static CompressedTrace open(File traceFile, boolean retainCopy, int chunkSize)
+      throws IOException {
+    logger.debug("Trace file: {}", traceFile);
+    InputStream traceStream = Files.newInputStream(traceFile.toPath());
+    try {
+      Path retainedCopy =
+          retainCopy
+              ? Files.createTempFile(traceFile.getParentFile().toPath(), traceFile.getName(), ".gz")
+              : null;
+      return new CompressedTrace(traceStream, retainedCopy, chunkSize);
+    } catch (IOException | RuntimeException e) {
+      traceStream.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the gzip compressed trace as a stream of chunks. The trace is read as chunks are
+   * requested, on a scheduler that allows blocking, and can only be consumed once. The trace file
+   * is closed once the stream completes, fails or is cancelled.
+   */
+  Flux<ByteBuffer> chunks() {
+    return Flux.<ByteBuffer, ChunkSource>generate(
+            ChunkSource::new,
+            (source, sink) -> {
+              try {
+                ByteBuffer chunk = source.next();
+                if (chunk == null) {
+                  sink.complete();
+                } else {
+                  sink.next(chunk);
+                }
+              } catch (IOException e) {
+                sink.error(e);
+              }
+              return source;
+            },
+            ChunkSource::close)
+        .subscribeOn(Schedulers.boundedElastic());
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      traceStream.close();
+    } finally {
+      if (retainedCopyStream != null) {
+        retainedCopyStream.close();
+        logger.info("JFR file retained at: {}", retainedCopy);
+      }
+    }
+  }
+
+  /** Reads the trace through a gzip stream that writes into fixed size chunks. */
+  private final class ChunkSource {
+
+    private final ChunkingOutputStream chunks = new ChunkingOutputStream();
+    private final GZIPOutputStream gzip;
+    private final byte[] readBuffer = new byte[chunkSize];
+    private boolean finished;
+
+    private ChunkSource() throws IOException {
+      gzip = new GZIPOutputStream(chunks, chunkSize);
+    }
+
+    @Nullable
+    private ByteBuffer next() throws IOException {
+      while (!chunks.hasCompleteChunk() && !finished) {
+        int read = traceStream.read(readBuffer);
+        if (read == -1) {
+          gzip.finish();
+          finished = true;
+        } else {
+          gzip.write(readBuffer, 0, read);
+        }
+      }
+      return chunks.poll(finished);
+    }
+
+    private void close() {
+      // when cancelled, the rest of the compressed trace is not needed, and must not be written to
+      // the retained copy, which may already be closed
+      chunks.discardWrites();
+      try {
+        // also ends the deflater, which otherwise holds on to native memory until it is finalized
+        gzip.close();
+      } catch (IOException e) {
+        logger.debug("Error closing the gzip stream", e);
+      }
+      try {
+        traceStream.close();
+      } catch (IOException e) {
+        logger.debug("Error closing the trace file", e);
+      }
+    }
+  }
+
+  /** Collects written bytes into chunks, each backed by its own array as they are handed out. */
+  private final class ChunkingOutputStream extends OutputStream {
+
+    private final ArrayDeque<ByteBuffer> completeChunks = new ArrayDeque<>();
+    @Nullable private byte[] current;
+    private int position;
+    private boolean discardWrites;
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      if (discardWrites) {
+        return;
+      }
+      if (retainedCopyStream != null) {
+        retainedCopyStream.write(bytes, offset, length);
+      }
+      while (length > 0) {
+        if (current == null) {
+          current = new byte[chunkSize];
+          position = 0;
+        }
+        int count = Math.min(length, chunkSize - position);
+        System.arraycopy(bytes, offset, current, position, count);
+        position += count;
+        offset += count;
+        length -= count;
+        if (position == chunkSize) {
+          completeChunks.add(ByteBuffer.wrap(current));
+          current = null;
+        }
+      }
+    }
+
+    private void discardWrites() {
+      discardWrites = true;
+    }
+
+    private boolean hasCompleteChunk() {
+      return !completeChunks.isEmpty();
+    }
+
+    @Nullable
+    private ByteBuffer poll(boolean finished) {
+      ByteBuffer chunk = completeChunks.poll();
+      if (chunk == null && finished && current != null) {
+        chunk = ByteBuffer.wrap(current, 0, position);
+        current = null;
+      }
+      return chunk;
+    }
+  }
+}
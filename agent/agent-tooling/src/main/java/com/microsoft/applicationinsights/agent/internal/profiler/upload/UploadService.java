@@ -7,10 +7,11 @@ import com.azure.core.http.rest.Response;
 import com.azure.storage.blob.BlobAsyncClient;
 import com.azure.storage.blob.BlobContainerAsyncClient;
 import com.azure.storage.blob.BlobContainerClientBuilder;
+import com.azure.storage.blob.BlobUrlParts;
 import com.azure.storage.blob.models.BlobHttpHeaders;
 import com.azure.storage.blob.models.BlockBlobItem;
 import com.azure.storage.blob.models.ParallelTransferOptions;
-import com.azure.storage.blob.options.BlobUploadFromFileOptions;
+import com.azure.storage.blob.options.BlobParallelUploadOptions;
 import com.microsoft.applicationinsights.agent.internal.profiler.service.BlobAccessPass;
 import com.microsoft.applicationinsights.agent.internal.profiler.service.ServiceProfilerClient;
 import com.microsoft.applicationinsights.agent.internal.profiler.util.OsPlatformProvider;
@@ -18,25 +19,20 @@ import com.microsoft.applicationinsights.agent.internal.profiler.util.TimestampC
 import com.microsoft.applicationinsights.alerting.alert.AlertBreach;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.File;
-import java.io.IOException;
-import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.ByteBuffer;
 import java.util.Base64;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
-import java.util.stream.Stream;
-import java.util.zip.GZIPOutputStream;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /** Uploads profiles to the service profiler endpoint. */
@@ -53,10 +49,14 @@ public class UploadService {
 
   private static final Logger logger = LoggerFactory.getLogger(UploadService.class);
 
-  private static final long UPLOAD_BLOCK_LENGTH = 8 * 1024 * 1024;
+  // the compressed trace is staged in blocks of this size, with at most UPLOAD_MAX_CONCURRENCY
+  // blocks in flight, which bounds the memory used by an upload to roughly
+  // (UPLOAD_MAX_CONCURRENCY + 1) * UPLOAD_BLOCK_LENGTH
+  private static final long UPLOAD_BLOCK_LENGTH = 4 * 1024 * 1024;
+  private static final int UPLOAD_MAX_CONCURRENCY = 4;
 
-  // For debug purposes, can use settings to tell the profiler to retain the profile after
-  // it has been uploaded
+  // For debug purposes, can use settings to tell the profiler to retain a compressed copy of
+  // the profile after it has been uploaded
   private static final String RETAIN_JFR_FILE_PROPERTY_NAME =
       "applicationinsights.debug.retainJfrFile";
   private static final boolean retainJfrFile =
@@ -70,6 +70,9 @@ public class UploadService {
   private final String processId;
   private final String roleName;
 
+  // reused for as long as upload passes point at the same container endpoint and SAS
+  @Nullable private volatile CachedContainerClient cachedContainerClient;
+
   public UploadService(
       ServiceProfilerClient serviceProfilerClient,
       Consumer<BlobContainerClientBuilder> blobContainerClientCustomizer,
@@ -192,70 +195,84 @@ public class UploadService {
   /** Upload profile to service profiler. */
   private Mono<UploadFinishArgs> uploadTrace(UploadContext uploadContext) {
 
-    File zippedTraceFile = null;
-
+    CompressedTrace trace;
     try {
-      // Zip up profile
-      zippedTraceFile = createZippedTraceFile(uploadContext);
-
-      // Obtain permission to upload profile
-
-      File finalZippedTraceFile1 = zippedTraceFile;
-      return serviceProfilerClient
-          .getUploadAccess(uploadContext.getProfileId(), uploadContext.getExtension())
-          .flatMap(
-              uploadPass -> {
-                if (uploadPass == null) {
-                  close(finalZippedTraceFile1);
-                  return Mono.error(new UploadFailedException("Failed to obtain upload pass"));
-                }
-
-                // perform upload then finally close file
-                return performUpload(uploadContext, uploadPass, finalZippedTraceFile1)
-                    .doFinally((signal) -> close(finalZippedTraceFile1));
-              });
+      // the trace is compressed while it is being uploaded
+      trace =
+          CompressedTrace.open(
+              uploadContext.getTraceFile(), retainJfrFile, CompressedTrace.DEFAULT_CHUNK_SIZE);
     } catch (Exception e) {
       logger.error("Upload of the trace file failed", e);
-      if (zippedTraceFile != null) {
-        close(zippedTraceFile);
-      }
       return Mono.error(new UploadFailedException(e));
     }
+
+    // Obtain permission to upload profile
+    return serviceProfilerClient
+        .getUploadAccess(uploadContext.getProfileId(), uploadContext.getExtension())
+        .flatMap(
+            uploadPass -> {
+              if (uploadPass == null) {
+                return Mono.error(new UploadFailedException("Failed to obtain upload pass"));
+              }
+              return performUpload(uploadContext, uploadPass, trace);
+            })
+        // finally close the trace, whether or not the upload happened
+        .doFinally(signal -> close(trace));
   }
 
   protected Mono<UploadFinishArgs> performUpload(
-      UploadContext uploadContext, BlobAccessPass uploadPass, File file) {
-    return uploadToSasLink(uploadPass, uploadContext, file)
+      UploadContext uploadContext, BlobAccessPass uploadPass, CompressedTrace trace) {
+    return uploadToSasLink(uploadPass, uploadContext, trace)
         .flatMap(response -> reportUploadComplete(uploadContext, response));
   }
 
-  /** Upload the given file to a blob storage defined by a sas link. */
+  /** Stream the compressed trace to a blob storage defined by a sas link. */
   private Mono<Response<BlockBlobItem>> uploadToSasLink(
-      BlobAccessPass uploadPass, UploadContext uploadContext, File file) {
+      BlobAccessPass uploadPass, UploadContext uploadContext, CompressedTrace trace) {
     try {
       URL sasUrl = new URL(uploadPass.getUriWithSasToken());
 
-      BlobUploadFromFileOptions options = createBlockBlobOptions(file, uploadContext);
-      // TODO (trask) should we be injecting our HttpClient into the blob container client?
-      BlobContainerClientBuilder builder =
-          new BlobContainerClientBuilder().endpoint(sasUrl.toString());
-      blobContainerClientCustomizer.accept(builder);
-      BlobContainerAsyncClient blobContainerClient = builder.buildAsyncClient();
-
-      BlobAsyncClient blobClient = blobContainerClient.getBlobAsyncClient(uploadPass.getBlobName());
-      return blobClient
-          .uploadFromFileWithResponse(options)
-          .doFinally((done) -> logger.info("upload done"));
+      BlobParallelUploadOptions options = createBlockBlobOptions(trace.chunks(), uploadContext);
+      BlobAsyncClient blobClient =
+          getContainerClient(sasUrl).getBlobAsyncClient(uploadPass.getBlobName());
+      return blobClient.uploadWithResponse(options).doFinally((done) -> logger.info("upload done"));
     } catch (MalformedURLException e) {
       throw new IllegalArgumentException("Malformed url", e);
     }
   }
 
-  private static void close(File zippedTraceFile) {
+  private BlobContainerAsyncClient getContainerClient(URL sasUrl) {
+    // the container client only depends on the container and the sas, not on the blob name
+    BlobUrlParts blobUrlParts = BlobUrlParts.parse(sasUrl);
+    String containerEndpoint =
+        blobUrlParts.getScheme()
+            + "://"
+            + blobUrlParts.getHost()
+            + "/"
+            + blobUrlParts.getAccountName()
+            + "/"
+            + blobUrlParts.getBlobContainerName()
+            + "?"
+            + sasUrl.getQuery();
+
+    CachedContainerClient cached = cachedContainerClient;
+    if (cached != null && cached.endpoint.equals(containerEndpoint)) {
+      return cached.client;
+    }
+    // TODO (trask) should we be injecting our HttpClient into the blob container client?
+    BlobContainerClientBuilder builder =
+        new BlobContainerClientBuilder().endpoint(sasUrl.toString());
+    blobContainerClientCustomizer.accept(builder);
+    BlobContainerAsyncClient client = builder.buildAsyncClient();
+    cachedContainerClient = new CachedContainerClient(containerEndpoint, client);
+    return client;
+  }
+
+  private static void close(CompressedTrace trace) {
     try {
-      deletePathRecursive(zippedTraceFile);
+      trace.close();
     } catch (Exception e) {
-      logger.warn("An error occurred when closing the zipped trace file", e);
+      logger.warn("An error occurred when closing the trace file", e);
     }
   }
 
@@ -290,7 +307,8 @@ public class UploadService {
     }
   }
 
-  BlobUploadFromFileOptions createBlockBlobOptions(File file, UploadContext uploadContext) {
+  BlobParallelUploadOptions createBlockBlobOptions(
+      Flux<ByteBuffer> data, UploadContext uploadContext) {
     HashMap<String, String> metadata = new HashMap<>();
 
     metadata.put(
@@ -306,61 +324,24 @@ public class UploadService {
       metadata.put(ROLE_NAME_META_NAME, roleName);
     }
 
-    String fullFilePath = file.getAbsoluteFile().toString();
-
-    return new BlobUploadFromFileOptions(fullFilePath)
+    return new BlobParallelUploadOptions(data)
         .setHeaders(new BlobHttpHeaders().setContentEncoding("gzip"))
         .setMetadata(metadata)
         .setParallelTransferOptions(
-            new ParallelTransferOptions().setBlockSizeLong(UPLOAD_BLOCK_LENGTH));
+            new ParallelTransferOptions()
+                .setBlockSizeLong(UPLOAD_BLOCK_LENGTH)
+                .setMaxSingleUploadSizeLong(UPLOAD_BLOCK_LENGTH)
+                .setMaxConcurrency(UPLOAD_MAX_CONCURRENCY));
   }
 
-  /** Zip up profile. */
-  @SuppressFBWarnings(
-      value = "SECPTI", // Potential Path Traversal
-      justification =
-          "The constructed file path cannot be controlled by an end user of the instrumented application")
-  private static File createZippedTraceFile(UploadContext uploadContext) throws IOException {
-    File traceFile = uploadContext.getTraceFile();
-    logger.debug("Trace file: {}", traceFile.toString());
-
-    File targetFile =
-        Files.createTempFile(traceFile.getParentFile().toPath(), traceFile.getName(), ".gz")
-            .toFile();
-    if (!retainJfrFile) {
-      targetFile.deleteOnExit();
-    }
-
-    try (OutputStream target = new GZIPOutputStream(Files.newOutputStream(targetFile.toPath()))) {
-      Files.copy(traceFile.toPath(), target);
-    }
-
-    return targetFile;
-  }
+  private static class CachedContainerClient {
 
-  // Deleting file recursively.
-  private static void deletePathRecursive(@Nullable File fileToDelete) throws IOException {
-    if (fileToDelete != null && fileToDelete.exists()) {
-      if (retainJfrFile) {
-        logger.info("JFR file retained at: {}", fileToDelete.getAbsolutePath());
-      } else {
-        deletePathRecursive(fileToDelete.toPath());
-      }
-    }
-  }
+    private final String endpoint;
+    private final BlobContainerAsyncClient client;
 
-  // Deleting file recursively.
-  private static void deletePathRecursive(Path path) throws IOException {
-    try (Stream<Path> stream = Files.walk(path)) {
-      stream
-          .sorted(Comparator.reverseOrder())
-          .map(Path::toFile)
-          .forEach(
-              file -> {
-                if (!file.delete()) {
-                  logger.error("Failed to delete " + file.getAbsolutePath());
-                }
-              });
+    private CachedContainerClient(String endpoint, BlobContainerAsyncClient client) {
+      this.endpoint = endpoint;
+      this.client = client;
     }
   }
 }
@@ -11,31 +11,41 @@ package com.microsoft.applicationinsights.agent.internal.sampling;
 
 import static java.util.Objects.requireNonNull;
 
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.LongSupplier;
 
 // uses adaptive algorithm from OpenTelemetry Java Contrib's ConsistentRateLimitingSampler
 // (https://github.com/open-telemetry/opentelemetry-java-contrib/blob/main/consistent-sampling/src/main/java/io/opentelemetry/contrib/samplers/ConsistentRateLimitingSampler.java)
+//
+// instead of updating the (exponentially decayed) rate estimate on every call, calls are counted
+// in a striped counter, and the count is folded into the rate estimate at most once per fold
+// interval by whichever thread wins the fold, so that get() does not allocate or spin under
+// contention, and only computes Math.exp once per fold
 class RateLimitedSamplingPercentage implements SamplingPercentage {
 
-  private static final class State {
-    private final double effectiveWindowCount;
-    private final double effectiveWindowNanos;
-    private final long lastNanoTime;
-
-    private State(double effectiveWindowCount, double effectiveWindowNanos, long lastNanoTime) {
-      this.effectiveWindowCount = effectiveWindowCount;
-      this.effectiveWindowNanos = effectiveWindowNanos;
-      this.lastNanoTime = lastNanoTime;
-    }
-  }
+  // the fold interval is this fraction of the adaptation time, which keeps the error from folding
+  // a batch of calls at once (instead of decaying each of them individually) negligible
+  private static final int FOLDS_PER_ADAPTATION_TIME = 1000;
 
   private final LongSupplier nanoTimeSupplier;
   private final double inverseAdaptationTimeNanos;
   private final double targetSpansPerNanosecondLimit;
-  private final AtomicReference<State> state;
+  private final long foldIntervalNanos;
   private final boolean roundToNearest;
 
+  private final LongAdder count = new LongAdder();
+  private final AtomicBoolean folding = new AtomicBoolean();
+
+  private volatile long lastNanoTime;
+  // nothing is sampled out until the first fold, which has a rate estimate to go on
+  private volatile double samplingPercentage = 100;
+
+  // these are only accessed by the thread holding the folding flag
+  private long foldedCount;
+  private double effectiveWindowCount;
+  private double effectiveWindowNanos;
+
   RateLimitedSamplingPercentage(double targetSpansPerSecondLimit, double adaptationTimeSeconds) {
     this(targetSpansPerSecondLimit, adaptationTimeSeconds, System::nanoTime, true);
   }
@@ -57,40 +67,55 @@ class RateLimitedSamplingPercentage implements SamplingPercentage {
 
     this.inverseAdaptationTimeNanos = 1e-9 / adaptationTimeSeconds;
     this.targetSpansPerNanosecondLimit = 1e-9 * targetSpansPerSecondLimit;
+    this.foldIntervalNanos = (long) (adaptationTimeSeconds * 1e9 / FOLDS_PER_ADAPTATION_TIME);
 
-    this.state = new AtomicReference<>(new State(0, 0, nanoTimeSupplier.getAsLong()));
+    this.lastNanoTime = nanoTimeSupplier.getAsLong();
 
     this.roundToNearest = roundToNearest;
   }
 
-  private State updateState(State oldState, long currentNanoTime) {
-    if (currentNanoTime <= oldState.lastNanoTime) {
-      return new State(
-          oldState.effectiveWindowCount + 1, oldState.effectiveWindowNanos, oldState.lastNanoTime);
-    }
-    long nanoTimeDelta = currentNanoTime - oldState.lastNanoTime;
-    double decayFactor = Math.exp(-nanoTimeDelta * inverseAdaptationTimeNanos);
-    double currentEffectiveWindowCount = oldState.effectiveWindowCount * decayFactor + 1;
-    double currentEffectiveWindowNanos =
-        oldState.effectiveWindowNanos * decayFactor + nanoTimeDelta;
-    return new State(currentEffectiveWindowCount, currentEffectiveWindowNanos, currentNanoTime);
-  }
-
   @Override
   public double get() {
     long currentNanoTime = nanoTimeSupplier.getAsLong();
-    State currentState = state.updateAndGet(s -> updateState(s, currentNanoTime));
+    count.increment();
+
+    long nanoTimeDelta = currentNanoTime - lastNanoTime;
+    if (nanoTimeDelta > 0
+        && nanoTimeDelta >= foldIntervalNanos
+        && folding.compareAndSet(false, true)) {
+      try {
+        fold(currentNanoTime);
+      } finally {
+        folding.set(false);
+      }
+    }
+    return samplingPercentage;
+  }
+
+  private void fold(long currentNanoTime) {
+    // re-read under the folding flag, since another thread may have just folded
+    long nanoTimeDelta = currentNanoTime - lastNanoTime;
+    if (nanoTimeDelta <= 0) {
+      return;
+    }
+    long currentCount = count.sum();
+    long countDelta = currentCount - foldedCount;
+    foldedCount = currentCount;
+
+    double decayFactor = Math.exp(-nanoTimeDelta * inverseAdaptationTimeNanos);
+    effectiveWindowCount = effectiveWindowCount * decayFactor + countDelta;
+    effectiveWindowNanos = effectiveWindowNanos * decayFactor + nanoTimeDelta;
 
     double samplingProbability =
-        (currentState.effectiveWindowNanos * targetSpansPerNanosecondLimit)
-            / currentState.effectiveWindowCount;
+        (effectiveWindowNanos * targetSpansPerNanosecondLimit) / effectiveWindowCount;
 
     double samplingPercentage = 100 * Math.min(samplingProbability, 1);
 
     if (roundToNearest) {
       samplingPercentage = roundDownToNearest(samplingPercentage);
     }
-    return samplingPercentage;
+    this.samplingPercentage = samplingPercentage;
+    lastNanoTime = currentNanoTime;
   }
 
   private static double roundDownToNearest(double samplingPercentage) {
@@ -13,6 +13,8 @@ import io.opentelemetry.semconv.UrlAttributes;
 import io.opentelemetry.semconv.incubating.HttpIncubatingAttributes;
 import io.opentelemetry.semconv.incubating.ThreadIncubatingAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
@@ -20,42 +22,64 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 // TODO find a better name for this class (and MatcherGroup too)
+//
+// the overrides are compiled so that each value that the predicates look at (the "slots") is
+// resolved lazily, at most once per call, and regex predicates cache their result per value, since
+// the same values (e.g. health check urls) tend to come up over and over
 public class SamplingOverrides {
 
   private static final Logger logger = LoggerFactory.getLogger(SamplingOverrides.class);
+
   private final List<MatcherGroup> matcherGroups;
+  // reused by the calls on the same thread, since this is called for every span (there are only a
+  // few instances of this class, which live as long as the sampler does)
+  @SuppressWarnings("ThreadLocalUsage")
+  private final ThreadLocal<SlotValues> slotValues;
 
   public SamplingOverrides(List<SamplingOverride> overrides) {
+    List<Slot> slots = new ArrayList<>();
     matcherGroups = new ArrayList<>();
     for (SamplingOverride override : overrides) {
-      matcherGroups.add(new MatcherGroup(override));
+      matcherGroups.add(new MatcherGroup(override, slots));
     }
+    Slot[] slotArray = slots.toArray(new Slot[0]);
+    slotValues = ThreadLocal.withInitial(() -> new SlotValues(slotArray));
   }
 
   @Nullable
   public AiFixedPercentageSampler getOverride(Attributes attributes) {
-    LazyHttpUrl lazyHttpUrl = new LazyHttpUrl(attributes);
-    LazyHttpTarget lazyHttpTarget = new LazyHttpTarget(attributes);
-    for (MatcherGroup matcherGroups : matcherGroups) {
-      if (matcherGroups.matches(attributes, lazyHttpUrl, lazyHttpTarget)) {
-        return matcherGroups.getSampler();
+    if (matcherGroups.isEmpty()) {
+      return null;
+    }
+    SlotValues values = slotValues.get();
+    values.init(attributes);
+    try {
+      for (MatcherGroup matcherGroup : matcherGroups) {
+        if (matcherGroup.matches(values)) {
+          return matcherGroup.getSampler();
+        }
       }
+      return null;
+    } finally {
+      values.clear();
     }
-    return null;
   }
 
   private static class MatcherGroup {
-    private final List<TempPredicate> predicates;
+    private final TempPredicate[] predicates;
     private final AiFixedPercentageSampler sampler;
 
-    private MatcherGroup(SamplingOverride override) {
-      predicates = new ArrayList<>();
+    private MatcherGroup(SamplingOverride override, List<Slot> slots) {
+      List<TempPredicate> predicates = new ArrayList<>();
       for (SamplingOverrideAttribute attribute : override.attributes) {
-        TempPredicate predicate = toPredicate(attribute);
+        TempPredicate predicate = toPredicate(attribute, slots);
         if (predicate != null) {
           predicates.add(predicate);
         }
       }
+      // all the predicates have to match, so the cheapest ones are tested first
+      predicates.sort(Comparator.comparingInt(TempPredicate::cost));
+      this.predicates = predicates.toArray(new TempPredicate[0]);
       sampler = AiFixedPercentageSampler.create(override.percentage);
     }
 
@@ -63,43 +87,39 @@ public class SamplingOverrides {
       return sampler;
     }
 
-    private boolean matches(
-        Attributes attributes,
-        @Nullable LazyHttpUrl lazyHttpUrl,
-        @Nullable LazyHttpTarget lazyHttpTarget) {
+    private boolean matches(SlotValues values) {
       for (TempPredicate predicate : predicates) {
-        if (!predicate.test(attributes, lazyHttpUrl, lazyHttpTarget)) {
+        if (!predicate.test(values)) {
           return false;
         }
       }
       return true;
     }
 
-    static String getValueIncludingThreadName(
-        Attributes attributes, AttributeKey<String> attributeKey) {
-      if (attributeKey.getKey().equals(ThreadIncubatingAttributes.THREAD_NAME.getKey())) {
-        return Thread.currentThread().getName();
-      } else {
-        return attributes.get(attributeKey);
-      }
-    }
-
     @Nullable
-    private static TempPredicate toPredicate(SamplingOverrideAttribute attribute) {
+    private static TempPredicate toPredicate(
+        SamplingOverrideAttribute attribute, List<Slot> slots) {
       if (attribute.matchType == MatchType.STRICT) {
         if (isHttpHeaderAttribute(attribute)) {
-          return new StrictArrayContainsMatcher(attribute.key, attribute.value);
+          return new StrictArrayContainsMatcher(
+              getSlot(slots, attribute.key, SlotType.STRING_ARRAY), attribute.value);
         } else {
-          return new StrictMatcher(attribute.key, attribute.value);
+          return new StrictMatcher(
+              getSlot(slots, attribute.key, stringSlotType(attribute.key, false)),
+              attribute.value);
         }
       } else if (attribute.matchType == MatchType.REGEXP) {
         if (isHttpHeaderAttribute(attribute)) {
-          return new RegexpArrayContainsMatcher(attribute.key, attribute.value);
+          return new RegexpArrayContainsMatcher(
+              getSlot(slots, attribute.key, SlotType.STRING_ARRAY), attribute.value);
         } else {
-          return new RegexpMatcher(attribute.key, attribute.value);
+          return new RegexpMatcher(
+              getSlot(slots, attribute.key, stringSlotType(attribute.key, true)),
+              attribute.value);
         }
       } else if (attribute.matchType == null) {
-        return new KeyOnlyMatcher(attribute.key);
+        return new KeyOnlyMatcher(
+            getSlot(slots, attribute.key, stringSlotType(attribute.key, false)));
       }
       logger.error("Unexpected match type: " + attribute.matchType);
       return null;
@@ -112,138 +132,299 @@ public class SamplingOverrides {
     }
   }
 
+  // predicates share a slot when they look at the same value
+  private static int getSlot(List<Slot> slots, String key, SlotType type) {
+    for (int i = 0; i < slots.size(); i++) {
+      Slot slot = slots.get(i);
+      if (slot.key.equals(key) && slot.type == type) {
+        return i;
+      }
+    }
+    slots.add(new Slot(key, type));
+    return slots.size() - 1;
+  }
+
+  // this is for backward compatibility with existing sampling override logic, which substitutes
+  // http.target (url.path and url.query) for http.target in strict matches and for url.path in
+  // regexp matches
+  private static SlotType stringSlotType(String key, boolean regexp) {
+    String httpTargetKey =
+        regexp ? UrlAttributes.URL_PATH.getKey() : HttpIncubatingAttributes.HTTP_TARGET.getKey();
+    return key.equals(httpTargetKey) ? SlotType.HTTP_TARGET : SlotType.STRING;
+  }
+
+  private enum SlotType {
+    STRING,
+    STRING_ARRAY,
+    HTTP_TARGET
+  }
+
+  private static class Slot {
+    private final String key;
+    private final SlotType type;
+    private final AttributeKey<String> stringKey;
+    private final AttributeKey<List<String>> stringArrayKey;
+
+    private Slot(String key, SlotType type) {
+      this.key = key;
+      this.type = type;
+      stringKey = AttributeKey.stringKey(key);
+      stringArrayKey = AttributeKey.stringArrayKey(key);
+    }
+
+    @Nullable
+    private Object resolve(Attributes attributes, SlotValues values) {
+      switch (type) {
+        case STRING_ARRAY:
+          return attributes.get(stringArrayKey);
+        case HTTP_TARGET:
+          return values.getHttpTarget();
+        case STRING:
+          String val = getValueIncludingThreadName(attributes, stringKey);
+          if (val == null && getHttpUrlKeyOldOrStableSemconv(stringKey)) {
+            val = values.getHttpUrl();
+          }
+          return val;
+      }
+      throw new IllegalStateException("Unexpected slot type: " + type);
+    }
+  }
+
+  static String getValueIncludingThreadName(
+      Attributes attributes, AttributeKey<String> attributeKey) {
+    if (attributeKey.getKey().equals(ThreadIncubatingAttributes.THREAD_NAME.getKey())) {
+      return Thread.currentThread().getName();
+    } else {
+      return attributes.get(attributeKey);
+    }
+  }
+
+  // the values that the predicates look at, each of which is resolved at most once per call, and
+  // only once a predicate looks at it
+  private static class SlotValues {
+    private static final Object UNRESOLVED = new Object();
+
+    private Attributes attributes = Attributes.empty();
+    private final Slot[] slots;
+    private final Object[] values;
+
+    // this is for backward compatibility with existing sampling override logic
+    private boolean httpUrlInitialized;
+    @Nullable private String httpUrl;
+    private boolean httpTargetInitialized;
+    @Nullable private String httpTarget;
+
+    private SlotValues(Slot[] slots) {
+      this.slots = slots;
+      values = new Object[slots.length];
+      Arrays.fill(values, UNRESOLVED);
+    }
+
+    private void init(Attributes attributes) {
+      this.attributes = attributes;
+    }
+
+    // so that the values of the last call are not retained by the thread
+    private void clear() {
+      attributes = Attributes.empty();
+      Arrays.fill(values, UNRESOLVED);
+      httpUrlInitialized = false;
+      httpUrl = null;
+      httpTargetInitialized = false;
+      httpTarget = null;
+    }
+
+    @Nullable
+    @SuppressWarnings("ReferenceEquality")
+    private Object get(int slot) {
+      Object value = values[slot];
+      if (value == UNRESOLVED) {
+        value = slots[slot].resolve(attributes, this);
+        values[slot] = value;
+      }
+      return value;
+    }
+
+    @Nullable
+    private String getHttpUrl() {
+      if (!httpUrlInitialized) {
+        httpUrl = SpanDataMapper.getHttpUrlFromServerSpan(attributes);
+        httpUrlInitialized = true;
+      }
+      return httpUrl;
+    }
+
+    // http.target -> url.path and url.query
+    @Nullable
+    private String getHttpTarget() {
+      if (!httpTargetInitialized) {
+        String urlQuery = attributes.get(UrlAttributes.URL_QUERY);
+        httpTarget =
+            attributes.get(UrlAttributes.URL_PATH) + (urlQuery != null ? "?" + urlQuery : "");
+        httpTargetInitialized = true;
+      }
+      return httpTarget;
+    }
+  }
+
+  // a regex along with a small cache of its results by value
+  //
+  // the cache is direct-mapped (a value can only be cached in the entry that its hash code maps
+  // to), so it is bounded and lock-free, and high cardinality values (e.g. urls with ids in them)
+  // only ever replace the entry that they map to instead of churning through the whole cache
+  private static class CachedPattern {
+    // power of 2
+    private static final int CACHE_SIZE = 256;
+
+    private final Pattern pattern;
+    // racy reads and writes are fine, since the entries are immutable
+    private final CachedResult[] cache = new CachedResult[CACHE_SIZE];
+
+    private CachedPattern(String regex) {
+      pattern = Pattern.compile(regex);
+    }
+
+    private boolean matches(String value) {
+      int hash = value.hashCode();
+      int index = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+      CachedResult cached = cache[index];
+      if (cached != null && cached.value.equals(value)) {
+        return cached.result;
+      }
+      boolean result = pattern.matcher(value).matches();
+      cache[index] = new CachedResult(value, result);
+      return result;
+    }
+  }
+
+  private static class CachedResult {
+    private final String value;
+    private final boolean result;
+
+    private CachedResult(String value, boolean result) {
+      this.value = value;
+      this.result = result;
+    }
+  }
+
   private static class StrictMatcher implements TempPredicate {
-    private final AttributeKey<String> key;
+    private static final int COST = 1;
+
+    private final int slot;
     private final String value;
 
-    private StrictMatcher(String key, String value) {
-      this.key = AttributeKey.stringKey(key);
+    private StrictMatcher(int slot, String value) {
+      this.slot = slot;
       this.value = value;
     }
 
     @Override
-    public boolean test(
-        Attributes attributes, LazyHttpUrl lazyHttpUrl, LazyHttpTarget lazyHttpTarget) {
-      String val = MatcherGroup.getValueIncludingThreadName(attributes, key);
-      if (key.getKey().equals(HttpIncubatingAttributes.HTTP_TARGET.getKey())) {
-        val = lazyHttpTarget.get();
-      }
-      if (val == null && getHttpUrlKeyOldOrStableSemconv(key)) {
-        val = lazyHttpUrl.get();
-      }
-      return value.equals(val);
+    public boolean test(SlotValues values) {
+      return value.equals(values.get(slot));
+    }
+
+    @Override
+    public int cost() {
+      return COST;
     }
   }
 
   private static class StrictArrayContainsMatcher implements TempPredicate {
-    private final AttributeKey<List<String>> key;
+    private static final int COST = 2;
+
+    private final int slot;
     private final String value;
 
-    private StrictArrayContainsMatcher(String key, String value) {
-      this.key = AttributeKey.stringArrayKey(key);
+    private StrictArrayContainsMatcher(int slot, String value) {
+      this.slot = slot;
       this.value = value;
     }
 
     @Override
-    public boolean test(
-        Attributes attributes, LazyHttpUrl lazyHttpUrl, LazyHttpTarget lazyHttpTarget) {
-      List<String> val = attributes.get(key);
+    @SuppressWarnings("unchecked")
+    public boolean test(SlotValues values) {
+      List<String> val = (List<String>) values.get(slot);
       return val != null && val.contains(value);
     }
+
+    @Override
+    public int cost() {
+      return COST;
+    }
   }
 
   private static class RegexpMatcher implements TempPredicate {
-    private final AttributeKey<String> key;
-    private final Pattern value;
+    private static final int COST = 3;
+
+    private final int slot;
+    private final CachedPattern value;
 
-    private RegexpMatcher(String key, String value) {
-      this.key = AttributeKey.stringKey(key);
-      this.value = Pattern.compile(value);
+    private RegexpMatcher(int slot, String value) {
+      this.slot = slot;
+      this.value = new CachedPattern(value);
     }
 
     @Override
-    public boolean test(
-        Attributes attributes,
-        @Nullable LazyHttpUrl lazyHttpUrl,
-        @Nullable LazyHttpTarget lazyHttpTarget) {
-      String val = MatcherGroup.getValueIncludingThreadName(attributes, key);
-      if (key.getKey().equals(UrlAttributes.URL_PATH.getKey())) {
-        val = lazyHttpTarget.get();
-      }
-      if (val == null && getHttpUrlKeyOldOrStableSemconv(key) && lazyHttpUrl != null) {
-        val = lazyHttpUrl.get();
-      }
+    public boolean test(SlotValues values) {
+      String val = (String) values.get(slot);
+      return val != null && value.matches(val);
+    }
 
-      return val != null && value.matcher(val).matches();
+    @Override
+    public int cost() {
+      return COST;
     }
   }
 
   private static class RegexpArrayContainsMatcher implements TempPredicate {
-    private final AttributeKey<List<String>> key;
-    private final Pattern value;
+    private static final int COST = 4;
 
-    private RegexpArrayContainsMatcher(String key, String value) {
-      this.key = AttributeKey.stringArrayKey(key);
-      this.value = Pattern.compile(value);
+    private final int slot;
+    private final CachedPattern value;
+
+    private RegexpArrayContainsMatcher(int slot, String value) {
+      this.slot = slot;
+      this.value = new CachedPattern(value);
     }
 
     @Override
-    public boolean test(
-        Attributes attributes,
-        @Nullable LazyHttpUrl lazyHttpUrl,
-        @Nullable LazyHttpTarget lazyHttpTarget) {
-      List<String> val = attributes.get(key);
+    @SuppressWarnings("unchecked")
+    public boolean test(SlotValues values) {
+      List<String> val = (List<String>) values.get(slot);
       if (val == null) {
         return false;
       }
       for (String v : val) {
-        if (value.matcher(v).matches()) {
+        if (value.matches(v)) {
           return true;
         }
       }
       return false;
     }
+
+    @Override
+    public int cost() {
+      return COST;
+    }
   }
 
   private static class KeyOnlyMatcher implements TempPredicate {
-    private final AttributeKey<String> key;
+    private static final int COST = 0;
 
-    private KeyOnlyMatcher(String key) {
-      this.key = AttributeKey.stringKey(key);
-    }
+    private final int slot;
 
-    @Override
-    public boolean test(
-        Attributes attributes,
-        @Nullable LazyHttpUrl lazyHttpUrl,
-        @Nullable LazyHttpTarget lazyHttpTarget) {
-      String val = MatcherGroup.getValueIncludingThreadName(attributes, key);
-      if (key.getKey().equals(HttpIncubatingAttributes.HTTP_TARGET.getKey())) {
-        val = lazyHttpTarget.get();
-      }
-      if (val == null && getHttpUrlKeyOldOrStableSemconv(key) && lazyHttpUrl != null) {
-        val = lazyHttpUrl.get();
-      }
-      return val != null;
+    private KeyOnlyMatcher(int slot) {
+      this.slot = slot;
     }
-  }
 
-  // this is for backward compatibility with existing sampling override logic
-  private static class LazyHttpUrl {
-    private final Attributes attributes;
-    private boolean initialized;
-    @Nullable private String value;
-
-    private LazyHttpUrl(Attributes attributes) {
-      this.attributes = attributes;
+    @Override
+    public boolean test(SlotValues values) {
+      return values.get(slot) != null;
     }
 
-    private String get() {
-      if (!initialized) {
-        value = SpanDataMapper.getHttpUrlFromServerSpan(attributes);
-        initialized = true;
-      }
-      return value;
+    @Override
+    public int cost() {
+      return COST;
     }
   }
 
@@ -256,30 +437,9 @@ public class SamplingOverrides {
   // this is temporary until semantic attributes stabilize and we make breaking change
   // then can use java.util.functions.Predicate<Attributes>
   private interface TempPredicate {
-    boolean test(
-        Attributes attributes,
-        @Nullable LazyHttpUrl lazyHttpUrl,
-        @Nullable LazyHttpTarget lazyHttpTarget);
-  }
-
-  // this is for backward compatibility with existing sampling override logic
-  // http.target -> url.path and url.query
-  private static class LazyHttpTarget {
-    private final Attributes attributes;
-    private boolean initialized;
-    @Nullable private String value;
-
-    private LazyHttpTarget(Attributes attributes) {
-      this.attributes = attributes;
-    }
+    boolean test(SlotValues values);
 
-    private String get() {
-      if (!initialized) {
-        String urlQuery = attributes.get(UrlAttributes.URL_QUERY);
-        value = attributes.get(UrlAttributes.URL_PATH) + (urlQuery != null ? "?" + urlQuery : "");
-        initialized = true;
-      }
-      return value;
-    }
+    // relative cost of testing the predicate
+    int cost();
   }
 }
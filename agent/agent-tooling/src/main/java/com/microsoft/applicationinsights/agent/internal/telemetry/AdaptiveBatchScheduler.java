@@ -0,0 +1,91 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+// decides when a BatchItemProcessor worker closes a batch and how long it waits before exporting a
+// partial batch, based on what it observes from previous exports
+//
+// * batches are closed once their estimated serialized payload reaches maxPayloadBytes (the item
+//   count limit of the worker still applies on top of this), so batches of small items (e.g.
+//   metrics) grow and batches of large items (e.g. logs with stack traces) shrink
+// * when a backlog is left in the queue after an export, the next export happens as soon as
+//   possible
+// * when batches are nearly full by the time the schedule delay expires, the schedule delay
+//   shrinks, since the queue is about to back up
+// * when only a trickle of items arrives, or when exports to the ingestion service are slow, the
+//   schedule delay grows back towards the configured delay, so that the trickle is sent in fewer
+//   round-trips
+//
+// all methods are called from the worker thread, except recordExportLatency
+final class AdaptiveBatchScheduler {
+
+  // the weight given to each new observation in the moving averages
+  private static final double ALPHA = 0.2;
+
+  private final long maxPayloadBytes;
+  private final long minScheduleDelayNanos;
+  private final long maxScheduleDelayNanos;
+
+  private double averageItemBytes = 1024;
+  private long scheduleDelayNanos;
+
+  // updated from export completion callbacks, races between them are benign since this is only an
+  // approximation
+  private volatile double averageExportLatencyNanos;
+
+  AdaptiveBatchScheduler(
+      long maxPayloadBytes, long minScheduleDelayNanos, long maxScheduleDelayNanos) {
+    this.maxPayloadBytes = maxPayloadBytes;
+    this.minScheduleDelayNanos = Math.min(minScheduleDelayNanos, maxScheduleDelayNanos);
+    this.maxScheduleDelayNanos = maxScheduleDelayNanos;
+    this.scheduleDelayNanos = maxScheduleDelayNanos;
+  }
+
+  void recordItemBytes(int itemBytes) {
+    averageItemBytes += ALPHA * (itemBytes - averageItemBytes);
+  }
+
+  void recordExportLatency(long latencyNanos) {
+    double average = averageExportLatencyNanos;
+    averageExportLatencyNanos = average + ALPHA * (latencyNanos - average);
+  }
+
+  boolean isBatchFull(long batchBytes) {
+    return batchBytes >= maxPayloadBytes;
+  }
+
+  // the estimated number of additional items before the batch is full
+  int itemsNeeded(long batchBytes) {
+    double remainingBytes = maxPayloadBytes - batchBytes;
+    if (remainingBytes <= 0) {
+      return 1;
+    }
+    return (int) Math.max(1, Math.min(Integer.MAX_VALUE, remainingBytes / averageItemBytes));
+  }
+
+  long getScheduleDelayNanos() {
+    return scheduleDelayNanos;
+  }
+
+  // called after each export with what was exported and the state of the queue afterwards
+  void onExport(long exportedBytes, boolean batchFull, boolean queueEmpty) {
+    if (!queueEmpty) {
+      // there is a backlog, keep exporting as fast as possible
+      scheduleDelayNanos = minScheduleDelayNanos;
+    } else if (averageExportLatencyNanos > scheduleDelayNanos) {
+      // the ingestion service is slow, don't add round-trips faster than they are completing
+      scheduleDelayNanos = grow(Math.max(scheduleDelayNanos, (long) averageExportLatencyNanos));
+    } else if (batchFull || exportedBytes >= maxPayloadBytes / 4 * 3) {
+      // busy, the queue is close to backing up, so don't hold items back for as long
+      scheduleDelayNanos = Math.max(minScheduleDelayNanos, scheduleDelayNanos / 2);
+    } else {
+      // light load, wait longer so that the next batch is fuller and there are fewer round-trips
+      scheduleDelayNanos = grow(scheduleDelayNanos);
+    }
+  }
+
+  private long grow(long delayNanos) {
+    return Math.min(maxScheduleDelayNanos, Math.max(delayNanos, 1) * 2);
+  }
+}
@@ -7,8 +7,11 @@ import static com.azure.monitor.opentelemetry.autoconfigure.implementation.utils
 
 import com.azure.core.util.logging.ClientLogger;
 import com.azure.monitor.opentelemetry.autoconfigure.implementation.logging.OperationLogger;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.ContextTagKeys;
 import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.TelemetryItem;
 import com.azure.monitor.opentelemetry.autoconfigure.implementation.pipeline.TelemetryItemExporter;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ExportQueueOverflowPolicy;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ExportQueueShardSelection;
 import io.opentelemetry.api.logs.LoggerProvider;
 import io.opentelemetry.internal.shaded.jctools.queues.MpscArrayQueue;
 import io.opentelemetry.javaagent.bootstrap.CallDepth;
@@ -16,15 +19,19 @@ import io.opentelemetry.sdk.common.CompletableResultCode;
 import io.opentelemetry.sdk.internal.DaemonThreadFactory;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Queue;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.Nullable;
 
 // copied from io.opentelemetry.sdk.trace.export.BatchSpanProcessor
 public final class BatchItemProcessor {
@@ -34,7 +41,18 @@ public final class BatchItemProcessor {
   private static final String WORKER_THREAD_NAME =
       BatchItemProcessor.class.getSimpleName() + "_WorkerThread";
 
-  private final Worker worker;
+  private static final String OPERATION_ID_TAG = ContextTagKeys.AI_OPERATION_ID.toString();
+
+  private static final long DROPPED_COUNTS_LOG_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+  private final TelemetryItemExporter exporter;
+  private final Worker[] workers;
+  private final ExportQueueShardSelection shardSelection;
+  // indexed by TelemetryType ordinal, shared by all the shards
+  private final LongAdder[] droppedCounts;
+  // estimated bytes retained by the queued items, only tracked when the queue is bounded by size,
+  // shared by all the shards so that the size limit applies to the queue as a whole
+  @Nullable private final AtomicLong queuedBytes;
   private final AtomicBoolean isShutdown = new AtomicBoolean(false);
 
   /**
@@ -52,71 +70,279 @@ public final class BatchItemProcessor {
       TelemetryItemExporter exporter,
       long scheduleDelayNanos,
       int maxQueueSize,
+      long maxQueueBytes,
       int maxExportBatchSize,
       long exporterTimeoutNanos,
       int maxPendingExports,
+      int shards,
+      ExportQueueShardSelection shardSelection,
+      long adaptiveMaxPayloadBytes,
+      long adaptiveMinScheduleDelayNanos,
+      boolean priorityLanes,
+      ExportQueueOverflowPolicy overflowPolicy,
       String queueName) {
-    MpscArrayQueue<TelemetryItem> queue = new MpscArrayQueue<>(maxQueueSize);
-    this.worker =
-        new Worker(
-            exporter,
-            scheduleDelayNanos,
-            maxExportBatchSize,
-            exporterTimeoutNanos,
-            maxPendingExports,
-            queue,
-            queue.capacity(),
-            queueName);
-
-    Thread workerThread = new DaemonThreadFactory(WORKER_THREAD_NAME).newThread(worker);
-    workerThread.setUncaughtExceptionHandler((t, e) -> logger.error(e.getMessage(), e));
-    workerThread.start();
+    this.exporter = exporter;
+    this.shardSelection = shardSelection;
+    this.droppedCounts = new LongAdder[TelemetryType.values().length];
+    for (int i = 0; i < droppedCounts.length; i++) {
+      droppedCounts[i] = new LongAdder();
+    }
+    this.queuedBytes = maxQueueBytes > 0 ? new AtomicLong() : null;
+    // the queue capacity and the max pending exports are budgets for the queue as a whole, so they
+    // are shared across shards instead of being multiplied by the number of shards
+    int shardQueueSize = Math.max(maxQueueSize / shards, 2);
+    Set<CompletableResultCode> pendingExports =
+        Collections.newSetFromMap(new ConcurrentHashMap<>());
+    this.workers = new Worker[shards];
+    for (int i = 0; i < shards; i++) {
+      // the drops are counted across all the shards, so only one of them logs the counts
+      Worker worker =
+          new Worker(
+              exporter,
+              scheduleDelayNanos,
+              maxExportBatchSize,
+              exporterTimeoutNanos,
+              maxPendingExports,
+              pendingExports,
+              priorityLanes ? TelemetryType.LANES : 1,
+              shardQueueSize,
+              maxQueueSize,
+              queuedBytes,
+              maxQueueBytes,
+              overflowPolicy,
+              droppedCounts,
+              adaptiveMaxPayloadBytes > 0
+                  ? new AdaptiveBatchScheduler(
+                      adaptiveMaxPayloadBytes, adaptiveMinScheduleDelayNanos, scheduleDelayNanos)
+                  : null,
+              i == 0
+                  ? new DroppedCountsLogger(
+                      droppedCounts, queueName, DROPPED_COUNTS_LOG_INTERVAL_NANOS)
+                  : null,
+              queueName);
+      workers[i] = worker;
+
+      Thread workerThread = new DaemonThreadFactory(WORKER_THREAD_NAME).newThread(worker);
+      workerThread.setUncaughtExceptionHandler((t, e) -> logger.error(e.getMessage(), e));
+      worker.workerThread = workerThread;
+      workerThread.start();
+    }
   }
 
   public void trackAsync(TelemetryItem item) {
-    worker.addItem(item);
+    if (workers.length == 1) {
+      workers[0].addItem(item);
+    } else {
+      workers[shardIndex(item)].addItem(item);
+    }
+  }
+
+  private int shardIndex(TelemetryItem item) {
+    int hash;
+    if (shardSelection == ExportQueueShardSelection.HASH) {
+      Map<String, String> tags = item.getTags();
+      String operationId = tags == null ? null : tags.get(OPERATION_ID_TAG);
+      hash = operationId == null ? System.identityHashCode(item) : operationId.hashCode();
+    } else {
+      hash = Long.hashCode(Thread.currentThread().getId());
+    }
+    // spread the high bits, since both thread ids and string hash codes are poorly distributed in
+    // the low bits
+    hash ^= hash >>> 16;
+    return (hash & Integer.MAX_VALUE) % workers.length;
+  }
+
+  /**
+   * Returns the number of items of the given type that have been dropped (or sampled out) because
+   * the export queue was at capacity, across all shards.
+   */
+  public long getDroppedCount(TelemetryType type) {
+    return droppedCounts[type.ordinal()].sum();
+  }
+
+  // visible for testing
+  long getQueuedBytes() {
+    return queuedBytes == null ? 0 : queuedBytes.get();
   }
 
   public CompletableResultCode shutdown() {
     if (isShutdown.getAndSet(true)) {
       return CompletableResultCode.ofSuccess();
     }
-    return worker.shutdown();
+    CompletableResultCode result = new CompletableResultCode();
+
+    CompletableResultCode flushResult = forceFlush();
+    flushResult.whenComplete(
+        () -> {
+          for (Worker worker : workers) {
+            worker.continueWork = false;
+          }
+          if (!flushResult.isSuccess()) {
+            result.fail();
+          } else {
+            result.succeed();
+          }
+        });
+
+    return result;
   }
 
   public CompletableResultCode forceFlush() {
-    return worker.forceFlush();
+    List<CompletableResultCode> workerResults = new ArrayList<>(workers.length);
+    for (Worker worker : workers) {
+      workerResults.add(worker.forceFlushWorker());
+    }
+    CompletableResultCode overallResult = new CompletableResultCode();
+    CompletableResultCode workerResult = CompletableResultCode.ofAll(workerResults);
+    workerResult.whenComplete(
+        () -> {
+          if (!workerResult.isSuccess()) {
+            overallResult.fail();
+            return;
+          }
+          CompletableResultCode exporterResult = exporter.flush();
+          exporterResult.whenComplete(
+              () -> {
+                if (exporterResult.isSuccess()) {
+                  overallResult.succeed();
+                } else {
+                  overallResult.fail();
+                }
+              });
+        });
+    return overallResult;
+  }
+
+  // the drops are also logged as they happen, but those logs are rate limited, so this periodically
+  // logs how many items of each type were dropped since the last time
+  static final class DroppedCountsLogger {
+
+    private final LongAdder[] droppedCounts;
+    private final long[] loggedCounts;
+    private final String queueName;
+    private final long intervalNanos;
+    private long nextLogTime;
+
+    DroppedCountsLogger(LongAdder[] droppedCounts, String queueName, long intervalNanos) {
+      this.droppedCounts = droppedCounts;
+      this.loggedCounts = new long[droppedCounts.length];
+      this.queueName = queueName;
+      this.intervalNanos = intervalNanos;
+      this.nextLogTime = System.nanoTime() + intervalNanos;
+    }
+
+    // only called by the worker thread
+    void maybeLog(long nanoTime) {
+      if (nanoTime - nextLogTime < 0) {
+        return;
+      }
+      nextLogTime = nanoTime + intervalNanos;
+      String summary = summarizeNewDrops();
+      if (summary != null) {
+        logger.warning(summary);
+      }
+    }
+
+    // visible for testing
+    @Nullable
+    String summarizeNewDrops() {
+      StringBuilder summary = null;
+      for (TelemetryType type : TelemetryType.values()) {
+        long count = droppedCounts[type.ordinal()].sum();
+        long newDrops = count - loggedCounts[type.ordinal()];
+        if (newDrops == 0) {
+          continue;
+        }
+        loggedCounts[type.ordinal()] = count;
+        if (summary == null) {
+          summary =
+              new StringBuilder("Telemetry dropped from the ")
+                  .append(queueName)
+                  .append(" export queue since the last report: ");
+        } else {
+          summary.append(", ");
+        }
+        summary.append(newDrops).append(' ').append(type.getDisplayName());
+      }
+      return summary == null ? null : summary.toString();
+    }
+  }
+
+  // a queue of items at a single priority, the items are queued as they are, unless the queue is
+  // bounded by size, in which case they are queued as SizedItems
+  private static final class Lane {
+
+    private final MpscArrayQueue<Object> queue;
+
+    private Lane(int capacity) {
+      queue = new MpscArrayQueue<>(capacity);
+    }
+  }
+
+  // keeps the size that was reserved for an item, so that exactly that size is released when the
+  // item leaves the queue
+  private static final class SizedItem {
+
+    private final TelemetryItem item;
+    private final int bytes;
+
+    private SizedItem(TelemetryItem item, int bytes) {
+      this.item = item;
+      this.bytes = bytes;
+    }
   }
 
   // Worker is a thread that batches multiple items and calls the registered TelemetryItemExporter
   // to export the data.
   private static final class Worker implements Runnable {
 
+    private static final long NOT_WAITING = Long.MAX_VALUE;
+
+    // when the sample-on-overflow policy is used, items that are not in the highest priority lane
+    // start being sampled once the queue is filled past this ratio
+    private static final double SAMPLING_THRESHOLD = 0.5;
+
     private final TelemetryItemExporter exporter;
-    private final long scheduleDelayNanos;
+    private long scheduleDelayNanos;
     private final int maxExportBatchSize;
     private final long exporterTimeoutNanos;
     private final int maxPendingExports;
 
     private long nextExportTime;
 
-    private final Queue<TelemetryItem> queue;
+    // a single lane unless priority lanes are enabled, in which case the lanes are in priority
+    // order and share laneCapacity through the pending count
+    private final Lane[] lanes;
+    private final int laneCapacity;
+    // indexed by the lane of the items that were admitted over capacity
+    private final AtomicInteger[] evictionsRequested;
+    private final ExportQueueOverflowPolicy overflowPolicy;
+    private final LongAdder[] droppedCounts;
+    @Nullable private final DroppedCountsLogger droppedCountsLogger;
+
     private final int queueCapacity;
+    // shared by all the shards of a queue
+    @Nullable private final AtomicLong queuedBytes;
+    private final long maxQueueBytes;
     private final String queueName;
-    // When waiting on the items queue, exporter thread sets this atomic to the number of more
-    // items it needs before doing an export. Writer threads would then wait for the queue to reach
-    // itemsNeeded size before notifying the exporter thread about new entries.
-    // Integer.MAX_VALUE is used to imply that exporter thread is not expecting any signal. Since
-    // exporter thread doesn't expect any signal initially, this value is initialized to
-    // Integer.MAX_VALUE.
-    private final AtomicInteger itemsNeeded = new AtomicInteger(Integer.MAX_VALUE);
-    private final BlockingQueue<Boolean> signal;
+    private Thread workerThread;
     private final AtomicReference<CompletableResultCode> flushRequested = new AtomicReference<>();
     private volatile boolean continueWork = true;
     private final ArrayList<TelemetryItem> batch;
-
-    private final Set<CompletableResultCode> pendingExports =
-        Collections.newSetFromMap(new ConcurrentHashMap<>());
+    // When parked waiting on the items queue, exporter thread sets this to the position at which it
+    // will have enough items to do an export: the queue producer index with a single lane, and the
+    // number of pending items across all the lanes with priority lanes. Writer threads only compare
+    // their own position against it (instead of reading the contended queue size) and unpark the
+    // exporter thread once it has been reached.
+    // NOT_WAITING is used to imply that exporter thread is not expecting any signal, in which case
+    // writer threads don't touch anything beyond this field after enqueuing.
+    private volatile long wakeupIndex = NOT_WAITING;
+    // estimated serialized size of the current batch, only tracked in adaptive mode
+    private long batchBytes;
+    @Nullable private final AdaptiveBatchScheduler adaptiveScheduler;
+
+    // shared by all the shards of a queue
+    private final Set<CompletableResultCode> pendingExports;
 
     private static final OperationLogger queuingItemLogger =
         new OperationLogger(BatchItemProcessor.class, "Queuing telemetry item");
@@ -130,45 +356,249 @@ public final class BatchItemProcessor {
         int maxExportBatchSize,
         long exporterTimeoutNanos,
         int maxPendingExports,
-        Queue<TelemetryItem> queue,
+        Set<CompletableResultCode> pendingExports,
+        int lanes,
+        int laneCapacity,
         int queueCapacity,
+        @Nullable AtomicLong queuedBytes,
+        long maxQueueBytes,
+        ExportQueueOverflowPolicy overflowPolicy,
+        LongAdder[] droppedCounts,
+        @Nullable AdaptiveBatchScheduler adaptiveScheduler,
+        @Nullable DroppedCountsLogger droppedCountsLogger,
         String queueName) {
       this.exporter = exporter;
       this.scheduleDelayNanos = scheduleDelayNanos;
       this.maxExportBatchSize = maxExportBatchSize;
       this.exporterTimeoutNanos = exporterTimeoutNanos;
       this.maxPendingExports = maxPendingExports;
-      this.queue = queue;
+      this.pendingExports = pendingExports;
+      this.lanes = new Lane[lanes];
+      this.evictionsRequested = new AtomicInteger[lanes];
+      // with priority lanes, each lane can hold the whole capacity since the lanes share it, and
+      // when evicting, items are admitted over capacity until the worker thread evicts, so the
+      // lanes need room for that too
+      int laneQueueCapacity =
+          overflowPolicy == ExportQueueOverflowPolicy.DROP_OLDEST_LOWEST_PRIORITY && lanes > 1
+              ? laneCapacity * 2
+              : laneCapacity;
+      for (int i = 0; i < lanes; i++) {
+        this.lanes[i] = new Lane(laneQueueCapacity);
+        this.evictionsRequested[i] = new AtomicInteger();
+      }
+      this.laneCapacity = laneCapacity;
       this.queueCapacity = queueCapacity;
+      this.queuedBytes = queuedBytes;
+      this.maxQueueBytes = maxQueueBytes;
+      this.overflowPolicy = overflowPolicy;
+      this.droppedCounts = droppedCounts;
+      this.droppedCountsLogger = droppedCountsLogger;
       this.queueName = queueName;
-      this.signal = new ArrayBlockingQueue<>(1);
       this.batch = new ArrayList<>(this.maxExportBatchSize);
+      this.adaptiveScheduler = adaptiveScheduler;
+      if (adaptiveScheduler != null) {
+        this.scheduleDelayNanos = adaptiveScheduler.getScheduleDelayNanos();
+      }
     }
 
     private void addItem(TelemetryItem item) {
-      if (!queue.offer(item)) {
-        queuingItemLogger.recordFailure(
-            "Max "
-                + queueName
-                + " export queue capacity of "
-                + queueCapacity
-                + " has been hit, dropping a telemetry record (max "
-                + queueName
-                + " export queue capacity can be increased in the applicationinsights.json"
-                + " configuration file, e.g. { \"preview\": { \""
-                + queueName
-                + "ExportQueueCapacity\": "
-                + (queueCapacity * 2)
-                + " } }",
-            BATCH_ITEM_PROCESSOR_ERROR);
+      AtomicLong queuedBytes = this.queuedBytes;
+      int itemBytes = 0;
+      Object queuedItem = item;
+      if (queuedBytes != null) {
+        itemBytes = TelemetryItemSizeEstimator.estimate(item);
+        if (!reserveBytes(queuedBytes, itemBytes)) {
+          recordDroppedBySize(TelemetryType.of(item));
+          return;
+        }
+        queuedItem = new SizedItem(item, itemBytes);
+      }
+      Lane lane;
+      boolean queued;
+      if (lanes.length == 1) {
+        lane = lanes[0];
+        queued = lane.queue.offer(queuedItem);
+        if (!queued) {
+          recordDropped(TelemetryType.of(item));
+        }
       } else {
-        queuingItemLogger.recordSuccess();
-        if (queue.size() >= itemsNeeded.get()) {
-          signal.offer(true);
+        TelemetryType type = TelemetryType.of(item);
+        lane = lanes[type.getLane()];
+        queued = offerWithPriority(item, queuedItem, type, lane);
+      }
+      if (!queued) {
+        if (queuedBytes != null) {
+          queuedBytes.addAndGet(-itemBytes);
         }
+        return;
+      }
+      queuingItemLogger.recordSuccess();
+      long wakeupIndex = this.wakeupIndex;
+      if (wakeupIndex != NOT_WAITING && queuePosition() >= wakeupIndex) {
+        LockSupport.unpark(workerThread);
       }
     }
 
+    private long queuePosition() {
+      return lanes.length == 1 ? lanes[0].queue.lvProducerIndex() : pendingCount();
+    }
+
+    // the number of items queued across all the lanes, derived from the lane indexes instead of
+    // being kept in a separate counter, so that writer threads don't all update the same counter
+    private int pendingCount() {
+      int pending = 0;
+      for (Lane lane : lanes) {
+        pending += lane.queue.size();
+      }
+      return pending;
+    }
+
+    private boolean offerWithPriority(
+        TelemetryItem item, Object queuedItem, TelemetryType type, Lane lane) {
+      int pending = pendingCount();
+      boolean evict = false;
+      if (pending >= laneCapacity) {
+        if (overflowPolicy != ExportQueueOverflowPolicy.DROP_OLDEST_LOWEST_PRIORITY
+            || !hasEvictableItems(type.getLane())) {
+          recordDropped(type);
+          return false;
+        }
+        // the worker thread is the only consumer of the lanes, so it is the one that evicts the
+        // oldest lowest priority item, until then this item is admitted over capacity
+        evict = true;
+      } else if (overflowPolicy == ExportQueueOverflowPolicy.SAMPLE_ON_OVERFLOW
+          && type.getLane() > 0) {
+        double samplingThreshold = laneCapacity * SAMPLING_THRESHOLD;
+        if (pending > samplingThreshold) {
+          // keep probability goes linearly from 1 at the threshold to 0 at capacity
+          double keep = (laneCapacity - pending) / (laneCapacity - samplingThreshold);
+          if (ThreadLocalRandom.current().nextDouble() >= keep) {
+            recordSampledOut(type);
+            return false;
+          }
+          Float sampleRate = item.getSampleRate();
+          item.setSampleRate((float) ((sampleRate == null ? 100 : sampleRate) * keep));
+        }
+      }
+      if (!lane.queue.offer(queuedItem)) {
+        recordDropped(type);
+        return false;
+      }
+      if (evict) {
+        // requested after the item is queued, so that the worker thread sees the queue over
+        // capacity when it handles the request
+        evictionsRequested[type.getLane()].incrementAndGet();
+        LockSupport.unpark(workerThread);
+      }
+      return true;
+    }
+
+    private boolean reserveBytes(AtomicLong queuedBytes, int itemBytes) {
+      while (true) {
+        long current = queuedBytes.get();
+        long next = current + itemBytes;
+        // an item is always admitted into an empty queue, otherwise an item that is larger than the
+        // whole size limit (e.g. a log with a very large stack trace) could never be exported
+        if (next > maxQueueBytes && current > 0) {
+          return false;
+        }
+        if (queuedBytes.compareAndSet(current, next)) {
+          return true;
+        }
+      }
+    }
+
+    // called by the worker thread for every item that is taken off the queue
+    private static TelemetryItem dequeued(@Nullable AtomicLong queuedBytes, Object queuedItem) {
+      if (queuedItem instanceof SizedItem) {
+        SizedItem sizedItem = (SizedItem) queuedItem;
+        if (queuedBytes != null) {
+          queuedBytes.addAndGet(-sizedItem.bytes);
+        }
+        return sizedItem.item;
+      }
+      return (TelemetryItem) queuedItem;
+    }
+
+    // items can evict items from their own lane or from lower priority lanes, except that the
+    // highest priority lane is never evicted
+    private static int lowestEvictableLane(int lane) {
+      return Math.max(lane, 1);
+    }
+
+    private boolean hasEvictableItems(int lane) {
+      for (int i = lanes.length - 1; i >= lowestEvictableLane(lane); i--) {
+        if (!lanes[i].queue.isEmpty()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void recordDropped(TelemetryType type) {
+      droppedCounts[type.ordinal()].increment();
+      queuingItemLogger.recordFailure(
+          "Max "
+              + queueName
+              + " export queue capacity of "
+              + queueCapacity
+              + " has been hit, dropping "
+              + type.getDisplayName()
+              + " telemetry (max "
+              + queueName
+              + " export queue capacity can be increased in the applicationinsights.json"
+              + " configuration file, e.g. { \"preview\": { \""
+              + queueName
+              + "ExportQueueCapacity\": "
+              + (queueCapacity * 2)
+              + " } }",
+          BATCH_ITEM_PROCESSOR_ERROR);
+    }
+
+    private void recordDroppedBySize(TelemetryType type) {
+      droppedCounts[type.ordinal()].increment();
+      queuingItemLogger.recordFailure(
+          "Max "
+              + queueName
+              + " export queue size of "
+              + (maxQueueBytes / (1024 * 1024))
+              + " MB has been hit, dropping "
+              + type.getDisplayName()
+              + " telemetry (max "
+              + queueName
+              + " export queue size can be increased in the applicationinsights.json"
+              + " configuration file, e.g. { \"preview\": { \""
+              + queueName
+              + "ExportQueueMaxSizeMb\": "
+              + (maxQueueBytes / (1024 * 1024) * 2)
+              + " } }",
+          BATCH_ITEM_PROCESSOR_ERROR);
+    }
+
+    private void recordEvicted(TelemetryType type) {
+      droppedCounts[type.ordinal()].increment();
+      queuingItemLogger.recordFailure(
+          "Max "
+              + queueName
+              + " export queue capacity of "
+              + queueCapacity
+              + " has been hit, dropping the oldest queued "
+              + type.getDisplayName()
+              + " telemetry to make room for higher priority telemetry",
+          BATCH_ITEM_PROCESSOR_ERROR);
+    }
+
+    private void recordSampledOut(TelemetryType type) {
+      droppedCounts[type.ordinal()].increment();
+      queuingItemLogger.recordFailure(
+          "The "
+              + queueName
+              + " export queue is more than half full, sampling "
+              + type.getDisplayName()
+              + " telemetry to make room for higher priority telemetry",
+          BATCH_ITEM_PROCESSOR_ERROR);
+    }
+
     @Override
     public void run() {
       // incrementing CallDepth for LoggerProvider causes the OpenTelemetry Java agent logging
@@ -191,44 +621,132 @@ public final class BatchItemProcessor {
       updateNextExportTime();
 
       while (continueWork) {
+        if (droppedCountsLogger != null) {
+          droppedCountsLogger.maybeLog(System.nanoTime());
+        }
+        // before flushing, so that evicted items are not exported by the flush
+        if (lanes.length > 1) {
+          evictLowestPriority();
+        }
         if (flushRequested.get() != null) {
           flush();
         }
-        while (!queue.isEmpty() && batch.size() < maxExportBatchSize) {
-          batch.add(queue.poll());
-        }
-        if (batch.size() >= maxExportBatchSize || System.nanoTime() >= nextExportTime) {
-          exportCurrentBatch();
+        fillBatch();
+        boolean batchFull = isBatchFull();
+        if (batchFull || System.nanoTime() >= nextExportTime) {
+          exportCurrentBatch(batchFull);
           updateNextExportTime();
         }
-        if (queue.isEmpty()) {
-          try {
-            long pollWaitTime = nextExportTime - System.nanoTime();
-            if (pollWaitTime > 0) {
-              itemsNeeded.set(maxExportBatchSize - batch.size());
-              signal.poll(pollWaitTime, TimeUnit.NANOSECONDS);
-              itemsNeeded.set(Integer.MAX_VALUE);
+        if (isQueueEmpty()) {
+          long pollWaitTime = nextExportTime - System.nanoTime();
+          if (pollWaitTime > 0) {
+            int itemsNeeded = itemsNeeded();
+            // with priority lanes, the items needed can be spread across the lanes, so the total
+            // number of pending items is what is compared
+            long wakeupIndex =
+                lanes.length == 1
+                    ? lanes[0].queue.lvConsumerIndex() + itemsNeeded
+                    : itemsNeeded;
+            this.wakeupIndex = wakeupIndex;
+            // re-check after publishing the wakeup index, since a writer thread that enqueued the
+            // last needed item just before that would not have unparked this thread
+            if (queuePosition() < wakeupIndex) {
+              LockSupport.parkNanos(this, pollWaitTime);
+            }
+            this.wakeupIndex = NOT_WAITING;
+            if (Thread.currentThread().isInterrupted()) {
+              return;
             }
-          } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            return;
           }
         }
       }
     }
 
+    private boolean isQueueEmpty() {
+      for (Lane lane : lanes) {
+        if (!lane.queue.isEmpty()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    // drains the lanes in priority order
+    private void fillBatch() {
+      for (Lane lane : lanes) {
+        Object item;
+        while (!isBatchFull() && (item = lane.queue.poll()) != null) {
+          addToBatch(item);
+        }
+      }
+    }
+
+    private void evictLowestPriority() {
+      for (int lane = 0; lane < lanes.length; lane++) {
+        int evictions = evictionsRequested[lane].get();
+        if (evictions == 0) {
+          continue;
+        }
+        evictionsRequested[lane].addAndGet(-evictions);
+        for (int i = lanes.length - 1; i >= lowestEvictableLane(lane) && evictions > 0; i--) {
+          Object item;
+          // once the queue is back within capacity (e.g. items were drained into a batch since the
+          // eviction was requested), there is no need to evict anymore
+          while (evictions > 0
+              && pendingCount() > laneCapacity
+              && (item = lanes[i].queue.poll()) != null) {
+            evictions--;
+            recordEvicted(TelemetryType.of(dequeued(queuedBytes, item)));
+          }
+        }
+        if (evictions > 0 && pendingCount() > laneCapacity) {
+          // the items that could be evicted were already evicted for other items, so the queue
+          // stays over capacity until the next batch is drained, and the eviction is retried then
+          evictionsRequested[lane].addAndGet(evictions);
+        }
+      }
+    }
+
+    private boolean isBatchFull() {
+      return batch.size() >= maxExportBatchSize
+          || (adaptiveScheduler != null && adaptiveScheduler.isBatchFull(batchBytes));
+    }
+
+    private void addToBatch(Object queuedItem) {
+      TelemetryItem item = dequeued(queuedBytes, queuedItem);
+      batch.add(item);
+      if (adaptiveScheduler != null) {
+        int itemBytes =
+            queuedItem instanceof SizedItem
+                ? ((SizedItem) queuedItem).bytes
+                : TelemetryItemSizeEstimator.estimate(item);
+        adaptiveScheduler.recordItemBytes(itemBytes);
+        batchBytes += itemBytes;
+      }
+    }
+
+    private int itemsNeeded() {
+      int itemsNeeded = maxExportBatchSize - batch.size();
+      if (adaptiveScheduler != null) {
+        itemsNeeded = Math.min(itemsNeeded, adaptiveScheduler.itemsNeeded(batchBytes));
+      }
+      return itemsNeeded;
+    }
+
     private void flush() {
-      int itemsToFlush = queue.size();
-      while (itemsToFlush > 0) {
-        TelemetryItem item = queue.poll();
-        assert item != null;
-        batch.add(item);
-        itemsToFlush--;
-        if (batch.size() >= maxExportBatchSize) {
-          exportCurrentBatch();
+      for (Lane lane : lanes) {
+        int itemsToFlush = lane.queue.size();
+        while (itemsToFlush > 0) {
+          Object item = lane.queue.poll();
+          assert item != null;
+          addToBatch(item);
+          itemsToFlush--;
+          if (isBatchFull()) {
+            exportCurrentBatch(true);
+          }
         }
       }
-      exportCurrentBatch();
+      exportCurrentBatch(false);
       CompletableResultCode.ofAll(pendingExports).join(exporterTimeoutNanos, TimeUnit.NANOSECONDS);
       CompletableResultCode flushResult = flushRequested.get();
       if (flushResult != null) {
@@ -241,50 +759,11 @@ public final class BatchItemProcessor {
       nextExportTime = System.nanoTime() + scheduleDelayNanos;
     }
 
-    private CompletableResultCode shutdown() {
-      CompletableResultCode result = new CompletableResultCode();
-
-      CompletableResultCode flushResult = forceFlush();
-      flushResult.whenComplete(
-          () -> {
-            continueWork = false;
-            if (!flushResult.isSuccess()) {
-              result.fail();
-            } else {
-              result.succeed();
-            }
-          });
-
-      return result;
-    }
-
-    private CompletableResultCode forceFlush() {
-      CompletableResultCode overallResult = new CompletableResultCode();
-      CompletableResultCode workerResult = forceFlushWorker();
-      workerResult.whenComplete(
-          () -> {
-            if (!workerResult.isSuccess()) {
-              overallResult.fail();
-              return;
-            }
-            CompletableResultCode exporterResult = exporter.flush();
-            exporterResult.whenComplete(
-                () -> {
-                  if (exporterResult.isSuccess()) {
-                    overallResult.succeed();
-                  } else {
-                    overallResult.fail();
-                  }
-                });
-          });
-      return overallResult;
-    }
-
     private CompletableResultCode forceFlushWorker() {
       CompletableResultCode flushResult = new CompletableResultCode();
       // we set the atomic here to trigger the worker loop to do a flush of the entire queue.
       if (flushRequested.compareAndSet(null, flushResult)) {
-        signal.offer(true);
+        LockSupport.unpark(workerThread);
       }
       CompletableResultCode possibleResult = flushRequested.get();
       // there's a race here where the flush happening in the worker loop could complete before we
@@ -293,14 +772,20 @@ public final class BatchItemProcessor {
       return possibleResult == null ? CompletableResultCode.ofSuccess() : possibleResult;
     }
 
-    private void exportCurrentBatch() {
+    private void exportCurrentBatch(boolean batchFull) {
       if (batch.isEmpty()) {
         return;
       }
 
+      long exportedBytes = batchBytes;
       try {
         // batching, retry, logging, and writing to disk on failure occur downstream
         CompletableResultCode result = exporter.send(Collections.unmodifiableList(batch));
+        if (adaptiveScheduler != null) {
+          long startNanos = System.nanoTime();
+          result.whenComplete(
+              () -> adaptiveScheduler.recordExportLatency(System.nanoTime() - startNanos));
+        }
         if (pendingExports.size() < maxPendingExports - 1) {
           addAsyncExport.recordSuccess();
           pendingExports.add(result);
@@ -322,6 +807,13 @@ public final class BatchItemProcessor {
         }
       } finally {
         batch.clear();
+        batchBytes = 0;
+      }
+      // every export is reported, including the ones made by a flush, so that the batch size and
+      // the schedule delay adapt to all the exports
+      if (adaptiveScheduler != null) {
+        adaptiveScheduler.onExport(exportedBytes, batchFull, isQueueEmpty());
+        scheduleDelayNanos = adaptiveScheduler.getScheduleDelayNanos();
       }
     }
   }
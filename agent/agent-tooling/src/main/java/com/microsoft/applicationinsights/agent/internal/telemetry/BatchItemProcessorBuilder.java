@@ -7,6 +7,8 @@ import static io.opentelemetry.api.internal.Utils.checkArgument;
 import static java.util.Objects.requireNonNull;
 
 import com.azure.monitor.opentelemetry.autoconfigure.implementation.pipeline.TelemetryItemExporter;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ExportQueueOverflowPolicy;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ExportQueueShardSelection;
 import java.util.concurrent.TimeUnit;
 
 // copied from io.opentelemetry.sdk.trace.export.BatchSpanProcessorBuilder
@@ -19,6 +21,7 @@ final class BatchItemProcessorBuilder {
   private static final int DEFAULT_MAX_QUEUE_SIZE = 2048;
   private static final int DEFAULT_MAX_EXPORT_BATCH_SIZE = 512;
   private static final int DEFAULT_MAX_PENDING_EXPORTS = 1;
+  private static final int DEFAULT_SHARDS = 1;
 
   private final TelemetryItemExporter exporter;
   private final long scheduleDelayNanos =
@@ -27,8 +30,15 @@ final class BatchItemProcessorBuilder {
       TimeUnit.MILLISECONDS.toNanos(DEFAULT_EXPORT_TIMEOUT_MILLIS);
 
   private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+  private long maxQueueBytes;
   private int maxExportBatchSize = DEFAULT_MAX_EXPORT_BATCH_SIZE;
   private int maxPendingExports = DEFAULT_MAX_PENDING_EXPORTS;
+  private int shards = DEFAULT_SHARDS;
+  private long adaptiveMaxPayloadBytes;
+  private long adaptiveMinScheduleDelayNanos;
+  private ExportQueueShardSelection shardSelection = ExportQueueShardSelection.THREAD;
+  private boolean priorityLanes;
+  private ExportQueueOverflowPolicy overflowPolicy = ExportQueueOverflowPolicy.DROP_NEWEST;
 
   BatchItemProcessorBuilder(TelemetryItemExporter exporter) {
     this.exporter = requireNonNull(exporter, "exporter");
@@ -53,6 +63,25 @@ final class BatchItemProcessorBuilder {
     return this;
   }
 
+  /**
+   * Sets the maximum estimated size in bytes of the items that are kept in the queue before start
+   * dropping, in addition to the maximum number of items. The size of each item is estimated from
+   * the strings that it holds, so that a few large items (e.g. exceptions with long stack traces)
+   * are bounded the same way as many small ones. The size is shared by all the shards, and an item
+   * is always admitted into an empty queue, even if it is larger than the maximum size.
+   *
+   * <p>Default value is {@code 0}, which means that the queue is only bounded by item count.
+   *
+   * @param maxQueueBytes the maximum estimated size in bytes of the items that are kept in the
+   *     queue before start dropping.
+   * @return this.
+   */
+  public BatchItemProcessorBuilder setMaxQueueBytes(long maxQueueBytes) {
+    checkArgument(maxQueueBytes >= 0, "maxQueueBytes must be non-negative.");
+    this.maxQueueBytes = maxQueueBytes;
+    return this;
+  }
+
   /**
    * Sets the maximum batch size for every export. This must be smaller or equal to {@code
    * maxQueuedItems}.
@@ -89,6 +118,64 @@ final class BatchItemProcessorBuilder {
     return this;
   }
 
+  /**
+   * Sets the number of shards, each with its own queue and worker thread, that items are spread
+   * across. The max queue size is split evenly between the shards, and the max queue bytes and the
+   * max pending exports are shared by all of them.
+   *
+   * <p>Default value is {@code 1}.
+   *
+   * @param shards the number of shards.
+   * @param shardSelection how a shard is chosen for each item.
+   * @return this.
+   * @see BatchItemProcessorBuilder#DEFAULT_SHARDS
+   */
+  public BatchItemProcessorBuilder setShards(
+      int shards, ExportQueueShardSelection shardSelection) {
+    checkArgument(shards > 0, "shards must be positive.");
+    this.shards = shards;
+    this.shardSelection = requireNonNull(shardSelection, "shardSelection");
+    return this;
+  }
+
+  /**
+   * Enables adaptive batching, where batches are closed once their estimated serialized payload
+   * reaches {@code maxPayloadBytes} (in addition to the max export batch size), and the schedule
+   * delay is adjusted between {@code minScheduleDelayMillis} and the default schedule delay based
+   * on queue depth, batch fill and export latency.
+   *
+   * <p>Disabled by default.
+   *
+   * @param maxPayloadBytes the target serialized payload size of each export.
+   * @param minScheduleDelayMillis the shortest delay that the schedule delay can adapt down to.
+   * @return this.
+   */
+  public BatchItemProcessorBuilder setAdaptiveBatching(
+      long maxPayloadBytes, long minScheduleDelayMillis) {
+    checkArgument(maxPayloadBytes > 0, "maxPayloadBytes must be positive.");
+    checkArgument(minScheduleDelayMillis >= 0, "minScheduleDelayMillis must be non-negative.");
+    this.adaptiveMaxPayloadBytes = maxPayloadBytes;
+    this.adaptiveMinScheduleDelayNanos = TimeUnit.MILLISECONDS.toNanos(minScheduleDelayMillis);
+    return this;
+  }
+
+  /**
+   * Enables priority lanes, where requests and dependencies, exceptions, and everything else
+   * (traces, metrics, ...) are queued separately and exported in that order of priority. The lanes
+   * share the max queue size, and {@code overflowPolicy} decides which items are dropped when the
+   * queue fills up.
+   *
+   * <p>Disabled by default.
+   *
+   * @param overflowPolicy how items are dropped once the queue is full (or filling up).
+   * @return this.
+   */
+  public BatchItemProcessorBuilder setPriorityLanes(ExportQueueOverflowPolicy overflowPolicy) {
+    this.priorityLanes = true;
+    this.overflowPolicy = requireNonNull(overflowPolicy, "overflowPolicy");
+    return this;
+  }
+
   /**
    * Returns a new {@link BatchItemProcessor} that batches, then converts items to proto and
    * forwards them to the given {@code exporter}.
@@ -101,9 +188,16 @@ final class BatchItemProcessorBuilder {
         exporter,
         scheduleDelayNanos,
         maxQueueSize,
+        maxQueueBytes,
         maxExportBatchSize,
         exporterTimeoutNanos,
         maxPendingExports,
+        shards,
+        shardSelection,
+        adaptiveMaxPayloadBytes,
+        adaptiveMinScheduleDelayNanos,
+        priorityLanes,
+        overflowPolicy,
         queueName);
   }
 }
@@ -39,8 +39,10 @@ import io.opentelemetry.sdk.resources.Resource;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import javax.annotation.Nullable;
 import org.apache.commons.text.StringSubstitutor;
@@ -49,6 +51,8 @@ public class TelemetryClient {
 
   private static final String TELEMETRY_FOLDER_NAME = "telemetry";
 
+  private static final int ADAPTIVE_MAX_EXPORT_BATCH_SIZE_MULTIPLIER = 8;
+
   @Nullable private static volatile TelemetryClient active;
 
   private final AppIdSupplier appIdSupplier;
@@ -68,6 +72,12 @@ public class TelemetryClient {
   // contains customDimensions from json configuration
   private final Map<String, String> globalProperties;
 
+  // the defaults populated on every telemetry item, derived from the above, the connection string
+  // and the resource, and rebuilt when any of them change
+  @Nullable private volatile DefaultsTemplate defaultsTemplate;
+  // bumped whenever globalTags is updated after construction
+  private final AtomicInteger defaultsVersion = new AtomicInteger();
+
   private final List<MetricFilter> metricFilters;
 
   @Nullable private volatile QuickPulse quickPulse;
@@ -76,6 +86,12 @@ public class TelemetryClient {
   @Nullable private final File tempDir;
   private final int generalExportQueueCapacity;
   private final int metricsExportQueueCapacity;
+  private final int generalExportQueueMaxSizeMb;
+  private final int metricsExportQueueMaxSizeMb;
+  private final int exportQueueShards;
+  private final Configuration.ExportQueueShardSelection exportQueueShardSelection;
+  private final Configuration.AdaptiveExportBatching adaptiveExportBatching;
+  private final Configuration.ExportQueuePriority generalExportQueuePriority;
   private final int diskPersistenceMaxSizeMb;
 
   @Nullable private final Configuration.AadAuthentication aadAuthentication;
@@ -107,6 +123,12 @@ public class TelemetryClient {
     this.tempDir = builder.tempDir;
     this.generalExportQueueCapacity = builder.generalExportQueueCapacity;
     this.metricsExportQueueCapacity = builder.metricsExportQueueCapacity;
+    this.generalExportQueueMaxSizeMb = builder.generalExportQueueMaxSizeMb;
+    this.metricsExportQueueMaxSizeMb = builder.metricsExportQueueMaxSizeMb;
+    this.exportQueueShards = builder.exportQueueShards;
+    this.exportQueueShardSelection = builder.exportQueueShardSelection;
+    this.adaptiveExportBatching = builder.adaptiveExportBatching;
+    this.generalExportQueuePriority = builder.generalExportQueuePriority;
     this.aadAuthentication = builder.aadAuthentication;
     this.connectionString = builder.connectionString;
     this.statsbeatConnectionString = builder.statsbeatConnectionString;
@@ -200,7 +222,12 @@ public class TelemetryClient {
       synchronized (batchItemProcessorInitLock) {
         if (generalBatchItemProcessor == null) {
           generalBatchItemProcessor =
-              initBatchItemProcessor(generalExportQueueCapacity, 512, "general");
+              initBatchItemProcessor(
+                  generalExportQueueCapacity,
+                  generalExportQueueMaxSizeMb,
+                  512,
+                  generalExportQueuePriority,
+                  "general");
         }
       }
     }
@@ -214,7 +241,8 @@ public class TelemetryClient {
       synchronized (batchItemProcessorInitLock) {
         if (metricsBatchItemProcessor == null) {
           metricsBatchItemProcessor =
-              initBatchItemProcessor(metricsExportQueueCapacity, 2048, "metrics");
+              initBatchItemProcessor(
+                  metricsExportQueueCapacity, metricsExportQueueMaxSizeMb, 2048, null, "metrics");
         }
       }
     }
@@ -222,7 +250,11 @@ public class TelemetryClient {
   }
 
   private BatchItemProcessor initBatchItemProcessor(
-      int exportQueueCapacity, int maxExportBatchSize, String queueName) {
+      int exportQueueCapacity,
+      int exportQueueMaxSizeMb,
+      int maxExportBatchSize,
+      @Nullable Configuration.ExportQueuePriority exportQueuePriority,
+      String queueName) {
 
     HttpPipeline httpPipeline =
         LazyHttpClient.newHttpPipeLine(
@@ -254,14 +286,30 @@ public class TelemetryClient {
                   false));
     }
 
-    return BatchItemProcessor.builder(
-            new TelemetryItemExporter(telemetryPipeline, telemetryPipelineListener))
-        .setMaxQueueSize(exportQueueCapacity)
-        .setMaxExportBatchSize(maxExportBatchSize)
-        // the number 100 was calculated as the max number of concurrent exports that the single
-        // worker thread can drive, so anything higher than this should not increase throughput
-        .setMaxPendingExports(100)
-        .build(queueName);
+    BatchItemProcessorBuilder builder =
+        BatchItemProcessor.builder(
+                new TelemetryItemExporter(telemetryPipeline, telemetryPipelineListener))
+            .setMaxQueueSize(exportQueueCapacity)
+            .setMaxQueueBytes(exportQueueMaxSizeMb * 1024L * 1024L)
+            // the number 100 was calculated as the max number of concurrent exports that the single
+            // worker thread can drive, so anything higher than this should not increase throughput
+            .setMaxPendingExports(100)
+            .setShards(exportQueueShards, exportQueueShardSelection);
+    if (adaptiveExportBatching.enabled) {
+      // batches are primarily bounded by payload size in adaptive mode, the item count limit is
+      // only raised so that it doesn't cut off batches of small items before the payload size
+      builder
+          .setMaxExportBatchSize(maxExportBatchSize * ADAPTIVE_MAX_EXPORT_BATCH_SIZE_MULTIPLIER)
+          .setAdaptiveBatching(
+              adaptiveExportBatching.maxPayloadSizeKb * 1024L,
+              adaptiveExportBatching.minScheduleDelayMillis);
+    } else {
+      builder.setMaxExportBatchSize(maxExportBatchSize);
+    }
+    if (exportQueuePriority != null && exportQueuePriority.enabled) {
+      builder.setPriorityLanes(exportQueuePriority.overflowPolicy);
+    }
+    return builder.build(queueName);
   }
 
   /** Gets or sets the default instrumentation key for the application. */
@@ -326,26 +374,20 @@ public class TelemetryClient {
   }
 
   public void populateDefaults(AbstractTelemetryBuilder telemetryBuilder, Resource resource) {
-    if (connectionString != null) {
-      // not sure if connectionString can be null in Azure Functions
-      telemetryBuilder.setConnectionString(connectionString);
-    }
-    telemetryBuilder.setResource(resource);
-    for (Map.Entry<String, String> entry : globalTags.entrySet()) {
-      // avoid putting null value into map. azure-json allows null values by default; whereas,
-      // jackson doesn't
-      if (!Strings.isNullOrEmpty(entry.getValue())) {
-        telemetryBuilder.addTag(entry.getKey(), entry.getValue());
-      }
-    }
-    for (Map.Entry<String, String> entry : globalProperties.entrySet()) {
-      // avoid putting null value into map. azure-json allows null values by default; whereas,
-      // jackson doesn't
-      if (!Strings.isNullOrEmpty(entry.getValue())) {
-        telemetryBuilder.addProperty(entry.getKey(), entry.getValue());
-      }
+    ConnectionString connectionString = this.connectionString;
+    int version = defaultsVersion.get();
+    DefaultsTemplate template = defaultsTemplate;
+    if (template == null || !template.isFor(connectionString, resource, version)) {
+      template = new DefaultsTemplate(connectionString, resource, version);
+      defaultsTemplate = template;
     }
-    new ResourceParser().updateRoleNameAndInstance(telemetryBuilder, resource);
+    template.applyTo(telemetryBuilder, resource);
+  }
+
+  // visible for testing
+  @Nullable
+  Object getDefaultsTemplate() {
+    return defaultsTemplate;
   }
 
   @Nullable
@@ -391,11 +433,13 @@ public class TelemetryClient {
   public void updateRoleName(String roleName) {
     this.roleName = roleName;
     globalTags.put(ContextTagKeys.AI_CLOUD_ROLE.toString(), roleName);
+    defaultsVersion.incrementAndGet();
   }
 
   public void updateRoleInstance(String roleInstance) {
     this.roleInstance = roleInstance;
     globalTags.put(ContextTagKeys.AI_CLOUD_ROLE_INSTANCE.toString(), roleInstance);
+    defaultsVersion.incrementAndGet();
   }
 
   public String getAppId() {
@@ -419,6 +463,77 @@ public class TelemetryClient {
     otelResource = resource;
   }
 
+  private class DefaultsTemplate {
+
+    @Nullable private final ConnectionString connectionString;
+    private final Resource resource;
+    private final int version;
+
+    private final String[] tagKeys;
+    private final String[] tagValues;
+    private final String[] propertyKeys;
+    private final String[] propertyValues;
+
+    private DefaultsTemplate(
+        @Nullable ConnectionString connectionString, Resource resource, int version) {
+      this.connectionString = connectionString;
+      this.resource = resource;
+      this.version = version;
+
+      // the role name and instance derived from the resource take precedence over the ones in
+      // globalTags, so this captures the tags that result from applying both, in that order
+      MessageTelemetryBuilder scratch = MessageTelemetryBuilder.create();
+      for (Map.Entry<String, String> entry : nonEmpty(globalTags).entrySet()) {
+        scratch.addTag(entry.getKey(), entry.getValue());
+      }
+      new ResourceParser().updateRoleNameAndInstance(scratch, resource);
+      Map<String, String> tags = scratch.build().getTags();
+      Map<String, String> nonEmptyTags = tags == null ? new HashMap<>() : nonEmpty(tags);
+      tagKeys = nonEmptyTags.keySet().toArray(new String[0]);
+      tagValues = nonEmptyTags.values().toArray(new String[0]);
+
+      Map<String, String> nonEmptyProperties = nonEmpty(globalProperties);
+      propertyKeys = nonEmptyProperties.keySet().toArray(new String[0]);
+      propertyValues = nonEmptyProperties.values().toArray(new String[0]);
+    }
+
+    private boolean isFor(
+        @Nullable ConnectionString connectionString, Resource resource, int version) {
+      // the resource is compared by value as well, since callers that pass equal resources can be
+      // interleaved, e.g. the span, log and metric exporters each pass their own instance
+      return this.connectionString == connectionString
+          && this.version == version
+          && (this.resource == resource || this.resource.equals(resource));
+    }
+
+    // the resource is the caller's, which is equal to the one the template was built for
+    private void applyTo(AbstractTelemetryBuilder telemetryBuilder, Resource resource) {
+      if (connectionString != null) {
+        // not sure if connectionString can be null in Azure Functions
+        telemetryBuilder.setConnectionString(connectionString);
+      }
+      telemetryBuilder.setResource(resource);
+      for (int i = 0; i < tagKeys.length; i++) {
+        telemetryBuilder.addTag(tagKeys[i], tagValues[i]);
+      }
+      for (int i = 0; i < propertyKeys.length; i++) {
+        telemetryBuilder.addProperty(propertyKeys[i], propertyValues[i]);
+      }
+    }
+  }
+
+  private static Map<String, String> nonEmpty(Map<String, String> map) {
+    // avoid putting null value into map. azure-json allows null values by default; whereas,
+    // jackson doesn't
+    Map<String, String> nonEmpty = new LinkedHashMap<>();
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      if (!Strings.isNullOrEmpty(entry.getValue())) {
+        nonEmpty.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return nonEmpty;
+  }
+
   public static class Builder {
 
     private Map<String, String> globalTags;
@@ -428,6 +543,15 @@ public class TelemetryClient {
     @Nullable private File tempDir;
     private int generalExportQueueCapacity;
     private int metricsExportQueueCapacity;
+    private int generalExportQueueMaxSizeMb;
+    private int metricsExportQueueMaxSizeMb;
+    private int exportQueueShards = 1;
+    private Configuration.ExportQueueShardSelection exportQueueShardSelection =
+        Configuration.ExportQueueShardSelection.THREAD;
+    private Configuration.AdaptiveExportBatching adaptiveExportBatching =
+        new Configuration.AdaptiveExportBatching();
+    private Configuration.ExportQueuePriority generalExportQueuePriority =
+        new Configuration.ExportQueuePriority();
     @Nullable private Configuration.AadAuthentication aadAuthentication;
     @Nullable private ConnectionString connectionString;
     @Nullable private StatsbeatConnectionString statsbeatConnectionString;
@@ -484,6 +608,32 @@ public class TelemetryClient {
       return this;
     }
 
+    public Builder setExportQueueMaxSizeMb(
+        int generalExportQueueMaxSizeMb, int metricsExportQueueMaxSizeMb) {
+      this.generalExportQueueMaxSizeMb = generalExportQueueMaxSizeMb;
+      this.metricsExportQueueMaxSizeMb = metricsExportQueueMaxSizeMb;
+      return this;
+    }
+
+    public Builder setExportQueueShards(
+        int exportQueueShards, Configuration.ExportQueueShardSelection exportQueueShardSelection) {
+      this.exportQueueShards = exportQueueShards;
+      this.exportQueueShardSelection = exportQueueShardSelection;
+      return this;
+    }
+
+    public Builder setAdaptiveExportBatching(
+        Configuration.AdaptiveExportBatching adaptiveExportBatching) {
+      this.adaptiveExportBatching = adaptiveExportBatching;
+      return this;
+    }
+
+    public Builder setGeneralExportQueuePriority(
+        Configuration.ExportQueuePriority generalExportQueuePriority) {
+      this.generalExportQueuePriority = generalExportQueuePriority;
+      return this;
+    }
+
     public Builder setAadAuthentication(Configuration.AadAuthentication aadAuthentication) {
       this.aadAuthentication = aadAuthentication;
       return this;
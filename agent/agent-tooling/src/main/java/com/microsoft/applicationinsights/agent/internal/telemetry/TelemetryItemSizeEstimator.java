@@ -0,0 +1,94 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.MessageData;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.MetricDataPoint;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.MetricsData;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.MonitorBase;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.MonitorDomain;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.RemoteDependencyData;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.RequestData;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.TelemetryExceptionData;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.TelemetryExceptionDetails;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.TelemetryItem;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+// estimates the size of the serialized json of a telemetry item, without serializing it
+//
+// only the fields that can be large or that are repeated per item are walked, everything else is
+// covered by a fixed per item overhead, so this is intentionally cheap and approximate
+final class TelemetryItemSizeEstimator {
+
+  // envelope fields (name, time, iKey, sampleRate, baseType, ver) and json punctuation
+  private static final int ITEM_OVERHEAD = 256;
+  // json punctuation around each map entry and list element
+  private static final int ENTRY_OVERHEAD = 8;
+
+  static int estimate(TelemetryItem item) {
+    long size = ITEM_OVERHEAD;
+    size += estimate(item.getTags());
+    MonitorBase data = item.getData();
+    MonitorDomain baseData = data == null ? null : data.getBaseData();
+    if (baseData instanceof MetricsData) {
+      MetricsData metricsData = (MetricsData) baseData;
+      size += estimate(metricsData.getProperties());
+      List<MetricDataPoint> points = metricsData.getMetrics();
+      if (points != null) {
+        for (MetricDataPoint point : points) {
+          // name, namespace and the numeric fields
+          size += length(point.getName()) + length(point.getNamespace()) + 64;
+        }
+      }
+    } else if (baseData instanceof MessageData) {
+      MessageData messageData = (MessageData) baseData;
+      size += length(messageData.getMessage());
+      size += estimate(messageData.getProperties());
+    } else if (baseData instanceof TelemetryExceptionData) {
+      TelemetryExceptionData exceptionData = (TelemetryExceptionData) baseData;
+      size += estimate(exceptionData.getProperties());
+      List<TelemetryExceptionDetails> exceptions = exceptionData.getExceptions();
+      if (exceptions != null) {
+        for (TelemetryExceptionDetails details : exceptions) {
+          size +=
+              length(details.getTypeName())
+                  + length(details.getMessage())
+                  + length(details.getStack())
+                  + ENTRY_OVERHEAD;
+        }
+      }
+    } else if (baseData instanceof RequestData) {
+      RequestData requestData = (RequestData) baseData;
+      size += length(requestData.getName()) + length(requestData.getUrl());
+      size += estimate(requestData.getProperties());
+    } else if (baseData instanceof RemoteDependencyData) {
+      RemoteDependencyData dependencyData = (RemoteDependencyData) baseData;
+      size +=
+          length(dependencyData.getName())
+              + length(dependencyData.getData())
+              + length(dependencyData.getTarget());
+      size += estimate(dependencyData.getProperties());
+    }
+    return (int) Math.min(size, Integer.MAX_VALUE);
+  }
+
+  private static long estimate(@Nullable Map<String, String> map) {
+    if (map == null) {
+      return 0;
+    }
+    long size = 0;
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      size += length(entry.getKey()) + length(entry.getValue()) + ENTRY_OVERHEAD;
+    }
+    return size;
+  }
+
+  private static int length(@Nullable String value) {
+    return value == null ? 0 : value.length();
+  }
+
+  private TelemetryItemSizeEstimator() {}
+}
@@ -0,0 +1,63 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.MessageData;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.MetricsData;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.MonitorBase;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.MonitorDomain;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.RemoteDependencyData;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.RequestData;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.TelemetryExceptionData;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.TelemetryItem;
+
+// the telemetry types that BatchItemProcessor tracks drops for, along with the priority lane that
+// each type is queued in when priority lanes are enabled (lower lane is higher priority)
+public enum TelemetryType {
+  REQUEST("request", 0),
+  DEPENDENCY("dependency", 0),
+  EXCEPTION("exception", 1),
+  TRACE("trace", 2),
+  METRIC("metric", 2),
+  OTHER("other", 2);
+
+  static final int LANES = 3;
+
+  private final String displayName;
+  private final int lane;
+
+  TelemetryType(String displayName, int lane) {
+    this.displayName = displayName;
+    this.lane = lane;
+  }
+
+  String getDisplayName() {
+    return displayName;
+  }
+
+  int getLane() {
+    return lane;
+  }
+
+  static TelemetryType of(TelemetryItem item) {
+    MonitorBase data = item.getData();
+    MonitorDomain baseData = data == null ? null : data.getBaseData();
+    if (baseData instanceof RequestData) {
+      return REQUEST;
+    }
+    if (baseData instanceof RemoteDependencyData) {
+      return DEPENDENCY;
+    }
+    if (baseData instanceof TelemetryExceptionData) {
+      return EXCEPTION;
+    }
+    if (baseData instanceof MessageData) {
+      return TRACE;
+    }
+    if (baseData instanceof MetricsData) {
+      return METRIC;
+    }
+    return OTHER;
+  }
+}
@@ -0,0 +1,378 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.classicsdk;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.AiSemanticAttributes;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.OperationNames;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.builders.EventTelemetryBuilder;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.builders.MetricTelemetryBuilder;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.ContextTagKeys;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.MetricDataPoint;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.MetricsData;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.TelemetryItem;
+import com.microsoft.applicationinsights.agent.bootstrap.MicrometerUtil;
+import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class BytecodeUtilImplTest {
+
+  // the active telemetry client can only be set once
+  private static final TelemetryClient telemetryClient = mock(TelemetryClient.class);
+
+  static {
+    TelemetryClient.setActive(telemetryClient);
+    // flushed explicitly by the tests
+    BytecodeUtilImpl.enableMetricAggregation(100, TimeUnit.HOURS.toMillis(1));
+  }
+
+  private final BytecodeUtilImpl bytecodeUtil = new BytecodeUtilImpl();
+
+  private final Tracer tracer = SdkTracerProvider.builder().build().get("test");
+
+  @BeforeEach
+  void setUp() {
+    reset(telemetryClient);
+    when(telemetryClient.newEventTelemetryBuilder())
+        .thenAnswer(invocation -> EventTelemetryBuilder.create());
+    when(telemetryClient.newMetricTelemetryBuilder())
+        .thenAnswer(invocation -> MetricTelemetryBuilder.create());
+    BytecodeUtilImpl.samplingPercentage = 100;
+    BytecodeUtilImpl.flushAggregatedMetrics();
+    clearInvocations(telemetryClient);
+  }
+
+  @AfterEach
+  void tearDown() {
+    BytecodeUtilImpl.samplingPercentage = 0;
+  }
+
+  @Test
+  void shouldNotBuildStandaloneItemsThatAreSampledOut() {
+    // given
+    BytecodeUtilImpl.samplingPercentage = 0;
+
+    // when
+    trackEvent(null, singletonMap(ContextTagKeys.AI_OPERATION_ID.toString(), "an-operation-id"));
+
+    // then
+    verify(telemetryClient, never()).newEventTelemetryBuilder();
+    verify(telemetryClient, never()).trackAsync(any());
+  }
+
+  @Test
+  void shouldNotBuildItemsOfSampledOutSpan() {
+    // given
+    Span span =
+        Span.wrap(
+            SpanContext.create(
+                "ff01020304050600ff0a0b0c0d0e0f00",
+                "090a0b0c0d0e0f00",
+                TraceFlags.getDefault(),
+                TraceState.getDefault()));
+
+    // when
+    try (Scope ignored = span.makeCurrent()) {
+      trackEvent(null, emptyMap());
+    }
+
+    // then
+    verify(telemetryClient, never()).newEventTelemetryBuilder();
+    verify(telemetryClient, never()).trackAsync(any());
+  }
+
+  @Test
+  void shouldSetOperationTagsAndSampleRateFromCurrentSpan() {
+    // given
+    Span span =
+        tracer
+            .spanBuilder("test-span")
+            .setAttribute(AiSemanticAttributes.SAMPLE_RATE, 25.0)
+            .startSpan();
+
+    // when
+    try (Scope ignored = span.makeCurrent()) {
+      trackEvent(null, emptyMap());
+    } finally {
+      span.end();
+    }
+
+    // then
+    List<TelemetryItem> items = getTrackedItems();
+    assertThat(items).hasSize(1);
+    TelemetryItem item = items.get(0);
+    assertThat(item.getSampleRate()).isEqualTo(25.0f);
+    assertThat(item.getTags())
+        .containsEntry(
+            ContextTagKeys.AI_OPERATION_ID.toString(), span.getSpanContext().getTraceId())
+        .containsEntry(
+            ContextTagKeys.AI_OPERATION_PARENT_ID.toString(), span.getSpanContext().getSpanId())
+        .containsEntry(
+            ContextTagKeys.AI_OPERATION_NAME.toString(),
+            OperationNames.getOperationName((ReadableSpan) span));
+  }
+
+  @Test
+  void shouldNotOverrideOperationTagsThatWerePassedIn() {
+    // given
+    Span span = tracer.spanBuilder("test-span").startSpan();
+    Map<String, String> tags = new HashMap<>();
+    tags.put(ContextTagKeys.AI_OPERATION_ID.toString(), span.getSpanContext().getTraceId());
+    tags.put(ContextTagKeys.AI_OPERATION_PARENT_ID.toString(), "a-parent-id");
+    tags.put(ContextTagKeys.AI_OPERATION_NAME.toString(), "an-operation-name");
+
+    // when
+    try (Scope ignored = span.makeCurrent()) {
+      trackEvent(null, tags);
+    } finally {
+      span.end();
+    }
+
+    // then
+    List<TelemetryItem> items = getTrackedItems();
+    assertThat(items).hasSize(1);
+    assertThat(items.get(0).getSampleRate()).isNull();
+    assertThat(items.get(0).getTags()).containsAllEntriesOf(tags);
+  }
+
+  @Test
+  void shouldUseExplicitTimestamp() {
+    // when
+    trackEvent(new Date(1_600_000_000_123L), emptyMap());
+
+    // then
+    List<TelemetryItem> items = getTrackedItems();
+    assertThat(items).hasSize(1);
+    assertThat(items.get(0).getTime().toInstant())
+        .isEqualTo(Instant.ofEpochMilli(1_600_000_000_123L));
+  }
+
+  @Test
+  void shouldAggregateMetricsUntilFlush() {
+    // given
+    long intervalStart = System.currentTimeMillis();
+    BytecodeUtilImpl.flushAggregatedMetrics();
+    long intervalStartUpperBound = System.currentTimeMillis();
+
+    // when
+    trackMetric(null, 1, null, null, null, null);
+    trackMetric(null, 2, null, null, null, null);
+    trackMetric(null, 6, null, null, null, null);
+
+    // then
+    verify(telemetryClient, never()).trackAsync(any());
+
+    BytecodeUtilImpl.flushAggregatedMetrics();
+
+    List<TelemetryItem> items = getTrackedItems();
+    assertThat(items).hasSize(1);
+    MetricDataPoint point = getMetricsData(items.get(0)).getMetrics().get(0);
+    assertThat(point.getName()).isEqualTo("test-metric");
+    assertThat(point.getValue()).isEqualTo(9);
+    assertThat(point.getCount()).isEqualTo(3);
+    assertThat(point.getMin()).isEqualTo(1.0);
+    assertThat(point.getMax()).isEqualTo(6.0);
+    assertThat(point.getStdDev()).isCloseTo(Math.sqrt(14.0 / 3), within(1e-9));
+    // the time is the start of the interval
+    assertThat(items.get(0).getTime().toInstant().toEpochMilli())
+        .isBetween(intervalStart, intervalStartUpperBound);
+  }
+
+  @Test
+  void shouldNotAggregateMetricsThatAreAlreadyAggregatedOrNotFinite() {
+    // when
+    trackMetric(new Date(1_600_000_000_123L), 1, null, null, null, null);
+    trackMetric(null, 2, 3, null, null, null);
+    trackMetric(null, 3, null, 1.0, null, null);
+    trackMetric(null, 4, null, null, 2.0, null);
+    trackMetric(null, 5, null, null, null, 0.5);
+    trackMetric(null, Double.NaN, null, null, null, null);
+    trackMetric(null, Double.POSITIVE_INFINITY, null, null, null, null);
+
+    // then
+    List<TelemetryItem> items = getTrackedItems();
+    assertThat(items).hasSize(7);
+    assertThat(items.get(0).getTime().toInstant())
+        .isEqualTo(Instant.ofEpochMilli(1_600_000_000_123L));
+    MetricDataPoint withCount = getMetricsData(items.get(1)).getMetrics().get(0);
+    assertThat(withCount.getValue()).isEqualTo(2);
+    assertThat(withCount.getCount()).isEqualTo(3);
+    assertThat(getMetricsData(items.get(2)).getMetrics().get(0).getMin()).isEqualTo(1.0);
+    assertThat(getMetricsData(items.get(3)).getMetrics().get(0).getMax()).isEqualTo(2.0);
+    assertThat(getMetricsData(items.get(4)).getMetrics().get(0).getStdDev()).isEqualTo(0.5);
+    assertThat(getMetricsData(items.get(5)).getMetrics().get(0).getValue()).isNaN();
+    assertThat(getMetricsData(items.get(6)).getMetrics().get(0).getValue())
+        .isEqualTo(Double.POSITIVE_INFINITY);
+
+    // and nothing was held back for the next flush
+    BytecodeUtilImpl.flushAggregatedMetrics();
+    assertThat(getTrackedItems()).hasSize(7);
+  }
+
+  @Test
+  void shouldSetOperationTagsButNoSampleRateOnMetricsFromCurrentSpan() {
+    // given
+    Span span =
+        tracer
+            .spanBuilder("test-span")
+            .setAttribute(AiSemanticAttributes.SAMPLE_RATE, 25.0)
+            .startSpan();
+
+    // when
+    try (Scope ignored = span.makeCurrent()) {
+      // not aggregated, since it has a count
+      trackMetric(null, 2, 3, null, null, null);
+    } finally {
+      span.end();
+    }
+
+    // then
+    List<TelemetryItem> items = getTrackedItems();
+    assertThat(items).hasSize(1);
+    TelemetryItem item = items.get(0);
+    assertThat(item.getSampleRate()).isNull();
+    assertThat(item.getTags())
+        .containsEntry(
+            ContextTagKeys.AI_OPERATION_ID.toString(), span.getSpanContext().getTraceId())
+        .containsEntry(
+            ContextTagKeys.AI_OPERATION_PARENT_ID.toString(), span.getSpanContext().getSpanId());
+  }
+
+  @Test
+  void shouldUseTheInstrumentationKeyOfEachCall() {
+    // when
+    trackEventWithInstrumentationKey("00000000-0000-0000-0000-000000000001");
+    trackEventWithInstrumentationKey("00000000-0000-0000-0000-000000000001");
+    trackEventWithInstrumentationKey("00000000-0000-0000-0000-000000000002");
+
+    // then
+    List<TelemetryItem> items = getTrackedItems();
+    assertThat(items).hasSize(3);
+    assertThat(items.get(0).getInstrumentationKey())
+        .isEqualTo("00000000-0000-0000-0000-000000000001");
+    assertThat(items.get(1).getInstrumentationKey())
+        .isEqualTo("00000000-0000-0000-0000-000000000001");
+    assertThat(items.get(2).getInstrumentationKey())
+        .isEqualTo("00000000-0000-0000-0000-000000000002");
+  }
+
+  @Test
+  void shouldTrackMicrometerMetricsInBulk() {
+    // when
+    bytecodeUtil.trackMicrometerMetrics(
+        Arrays.asList(
+            new MicrometerUtil.Metric(
+                "test-gauge", null, 1.5, null, null, null, singletonMap("tag1", "value1")),
+            new MicrometerUtil.Metric("", null, 2, null, null, null, emptyMap()),
+            new MicrometerUtil.Metric("test-timer", "ns", 30, 3, 5.0, 15.0, emptyMap())));
+
+    // then
+    List<TelemetryItem> items = getTrackedItems();
+    assertThat(items).hasSize(2);
+
+    MetricsData gaugeData = getMetricsData(items.get(0));
+    MetricDataPoint gauge = gaugeData.getMetrics().get(0);
+    assertThat(gauge.getName()).isEqualTo("test-gauge");
+    assertThat(gauge.getNamespace()).isNull();
+    assertThat(gauge.getValue()).isEqualTo(1.5);
+    assertThat(gauge.getCount()).isNull();
+    assertThat(gaugeData.getProperties()).containsOnly(entry("tag1", "value1"));
+
+    MetricDataPoint timer = getMetricsData(items.get(1)).getMetrics().get(0);
+    assertThat(timer.getName()).isEqualTo("test-timer");
+    assertThat(timer.getNamespace()).isEqualTo("ns");
+    assertThat(timer.getValue()).isEqualTo(30);
+    assertThat(timer.getCount()).isEqualTo(3);
+    assertThat(timer.getMin()).isEqualTo(5.0);
+    assertThat(timer.getMax()).isEqualTo(15.0);
+    assertThat(timer.getStdDev()).isNull();
+
+    // the metrics of a single publish share their timestamp
+    assertThat(items.get(0).getTime()).isNotNull();
+    assertThat(items.get(1).getTime()).isEqualTo(items.get(0).getTime());
+  }
+
+  @Test
+  void shouldNotTrackEmptyMicrometerPublish() {
+    // when
+    bytecodeUtil.trackMicrometerMetrics(Collections.emptyList());
+
+    // then
+    verify(telemetryClient, never()).trackAsync(any());
+  }
+
+  private void trackEvent(@Nullable Date timestamp, Map<String, String> tags) {
+    bytecodeUtil.trackEvent(timestamp, "test-event", emptyMap(), tags, emptyMap(), null, null);
+  }
+
+  private void trackEventWithInstrumentationKey(String instrumentationKey) {
+    bytecodeUtil.trackEvent(
+        null, "test-event", emptyMap(), emptyMap(), emptyMap(), null, instrumentationKey);
+  }
+
+  private void trackMetric(
+      @Nullable Date timestamp,
+      double value,
+      @Nullable Integer count,
+      @Nullable Double min,
+      @Nullable Double max,
+      @Nullable Double stdDev) {
+    bytecodeUtil.trackMetric(
+        timestamp,
+        "test-metric",
+        null,
+        value,
+        count,
+        min,
+        max,
+        stdDev,
+        emptyMap(),
+        emptyMap(),
+        null,
+        null);
+  }
+
+  private static List<TelemetryItem> getTrackedItems() {
+    ArgumentCaptor<TelemetryItem> captor = ArgumentCaptor.forClass(TelemetryItem.class);
+    verify(telemetryClient, atLeast(0)).trackAsync(captor.capture());
+    return captor.getAllValues();
+  }
+
+  private static MetricsData getMetricsData(TelemetryItem item) {
+    return (MetricsData) item.getData().getBaseData();
+  }
+}
@@ -0,0 +1,278 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.classicsdk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import com.microsoft.applicationinsights.agent.internal.classicsdk.MetricAggregator.AggregatedMetric;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class MetricAggregatorTest {
+
+  private final List<AggregatedMetric> exported = new ArrayList<>();
+
+  @Test
+  void shouldAggregatePerSeries() {
+    MetricAggregator aggregator = new MetricAggregator(100, exported::add);
+
+    aggregator.record("requests", "app", 1, properties("region", "east"), tags(), null);
+    aggregator.record("requests", "app", 2, properties("region", "east"), tags(), null);
+    aggregator.record("requests", "app", 3, properties("region", "east"), tags(), null);
+    aggregator.record("requests", "app", 10, properties("region", "west"), tags(), null);
+    aggregator.record("requests", null, 20, properties("region", "west"), tags(), null);
+    aggregator.flush();
+
+    assertThat(exported).hasSize(3);
+    AggregatedMetric east = find("app", "east");
+    assertThat(east.getName()).isEqualTo("requests");
+    assertThat(east.getCount()).isEqualTo(3);
+    assertThat(east.getSum()).isEqualTo(6.0);
+    assertThat(east.getMin()).isEqualTo(1.0);
+    assertThat(east.getMax()).isEqualTo(3.0);
+    assertThat(east.getStdDev()).isCloseTo(Math.sqrt(2.0 / 3), within(1e-9));
+
+    AggregatedMetric west = find("app", "west");
+    assertThat(west.getCount()).isEqualTo(1);
+    assertThat(west.getSum()).isEqualTo(10.0);
+    assertThat(west.getStdDev()).isEqualTo(0.0);
+
+    assertThat(find(null, "west").getSum()).isEqualTo(20.0);
+  }
+
+  @Test
+  void shouldComputeStdDevOfLargeValuesWithSmallVariance() {
+    MetricAggregator aggregator = new MetricAggregator(100, exported::add);
+
+    aggregator.record("latency", null, 1e9 + 1, properties("region", "east"), tags(), null);
+    aggregator.record("latency", null, 1e9 + 2, properties("region", "east"), tags(), null);
+    aggregator.record("latency", null, 1e9 + 3, properties("region", "east"), tags(), null);
+    aggregator.flush();
+    // the next interval is shifted by its own first value
+    aggregator.record("latency", null, 2e9 + 4, properties("region", "east"), tags(), null);
+    aggregator.record("latency", null, 2e9 + 6, properties("region", "east"), tags(), null);
+    aggregator.flush();
+
+    assertThat(exported).hasSize(2);
+    assertThat(exported.get(0).getStdDev()).isCloseTo(Math.sqrt(2.0 / 3), within(1e-6));
+    assertThat(exported.get(1).getStdDev()).isCloseTo(1.0, within(1e-6));
+  }
+
+  @Test
+  void shouldSeparateSeriesByTagsAndConnectionString() {
+    MetricAggregator aggregator = new MetricAggregator(100, exported::add);
+
+    Map<String, String> properties = properties("region", "east");
+    aggregator.record("requests", null, 1, properties, tags(), null);
+    aggregator.record("requests", null, 1, properties, tags(), "InstrumentationKey=other");
+    aggregator.record("requests", null, 1, properties, tags("ai.cloud.role", "web"), null);
+    aggregator.flush();
+
+    assertThat(exported).hasSize(3);
+    assertThat(aggregator.getSeriesCount()).isEqualTo(3);
+  }
+
+  @Test
+  void shouldNotKeepCallerMaps() {
+    MetricAggregator aggregator = new MetricAggregator(100, exported::add);
+
+    // the 2.x SDK reuses its context maps
+    Map<String, String> properties = properties("region", "east");
+    aggregator.record("requests", null, 1, properties, tags(), null);
+    properties.put("region", "west");
+    aggregator.record("requests", null, 2, properties, tags(), null);
+    aggregator.flush();
+
+    assertThat(exported).hasSize(2);
+    assertThat(find(null, "east").getSum()).isEqualTo(1.0);
+    assertThat(find(null, "west").getSum()).isEqualTo(2.0);
+  }
+
+  @Test
+  void shouldOnlyExportSeriesRecordedSinceLastFlush() {
+    MetricAggregator aggregator = new MetricAggregator(100, exported::add);
+
+    aggregator.record("requests", null, 5, properties("region", "east"), tags(), null);
+    aggregator.record("requests", null, 7, properties("region", "west"), tags(), null);
+    aggregator.flush();
+    exported.clear();
+
+    aggregator.record("requests", null, 3, properties("region", "east"), tags(), null);
+    aggregator.flush();
+
+    assertThat(exported).hasSize(1);
+    AggregatedMetric east = find(null, "east");
+    assertThat(east.getCount()).isEqualTo(1);
+    assertThat(east.getSum()).isEqualTo(3.0);
+    assertThat(east.getMin()).isEqualTo(3.0);
+    assertThat(east.getMax()).isEqualTo(3.0);
+  }
+
+  @Test
+  void shouldFoldSeriesOverCapIntoOverflowSeries() {
+    MetricAggregator aggregator = new MetricAggregator(2, exported::add);
+
+    for (int i = 0; i < 5; i++) {
+      aggregator.record("requests", null, i, properties("user", "user" + i), tags(), null);
+    }
+    // existing series are still recorded into
+    aggregator.record("requests", null, 10, properties("user", "user0"), tags(), null);
+    aggregator.flush();
+
+    assertThat(aggregator.getSeriesCount()).isEqualTo(2);
+    assertThat(aggregator.getOverflowSeriesCount()).isEqualTo(1);
+    assertThat(exported).hasSize(3);
+    assertThat(find(null, "user0").getSum()).isEqualTo(10.0);
+    assertThat(find(null, "user1").getSum()).isEqualTo(1.0);
+    AggregatedMetric overflow = findOverflow();
+    assertThat(overflow.getName()).isEqualTo("requests");
+    assertThat(overflow.getCount()).isEqualTo(3);
+    assertThat(overflow.getSum()).isEqualTo(9.0);
+    assertThat(overflow.getMin()).isEqualTo(2.0);
+    assertThat(overflow.getMax()).isEqualTo(4.0);
+  }
+
+  @Test
+  void shouldRemoveSeriesNotRecordedForAnInterval() {
+    MetricAggregator aggregator = new MetricAggregator(2, exported::add);
+
+    aggregator.record("requests", null, 1, properties("user", "user0"), tags(), null);
+    aggregator.record("requests", null, 2, properties("user", "user1"), tags(), null);
+    aggregator.record("requests", null, 3, properties("user", "user2"), tags(), null);
+    aggregator.flush();
+    aggregator.flush();
+
+    assertThat(aggregator.getSeriesCount()).isZero();
+    assertThat(aggregator.getOverflowSeriesCount()).isZero();
+
+    // the removed series don't count against the limit anymore
+    exported.clear();
+    aggregator.record("requests", null, 4, properties("user", "user3"), tags(), null);
+    aggregator.record("requests", null, 5, properties("user", "user4"), tags(), null);
+    aggregator.flush();
+
+    assertThat(exported).hasSize(2);
+    assertThat(find(null, "user3").getSum()).isEqualTo(4.0);
+    assertThat(find(null, "user4").getSum()).isEqualTo(5.0);
+  }
+
+  @Test
+  void shouldDropValuesOverOverflowSeriesCap() {
+    MetricAggregator aggregator = new MetricAggregator(1, exported::add);
+
+    aggregator.record("requests", null, 1, properties("user", "user0"), tags(), null);
+    aggregator.record("requests", null, 2, properties("user", "user1"), tags(), null);
+    aggregator.record("latency", null, 3, properties("user", "user2"), tags(), null);
+    aggregator.flush();
+
+    assertThat(aggregator.getSeriesCount()).isEqualTo(1);
+    assertThat(aggregator.getOverflowSeriesCount()).isEqualTo(1);
+    assertThat(exported).hasSize(2);
+    assertThat(find(null, "user0").getSum()).isEqualTo(1.0);
+    assertThat(findOverflow().getSum()).isEqualTo(2.0);
+  }
+
+  @Test
+  void shouldExportConsistentAggregatesWhileRecordingConcurrently() throws Exception {
+    MetricAggregator aggregator = new MetricAggregator(100, exported::add);
+    int threads = 4;
+    int iterations = 100000;
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    for (int t = 0; t < threads; t++) {
+      executor.execute(
+          () -> {
+            for (int i = 0; i < iterations; i++) {
+              aggregator.record("requests", null, 1, properties("region", "east"), tags(), null);
+            }
+          });
+    }
+    executor.shutdown();
+    while (!executor.awaitTermination(1, TimeUnit.MILLISECONDS)) {
+      aggregator.flush();
+    }
+    aggregator.flush();
+
+    long count = 0;
+    for (AggregatedMetric metric : exported) {
+      // every value that is counted is also in the sum, min and max of the same interval
+      assertThat(metric.getSum()).isEqualTo((double) metric.getCount());
+      assertThat(metric.getMin()).isEqualTo(1.0);
+      assertThat(metric.getMax()).isEqualTo(1.0);
+      count += metric.getCount();
+    }
+    assertThat(count).isEqualTo((long) threads * iterations);
+  }
+
+  @Test
+  void shouldNotLoseValuesRecordedConcurrently() throws Exception {
+    MetricAggregator aggregator = new MetricAggregator(100, exported::add);
+    int threads = 4;
+    int iterations = 10000;
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    for (int t = 0; t < threads; t++) {
+      executor.execute(
+          () -> {
+            for (int i = 1; i <= iterations; i++) {
+              aggregator.record("requests", null, i, properties("region", "east"), tags(), null);
+            }
+          });
+    }
+    executor.shutdown();
+    assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+    aggregator.flush();
+
+    assertThat(exported).hasSize(1);
+    AggregatedMetric east = exported.get(0);
+    assertThat(east.getCount()).isEqualTo((long) threads * iterations);
+    assertThat(east.getSum()).isEqualTo(threads * (iterations * (iterations + 1) / 2.0));
+    assertThat(east.getMin()).isEqualTo(1.0);
+    assertThat(east.getMax()).isEqualTo((double) iterations);
+  }
+
+  private AggregatedMetric find(String namespace, String propertyValue) {
+    for (AggregatedMetric metric : exported) {
+      String actualNamespace = metric.getNamespace();
+      boolean namespaceMatches =
+          namespace == null ? actualNamespace == null : namespace.equals(actualNamespace);
+      if (namespaceMatches && metric.getProperties().containsValue(propertyValue)) {
+        return metric;
+      }
+    }
+    throw new AssertionError("metric not found: " + namespace + ", " + propertyValue);
+  }
+
+  private AggregatedMetric findOverflow() {
+    for (AggregatedMetric metric : exported) {
+      if ("true".equals(metric.getProperties().get(MetricAggregator.OVERFLOW_PROPERTY))) {
+        assertThat(metric.getProperties()).hasSize(1);
+        return metric;
+      }
+    }
+    throw new AssertionError("overflow metric not found");
+  }
+
+  private static Map<String, String> properties(String key, String value) {
+    Map<String, String> properties = new HashMap<>();
+    properties.put(key, value);
+    return properties;
+  }
+
+  private static Map<String, String> tags() {
+    return Collections.emptyMap();
+  }
+
+  private static Map<String, String> tags(String key, String value) {
+    return Collections.singletonMap(key, value);
+  }
+}
@@ -0,0 +1,248 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.diagnostics.etw;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.status.Status;
+import com.microsoft.applicationinsights.agent.internal.diagnostics.etw.events.IpaInfo;
+import com.microsoft.applicationinsights.agent.internal.diagnostics.etw.events.model.IpaEtwEventBase;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class EtwAppenderTest {
+
+  private final InMemoryEtwEventWriter writer = new InMemoryEtwEventWriter();
+  private EtwAppender appender;
+
+  @BeforeEach
+  void setUp() {
+    appender = new EtwAppender(new IpaInfo(), writer);
+    appender.setContext(new LoggerContext());
+    appender.setAsync(true);
+  }
+
+  @AfterEach
+  void tearDown() {
+    writer.release();
+    appender.stop();
+  }
+
+  @Test
+  void shouldWriteFromBackgroundThread() throws Exception {
+    appender.start();
+    writer.block();
+
+    for (int i = 0; i < 10; i++) {
+      // returns even though the writer is blocked
+      appender.doAppend(event(Level.WARN, "message " + i));
+    }
+    writer.release();
+    appender.stop();
+
+    assertThat(writer.messages)
+        .containsExactly(
+            "[test.logger] message 0",
+            "[test.logger] message 1",
+            "[test.logger] message 2",
+            "[test.logger] message 3",
+            "[test.logger] message 4",
+            "[test.logger] message 5",
+            "[test.logger] message 6",
+            "[test.logger] message 7",
+            "[test.logger] message 8",
+            "[test.logger] message 9");
+    assertThat(writer.threads).doesNotContain(Thread.currentThread().getName());
+  }
+
+  @Test
+  void shouldFormatMessageOnLoggingThread() {
+    appender.start();
+    writer.block();
+
+    StringBuilder arg = new StringBuilder("before");
+    ILoggingEvent event = event(Level.WARN, "value %s");
+    when(event.getArgumentArray()).thenReturn(new Object[] {arg});
+    appender.doAppend(event);
+    // changed by the caller while the event is still waiting to be written
+    arg.setLength(0);
+    arg.append("after");
+    writer.release();
+    appender.stop();
+
+    assertThat(writer.messages).containsExactly("[test.logger] value before");
+  }
+
+  @Test
+  void shouldCoalesceIdenticalEvents() {
+    appender.start();
+
+    for (int i = 0; i < 100; i++) {
+      appender.doAppend(event(Level.ERROR, "something failed"));
+    }
+    appender.doAppend(event(Level.ERROR, "something else failed"));
+    appender.stop();
+
+    assertThat(writer.messages)
+        .containsExactlyInAnyOrder(
+            "[test.logger] something failed",
+            "[test.logger] something else failed",
+            "[test.logger] something failed (repeated 99 more times)");
+    assertThat(appender.getCoalescedCount()).isEqualTo(99);
+  }
+
+  @Test
+  void shouldNotCoalesceAfterWindow() throws Exception {
+    appender.setCoalesceWindowMillis(100);
+    appender.start();
+
+    appender.doAppend(event(Level.WARN, "something failed"));
+    appender.doAppend(event(Level.WARN, "something failed"));
+    TimeUnit.MILLISECONDS.sleep(500);
+    appender.doAppend(event(Level.WARN, "something failed"));
+    appender.stop();
+
+    assertThat(writer.messages)
+        .containsExactly(
+            "[test.logger] something failed",
+            "[test.logger] something failed (repeated 1 more times)",
+            "[test.logger] something failed");
+  }
+
+  @Test
+  void shouldCountDroppedEvents() throws Exception {
+    appender.setQueueSize(4);
+    appender.start();
+    writer.block();
+
+    appender.doAppend(event(Level.WARN, "first"));
+    // the first event has been taken off the queue, and the worker thread is stuck writing it
+    assertThat(writer.entered.await(10, TimeUnit.SECONDS)).isTrue();
+    for (int i = 0; i < 20; i++) {
+      appender.doAppend(event(Level.WARN, "message " + i));
+    }
+    assertThat(appender.getDroppedCount()).isEqualTo(16);
+
+    writer.release();
+    appender.stop();
+
+    assertThat(writer.messages)
+        .containsExactly(
+            "[test.logger] first",
+            "[test.logger] message 0",
+            "[test.logger] message 1",
+            "[test.logger] message 2",
+            "[test.logger] message 3",
+            "16 ETW events were dropped because the ETW event queue was full");
+  }
+
+  @Test
+  void shouldCountDroppedEventsAfterWriterError() throws Exception {
+    appender.start();
+    writer.block();
+
+    appender.doAppend(event(Level.WARN, "first"));
+    assertThat(writer.entered.await(10, TimeUnit.SECONDS)).isTrue();
+    for (int i = 0; i < 3; i++) {
+      appender.doAppend(event(Level.WARN, "message " + i));
+    }
+    writer.failWith(new UnsatisfiedLinkError("test"));
+    writer.release();
+
+    // the failed event and the ones that were still queued
+    await().untilAsserted(() -> assertThat(appender.getDroppedCount()).isEqualTo(4));
+    appender.doAppend(event(Level.WARN, "after"));
+    assertThat(appender.getDroppedCount()).isEqualTo(5);
+
+    appender.stop();
+
+    assertThat(writer.messages).isEmpty();
+    assertThat(appender.getContext().getStatusManager().getCopyOfStatusList())
+        .filteredOn(status -> status.getLevel() == Status.ERROR)
+        .hasSize(1);
+  }
+
+  @Test
+  void shouldWriteFromLoggingThreadWhenNotAsync() {
+    appender.setAsync(false);
+    appender.start();
+
+    appender.doAppend(event(Level.INFO, "message"));
+    appender.doAppend(event(Level.INFO, "message"));
+
+    assertThat(writer.messages)
+        .containsExactly("[test.logger] message", "[test.logger] message");
+    assertThat(writer.threads).containsOnly(Thread.currentThread().getName());
+  }
+
+  private static ILoggingEvent event(Level level, String message) {
+    ILoggingEvent event = mock(ILoggingEvent.class);
+    when(event.getLevel()).thenReturn(level);
+    when(event.getLoggerName()).thenReturn("test.logger");
+    when(event.getMessage()).thenReturn(message);
+    return event;
+  }
+
+  // stand-in for EtwProvider, which needs the native library
+  private static class InMemoryEtwEventWriter implements EtwEventWriter {
+
+    private final List<String> messages = new CopyOnWriteArrayList<>();
+    private final List<String> threads = new CopyOnWriteArrayList<>();
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private volatile boolean started;
+    @Nullable private volatile CountDownLatch blocked;
+    @Nullable private volatile Error error;
+
+    void block() {
+      blocked = new CountDownLatch(1);
+    }
+
+    void failWith(Error error) {
+      this.error = error;
+    }
+
+    void release() {
+      CountDownLatch blocked = this.blocked;
+      if (blocked != null) {
+        blocked.countDown();
+      }
+    }
+
+    @Override
+    public void writeEvent(IpaEtwEventBase event) {
+      if (!started) {
+        // the event written by EtwAppender.start() to check the provider
+        started = true;
+        return;
+      }
+      entered.countDown();
+      CountDownLatch blocked = this.blocked;
+      if (blocked != null) {
+        try {
+          blocked.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      Error error = this.error;
+      if (error != null) {
+        throw error;
+      }
+      messages.add(event.getFormattedMessage());
+      threads.add(Thread.currentThread().getName());
+    }
+  }
+}
@@ -0,0 +1,205 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.diagnostics.log;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.ThrowableProxy;
+import ch.qos.logback.core.CoreConstants;
+import com.microsoft.applicationinsights.agent.internal.diagnostics.DiagnosticsHelper;
+import com.microsoft.applicationinsights.agent.internal.diagnostics.DiagnosticsValueFinder;
+import com.microsoft.applicationinsights.agent.internal.diagnostics.InstrumentationKeyFinder;
+import com.microsoft.applicationinsights.agent.internal.diagnostics.SiteNameFinder;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the diagnostics log layouts against golden files, which hold the output from before the
+ * layouts were changed to render into a reusable buffer.
+ */
+class DiagnosticsLogLayoutGoldenTest {
+
+  private static final String SPECIAL_CHARACTERS =
+      "quote \" backslash \\ slash / tab \t newline \n carriage return \r escape \u001b"
+          + " start of heading \u0001 delete \u007f accented \u00e9 cjk \u65e5\u672c"
+          + " emoji \ud83d\ude00 separator \u2028";
+
+  @Test
+  void jsonLayoutMatchesGoldenFile() throws Exception {
+    ApplicationInsightsJsonLayout layout = newJsonLayout();
+    List<ILoggingEvent> events =
+        Arrays.asList(
+            event(1700000000123L, Level.INFO, "com.example.Foo", "Application started"),
+            event(1700000001456L, Level.WARN, "com.example.Bar", SPECIAL_CHARACTERS),
+            event(1700000002789L, Level.ERROR, null, "no logger"),
+            event(1700000000123L, Level.DEBUG, "com.example.Foo", null));
+    withMdc(events.get(1), "Startup", "2001");
+    withMdc(events.get(2), null, "2002");
+    withMdc(events.get(3), "op", null);
+
+    List<String> golden = readGoldenFile("json-layout-golden.txt");
+    assertThat(golden).hasSameSizeAs(events);
+    // twice, to check that nothing is left over in the reused buffer
+    for (int run = 0; run < 2; run++) {
+      for (int i = 0; i < events.size(); i++) {
+        String line = layout.doLayout(events.get(i));
+        assertThat(line).isEqualTo(golden.get(i) + CoreConstants.LINE_SEPARATOR);
+        assertThat(line).isEqualTo(layoutFromMap(layout, events.get(i)));
+      }
+    }
+  }
+
+  @Test
+  void jsonLayoutMatchesMapWithException() throws Exception {
+    ApplicationInsightsJsonLayout layout = newJsonLayout();
+    ILoggingEvent event = event(1700000002789L, Level.ERROR, "com.example.Foo", "failed");
+    Exception exception = new IllegalStateException("boom \"quoted\"", new Exception("cause"));
+    when(event.getThrowableProxy()).thenReturn(new ThrowableProxy(exception));
+
+    // the stack trace contains line separators and line numbers, so it is checked against the
+    // output of serializing the map instead of a golden file
+    assertThat(layout.doLayout(event)).isEqualTo(layoutFromMap(layout, event));
+  }
+
+  @Test
+  void csvLayoutMatchesGoldenFile() throws IOException {
+    Map<String, String> envVars = new HashMap<>();
+    envVars.put("WEBSITE_SITE_NAME", "my-site");
+    envVars.put("APPINSIGHTS_INSTRUMENTATIONKEY", "00000000-0000-0000-0000-000000000000");
+    ApplicationInsightsCsvLayout layout = newCsvLayout(envVars);
+    List<ILoggingEvent> events =
+        Arrays.asList(
+            event(1700000000123L, Level.INFO, "com.example.Foo", "Application started"),
+            event(
+                1700000001456L,
+                Level.WARN,
+                "com.example.Bar",
+                "first line\r\nsecond line\nsaid \"hi\", then\ttab"),
+            event(1700000002789L, Level.ERROR, "com.example.Foo", "Something failed"));
+    Exception exception = new IllegalStateException("boom");
+    exception.setStackTrace(
+        new StackTraceElement[] {
+          new StackTraceElement("com.example.Foo", "bar", "Foo.java", 42),
+          new StackTraceElement("com.example.Main", "main", "Main.java", 7)
+        });
+    when(events.get(2).getThrowableProxy()).thenReturn(new ThrowableProxy(exception));
+
+    List<String> golden = readGoldenFile("csv-layout-golden.txt");
+    assertThat(golden).hasSameSizeAs(events);
+    for (int run = 0; run < 2; run++) {
+      for (int i = 0; i < events.size(); i++) {
+        assertThat(layout.doLayout(events.get(i)))
+            .isEqualTo(golden.get(i) + System.getProperty("line.separator"));
+      }
+    }
+  }
+
+  @Test
+  void csvLayoutResolvesInstrumentationKeyForEachLine() {
+    // the instrumentation key is only set when an Azure Functions placeholder is specialized
+    Map<String, String> envVars = new HashMap<>();
+    envVars.put("WEBSITE_SITE_NAME", "my-site");
+    ApplicationInsightsCsvLayout layout = newCsvLayout(envVars);
+    ILoggingEvent event =
+        event(1700000000123L, Level.INFO, "com.example.Foo", "Application started");
+
+    assertThat(layout.doLayout(event))
+        .isEqualTo(
+            "LanguageWorkerConsoleLogMS_APPLICATION_INSIGHTS_LOGS 1700000000123,INFO,"
+                + "com.example.Foo,\"Application started\",my-site,null,java:3.7.0,java"
+                + System.getProperty("line.separator"));
+
+    envVars.put(
+        "APPLICATIONINSIGHTS_CONNECTION_STRING",
+        "InstrumentationKey=00000000-0000-0000-0000-000000000000");
+
+    assertThat(layout.doLayout(event))
+        .isEqualTo(
+            "LanguageWorkerConsoleLogMS_APPLICATION_INSIGHTS_LOGS 1700000000123,INFO,"
+                + "com.example.Foo,\"Application started\",my-site,"
+                + "00000000-0000-0000-0000-000000000000,java:3.7.0,java"
+                + System.getProperty("line.separator"));
+  }
+
+  private static ApplicationInsightsCsvLayout newCsvLayout(Map<String, String> envVars) {
+    return new ApplicationInsightsCsvLayout(
+        new SiteNameFinder(), new InstrumentationKeyFinder(), envVars::get, "java:3.7.0");
+  }
+
+  private static ApplicationInsightsJsonLayout newJsonLayout() {
+    ApplicationInsightsJsonLayout layout = new ApplicationInsightsJsonLayout();
+    layout.valueFinders.clear();
+    layout.valueFinders.add(finder("siteName", "my-site"));
+    layout.valueFinders.add(finder("ikey", "00000000-0000-0000-0000-000000000000"));
+    layout.valueFinders.add(finder("extensionVersion", ""));
+    layout.valueFinders.add(finder("sdkVersion", "java:3.7.0"));
+    layout.valueFinders.add(finder("subscriptionId", null));
+    // same as LoggingConfigurator
+    layout.setContext(new LoggerContext());
+    layout.setTimestampFormat("yyyy-MM-dd'T'HH:mm:ss.SSSX");
+    layout.setTimestampFormatTimezoneId("Etc/UTC");
+    layout.setAppendLineSeparator(true);
+    layout.setJsonFormatter(new JacksonJsonFormatter());
+    layout.start();
+    return layout;
+  }
+
+  // this is how the layout rendered events before
+  private static String layoutFromMap(ApplicationInsightsJsonLayout layout, ILoggingEvent event)
+      throws Exception {
+    return new JacksonJsonFormatter().toJsonString(layout.toJsonMap(event))
+        + CoreConstants.LINE_SEPARATOR;
+  }
+
+  private static DiagnosticsValueFinder finder(String name, @Nullable String value) {
+    DiagnosticsValueFinder finder = mock(DiagnosticsValueFinder.class);
+    when(finder.getName()).thenReturn(name);
+    when(finder.getValue(null)).thenReturn(value);
+    return finder;
+  }
+
+  private static ILoggingEvent event(
+      long timestamp, Level level, @Nullable String loggerName, @Nullable String message) {
+    ILoggingEvent event = mock(ILoggingEvent.class);
+    when(event.getTimeStamp()).thenReturn(timestamp);
+    when(event.getLevel()).thenReturn(level);
+    when(event.getLoggerName()).thenReturn(loggerName);
+    when(event.getFormattedMessage()).thenReturn(message);
+    return event;
+  }
+
+  private static void withMdc(
+      ILoggingEvent event, @Nullable String operation, @Nullable String messageId) {
+    Map<String, String> mdc = new HashMap<>();
+    if (operation != null) {
+      mdc.put(DiagnosticsHelper.MDC_PROP_OPERATION, operation);
+    }
+    if (messageId != null) {
+      mdc.put(DiagnosticsHelper.MDC_MESSAGE_ID, messageId);
+    }
+    when(event.getMDCPropertyMap()).thenReturn(mdc);
+  }
+
+  private static List<String> readGoldenFile(String name) throws IOException {
+    try (InputStream in =
+        DiagnosticsLogLayoutGoldenTest.class.getResourceAsStream("/diagnostics/log/" + name)) {
+      return new BufferedReader(new InputStreamReader(in, UTF_8)).lines().collect(toList());
+    }
+  }
+}
@@ -0,0 +1,59 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.diagnostics.status;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class StatusFileJsonMapTest {
+
+  private final Map<String, String> envVars = new ConcurrentHashMap<>();
+
+  private Function<String, String> originalEnvVarsFunction;
+
+  @BeforeEach
+  void setUp() {
+    originalEnvVarsFunction = StatusFile.envVarsFunction;
+    StatusFile.envVarsFunction = envVars::get;
+  }
+
+  @AfterEach
+  void tearDown() {
+    StatusFile.envVarsFunction = originalEnvVarsFunction;
+  }
+
+  @Test
+  void shouldPickUpConnectionStringChangesBetweenWrites() {
+    // given
+    envVars.put(
+        "APPLICATIONINSIGHTS_CONNECTION_STRING", "InstrumentationKey=placeholder-ikey-123");
+    assertThat(StatusFile.getJsonMap()).containsEntry("Ikey", "placeholder-ikey-123");
+
+    // when
+    envVars.put(
+        "APPLICATIONINSIGHTS_CONNECTION_STRING", "InstrumentationKey=specialized-ikey-456");
+
+    // then
+    assertThat(StatusFile.getJsonMap()).containsEntry("Ikey", "specialized-ikey-456");
+  }
+
+  @Test
+  void shouldDropTheInstrumentationKeyWhenItIsRemoved() {
+    // given
+    envVars.put("APPINSIGHTS_INSTRUMENTATIONKEY", "an-ikey-123");
+    assertThat(StatusFile.getJsonMap()).containsEntry("Ikey", "an-ikey-123");
+
+    // when
+    envVars.remove("APPINSIGHTS_INSTRUMENTATIONKEY");
+
+    // then
+    assertThat(StatusFile.getJsonMap()).doesNotContainKey("Ikey");
+  }
+}
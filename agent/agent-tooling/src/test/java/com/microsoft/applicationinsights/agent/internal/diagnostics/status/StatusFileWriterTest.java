@@ -0,0 +1,106 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.diagnostics.status;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StatusFileWriterTest {
+
+  // long enough that a burst of updates always falls within a single debounce window
+  private static final long DEBOUNCE_MILLIS = 500;
+
+  @TempDir File tempDir;
+
+  private final Map<String, Object> values = new ConcurrentHashMap<>();
+  private final AtomicInteger snapshots = new AtomicInteger();
+  private ScheduledExecutorService executor;
+  private StatusFileWriter writer;
+  private File file;
+
+  @BeforeEach
+  void setUp() {
+    executor = Executors.newSingleThreadScheduledExecutor();
+    file = new File(tempDir, "status_test.json");
+    writer =
+        new StatusFileWriter(
+            executor,
+            DEBOUNCE_MILLIS,
+            () -> {
+              snapshots.incrementAndGet();
+              return new ConcurrentHashMap<>(values);
+            },
+            map -> file,
+            false);
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    executor.shutdown();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void shouldCoalesceBurstIntoSingleWrite() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      values.put("Counter", i);
+      writer.requestWrite(false);
+    }
+
+    await().untilAsserted(() -> assertThat(writer.writeCount).hasValue(1));
+    // give any redundant write the chance to happen
+    TimeUnit.MILLISECONDS.sleep(DEBOUNCE_MILLIS * 2);
+
+    assertThat(writer.writeCount).hasValue(1);
+    assertThat(snapshots).hasValue(1);
+    assertThat(readFile()).containsEntry("Counter", 999);
+  }
+
+  @Test
+  void shouldWriteAgainWhenUpdatedAfterWrite() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      values.put("Counter", i);
+      writer.requestWrite(false);
+    }
+    await().untilAsserted(() -> assertThat(writer.writeCount).hasValue(1));
+
+    for (int i = 1000; i < 2000; i++) {
+      values.put("Counter", i);
+      writer.requestWrite(false);
+    }
+    await().untilAsserted(() -> assertThat(writer.writeCount).hasValue(2));
+    TimeUnit.MILLISECONDS.sleep(DEBOUNCE_MILLIS * 2);
+
+    assertThat(writer.writeCount).hasValue(2);
+    assertThat(readFile()).containsEntry("Counter", 1999);
+  }
+
+  @Test
+  void shouldNotLeaveTempFileBehind() {
+    values.put("AppType", "java");
+    writer.requestWrite(false);
+
+    await().untilAsserted(() -> assertThat(writer.writeCount).hasValue(1));
+
+    assertThat(tempDir.list()).containsExactly("status_test.json");
+  }
+
+  private Map<?, ?> readFile() throws IOException {
+    return new ObjectMapper().readValue(file, Map.class);
+  }
+}
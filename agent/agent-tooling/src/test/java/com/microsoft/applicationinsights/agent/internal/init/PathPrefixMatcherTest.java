@@ -0,0 +1,98 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.init;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class PathPrefixMatcherTest {
+
+  @Test
+  void shouldMatchNothingWhenEmpty() {
+    PathPrefixMatcher matcher = create(emptyList());
+
+    assertThat(matcher.getValue("/api")).isNull();
+    assertThat(matcher.getValue("")).isNull();
+  }
+
+  @Test
+  void shouldMatchPrefixes() {
+    PathPrefixMatcher matcher = create(asList("/api/orders", "/api/users", "/health"));
+
+    assertThat(matcher.getValue("/api/orders")).isEqualTo("value0");
+    assertThat(matcher.getValue("/api/orders/123")).isEqualTo("value0");
+    assertThat(matcher.getValue("/api/users?id=1")).isEqualTo("value1");
+    assertThat(matcher.getValue("/health")).isEqualTo("value2");
+    assertThat(matcher.getValue("/api/order")).isNull();
+    assertThat(matcher.getValue("/api")).isNull();
+    assertThat(matcher.getValue("/other")).isNull();
+  }
+
+  @Test
+  void shouldPreferFirstConfiguredPrefix() {
+    // same as the linear scan that it replaces, the first prefix in configuration order wins,
+    // even when a longer prefix also matches
+    PathPrefixMatcher shortFirst = create(asList("/api", "/api/orders"));
+    PathPrefixMatcher longFirst = create(asList("/api/orders", "/api"));
+
+    assertThat(shortFirst.getValue("/api/orders/1")).isEqualTo("value0");
+    assertThat(longFirst.getValue("/api/orders/1")).isEqualTo("value0");
+    assertThat(longFirst.getValue("/api/users/1")).isEqualTo("value1");
+  }
+
+  @Test
+  void shouldMatchEmptyPrefix() {
+    PathPrefixMatcher matcher = create(asList("/api", ""));
+
+    assertThat(matcher.getValue("/api/orders")).isEqualTo("value0");
+    assertThat(matcher.getValue("/other")).isEqualTo("value1");
+    assertThat(matcher.getValue("")).isEqualTo("value1");
+  }
+
+  @Test
+  void shouldAgreeWithLinearScan() {
+    Random random = new Random(0);
+    for (int round = 0; round < 100; round++) {
+      List<String> prefixes = new ArrayList<>();
+      int count = random.nextInt(20);
+      for (int i = 0; i < count; i++) {
+        prefixes.add(randomPath(random));
+      }
+      PathPrefixMatcher matcher = create(prefixes);
+      for (int i = 0; i < 100; i++) {
+        String path = randomPath(random) + randomPath(random);
+        assertThat(matcher.getValue(path)).isEqualTo(linearScan(prefixes, path));
+      }
+    }
+  }
+
+  private static PathPrefixMatcher create(List<String> prefixes) {
+    return PathPrefixMatcher.create(
+        prefixes, prefix -> prefix, prefix -> "value" + prefixes.indexOf(prefix));
+  }
+
+  private static String linearScan(List<String> prefixes, String path) {
+    for (int i = 0; i < prefixes.size(); i++) {
+      if (path.startsWith(prefixes.get(i))) {
+        return "value" + prefixes.indexOf(prefixes.get(i));
+      }
+    }
+    return null;
+  }
+
+  private static String randomPath(Random random) {
+    StringBuilder path = new StringBuilder();
+    int length = random.nextInt(4);
+    for (int i = 0; i < length; i++) {
+      path.append("/ab".charAt(random.nextInt(3)));
+    }
+    return path.toString();
+  }
+}
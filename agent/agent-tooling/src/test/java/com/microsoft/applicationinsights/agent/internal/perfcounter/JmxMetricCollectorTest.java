@@ -0,0 +1,154 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.perfcounter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.lang.management.MemoryUsage;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class JmxMetricCollectorTest {
+
+  @SuppressWarnings({"unused", "checkstyle:AbbreviationAsWordInName", "IdentifierName"})
+  // This class name must end in MXBean (case sensitive)
+  public interface CollectorStubMXBean {
+    int getIntSample();
+
+    long getLongSample();
+
+    MemoryUsage getUsage();
+  }
+
+  public static class CollectorStub implements CollectorStubMXBean {
+    private final int intSample;
+    private final long longSample;
+
+    public CollectorStub(int intSample, long longSample) {
+      this.intSample = intSample;
+      this.longSample = longSample;
+    }
+
+    @Override
+    public int getIntSample() {
+      return intSample;
+    }
+
+    @Override
+    public long getLongSample() {
+      return longSample;
+    }
+
+    @Override
+    public MemoryUsage getUsage() {
+      return new MemoryUsage(0, intSample, longSample, longSample);
+    }
+  }
+
+  private MBeanServer server;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    server = MBeanServerFactory.newMBeanServer();
+    server.registerMBean(new CollectorStub(1, 10), new ObjectName("Tests:type=Stub,name=a"));
+    server.registerMBean(new CollectorStub(2, 20), new ObjectName("Tests:type=Stub,name=b"));
+  }
+
+  @Test
+  void collectsAllMatchingMBeans() {
+    JmxAttributeData intSample = new JmxAttributeData("Int", "IntSample");
+    JmxAttributeData longSample = new JmxAttributeData("Long", "LongSample");
+    JmxMetricCollector collector =
+        new JmxMetricCollector(server, attributes("Tests:type=Stub,*", intSample, longSample));
+
+    assertThat(collect(collector)).containsOnly(entry("Int", 3.0), entry("Long", 30.0));
+  }
+
+  @Test
+  void picksUpRegisteredAndUnregisteredMBeans() throws Exception {
+    JmxAttributeData intSample = new JmxAttributeData("Int", "IntSample");
+    JmxMetricCollector collector =
+        new JmxMetricCollector(server, attributes("Tests:type=Stub,*", intSample));
+
+    assertThat(collect(collector)).containsOnly(entry("Int", 3.0));
+
+    server.registerMBean(new CollectorStub(4, 40), new ObjectName("Tests:type=Stub,name=c"));
+    assertThat(collect(collector)).containsOnly(entry("Int", 7.0));
+
+    server.unregisterMBean(new ObjectName("Tests:type=Stub,name=a"));
+    assertThat(collect(collector)).containsOnly(entry("Int", 6.0));
+  }
+
+  @Test
+  void walksCompositeDataPath() {
+    JmxAttributeData used = new JmxAttributeData("Used", "Usage.used");
+    JmxAttributeData max = new JmxAttributeData("Max", "Usage.max");
+    JmxMetricCollector collector =
+        new JmxMetricCollector(server, attributes("Tests:type=Stub,name=b", used, max));
+
+    assertThat(collect(collector)).containsOnly(entry("Used", 2.0), entry("Max", 20.0));
+  }
+
+  @Test
+  void skipsOnlyMissingAttributes() {
+    JmxAttributeData intSample = new JmxAttributeData("Int", "IntSample");
+    JmxAttributeData missing = new JmxAttributeData("Missing", "MissingSample");
+    JmxMetricCollector collector =
+        new JmxMetricCollector(server, attributes("Tests:type=Stub,*", intSample, missing));
+
+    assertThat(collect(collector)).containsOnly(entry("Int", 3.0));
+  }
+
+  @Test
+  void skipsMissingObjectNames() {
+    JmxAttributeData intSample = new JmxAttributeData("Int", "IntSample");
+    JmxMetricCollector collector =
+        new JmxMetricCollector(server, attributes("Tests:type=Missing", intSample));
+
+    assertThat(collect(collector)).isEmpty();
+  }
+
+  @Test
+  void isolatesFailuresPerAttribute() {
+    JmxAttributeData intSample = new JmxAttributeData("Int", "IntSample");
+    JmxAttributeData longSample = new JmxAttributeData("Long", "LongSample");
+    JmxAttributeData used = new JmxAttributeData("Used", "Usage.used");
+    Map<String, Collection<JmxAttributeData>> attributes =
+        attributes("Tests:type=Stub,*", intSample, longSample);
+    attributes.put("Tests:type=Stub,name=b", Arrays.asList(used));
+    JmxMetricCollector collector = new JmxMetricCollector(server, attributes);
+
+    Map<String, Double> values = new HashMap<>();
+    collector.collect(
+        (attribute, value) -> {
+          if (attribute == intSample) {
+            throw new IllegalStateException("boom");
+          }
+          values.put(attribute.metricName, value);
+        });
+
+    assertThat(values).containsOnly(entry("Long", 30.0), entry("Used", 2.0));
+  }
+
+  private static Map<String, Collection<JmxAttributeData>> attributes(
+      String objectName, JmxAttributeData... attributes) {
+    Map<String, Collection<JmxAttributeData>> map = new HashMap<>();
+    map.put(objectName, Arrays.asList(attributes));
+    return map;
+  }
+
+  private static Map<String, Double> collect(JmxMetricCollector collector) {
+    Map<String, Double> values = new HashMap<>();
+    collector.collect((attribute, value) -> values.put(attribute.metricName, value));
+    return values;
+  }
+}
@@ -0,0 +1,111 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.processors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.MatchType;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorIncludeExclude;
+import com.microsoft.applicationinsights.agent.internal.processors.AgentProcessor.IncludeExclude;
+import com.microsoft.applicationinsights.agent.internal.processors.AgentProcessor.LiteralPrefilteredPattern;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+class AgentProcessorTest {
+
+  private static final String[] NAMES = {
+    "", "svcA", "svcB", "GET /api/svcA", "svcA/x", "svcAAA", "a.b", "axb", "abc", "ac", "a+c", "x|y"
+  };
+
+  @Test
+  void prefilteredPatternsMatchLikeFind() {
+    String[] regexes = {
+      "svcA",
+      "^svcA",
+      "svcA$",
+      "^svcA$",
+      "svcA+",
+      "svcA*",
+      "svcA?",
+      "svcA{2}",
+      "a\\.b",
+      "a.b",
+      "ab?c",
+      "a\\+c",
+      "^GET /api/.*",
+      "svcA|svcB",
+      "x\\|y",
+      "(?i)SVCA",
+      "svc[AB]",
+      ""
+    };
+    for (String regex : regexes) {
+      LiteralPrefilteredPattern prefiltered = new LiteralPrefilteredPattern(regex);
+      Pattern pattern = Pattern.compile(regex);
+      for (String name : NAMES) {
+        assertThat(prefiltered.find(name))
+            .as("regex %s on %s", regex, name)
+            .isEqualTo(pattern.matcher(name).find());
+      }
+    }
+  }
+
+  @Test
+  void equalCriteriaShareMatcher() {
+    IncludeExclude first =
+        AgentProcessor.getNormalizedIncludeExclude(createIncludeExclude("svcA", "svcB"), false);
+    IncludeExclude second =
+        AgentProcessor.getNormalizedIncludeExclude(createIncludeExclude("svcA", "svcB"), false);
+    IncludeExclude other =
+        AgentProcessor.getNormalizedIncludeExclude(createIncludeExclude("svcA"), false);
+    IncludeExclude log =
+        AgentProcessor.getNormalizedIncludeExclude(createIncludeExclude("svcA", "svcB"), true);
+
+    assertThat(second).isSameAs(first);
+    assertThat(other).isNotSameAs(first);
+    assertThat(log).isNotSameAs(first);
+  }
+
+  @Test
+  void lastMatchIsRememberedPerThread() throws Exception {
+    CountingIncludeExclude includeExclude = new CountingIncludeExclude();
+    Attributes first = Attributes.of(AttributeKey.stringKey("key"), "first");
+    Attributes second = Attributes.of(AttributeKey.stringKey("key"), "second");
+
+    assertThat(includeExclude.isMatch(first, "name")).isTrue();
+    assertThat(includeExclude.isMatch(first, "name")).isTrue();
+    assertThat(includeExclude.matches).hasValue(1);
+
+    Thread thread = new Thread(() -> includeExclude.isMatch(second, "name"));
+    thread.start();
+    thread.join();
+    assertThat(includeExclude.matches).hasValue(2);
+
+    // not replaced by the match on the other thread
+    assertThat(includeExclude.isMatch(first, "name")).isTrue();
+    assertThat(includeExclude.matches).hasValue(2);
+  }
+
+  private static class CountingIncludeExclude extends IncludeExclude {
+
+    private final AtomicInteger matches = new AtomicInteger();
+
+    @Override
+    protected boolean matches(Attributes attributes, String name) {
+      matches.incrementAndGet();
+      return true;
+    }
+  }
+
+  private static ProcessorIncludeExclude createIncludeExclude(String... spanNames) {
+    ProcessorIncludeExclude includeExclude = new ProcessorIncludeExclude();
+    includeExclude.matchType = MatchType.STRICT;
+    includeExclude.spanNames = Arrays.asList(spanNames);
+    return includeExclude;
+  }
+}
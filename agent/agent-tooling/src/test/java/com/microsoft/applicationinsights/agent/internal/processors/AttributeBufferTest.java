@@ -0,0 +1,52 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.processors;
+
+import static io.opentelemetry.api.common.AttributeKey.longKey;
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.opentelemetry.api.common.Attributes;
+import org.junit.jupiter.api.Test;
+
+class AttributeBufferTest {
+
+  private final Attributes original =
+      Attributes.builder().put("one", "1").put(longKey("two"), 2L).build();
+
+  @Test
+  void unmodifiedReturnsOriginal() {
+    AttributeBuffer buffer = new AttributeBuffer(original);
+    buffer.putIfAbsent(stringKey("one"), "other");
+    buffer.remove(stringKey("missing"));
+
+    assertThat(buffer.toAttributes()).isSameAs(original);
+  }
+
+  @Test
+  void matchesAttributesBuilder() {
+    AttributeBuffer buffer = new AttributeBuffer(original);
+    buffer.put(stringKey("three"), "3");
+    buffer.put(stringKey("one"), "one");
+    buffer.put(stringKey("four"), null);
+    // same name as an existing attribute of a different type
+    buffer.putIfAbsent(stringKey("two"), "2");
+    assertThat(buffer.get(stringKey("two"))).isNull();
+    assertThat(buffer.get(longKey("two"))).isEqualTo(2L);
+
+    Attributes expected =
+        original.toBuilder().put("three", "3").put("one", "one").put("four", (String) null).build();
+    assertThat(buffer.toAttributes()).isEqualTo(expected);
+  }
+
+  @Test
+  void removeIsByKeyType() {
+    AttributeBuffer buffer = new AttributeBuffer(original);
+    buffer.remove(stringKey("two"));
+    assertThat(buffer.toAttributes()).isSameAs(original);
+
+    buffer.remove(longKey("two"));
+    assertThat(buffer.toAttributes()).isEqualTo(Attributes.of(stringKey("one"), "1"));
+  }
+}
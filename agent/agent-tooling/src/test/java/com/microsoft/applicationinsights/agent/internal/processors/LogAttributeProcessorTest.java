@@ -4,6 +4,7 @@
 package com.microsoft.applicationinsights.agent.internal.processors;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -31,7 +32,7 @@ import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-class LogExporterWithAttributeProcessorTest {
+class LogAttributeProcessorTest {
 
   private MockLoggerExporter mockLoggerExporter;
   private ProcessorConfig config;
@@ -47,7 +48,8 @@ class LogExporterWithAttributeProcessorTest {
   void noActionTest() {
     config.id = "noAction";
 
-    assertThatThrownBy(() -> new LogExporterWithAttributeProcessor(config, mockLoggerExporter))
+    assertThatThrownBy(
+            () -> new LogExporterWithProcessors(singletonList(config), mockLoggerExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -63,7 +65,8 @@ class LogExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
 
-    assertThatThrownBy(() -> new LogExporterWithAttributeProcessor(config, mockLoggerExporter))
+    assertThatThrownBy(
+            () -> new LogExporterWithProcessors(singletonList(config), mockLoggerExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -79,7 +82,8 @@ class LogExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
 
-    assertThatThrownBy(() -> new LogExporterWithAttributeProcessor(config, mockLoggerExporter))
+    assertThatThrownBy(
+            () -> new LogExporterWithProcessors(singletonList(config), mockLoggerExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -92,7 +96,7 @@ class LogExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
     LogRecordExporter exampleExporter =
-        new LogExporterWithAttributeProcessor(config, mockLoggerExporter);
+        new LogExporterWithProcessors(singletonList(config), mockLoggerExporter);
 
     Attributes attributes =
         Attributes.builder()
@@ -130,7 +134,7 @@ class LogExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
     LogRecordExporter exampleExporter =
-        new LogExporterWithAttributeProcessor(config, mockLoggerExporter);
+        new LogExporterWithProcessors(singletonList(config), mockLoggerExporter);
 
     Attributes attributes =
         Attributes.builder()
@@ -169,7 +173,7 @@ class LogExporterWithAttributeProcessorTest {
     actions.add(updateAction);
     config.actions = actions;
     LogRecordExporter exampleExporter =
-        new LogExporterWithAttributeProcessor(config, mockLoggerExporter);
+        new LogExporterWithProcessors(singletonList(config), mockLoggerExporter);
 
     Attributes attributes =
         Attributes.builder()
@@ -210,7 +214,7 @@ class LogExporterWithAttributeProcessorTest {
     actions.add(updateAction);
     config.actions = actions;
     LogRecordExporter exampleExporter =
-        new LogExporterWithAttributeProcessor(config, mockLoggerExporter);
+        new LogExporterWithProcessors(singletonList(config), mockLoggerExporter);
 
     Attributes attributes =
         Attributes.builder()
@@ -244,7 +248,7 @@ class LogExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
     LogRecordExporter exampleExporter =
-        new LogExporterWithAttributeProcessor(config, mockLoggerExporter);
+        new LogExporterWithProcessors(singletonList(config), mockLoggerExporter);
 
     Attributes attributes =
         Attributes.builder()
@@ -279,7 +283,7 @@ class LogExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
     LogRecordExporter exampleExporter =
-        new LogExporterWithAttributeProcessor(config, mockLoggerExporter);
+        new LogExporterWithProcessors(singletonList(config), mockLoggerExporter);
 
     Attributes attributes =
         Attributes.builder()
@@ -315,7 +319,7 @@ class LogExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
     LogRecordExporter logExporter =
-        new LogExporterWithAttributeProcessor(config, mockLoggerExporter);
+        new LogExporterWithProcessors(singletonList(config), mockLoggerExporter);
 
     // set up log
     Attributes attributes =
@@ -347,7 +351,8 @@ class LogExporterWithAttributeProcessorTest {
 
     // export span
     MockSpanExporter mockSpanExporter = new MockSpanExporter();
-    SpanExporter spanExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter spanExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
     List<SpanData> spans = new ArrayList<>();
     spans.add(((ReadableSpan) span).toSpanData());
     spanExporter.export(spans);
@@ -376,7 +381,7 @@ class LogExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
     LogRecordExporter exampleExporter =
-        new LogExporterWithAttributeProcessor(config, mockLoggerExporter);
+        new LogExporterWithProcessors(singletonList(config), mockLoggerExporter);
 
     Attributes attributes =
         Attributes.builder()
@@ -411,7 +416,7 @@ class LogExporterWithAttributeProcessorTest {
     actions.add(deleteAction);
     config.actions = actions;
     LogRecordExporter exampleExporter =
-        new LogExporterWithAttributeProcessor(config, mockLoggerExporter);
+        new LogExporterWithProcessors(singletonList(config), mockLoggerExporter);
 
     Attributes attributes =
         Attributes.builder()
@@ -447,7 +452,7 @@ class LogExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
     LogRecordExporter exampleExporter =
-        new LogExporterWithAttributeProcessor(config, mockLoggerExporter);
+        new LogExporterWithProcessors(singletonList(config), mockLoggerExporter);
 
     Attributes attributesA =
         Attributes.builder()
@@ -524,7 +529,7 @@ class LogExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
     LogRecordExporter exampleExporter =
-        new LogExporterWithAttributeProcessor(config, mockLoggerExporter);
+        new LogExporterWithProcessors(singletonList(config), mockLoggerExporter);
 
     Attributes attributesA =
         Attributes.builder()
@@ -601,7 +606,7 @@ class LogExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
     LogRecordExporter exampleExporter =
-        new LogExporterWithAttributeProcessor(config, mockLoggerExporter);
+        new LogExporterWithProcessors(singletonList(config), mockLoggerExporter);
 
     Attributes attributesA =
         Attributes.builder()
@@ -678,7 +683,8 @@ class LogExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
 
-    assertThatThrownBy(() -> new LogExporterWithAttributeProcessor(config, mockLoggerExporter))
+    assertThatThrownBy(
+            () -> new LogExporterWithProcessors(singletonList(config), mockLoggerExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -699,7 +705,7 @@ class LogExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
     LogRecordExporter exampleExporter =
-        new LogExporterWithAttributeProcessor(config, mockLoggerExporter);
+        new LogExporterWithProcessors(singletonList(config), mockLoggerExporter);
 
     Attributes attributesA =
         Attributes.builder()
@@ -789,7 +795,7 @@ class LogExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
     LogRecordExporter exampleExporter =
-        new LogExporterWithAttributeProcessor(config, mockLoggerExporter);
+        new LogExporterWithProcessors(singletonList(config), mockLoggerExporter);
 
     Attributes attributesA =
         Attributes.builder()
@@ -866,7 +872,7 @@ class LogExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
     LogRecordExporter exampleExporter =
-        new LogExporterWithAttributeProcessor(config, mockLoggerExporter);
+        new LogExporterWithProcessors(singletonList(config), mockLoggerExporter);
 
     Attributes attributesA =
         Attributes.builder()
@@ -951,7 +957,7 @@ class LogExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
     LogRecordExporter exampleExporter =
-        new LogExporterWithAttributeProcessor(config, mockLoggerExporter);
+        new LogExporterWithProcessors(singletonList(config), mockLoggerExporter);
 
     Attributes attributesA =
         Attributes.builder()
@@ -1035,7 +1041,7 @@ class LogExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
     LogRecordExporter exampleExporter =
-        new LogExporterWithAttributeProcessor(config, mockLoggerExporter);
+        new LogExporterWithProcessors(singletonList(config), mockLoggerExporter);
 
     Attributes attributesA =
         Attributes.builder()
@@ -1116,7 +1122,7 @@ class LogExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
     LogRecordExporter exampleExporter =
-        new LogExporterWithAttributeProcessor(config, mockLoggerExporter);
+        new LogExporterWithProcessors(singletonList(config), mockLoggerExporter);
 
     Attributes attributesA =
         Attributes.builder()
@@ -1220,7 +1226,7 @@ class LogExporterWithAttributeProcessorTest {
     actions.add(action5);
     config.actions = actions;
     LogRecordExporter exampleExporter =
-        new LogExporterWithAttributeProcessor(config, mockLoggerExporter);
+        new LogExporterWithProcessors(singletonList(config), mockLoggerExporter);
 
     Attributes attributes =
         Attributes.builder()
@@ -0,0 +1,88 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.processors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.MatchType;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.NameConfig;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorAction;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorActionType;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorConfig;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorIncludeExclude;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorType;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.logs.data.LogRecordData;
+import io.opentelemetry.sdk.testing.logs.TestLogRecordData;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class LogExporterWithProcessorsTest {
+
+  @Test
+  void appliesProcessorsInOrder() {
+    MockLoggerExporter mockLoggerExporter = new MockLoggerExporter();
+
+    // rewrites the body, and then the attribute processor only applies to the rewritten log
+    ProcessorConfig bodyConfig = new ProcessorConfig();
+    bodyConfig.type = ProcessorType.LOG;
+    bodyConfig.id = "body";
+    bodyConfig.body = new NameConfig();
+    bodyConfig.body.fromAttributes = Arrays.asList("db.svc", "operation");
+    ProcessorConfig attributeConfig = new ProcessorConfig();
+    attributeConfig.type = ProcessorType.ATTRIBUTE;
+    attributeConfig.id = "insert";
+    attributeConfig.include = new ProcessorIncludeExclude();
+    attributeConfig.include.matchType = MatchType.STRICT;
+    attributeConfig.include.logBodies = Collections.singletonList("locationget");
+    attributeConfig.actions =
+        Collections.singletonList(
+            new ProcessorAction("rewritten", ProcessorActionType.INSERT, "true", null, null, null));
+
+    LogExporterWithProcessors exporter =
+        new LogExporterWithProcessors(
+            Arrays.asList(bodyConfig, attributeConfig), mockLoggerExporter);
+
+    LogRecordData log =
+        TestLogRecordData.builder()
+            .setBody("logA")
+            .setAttributes(
+                Attributes.builder().put("db.svc", "location").put("operation", "get").build())
+            .build();
+    LogRecordData other = TestLogRecordData.builder().setBody("logB").build();
+    exporter.export(Arrays.asList(other, log));
+
+    List<LogRecordData> result = mockLoggerExporter.getLogs();
+    assertThat(result).hasSize(2);
+    assertThat(result.get(0).getBody().asString()).isEqualTo("logB");
+    assertThat(result.get(0).getAttributes().get(AttributeKey.stringKey("rewritten"))).isNull();
+    assertThat(result.get(1).getBody().asString()).isEqualTo("locationget");
+    assertThat(result.get(1).getAttributes().get(AttributeKey.stringKey("rewritten")))
+        .isEqualTo("true");
+  }
+
+  @Test
+  void unchangedLogsArePassedThrough() {
+    MockLoggerExporter mockLoggerExporter = new MockLoggerExporter();
+
+    ProcessorConfig config = new ProcessorConfig();
+    config.type = ProcessorType.ATTRIBUTE;
+    config.id = "delete";
+    config.actions =
+        Collections.singletonList(
+            new ProcessorAction("missing", ProcessorActionType.DELETE, null, null, null, null));
+
+    LogExporterWithProcessors exporter =
+        new LogExporterWithProcessors(Collections.singletonList(config), mockLoggerExporter);
+
+    LogRecordData log = TestLogRecordData.builder().setBody("logA").build();
+    exporter.export(Collections.singletonList(log));
+
+    assertThat(mockLoggerExporter.getLogs()).containsExactly(log);
+    assertThat(mockLoggerExporter.getLogs().get(0)).isSameAs(log);
+  }
+}
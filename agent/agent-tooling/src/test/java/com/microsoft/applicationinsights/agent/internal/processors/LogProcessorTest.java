@@ -3,6 +3,7 @@
 
 package com.microsoft.applicationinsights.agent.internal.processors;
 
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -23,7 +24,7 @@ import java.util.Objects;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-class ExporterWithLogProcessorTest {
+class LogProcessorTest {
 
   private MockLoggerExporter mockExporter;
   private ProcessorConfig config;
@@ -48,7 +49,7 @@ class ExporterWithLogProcessorTest {
   void noBodyObjectTest() {
     config.id = "noBodyObjectTest";
 
-    assertThatThrownBy(() -> new ExporterWithLogProcessor(config, mockExporter))
+    assertThatThrownBy(() -> new LogExporterWithProcessors(singletonList(config), mockExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -56,7 +57,7 @@ class ExporterWithLogProcessorTest {
   void inValidConfigTestWithNoFromOrToAttributesTest() {
     config.id = "inValidConfigTestWithToAttributesNoRules";
     config.body = new NameConfig();
-    assertThatThrownBy(() -> new ExporterWithLogProcessor(config, mockExporter))
+    assertThatThrownBy(() -> new LogExporterWithProcessors(singletonList(config), mockExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -66,7 +67,7 @@ class ExporterWithLogProcessorTest {
     config.body = new NameConfig();
     config.body.toAttributes = new ToAttributeConfig();
 
-    assertThatThrownBy(() -> new ExporterWithLogProcessor(config, mockExporter))
+    assertThatThrownBy(() -> new LogExporterWithProcessors(singletonList(config), mockExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -75,7 +76,8 @@ class ExporterWithLogProcessorTest {
     config.id = "SimpleRenameLogMessage";
     config.body = new NameConfig();
     config.body.fromAttributes = Arrays.asList("db.svc", "operation", "id");
-    LogRecordExporter logExporter = new ExporterWithLogProcessor(config, mockExporter);
+    LogRecordExporter logExporter =
+        new LogExporterWithProcessors(singletonList(config), mockExporter);
     TestLogRecordData mockLog =
         TestLogRecordData.builder().setBody("logA").setAttributes(attributes).build();
     List<LogRecordData> logs = new ArrayList<>();
@@ -94,7 +96,8 @@ class ExporterWithLogProcessorTest {
     config.body = new NameConfig();
     config.body.fromAttributes = Arrays.asList("db.svc", "operation", "id");
     config.body.separator = "::";
-    LogRecordExporter logExporter = new ExporterWithLogProcessor(config, mockExporter);
+    LogRecordExporter logExporter =
+        new LogExporterWithProcessors(singletonList(config), mockExporter);
     TestLogRecordData mockLog =
         TestLogRecordData.builder().setBody("svcA").setAttributes(attributes).build();
     List<LogRecordData> logs = new ArrayList<>();
@@ -113,7 +116,8 @@ class ExporterWithLogProcessorTest {
     config.body = new NameConfig();
     config.body.fromAttributes = Arrays.asList("db.svc", "operation", "id");
     config.body.separator = "::";
-    LogRecordExporter logExporter = new ExporterWithLogProcessor(config, mockExporter);
+    LogRecordExporter logExporter =
+        new LogExporterWithProcessors(singletonList(config), mockExporter);
 
     TestLogRecordData mockLog =
         TestLogRecordData.builder().setBody("svcA").setAttributes(attributes).build();
@@ -136,7 +140,7 @@ class ExporterWithLogProcessorTest {
     toAttributeConfig.rules.add("***");
     config.body.toAttributes = toAttributeConfig;
 
-    assertThatThrownBy(() -> new ExporterWithLogProcessor(config, mockExporter))
+    assertThatThrownBy(() -> new LogExporterWithProcessors(singletonList(config), mockExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -148,7 +152,8 @@ class ExporterWithLogProcessorTest {
     toAttributeConfig.rules = new ArrayList<>();
     toAttributeConfig.rules.add("^/api/v1/document/(?<documentId>.*)/update$");
     config.body.toAttributes = toAttributeConfig;
-    LogRecordExporter logExporter = new ExporterWithLogProcessor(config, mockExporter);
+    LogRecordExporter logExporter =
+        new LogExporterWithProcessors(singletonList(config), mockExporter);
     TestLogRecordData mockLog =
         TestLogRecordData.builder()
             .setBody("/api/v1/document/12345678/update")
@@ -181,7 +186,8 @@ class ExporterWithLogProcessorTest {
     toAttributeConfig.rules.add("Password=(?<password1>[^ ]+)");
     toAttributeConfig.rules.add("Pass=(?<password2>[^ ]+)");
     config.body.toAttributes = toAttributeConfig;
-    LogRecordExporter logExporter = new ExporterWithLogProcessor(config, mockExporter);
+    LogRecordExporter logExporter =
+        new LogExporterWithProcessors(singletonList(config), mockExporter);
     TestLogRecordData mockLogA =
         TestLogRecordData.builder()
             .setBody("yyyPassword=123 aba Pass=555 xyx Pass=777 zzz")
@@ -249,7 +255,8 @@ class ExporterWithLogProcessorTest {
     toAttributeConfig.rules = new ArrayList<>();
     toAttributeConfig.rules.add("Password=(?<x>[^ ]+)");
     config.body.toAttributes = toAttributeConfig;
-    LogRecordExporter logExporter = new ExporterWithLogProcessor(config, mockExporter);
+    LogRecordExporter logExporter =
+        new LogExporterWithProcessors(singletonList(config), mockExporter);
     TestLogRecordData mockLogA =
         TestLogRecordData.builder()
             .setBody("yyyPassword=123 aba Password=555 xyx")
@@ -272,7 +279,8 @@ class ExporterWithLogProcessorTest {
     config.id = "SimpleRenameLog";
     config.body = new NameConfig();
     config.body.fromAttributes = Arrays.asList("db.svc", "operation", "id");
-    LogRecordExporter logExporter = new ExporterWithLogProcessor(config, mockExporter);
+    LogRecordExporter logExporter =
+        new LogExporterWithProcessors(singletonList(config), mockExporter);
 
     Attributes newAttributes =
         Attributes.builder()
@@ -4,6 +4,7 @@
 package com.microsoft.applicationinsights.agent.internal.processors;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -27,7 +28,7 @@ import java.util.Collections;
 import java.util.List;
 import org.junit.jupiter.api.Test;
 
-class SpanExporterWithAttributeProcessorTest {
+class SpanAttributeProcessorTest {
 
   private final Tracer tracer = OpenTelemetrySdk.builder().build().getTracer("test");
 
@@ -38,7 +39,8 @@ class SpanExporterWithAttributeProcessorTest {
     config.type = ProcessorType.ATTRIBUTE;
     config.id = "noAction";
 
-    assertThatThrownBy(() -> new SpanExporterWithAttributeProcessor(config, mockSpanExporter))
+    assertThatThrownBy(
+            () -> new SpanExporterWithProcessors(singletonList(config), mockSpanExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -57,7 +59,8 @@ class SpanExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
 
-    assertThatThrownBy(() -> new SpanExporterWithAttributeProcessor(config, mockSpanExporter))
+    assertThatThrownBy(
+            () -> new SpanExporterWithProcessors(singletonList(config), mockSpanExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -76,7 +79,8 @@ class SpanExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
 
-    assertThatThrownBy(() -> new SpanExporterWithAttributeProcessor(config, mockSpanExporter))
+    assertThatThrownBy(
+            () -> new SpanExporterWithProcessors(singletonList(config), mockSpanExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -91,7 +95,8 @@ class SpanExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span span =
         tracer
@@ -129,7 +134,8 @@ class SpanExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span span =
         tracer
@@ -171,7 +177,8 @@ class SpanExporterWithAttributeProcessorTest {
     actions.add(action);
     actions.add(updateAction);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span span =
         tracer
@@ -215,7 +222,8 @@ class SpanExporterWithAttributeProcessorTest {
     actions.add(action);
     actions.add(updateAction);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span span =
         tracer
@@ -253,7 +261,8 @@ class SpanExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span span =
         tracer
@@ -292,7 +301,8 @@ class SpanExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span span =
         tracer
@@ -332,7 +342,8 @@ class SpanExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span span =
         tracer
@@ -383,7 +394,8 @@ class SpanExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span span =
         tracer
@@ -422,7 +434,8 @@ class SpanExporterWithAttributeProcessorTest {
     actions.add(updateAction);
     actions.add(deleteAction);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span span =
         tracer
@@ -462,7 +475,8 @@ class SpanExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span spanA =
         tracer
@@ -534,7 +548,8 @@ class SpanExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span spanA =
         tracer
@@ -617,7 +632,8 @@ class SpanExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span spanA =
         tracer
@@ -690,7 +706,8 @@ class SpanExporterWithAttributeProcessorTest {
     actions.add(action);
     config.actions = actions;
 
-    assertThatThrownBy(() -> new SpanExporterWithAttributeProcessor(config, mockSpanExporter))
+    assertThatThrownBy(
+            () -> new SpanExporterWithProcessors(singletonList(config), mockSpanExporter))
         .isInstanceOf(FriendlyException.class);
   }
 
@@ -713,7 +730,8 @@ class SpanExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span spanA =
         tracer
@@ -800,7 +818,8 @@ class SpanExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span spanA =
         tracer
@@ -883,7 +902,8 @@ class SpanExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span spanA =
         tracer
@@ -955,7 +975,8 @@ class SpanExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span spanA =
         tracer
@@ -1027,7 +1048,8 @@ class SpanExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span spanA =
         tracer
@@ -1107,7 +1129,8 @@ class SpanExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span spanA =
         tracer
@@ -1186,7 +1209,8 @@ class SpanExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span spanA =
         tracer
@@ -1262,7 +1286,8 @@ class SpanExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span spanA =
         tracer
@@ -1332,7 +1357,8 @@ class SpanExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span span =
         tracer
@@ -1379,7 +1405,8 @@ class SpanExporterWithAttributeProcessorTest {
     List<ProcessorAction> actions = new ArrayList<>();
     actions.add(action);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span span =
         tracer
@@ -1457,7 +1484,8 @@ class SpanExporterWithAttributeProcessorTest {
     actions.add(action4);
     actions.add(action5);
     config.actions = actions;
-    SpanExporter exampleExporter = new SpanExporterWithAttributeProcessor(config, mockSpanExporter);
+    SpanExporter exampleExporter =
+        new SpanExporterWithProcessors(singletonList(config), mockSpanExporter);
 
     Span span =
         tracer
@@ -0,0 +1,94 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.processors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.MatchType;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.NameConfig;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorAction;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorActionType;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorConfig;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorIncludeExclude;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ProcessorType;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SpanExporterWithProcessorsTest {
+
+  private final Tracer tracer = OpenTelemetrySdk.builder().build().getTracer("test");
+
+  @Test
+  void appliesProcessorsInOrder() {
+    MockSpanExporter mockSpanExporter = new MockSpanExporter();
+
+    // renames the span, and then the attribute processor only applies to the renamed span
+    ProcessorConfig renameConfig = new ProcessorConfig();
+    renameConfig.type = ProcessorType.SPAN;
+    renameConfig.id = "rename";
+    renameConfig.name = new NameConfig();
+    renameConfig.name.fromAttributes = Arrays.asList("db.svc", "operation");
+    ProcessorConfig attributeConfig = new ProcessorConfig();
+    attributeConfig.type = ProcessorType.ATTRIBUTE;
+    attributeConfig.id = "insert";
+    attributeConfig.include = new ProcessorIncludeExclude();
+    attributeConfig.include.matchType = MatchType.STRICT;
+    attributeConfig.include.spanNames = Collections.singletonList("locationget");
+    attributeConfig.actions =
+        Collections.singletonList(
+            new ProcessorAction("renamed", ProcessorActionType.INSERT, "true", null, null, null));
+
+    SpanExporterWithProcessors exporter =
+        new SpanExporterWithProcessors(
+            Arrays.asList(renameConfig, attributeConfig), mockSpanExporter);
+
+    Span span =
+        tracer
+            .spanBuilder("svcA")
+            .setAttribute("db.svc", "location")
+            .setAttribute("operation", "get")
+            .startSpan();
+    Span other = tracer.spanBuilder("svcB").startSpan();
+    SpanData spanData = ((ReadableSpan) span).toSpanData();
+    SpanData otherData = ((ReadableSpan) other).toSpanData();
+    exporter.export(Arrays.asList(otherData, spanData));
+
+    List<SpanData> result = mockSpanExporter.getSpans();
+    assertThat(result).hasSize(2);
+    assertThat(result.get(0).getName()).isEqualTo("svcB");
+    assertThat(result.get(0).getAttributes().get(AttributeKey.stringKey("renamed"))).isNull();
+    assertThat(result.get(1).getName()).isEqualTo("locationget");
+    assertThat(result.get(1).getAttributes().get(AttributeKey.stringKey("renamed")))
+        .isEqualTo("true");
+  }
+
+  @Test
+  void unchangedSpansArePassedThrough() {
+    MockSpanExporter mockSpanExporter = new MockSpanExporter();
+
+    ProcessorConfig config = new ProcessorConfig();
+    config.type = ProcessorType.ATTRIBUTE;
+    config.id = "delete";
+    config.actions =
+        Collections.singletonList(
+            new ProcessorAction("missing", ProcessorActionType.DELETE, null, null, null, null));
+
+    SpanExporterWithProcessors exporter =
+        new SpanExporterWithProcessors(Collections.singletonList(config), mockSpanExporter);
+
+    SpanData spanData = ((ReadableSpan) tracer.spanBuilder("svcA").startSpan()).toSpanData();
+    exporter.export(Collections.singletonList(spanData));
+
+    assertThat(mockSpanExporter.getSpans()).containsExactly(spanData);
+    assertThat(mockSpanExporter.getSpans().get(0)).isSameAs(spanData);
+  }
+}
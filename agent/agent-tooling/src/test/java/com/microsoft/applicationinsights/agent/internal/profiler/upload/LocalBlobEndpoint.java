@@ -0,0 +1,178 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.profiler.upload;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.azure.core.http.HttpClient;
+import com.azure.core.http.HttpHeaderName;
+import com.azure.core.http.HttpHeaders;
+import com.azure.core.http.HttpMethod;
+import com.azure.core.http.HttpRequest;
+import com.azure.core.http.HttpResponse;
+import com.azure.core.test.http.MockHttpResponse;
+import com.azure.core.util.FluxUtil;
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * In-memory stand-in for the service profiler and blob storage endpoints. Hands out upload passes
+ * for a single container and assembles blobs from single puts or from staged blocks and a block
+ * list, the same way blob storage does.
+ */
+class LocalBlobEndpoint implements HttpClient {
+
+  static final String PROFILER_URL = "https://agent.azureserviceprofiler.net/";
+  private static final String CONTAINER_URL = "https://localaccount.blob.core.windows.net/etl/";
+  private static final String SAS =
+      "?sv=2020-08-04&se=2099-01-01T00%3A00%3A00Z&sr=c&sp=cw&sig=c2lnbmF0dXJl";
+
+  private static final HttpHeaderName LOCATION = HttpHeaderName.fromString("Location");
+  private static final HttpHeaderName ETAG = HttpHeaderName.fromString("ETag");
+  private static final HttpHeaderName LAST_MODIFIED = HttpHeaderName.fromString("Last-Modified");
+  private static final HttpHeaderName CONTENT_ENCODING =
+      HttpHeaderName.fromString("x-ms-blob-content-encoding");
+  private static final HttpHeaderName MACHINE_NAME_METADATA =
+      HttpHeaderName.fromString("x-ms-meta-spMachineName");
+
+  private static final Pattern LATEST_BLOCK = Pattern.compile("<Latest>([^<]+)</Latest>");
+
+  private final AtomicInteger passes = new AtomicInteger();
+  private final AtomicInteger singleUploads = new AtomicInteger();
+  private final AtomicInteger stagedBlocks = new AtomicInteger();
+  private final AtomicInteger commits = new AtomicInteger();
+  private final Map<String, byte[]> blocks = new ConcurrentHashMap<>();
+  private final Map<String, Blob> blobs = new ConcurrentHashMap<>();
+
+  @Override
+  public Mono<HttpResponse> send(HttpRequest request) {
+    Flux<ByteBuffer> body = request.getBody();
+    Mono<byte[]> content =
+        body == null ? Mono.just(new byte[0]) : FluxUtil.collectBytesInByteBufferStream(body);
+    return content.map(bytes -> handle(request, bytes));
+  }
+
+  private HttpResponse handle(HttpRequest request, byte[] content) {
+    URL url = request.getUrl();
+    String query = url.getQuery() == null ? "" : url.getQuery();
+
+    if (url.toString().startsWith(PROFILER_URL)) {
+      if (query.contains("action=gettoken")) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(
+            LOCATION, CONTAINER_URL + "profiles/" + passes.incrementAndGet() + ".jfr" + SAS);
+        return new MockHttpResponse(request, 201, headers, new byte[0]);
+      }
+      if (query.contains("action=commit")) {
+        commits.incrementAndGet();
+        String accepted =
+            "{\"acceptedTime\":\"2022-10-31T02:35:34.033766Z\",\"stampId\":\"local-stamp\"}";
+        return new MockHttpResponse(request, 202, new HttpHeaders(), accepted.getBytes(UTF_8));
+      }
+      return new MockHttpResponse(request, 404);
+    }
+
+    if (request.getHttpMethod() != HttpMethod.PUT || !url.toString().startsWith(CONTAINER_URL)) {
+      return new MockHttpResponse(request, 404);
+    }
+    String blobName = decode(url.getPath().substring("/etl/".length()));
+    String comp = parameter(query, "comp");
+
+    if ("block".equals(comp)) {
+      stagedBlocks.incrementAndGet();
+      blocks.put(blobName + "/" + parameter(query, "blockid"), content);
+      return new MockHttpResponse(request, 201);
+    }
+    if ("blocklist".equals(comp)) {
+      ByteArrayOutputStream assembled = new ByteArrayOutputStream();
+      Matcher matcher = LATEST_BLOCK.matcher(new String(content, UTF_8));
+      while (matcher.find()) {
+        byte[] block = blocks.remove(blobName + "/" + matcher.group(1));
+        if (block == null) {
+          return new MockHttpResponse(request, 400);
+        }
+        assembled.write(block, 0, block.length);
+      }
+      return putBlob(request, blobName, assembled.toByteArray());
+    }
+    if (comp == null) {
+      singleUploads.incrementAndGet();
+      return putBlob(request, blobName, content);
+    }
+    return new MockHttpResponse(request, 400);
+  }
+
+  private HttpResponse putBlob(HttpRequest request, String blobName, byte[] content) {
+    HttpHeaders requestHeaders = request.getHeaders();
+    blobs.put(
+        blobName,
+        new Blob(
+            content,
+            requestHeaders.getValue(CONTENT_ENCODING),
+            requestHeaders.getValue(MACHINE_NAME_METADATA)));
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(ETAG, "\"0x8DABAE5C1C2D3E4\"");
+    headers.set(LAST_MODIFIED, "Mon, 31 Oct 2022 02:35:33 GMT");
+    return new MockHttpResponse(request, 201, headers, new byte[0]);
+  }
+
+  @Nullable
+  private static String parameter(String query, String name) {
+    for (String parameter : query.split("&")) {
+      if (parameter.startsWith(name + "=")) {
+        return decode(parameter.substring(name.length() + 1));
+      }
+    }
+    return null;
+  }
+
+  private static String decode(String value) {
+    try {
+      return URLDecoder.decode(value, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  int getSingleUploads() {
+    return singleUploads.get();
+  }
+
+  int getStagedBlocks() {
+    return stagedBlocks.get();
+  }
+
+  int getCommits() {
+    return commits.get();
+  }
+
+  @Nullable
+  Blob getBlob(String blobName) {
+    return blobs.get(blobName);
+  }
+
+  static class Blob {
+
+    final byte[] content;
+    @Nullable final String contentEncoding;
+    @Nullable final String machineName;
+
+    Blob(byte[] content, @Nullable String contentEncoding, @Nullable String machineName) {
+      this.content = content;
+      this.contentEncoding = contentEncoding;
+      this.machineName = machineName;
+    }
+  }
+}
@@ -10,7 +10,7 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import com.azure.core.http.HttpPipeline;
 import com.azure.core.http.HttpPipelineBuilder;
 import com.azure.core.test.http.NoOpHttpClient;
-import com.azure.storage.blob.options.BlobUploadFromFileOptions;
+import com.azure.storage.blob.options.BlobParallelUploadOptions;
 import com.microsoft.applicationinsights.agent.internal.profiler.service.ServiceProfilerClient;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -20,6 +20,7 @@ import java.net.URL;
 import java.nio.file.NoSuchFileException;
 import java.util.UUID;
 import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
 
 // TODO (trask) these tests do not make any http calls, is there a better way to write them that
 class UploadServiceSimpleTest {
@@ -37,7 +38,7 @@ class UploadServiceSimpleTest {
     File tmpFile = createFakeJfrFile();
     UUID appId = UUID.randomUUID();
 
-    BlobUploadFromFileOptions blobOptions =
+    BlobParallelUploadOptions blobOptions =
         new UploadService(
                 serviceProfilerClient,
                 builder -> {},
@@ -46,7 +47,7 @@ class UploadServiceSimpleTest {
                 appId::toString,
                 "a-role-name")
             .createBlockBlobOptions(
-                tmpFile,
+                Flux.empty(),
                 UploadContext.builder()
                     .setMachineName("a-machine-name")
                     .setDataCube(UUID.randomUUID())
@@ -70,7 +71,7 @@ class UploadServiceSimpleTest {
                 appId::toString,
                 null)
             .createBlockBlobOptions(
-                tmpFile,
+                Flux.empty(),
                 UploadContext.builder()
                     .setMachineName("a-machine-name")
                     .setDataCube(UUID.randomUUID())
@@ -0,0 +1,170 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.profiler.upload;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.azure.core.http.HttpPipelineBuilder;
+import com.microsoft.applicationinsights.agent.internal.profiler.service.ServiceProfilerClient;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class UploadServiceStreamingTest {
+
+  @TempDir Path tempDir;
+
+  private final LocalBlobEndpoint endpoint = new LocalBlobEndpoint();
+  private final AtomicInteger containerClientsBuilt = new AtomicInteger();
+
+  @Test
+  void largeTraceIsStagedInBlocks() throws IOException {
+    byte[] trace = new byte[9 * 1024 * 1024];
+    // random data does not compress, so this needs more than one 4MB block
+    new Random(42).nextBytes(trace);
+    File traceFile = writeTrace(trace);
+
+    ServiceProfilerIndex index = upload(traceFile);
+
+    assertThat(
+            index
+                .getProperties()
+                .get(ServiceProfilerIndex.Builder.SERVICE_PROFILER_STAMPID_PROPERTY_NAME))
+        .isEqualTo("local-stamp");
+    assertThat(endpoint.getSingleUploads()).isZero();
+    assertThat(endpoint.getStagedBlocks()).isGreaterThanOrEqualTo(3);
+    assertThat(endpoint.getCommits()).isEqualTo(1);
+
+    LocalBlobEndpoint.Blob blob = endpoint.getBlob("profiles/1.jfr");
+    assertThat(blob).isNotNull();
+    assertThat(gunzip(blob.content)).isEqualTo(trace);
+    assertThat(blob.contentEncoding).isEqualTo("gzip");
+    assertThat(blob.machineName).isEqualTo("a-machine-name");
+
+    // no compressed copy of the trace is written to disk
+    try (Stream<Path> files = Files.list(tempDir)) {
+      assertThat(files).containsExactly(traceFile.toPath());
+    }
+  }
+
+  @Test
+  void smallTraceIsUploadedInSinglePut() throws IOException {
+    File traceFile = writeTrace("foobar".getBytes(UTF_8));
+
+    upload(traceFile);
+
+    assertThat(endpoint.getSingleUploads()).isEqualTo(1);
+    assertThat(endpoint.getStagedBlocks()).isZero();
+    LocalBlobEndpoint.Blob blob = endpoint.getBlob("profiles/1.jfr");
+    assertThat(blob).isNotNull();
+    assertThat(new String(gunzip(blob.content), UTF_8)).isEqualTo("foobar");
+  }
+
+  @Test
+  void containerClientIsReusedForSameSasEndpoint() throws IOException {
+    UploadService uploadService = newUploadService();
+
+    uploadService
+        .uploadJfrFile(UUID.randomUUID(), "a-trigger", 321, writeTrace(new byte[] {1}), 0.0, 0.0)
+        .block();
+    uploadService
+        .uploadJfrFile(UUID.randomUUID(), "a-trigger", 321, writeTrace(new byte[] {2}), 0.0, 0.0)
+        .block();
+
+    assertThat(endpoint.getBlob("profiles/1.jfr")).isNotNull();
+    assertThat(endpoint.getBlob("profiles/2.jfr")).isNotNull();
+    assertThat(containerClientsBuilt).hasValue(1);
+  }
+
+  @Test
+  void compressedChunksAreBoundedAndRoundTrip() throws IOException {
+    byte[] trace = new byte[100 * 1024];
+    new Random(7).nextBytes(trace);
+
+    List<ByteBuffer> chunks;
+    try (CompressedTrace compressedTrace = CompressedTrace.open(writeTrace(trace), false, 1024)) {
+      chunks = compressedTrace.chunks().collectList().block();
+    }
+
+    assertThat(chunks).isNotNull();
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    for (int i = 0; i < chunks.size(); i++) {
+      ByteBuffer chunk = chunks.get(i);
+      if (i < chunks.size() - 1) {
+        assertThat(chunk.remaining()).isEqualTo(1024);
+      } else {
+        assertThat(chunk.remaining()).isBetween(1, 1024);
+      }
+      byte[] bytes = new byte[chunk.remaining()];
+      chunk.get(bytes);
+      compressed.write(bytes);
+    }
+    assertThat(gunzip(compressed.toByteArray())).isEqualTo(trace);
+  }
+
+  private ServiceProfilerIndex upload(File traceFile) {
+    ServiceProfilerIndex index =
+        newUploadService()
+            .uploadJfrFile(UUID.randomUUID(), "a-trigger", 321, traceFile, 0.0, 0.0)
+            .block();
+    assertThat(index).isNotNull();
+    return index;
+  }
+
+  private UploadService newUploadService() {
+    try {
+      ServiceProfilerClient serviceProfilerClient =
+          new ServiceProfilerClient(
+              new URL(LocalBlobEndpoint.PROFILER_URL),
+              "00000000-0000-0000-0000-000000000000",
+              new HttpPipelineBuilder().httpClient(endpoint).build());
+      UUID appId = UUID.randomUUID();
+      return new UploadService(
+          serviceProfilerClient,
+          builder -> {
+            containerClientsBuilt.incrementAndGet();
+            builder.httpClient(endpoint);
+          },
+          "a-machine-name",
+          "a-process-id",
+          appId::toString,
+          "a-role-name");
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private File writeTrace(byte[] content) throws IOException {
+    Path traceFile = Files.createTempFile(tempDir, "a-jfr-file", ".jfr");
+    Files.write(traceFile, content);
+    return traceFile.toFile();
+  }
+
+  private static byte[] gunzip(byte[] compressed) throws IOException {
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    }
+  }
+}
@@ -10,6 +10,7 @@
 package com.microsoft.applicationinsights.agent.internal.sampling;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -41,6 +42,43 @@ class RateLimitedSamplingPercentageTest {
     return nanoTime[0];
   }
 
+  @Test
+  void testInitialPercentage() {
+
+    RateLimitedSamplingPercentage samplingPercentage =
+        new RateLimitedSamplingPercentage(1000, 5, nanoTimeSupplier, false);
+
+    assertThat(samplingPercentage.get()).isEqualTo(100);
+    assertThat(samplingPercentage.get()).isEqualTo(100);
+  }
+
+  @Test
+  void testPercentageIsOnlyUpdatedOncePerFoldInterval() {
+
+    double targetSpansPerSecondLimit = 1000;
+    double adaptationTimeSeconds = 5;
+    // 1/1000 of the adaptation time
+    long foldIntervalNanos = TimeUnit.MILLISECONDS.toNanos(5);
+
+    RateLimitedSamplingPercentage samplingPercentage =
+        new RateLimitedSamplingPercentage(
+            targetSpansPerSecondLimit, adaptationTimeSeconds, nanoTimeSupplier, false);
+
+    for (int i = 0; i < 100; ++i) {
+      assertThat(samplingPercentage.get()).isEqualTo(100);
+    }
+    advanceTime(foldIntervalNanos - 1);
+    assertThat(samplingPercentage.get()).isEqualTo(100);
+
+    // 102 calls in 5ms, against a limit of 5 calls per 5ms
+    advanceTime(1);
+    double expected = 100 * 5.0 / 102;
+    assertThat(samplingPercentage.get()).isCloseTo(expected, within(1e-9));
+
+    advanceTime(foldIntervalNanos - 1);
+    assertThat(samplingPercentage.get()).isCloseTo(expected, within(1e-9));
+  }
+
   @Test
   void testConstantRate() {
 
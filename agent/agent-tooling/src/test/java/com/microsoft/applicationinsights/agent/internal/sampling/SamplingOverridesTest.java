@@ -261,6 +261,78 @@ class SamplingOverridesTest {
     assertThat(sampler).isNull();
   }
 
+  @Test
+  void shouldReuseCachedRegexpResultsForRepeatedValues() {
+    // given
+    List<SamplingOverride> overrides =
+        Arrays.asList(
+            newOverride(50, newRegexpAttribute("one", "1.*"), newStrictAttribute("two", "2")),
+            newOverride(25, newRegexpAttribute("one", "1.*")));
+    SamplingOverrides samplingOverrides = new SamplingOverrides(overrides);
+    Attributes bothMatch =
+        Attributes.of(AttributeKey.stringKey("one"), "11", AttributeKey.stringKey("two"), "2");
+    Attributes oneMatch =
+        Attributes.of(AttributeKey.stringKey("one"), "11", AttributeKey.stringKey("two"), "3");
+    Attributes noMatch = Attributes.of(AttributeKey.stringKey("one"), "22");
+
+    for (int i = 0; i < 3; i++) {
+      // when
+      Sampler bothSampler = samplingOverrides.getOverride(bothMatch);
+      Sampler oneSampler = samplingOverrides.getOverride(oneMatch);
+      Sampler noSampler = samplingOverrides.getOverride(noMatch);
+
+      // expect
+      assertThat(bothSampler).isNotNull();
+      assertThat(SamplingTestUtil.getCurrentSamplingPercentage(bothSampler)).isEqualTo(50);
+      assertThat(oneSampler).isNotNull();
+      assertThat(SamplingTestUtil.getCurrentSamplingPercentage(oneSampler)).isEqualTo(25);
+      assertThat(noSampler).isNull();
+    }
+  }
+
+  @Test
+  void shouldMatchHighCardinalityValuesInterleavedWithRepeatedValues() {
+    // given
+    List<SamplingOverride> overrides =
+        singletonList(newOverride(0, newRegexpAttribute("url.path", "/health.*")));
+    SamplingOverrides samplingOverrides = new SamplingOverrides(overrides);
+    Attributes health = Attributes.of(AttributeKey.stringKey("url.path"), "/health");
+
+    for (int i = 0; i < 10000; i++) {
+      // when
+      Sampler userSampler =
+          samplingOverrides.getOverride(
+              Attributes.of(AttributeKey.stringKey("url.path"), "/api/users/" + i));
+      Sampler healthSampler = samplingOverrides.getOverride(health);
+
+      // expect
+      assertThat(userSampler).isNull();
+      assertThat(healthSampler).isNotNull();
+    }
+  }
+
+  @Test
+  void shouldNotCacheDecisionsAcrossThreadNames() throws InterruptedException {
+    // given
+    List<SamplingOverride> overrides =
+        singletonList(newOverride(25, newRegexpAttribute("thread.name", "matching-.*")));
+    SamplingOverrides samplingOverrides = new SamplingOverrides(overrides);
+    Attributes attributes = Attributes.empty();
+    Sampler[] samplers = new Sampler[1];
+    Thread thread = new Thread(() -> samplers[0] = samplingOverrides.getOverride(attributes));
+    thread.setName("matching-thread");
+
+    // when
+    Sampler sampler = samplingOverrides.getOverride(attributes);
+    thread.start();
+    thread.join();
+
+    // expect
+    assertThat(sampler).isNull();
+    assertThat(samplers[0]).isNotNull();
+    assertThat(SamplingTestUtil.getCurrentSamplingPercentage(samplers[0])).isEqualTo(25);
+  }
+
   private static SamplingOverride newOverride(
       double percentage, SamplingOverrideAttribute... attribute) {
     SamplingOverride override = new SamplingOverride();
@@ -0,0 +1,102 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class AdaptiveBatchSchedulerTest {
+
+  private static final long MIN_DELAY_NANOS = MILLISECONDS.toNanos(100);
+  private static final long MAX_DELAY_NANOS = SECONDS.toNanos(5);
+
+  private final AdaptiveBatchScheduler scheduler =
+      new AdaptiveBatchScheduler(1024 * 1024, MIN_DELAY_NANOS, MAX_DELAY_NANOS);
+
+  @Test
+  void startsAtMaxDelay() {
+    assertThat(scheduler.getScheduleDelayNanos()).isEqualTo(MAX_DELAY_NANOS);
+  }
+
+  @Test
+  void batchIsFullAtMaxPayload() {
+    assertThat(scheduler.isBatchFull(1024 * 1024 - 1)).isFalse();
+    assertThat(scheduler.isBatchFull(1024 * 1024)).isTrue();
+  }
+
+  @Test
+  void itemsNeededFollowsAverageItemSize() {
+    for (int i = 0; i < 100; i++) {
+      scheduler.recordItemBytes(256);
+    }
+    int smallItemsNeeded = scheduler.itemsNeeded(0);
+
+    for (int i = 0; i < 100; i++) {
+      scheduler.recordItemBytes(64 * 1024);
+    }
+    int largeItemsNeeded = scheduler.itemsNeeded(0);
+
+    assertThat(smallItemsNeeded).isGreaterThan(3000);
+    assertThat(largeItemsNeeded).isLessThan(20);
+    assertThat(scheduler.itemsNeeded(1024 * 1024)).isEqualTo(1);
+  }
+
+  @Test
+  void backlogExportsImmediately() {
+    scheduler.onExport(1024 * 1024, true, false);
+
+    assertThat(scheduler.getScheduleDelayNanos()).isEqualTo(MIN_DELAY_NANOS);
+  }
+
+  @Test
+  void trickleGrowsDelayBackToMax() {
+    scheduler.onExport(1024 * 1024, true, false);
+    for (int i = 0; i < 10; i++) {
+      scheduler.onExport(1024, false, true);
+    }
+
+    assertThat(scheduler.getScheduleDelayNanos()).isEqualTo(MAX_DELAY_NANOS);
+  }
+
+  @Test
+  void trickleKeepsDelayAtMax() {
+    for (int i = 0; i < 100; i++) {
+      scheduler.onExport(1024, false, true);
+      assertThat(scheduler.getScheduleDelayNanos()).isEqualTo(MAX_DELAY_NANOS);
+    }
+  }
+
+  @Test
+  void nearlyFullBatchesShrinkDelayDownToMin() {
+    for (int i = 0; i < 10; i++) {
+      scheduler.onExport(900 * 1024, false, true);
+    }
+
+    assertThat(scheduler.getScheduleDelayNanos()).isEqualTo(MIN_DELAY_NANOS);
+  }
+
+  @Test
+  void steadyLoadGrowsDelayBackToMax() {
+    scheduler.onExport(1024 * 1024, true, false);
+    for (int i = 0; i < 10; i++) {
+      scheduler.onExport(512 * 1024, false, true);
+    }
+
+    assertThat(scheduler.getScheduleDelayNanos()).isEqualTo(MAX_DELAY_NANOS);
+  }
+
+  @Test
+  void slowExportsGrowDelay() {
+    scheduler.onExport(1024 * 1024, true, false);
+    for (int i = 0; i < 50; i++) {
+      scheduler.recordExportLatency(SECONDS.toNanos(2));
+    }
+    scheduler.onExport(1024, false, true);
+
+    assertThat(scheduler.getScheduleDelayNanos()).isGreaterThan(SECONDS.toNanos(1));
+  }
+}
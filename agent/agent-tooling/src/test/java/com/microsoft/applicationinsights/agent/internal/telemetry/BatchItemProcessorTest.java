@@ -0,0 +1,498 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.builders.AbstractTelemetryBuilder;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.builders.ExceptionTelemetryBuilder;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.builders.MessageTelemetryBuilder;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.builders.RemoteDependencyTelemetryBuilder;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.builders.RequestTelemetryBuilder;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.ContextTagKeys;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.TelemetryItem;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.pipeline.TelemetryItemExporter;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ExportQueueOverflowPolicy;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration.ExportQueueShardSelection;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BatchItemProcessorTest {
+
+  private static final String OPERATION_ID = ContextTagKeys.AI_OPERATION_ID.toString();
+
+  // well under the 5 second schedule delay, so that an export within it was triggered by a full
+  // batch and not by the schedule
+  private static final Duration BEFORE_SCHEDULE_DELAY = Duration.ofSeconds(3);
+
+  private final TelemetryItemExporter exporter = mock(TelemetryItemExporter.class);
+  private final List<TelemetryItem> sent = new CopyOnWriteArrayList<>();
+  // exports that are held pending, until they are released
+  private final List<CompletableResultCode> heldExports = new CopyOnWriteArrayList<>();
+  private volatile boolean holdExports;
+
+  @BeforeEach
+  void setUp() {
+    when(exporter.send(any()))
+        .thenAnswer(
+            invocation -> {
+              List<TelemetryItem> items = invocation.getArgument(0);
+              sent.addAll(items);
+              if (!holdExports) {
+                return CompletableResultCode.ofSuccess();
+              }
+              CompletableResultCode result = new CompletableResultCode();
+              heldExports.add(result);
+              return result;
+            });
+    when(exporter.flush()).thenReturn(CompletableResultCode.ofSuccess());
+  }
+
+  @Test
+  void dropNewestDropsItemsOverCapacity() {
+    BatchItemProcessor processor =
+        BatchItemProcessor.builder(exporter)
+            .setMaxQueueSize(4)
+            .setMaxExportBatchSize(1)
+            .build("test");
+    blockWorker(processor);
+
+    for (int i = 0; i < 6; i++) {
+      processor.trackAsync(trace("t" + i));
+    }
+    releaseExports();
+
+    await().until(() -> sent.size() == 5);
+    assertThat(sentIds()).containsExactly("blocker", "t0", "t1", "t2", "t3");
+    assertThat(processor.getDroppedCount(TelemetryType.TRACE)).isEqualTo(2);
+  }
+
+  @Test
+  void dropNewestWithPriorityLanesDropsRequestsOverCapacity() {
+    BatchItemProcessor processor =
+        BatchItemProcessor.builder(exporter)
+            .setMaxQueueSize(4)
+            .setMaxExportBatchSize(1)
+            .setPriorityLanes(ExportQueueOverflowPolicy.DROP_NEWEST)
+            .build("test");
+    blockWorker(processor);
+
+    for (int i = 0; i < 4; i++) {
+      processor.trackAsync(trace("t" + i));
+    }
+    processor.trackAsync(request("r0"));
+    processor.trackAsync(exception("e0"));
+    releaseExports();
+
+    await().until(() -> sent.size() == 5);
+    assertThat(sentIds()).containsExactly("blocker", "t0", "t1", "t2", "t3");
+    assertThat(processor.getDroppedCount(TelemetryType.REQUEST)).isEqualTo(1);
+    assertThat(processor.getDroppedCount(TelemetryType.EXCEPTION)).isEqualTo(1);
+    assertThat(processor.getDroppedCount(TelemetryType.TRACE)).isZero();
+  }
+
+  @Test
+  void dropOldestLowestPriorityEvictsOldestLowestPriorityItems() {
+    BatchItemProcessor processor =
+        BatchItemProcessor.builder(exporter)
+            .setMaxQueueSize(4)
+            .setMaxExportBatchSize(1)
+            .setPriorityLanes(ExportQueueOverflowPolicy.DROP_OLDEST_LOWEST_PRIORITY)
+            .build("test");
+    blockWorker(processor);
+
+    processor.trackAsync(trace("t0"));
+    processor.trackAsync(trace("t1"));
+    processor.trackAsync(exception("e0"));
+    processor.trackAsync(request("r0"));
+    // the queue is full from here on
+    processor.trackAsync(request("r1"));
+    processor.trackAsync(exception("e1"));
+    releaseExports();
+
+    await().until(() -> sent.size() == 5);
+    // exported in priority order
+    assertThat(sentIds()).containsExactly("blocker", "r0", "r1", "e0", "e1");
+    assertThat(processor.getDroppedCount(TelemetryType.TRACE)).isEqualTo(2);
+    assertThat(processor.getDroppedCount(TelemetryType.EXCEPTION)).isZero();
+    assertThat(processor.getDroppedCount(TelemetryType.REQUEST)).isZero();
+  }
+
+  @Test
+  void dropOldestLowestPriorityEvictsOldestItemOfSameLane() {
+    BatchItemProcessor processor =
+        BatchItemProcessor.builder(exporter)
+            .setMaxQueueSize(4)
+            .setMaxExportBatchSize(1)
+            .setPriorityLanes(ExportQueueOverflowPolicy.DROP_OLDEST_LOWEST_PRIORITY)
+            .build("test");
+    blockWorker(processor);
+
+    for (int i = 0; i < 5; i++) {
+      processor.trackAsync(trace("t" + i));
+    }
+    releaseExports();
+
+    await().until(() -> sent.size() == 5);
+    assertThat(sentIds()).containsExactly("blocker", "t1", "t2", "t3", "t4");
+    assertThat(processor.getDroppedCount(TelemetryType.TRACE)).isEqualTo(1);
+  }
+
+  @Test
+  void dropOldestLowestPriorityNeverEvictsRequestsOrDependencies() {
+    BatchItemProcessor processor =
+        BatchItemProcessor.builder(exporter)
+            .setMaxQueueSize(4)
+            .setMaxExportBatchSize(1)
+            .setPriorityLanes(ExportQueueOverflowPolicy.DROP_OLDEST_LOWEST_PRIORITY)
+            .build("test");
+    blockWorker(processor);
+
+    processor.trackAsync(request("r0"));
+    processor.trackAsync(dependency("d0"));
+    processor.trackAsync(request("r1"));
+    processor.trackAsync(dependency("d1"));
+    // nothing can be evicted for these, so they are dropped instead
+    processor.trackAsync(trace("t0"));
+    processor.trackAsync(exception("e0"));
+    processor.trackAsync(request("r2"));
+    releaseExports();
+
+    await().until(() -> sent.size() == 5);
+    assertThat(sentIds()).containsExactly("blocker", "r0", "d0", "r1", "d1");
+    assertThat(processor.getDroppedCount(TelemetryType.TRACE)).isEqualTo(1);
+    assertThat(processor.getDroppedCount(TelemetryType.EXCEPTION)).isEqualTo(1);
+    assertThat(processor.getDroppedCount(TelemetryType.REQUEST)).isEqualTo(1);
+    assertThat(processor.getDroppedCount(TelemetryType.DEPENDENCY)).isZero();
+  }
+
+  @Test
+  void sampleOnOverflowSamplesLowerPriorityItemsPastHalfCapacity() {
+    BatchItemProcessor processor =
+        BatchItemProcessor.builder(exporter)
+            .setMaxQueueSize(8)
+            .setMaxExportBatchSize(1)
+            .setPriorityLanes(ExportQueueOverflowPolicy.SAMPLE_ON_OVERFLOW)
+            .build("test");
+    blockWorker(processor);
+
+    for (int i = 0; i < 4; i++) {
+      processor.trackAsync(request("r" + i));
+    }
+    for (int i = 0; i < 20; i++) {
+      processor.trackAsync(trace("t" + i));
+    }
+    releaseExports();
+
+    await()
+        .until(() -> sent.size() + processor.getDroppedCount(TelemetryType.TRACE) == 1 + 4 + 20);
+    // at most 4 traces fit in the rest of the queue
+    assertThat(sent.size()).isLessThanOrEqualTo(1 + 4 + 4);
+    List<TelemetryItem> traces = new ArrayList<>();
+    for (TelemetryItem item : sent.subList(5, sent.size())) {
+      assertThat(TelemetryType.of(item)).isEqualTo(TelemetryType.TRACE);
+      traces.add(item);
+    }
+    assertThat(sentIds().subList(0, 5)).containsExactly("blocker", "r0", "r1", "r2", "r3");
+    // the first trace is admitted at half capacity, before sampling starts
+    assertThat(traces.get(0).getSampleRate()).isNull();
+    for (TelemetryItem trace : traces.subList(1, traces.size())) {
+      assertThat(trace.getSampleRate()).isGreaterThan(0).isLessThan(100);
+    }
+    assertThat(processor.getDroppedCount(TelemetryType.REQUEST)).isZero();
+  }
+
+  @Test
+  void queuedBytesAreReleasedWhenExported() {
+    int itemBytes = TelemetryItemSizeEstimator.estimate(trace("t0"));
+    BatchItemProcessor processor =
+        BatchItemProcessor.builder(exporter)
+            .setMaxQueueSize(16)
+            .setMaxQueueBytes(3L * itemBytes)
+            .setMaxExportBatchSize(1)
+            .build("test");
+    blockWorker(processor);
+    assertThat(processor.getQueuedBytes()).isZero();
+
+    for (int i = 0; i < 5; i++) {
+      processor.trackAsync(trace("t" + i));
+    }
+    assertThat(processor.getQueuedBytes()).isEqualTo(3L * itemBytes);
+    assertThat(processor.getDroppedCount(TelemetryType.TRACE)).isEqualTo(2);
+    releaseExports();
+
+    await().until(() -> sent.size() == 4);
+    assertThat(sentIds()).containsExactly("blocker", "t0", "t1", "t2");
+    assertThat(processor.getQueuedBytes()).isZero();
+  }
+
+  @Test
+  void queuedBytesAreReleasedWhenFlushed() {
+    int itemBytes = TelemetryItemSizeEstimator.estimate(trace("t0"));
+    BatchItemProcessor processor =
+        buildAndAwaitParked(
+            BatchItemProcessor.builder(exporter)
+                .setMaxQueueSize(16)
+                .setMaxQueueBytes(3L * itemBytes));
+
+    for (int i = 0; i < 3; i++) {
+      processor.trackAsync(trace("t" + i));
+    }
+    assertThat(processor.getQueuedBytes()).isEqualTo(3L * itemBytes);
+    processor.trackAsync(request("r0"));
+    assertThat(processor.getDroppedCount(TelemetryType.REQUEST)).isEqualTo(1);
+
+    CompletableResultCode result = processor.forceFlush();
+    await().until(result::isDone);
+    assertThat(sentIds()).containsExactly("t0", "t1", "t2");
+    assertThat(processor.getQueuedBytes()).isZero();
+  }
+
+  @Test
+  void itemLargerThanMaxQueueBytesIsAdmittedIntoEmptyQueue() {
+    int itemBytes = TelemetryItemSizeEstimator.estimate(trace("t0"));
+    BatchItemProcessor processor =
+        buildAndAwaitParked(
+            BatchItemProcessor.builder(exporter).setMaxQueueSize(16).setMaxQueueBytes(1));
+
+    processor.trackAsync(trace("t0"));
+    processor.trackAsync(trace("t1"));
+    assertThat(processor.getQueuedBytes()).isEqualTo(itemBytes);
+    assertThat(processor.getDroppedCount(TelemetryType.TRACE)).isEqualTo(1);
+
+    CompletableResultCode result = processor.forceFlush();
+    await().until(result::isDone);
+    assertThat(sentIds()).containsExactly("t0");
+    assertThat(processor.getQueuedBytes()).isZero();
+  }
+
+  @Test
+  void maxQueueBytesIsSharedByAllShards() {
+    int itemBytes = TelemetryItemSizeEstimator.estimate(trace("same"));
+    BatchItemProcessor processor =
+        buildAndAwaitParked(
+            BatchItemProcessor.builder(exporter)
+                .setMaxQueueSize(16)
+                .setMaxQueueBytes(3L * itemBytes)
+                .setShards(2, ExportQueueShardSelection.HASH),
+            2);
+
+    // the same operation id, so that all the items go to the same shard
+    for (int i = 0; i < 4; i++) {
+      processor.trackAsync(trace("same"));
+    }
+    assertThat(processor.getQueuedBytes()).isEqualTo(3L * itemBytes);
+    assertThat(processor.getDroppedCount(TelemetryType.TRACE)).isEqualTo(1);
+
+    CompletableResultCode result = processor.forceFlush();
+    await().until(result::isDone);
+    assertThat(sent).hasSize(3);
+    assertThat(processor.getQueuedBytes()).isZero();
+  }
+
+  @Test
+  void queuedBytesAreReleasedWhenEvicted() {
+    int itemBytes = TelemetryItemSizeEstimator.estimate(trace("t0"));
+    BatchItemProcessor processor =
+        BatchItemProcessor.builder(exporter)
+            .setMaxQueueSize(2)
+            .setMaxQueueBytes(100L * itemBytes)
+            .setMaxExportBatchSize(1)
+            .setPriorityLanes(ExportQueueOverflowPolicy.DROP_OLDEST_LOWEST_PRIORITY)
+            .build("test");
+    blockWorker(processor);
+
+    processor.trackAsync(trace("t0"));
+    processor.trackAsync(trace("t1"));
+    processor.trackAsync(request("r0"));
+    releaseExports();
+
+    await().until(() -> sent.size() == 3);
+    assertThat(sentIds()).containsExactly("blocker", "r0", "t1");
+    assertThat(processor.getDroppedCount(TelemetryType.TRACE)).isEqualTo(1);
+    assertThat(processor.getDroppedCount(TelemetryType.REQUEST)).isZero();
+    assertThat(processor.getQueuedBytes()).isZero();
+  }
+
+  @Test
+  void droppedCountsAreSummarizedSinceTheLastReport() {
+    LongAdder[] droppedCounts = new LongAdder[TelemetryType.values().length];
+    for (int i = 0; i < droppedCounts.length; i++) {
+      droppedCounts[i] = new LongAdder();
+    }
+    BatchItemProcessor.DroppedCountsLogger droppedCountsLogger =
+        new BatchItemProcessor.DroppedCountsLogger(droppedCounts, "test", 1);
+    assertThat(droppedCountsLogger.summarizeNewDrops()).isNull();
+
+    droppedCounts[TelemetryType.TRACE.ordinal()].add(2);
+    droppedCounts[TelemetryType.REQUEST.ordinal()].add(1);
+    assertThat(droppedCountsLogger.summarizeNewDrops())
+        .isEqualTo(
+            "Telemetry dropped from the test export queue since the last report:"
+                + " 1 request, 2 trace");
+    assertThat(droppedCountsLogger.summarizeNewDrops()).isNull();
+
+    droppedCounts[TelemetryType.TRACE.ordinal()].add(3);
+    assertThat(droppedCountsLogger.summarizeNewDrops())
+        .isEqualTo(
+            "Telemetry dropped from the test export queue since the last report: 3 trace");
+  }
+
+  @Test
+  void fullBatchWakesUpWorker() {
+    BatchItemProcessor processor =
+        buildAndAwaitParked(BatchItemProcessor.builder(exporter).setMaxExportBatchSize(4));
+
+    for (int i = 0; i < 4; i++) {
+      processor.trackAsync(trace("t" + i));
+    }
+
+    await().atMost(BEFORE_SCHEDULE_DELAY).until(() -> sent.size() == 4);
+  }
+
+  @Test
+  void fullBatchAcrossLanesWakesUpWorker() {
+    BatchItemProcessor processor =
+        buildAndAwaitParked(
+            BatchItemProcessor.builder(exporter)
+                .setMaxExportBatchSize(4)
+                .setPriorityLanes(ExportQueueOverflowPolicy.DROP_NEWEST));
+
+    processor.trackAsync(request("r0"));
+    processor.trackAsync(trace("t0"));
+    processor.trackAsync(request("r1"));
+    processor.trackAsync(trace("t1"));
+
+    await().atMost(BEFORE_SCHEDULE_DELAY).until(() -> sent.size() == 4);
+  }
+
+  @Test
+  void forceFlushCompletesOnceAllShardsHaveExported() {
+    BatchItemProcessor processor = shardedProcessor();
+
+    CompletableResultCode result = processor.forceFlush();
+
+    assertAllShardsWaitedFor(result);
+  }
+
+  @Test
+  void shutdownCompletesOnceAllShardsHaveExported() {
+    BatchItemProcessor processor = shardedProcessor();
+
+    CompletableResultCode result = processor.shutdown();
+
+    assertAllShardsWaitedFor(result);
+  }
+
+  private BatchItemProcessor shardedProcessor() {
+    BatchItemProcessor processor =
+        BatchItemProcessor.builder(exporter)
+            .setShards(2, ExportQueueShardSelection.HASH)
+            .build("test");
+    holdExports = true;
+    // distinct operation ids, so that both shards get items
+    for (int i = 0; i < 100; i++) {
+      processor.trackAsync(trace("t" + i));
+    }
+    return processor;
+  }
+
+  private void assertAllShardsWaitedFor(CompletableResultCode result) {
+    // each shard exports its own batch
+    await().until(() -> heldExports.size() == 2);
+    assertThat(sent).hasSize(100);
+    assertThat(result.isDone()).isFalse();
+
+    heldExports.get(0).succeed();
+    assertThat(result.isDone()).isFalse();
+
+    heldExports.get(1).succeed();
+    await().until(result::isDone);
+    assertThat(result.isSuccess()).isTrue();
+  }
+
+  // waits for the worker thread to park waiting for items, so that the items tracked after this
+  // have to wake it up, instead of being picked up before it parks
+  private static BatchItemProcessor buildAndAwaitParked(BatchItemProcessorBuilder builder) {
+    return buildAndAwaitParked(builder, 1);
+  }
+
+  private static BatchItemProcessor buildAndAwaitParked(
+      BatchItemProcessorBuilder builder, int workerThreads) {
+    Set<Thread> existingThreads = Thread.getAllStackTraces().keySet();
+    BatchItemProcessor processor = builder.build("test");
+    await()
+        .until(
+            () -> {
+              int parked = 0;
+              for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (!existingThreads.contains(thread)
+                    && thread.getName().startsWith(BatchItemProcessor.class.getSimpleName())
+                    && thread.getState() == Thread.State.TIMED_WAITING) {
+                  parked++;
+                }
+              }
+              return parked >= workerThreads;
+            });
+    return processor;
+  }
+
+  // exports an item and keeps the worker thread waiting on that export, so that the items tracked
+  // after this stay queued until the export is released
+  private void blockWorker(BatchItemProcessor processor) {
+    holdExports = true;
+    processor.trackAsync(trace("blocker"));
+    await().until(() -> sent.size() == 1);
+  }
+
+  private void releaseExports() {
+    holdExports = false;
+    for (CompletableResultCode result : heldExports) {
+      result.succeed();
+    }
+  }
+
+  private List<String> sentIds() {
+    List<String> ids = new ArrayList<>();
+    for (TelemetryItem item : sent) {
+      ids.add(item.getTags().get(OPERATION_ID));
+    }
+    return ids;
+  }
+
+  private static TelemetryItem trace(String id) {
+    MessageTelemetryBuilder builder = MessageTelemetryBuilder.create();
+    builder.setMessage("message");
+    return build(builder, id);
+  }
+
+  private static TelemetryItem exception(String id) {
+    return build(ExceptionTelemetryBuilder.create(), id);
+  }
+
+  private static TelemetryItem request(String id) {
+    return build(RequestTelemetryBuilder.create(), id);
+  }
+
+  private static TelemetryItem dependency(String id) {
+    return build(RemoteDependencyTelemetryBuilder.create(), id);
+  }
+
+  // the id is the operation id, which is also what HASH shard selection uses
+  private static TelemetryItem build(AbstractTelemetryBuilder builder, String id) {
+    builder.addTag(OPERATION_ID, id);
+    return builder.build();
+  }
+}
@@ -0,0 +1,110 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.builders.MessageTelemetryBuilder;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.ContextTagKeys;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.MessageData;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.TelemetryItem;
+import com.microsoft.applicationinsights.agent.internal.statsbeat.StatsbeatModule;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.resources.Resource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class TelemetryClientTest {
+
+  @Test
+  void shouldPopulateCustomDimensionsAndSkipEmptyValues() {
+    Map<String, String> customDimensions = new HashMap<>();
+    customDimensions.put("key1", "value1");
+    customDimensions.put("key2", "");
+    customDimensions.put("service.version", "1.2.3");
+    TelemetryClient telemetryClient = newTelemetryClient(customDimensions);
+
+    TelemetryItem item = populate(telemetryClient, Resource.empty());
+
+    assertThat(getProperties(item)).containsOnly(entry("key1", "value1"));
+    assertThat(item.getTags())
+        .containsEntry(ContextTagKeys.AI_APPLICATION_VER.toString(), "1.2.3")
+        .containsKey(ContextTagKeys.AI_INTERNAL_SDK_VERSION.toString());
+  }
+
+  @Test
+  void shouldPickUpRoleNameUpdates() {
+    TelemetryClient telemetryClient = newTelemetryClient(new HashMap<>());
+    Resource resource = Resource.empty();
+
+    telemetryClient.updateRoleName("role1");
+    TelemetryItem first = populate(telemetryClient, resource);
+    telemetryClient.updateRoleName("role2");
+    TelemetryItem second = populate(telemetryClient, resource);
+
+    assertThat(first.getTags()).containsEntry(ContextTagKeys.AI_CLOUD_ROLE.toString(), "role1");
+    assertThat(second.getTags()).containsEntry(ContextTagKeys.AI_CLOUD_ROLE.toString(), "role2");
+  }
+
+  @Test
+  void shouldPickUpConnectionStringUpdates() {
+    TelemetryClient telemetryClient = newTelemetryClient(new HashMap<>());
+    Resource resource = Resource.empty();
+
+    TelemetryItem first = populate(telemetryClient, resource);
+    telemetryClient.updateConnectionStrings(
+        "InstrumentationKey=00000000-0000-0000-0000-000000000000", null, null);
+    TelemetryItem second = populate(telemetryClient, resource);
+
+    assertThat(first.getInstrumentationKey()).isNull();
+    assertThat(second.getInstrumentationKey()).isEqualTo("00000000-0000-0000-0000-000000000000");
+  }
+
+  @Test
+  void shouldReuseDefaultsForEqualResources() {
+    TelemetryClient telemetryClient = newTelemetryClient(new HashMap<>());
+    Resource resource1 =
+        Resource.create(Attributes.of(AttributeKey.stringKey("service.name"), "service1"));
+    Resource resource2 =
+        Resource.create(Attributes.of(AttributeKey.stringKey("service.name"), "service1"));
+    Resource other =
+        Resource.create(Attributes.of(AttributeKey.stringKey("service.name"), "service2"));
+
+    populate(telemetryClient, resource1);
+    Object template = telemetryClient.getDefaultsTemplate();
+    TelemetryItem first = populate(telemetryClient, resource2);
+    TelemetryItem second = populate(telemetryClient, resource1);
+
+    assertThat(telemetryClient.getDefaultsTemplate()).isSameAs(template);
+    assertThat(first.getTags()).containsEntry(ContextTagKeys.AI_CLOUD_ROLE.toString(), "service1");
+    assertThat(second.getTags()).isEqualTo(first.getTags());
+
+    TelemetryItem third = populate(telemetryClient, other);
+
+    assertThat(telemetryClient.getDefaultsTemplate()).isNotSameAs(template);
+    assertThat(third.getTags()).containsEntry(ContextTagKeys.AI_CLOUD_ROLE.toString(), "service2");
+  }
+
+  private static TelemetryClient newTelemetryClient(Map<String, String> customDimensions) {
+    return TelemetryClient.builder()
+        .setCustomDimensions(customDimensions)
+        .setMetricFilters(new ArrayList<>())
+        .setStatsbeatModule(new StatsbeatModule(response -> {}))
+        .build();
+  }
+
+  private static TelemetryItem populate(TelemetryClient telemetryClient, Resource resource) {
+    MessageTelemetryBuilder telemetryBuilder = MessageTelemetryBuilder.create();
+    telemetryClient.populateDefaults(telemetryBuilder, resource);
+    return telemetryBuilder.build();
+  }
+
+  private static Map<String, String> getProperties(TelemetryItem item) {
+    return ((MessageData) item.getData().getBaseData()).getProperties();
+  }
+}
@@ -0,0 +1,60 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.builders.MessageTelemetryBuilder;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.builders.MetricTelemetryBuilder;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.models.TelemetryItem;
+import org.junit.jupiter.api.Test;
+
+class TelemetryItemSizeEstimatorTest {
+
+  @Test
+  void largeMessageOutweighsMetric() {
+    TelemetryItem metric = MetricTelemetryBuilder.create("test", 1).build();
+    TelemetryItem message = createMessage(repeat('x', 200 * 1024));
+
+    assertThat(TelemetryItemSizeEstimator.estimate(metric)).isLessThan(1024);
+    assertThat(TelemetryItemSizeEstimator.estimate(message)).isGreaterThan(200 * 1024);
+  }
+
+  @Test
+  void includesProperties() {
+    MessageTelemetryBuilder builder = MessageTelemetryBuilder.create();
+    builder.setMessage("message");
+    TelemetryItem withoutProperties = builder.build();
+
+    builder = MessageTelemetryBuilder.create();
+    builder.setMessage("message");
+    builder.addProperty("key", repeat('v', 1000));
+    TelemetryItem withProperties = builder.build();
+
+    assertThat(TelemetryItemSizeEstimator.estimate(withProperties))
+        .isGreaterThanOrEqualTo(TelemetryItemSizeEstimator.estimate(withoutProperties) + 1000);
+  }
+
+  @Test
+  void isDeterministic() {
+    // the export queue releases exactly what it reserved by estimating the same item again
+    TelemetryItem message = createMessage("message");
+    assertThat(TelemetryItemSizeEstimator.estimate(message))
+        .isEqualTo(TelemetryItemSizeEstimator.estimate(message));
+  }
+
+  private static TelemetryItem createMessage(String message) {
+    MessageTelemetryBuilder builder = MessageTelemetryBuilder.create();
+    builder.setMessage(message);
+    return builder.build();
+  }
+
+  private static String repeat(char c, int count) {
+    StringBuilder sb = new StringBuilder(count);
+    for (int i = 0; i < count; i++) {
+      sb.append(c);
+    }
+    return sb.toString();
+  }
+}
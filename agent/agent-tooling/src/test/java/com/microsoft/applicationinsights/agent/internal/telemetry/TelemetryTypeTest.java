@@ -0,0 +1,43 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.builders.EventTelemetryBuilder;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.builders.ExceptionTelemetryBuilder;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.builders.MessageTelemetryBuilder;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.builders.MetricTelemetryBuilder;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.builders.RemoteDependencyTelemetryBuilder;
+import com.azure.monitor.opentelemetry.autoconfigure.implementation.builders.RequestTelemetryBuilder;
+import org.junit.jupiter.api.Test;
+
+class TelemetryTypeTest {
+
+  @Test
+  void classifiesByBaseData() {
+    assertThat(TelemetryType.of(RequestTelemetryBuilder.create().build()))
+        .isEqualTo(TelemetryType.REQUEST);
+    assertThat(TelemetryType.of(RemoteDependencyTelemetryBuilder.create().build()))
+        .isEqualTo(TelemetryType.DEPENDENCY);
+    assertThat(TelemetryType.of(ExceptionTelemetryBuilder.create().build()))
+        .isEqualTo(TelemetryType.EXCEPTION);
+    assertThat(TelemetryType.of(MessageTelemetryBuilder.create().build()))
+        .isEqualTo(TelemetryType.TRACE);
+    assertThat(TelemetryType.of(MetricTelemetryBuilder.create("test", 1).build()))
+        .isEqualTo(TelemetryType.METRIC);
+    assertThat(TelemetryType.of(EventTelemetryBuilder.create().build()))
+        .isEqualTo(TelemetryType.OTHER);
+  }
+
+  @Test
+  void lanesAreInPriorityOrder() {
+    assertThat(TelemetryType.REQUEST.getLane()).isZero();
+    assertThat(TelemetryType.DEPENDENCY.getLane()).isZero();
+    assertThat(TelemetryType.EXCEPTION.getLane()).isEqualTo(1);
+    assertThat(TelemetryType.TRACE.getLane()).isEqualTo(TelemetryType.LANES - 1);
+    assertThat(TelemetryType.METRIC.getLane()).isEqualTo(TelemetryType.LANES - 1);
+    assertThat(TelemetryType.OTHER.getLane()).isEqualTo(TelemetryType.LANES - 1);
+  }
+}
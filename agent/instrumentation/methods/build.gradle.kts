@@ -1,6 +1,7 @@
 plugins {
   id("ai.java-conventions")
   id("ai.javaagent-instrumentation")
+  id("ai.jmh-conventions")
 }
 
 muzzle {
@@ -16,6 +17,9 @@ dependencies {
   compileOnly("io.opentelemetry.instrumentation:opentelemetry-instrumentation-annotations-support")
   compileOnly("io.opentelemetry.instrumentation:opentelemetry-instrumentation-api-incubator")
 
+  jmhImplementation("io.opentelemetry.instrumentation:opentelemetry-instrumentation-annotations-support")
+  jmhImplementation("io.opentelemetry.instrumentation:opentelemetry-instrumentation-api-incubator")
+
   // TODO remove when start using io.opentelemetry.instrumentation.javaagent-instrumentation plugin
   add("codegen", "io.opentelemetry.javaagent:opentelemetry-javaagent-tooling:$otelInstrumentationAlphaVersion")
   add("muzzleBootstrap", "io.opentelemetry.instrumentation:opentelemetry-instrumentation-annotations-support:$otelInstrumentationAlphaVersion")
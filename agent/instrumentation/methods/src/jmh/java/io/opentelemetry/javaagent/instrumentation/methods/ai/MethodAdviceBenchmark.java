@@ -0,0 +1,123 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package io.opentelemetry.javaagent.instrumentation.methods.ai;
+
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.instrumentation.api.annotation.support.async.AsyncOperationEndSupport;
+import io.opentelemetry.instrumentation.api.incubator.semconv.util.ClassAndMethod;
+import io.opentelemetry.javaagent.instrumentation.methods.ai.MethodSingletons.InstrumentedMethod;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the overhead that {@link MethodInstrumentation.MethodAdvice} adds to each call of a
+ * method instrumented through custom instrumentation, between the previous advice (which created
+ * the {@link ClassAndMethod} on enter, and resolved the {@link Method} to create the {@link
+ * AsyncOperationEndSupport} on exit) and the current one (which looks both up once per method).
+ *
+ * <p>The advice bodies are replayed directly against the no-op OpenTelemetry, so that only the
+ * advice itself is measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MethodAdviceBenchmark {
+
+  // what @Advice.Origin("#m#d") renders for the instrumented methods
+  private static final String SYNC_METHOD_SIGNATURE = "syncMethod()Ljava/lang/String;";
+  private static final String ASYNC_METHOD_SIGNATURE =
+      "asyncMethod()Ljava/util/concurrent/CompletableFuture;";
+
+  @State(Scope.Benchmark)
+  public static class BenchmarkState {
+
+    @Param({"PER_CALL", "CACHED"})
+    public String design;
+
+    private boolean cached;
+    private final CompletableFuture<String> completedFuture =
+        CompletableFuture.completedFuture("result");
+
+    @Setup(Level.Trial)
+    public void setup() {
+      cached = design.equals("CACHED");
+    }
+  }
+
+  @Benchmark
+  public Object syncMethod(BenchmarkState state) throws Exception {
+    return state.cached
+        ? cachedAdvice(SYNC_METHOD_SIGNATURE, "result")
+        : perCallAdvice("syncMethod", "result");
+  }
+
+  @Benchmark
+  public Object asyncMethod(BenchmarkState state) throws Exception {
+    return state.cached
+        ? cachedAdvice(ASYNC_METHOD_SIGNATURE, state.completedFuture)
+        : perCallAdvice("asyncMethod", state.completedFuture);
+  }
+
+  /** Replica of the previous advice. */
+  private static Object perCallAdvice(String methodName, Object returnValue) throws Exception {
+    Context parentContext = Context.current();
+    ClassAndMethod classAndMethod = ClassAndMethod.create(Target.class, methodName);
+    if (!MethodSingletons.instrumenter().shouldStart(parentContext, classAndMethod)) {
+      return returnValue;
+    }
+    Context context = MethodSingletons.instrumenter().start(parentContext, classAndMethod);
+    Scope scope = context.makeCurrent();
+
+    // what @Advice.Origin Method resolves on every call
+    Method method = Target.class.getDeclaredMethod(methodName);
+    scope.close();
+    return AsyncOperationEndSupport.create(
+            MethodSingletons.instrumenter(), Void.class, method.getReturnType())
+        .asyncEnd(context, classAndMethod, returnValue, null);
+  }
+
+  private static Object cachedAdvice(String methodSignature, Object returnValue) {
+    Context parentContext = Context.current();
+    InstrumentedMethod method = MethodSingletons.instrumentedMethod(Target.class, methodSignature);
+    if (!MethodSingletons.instrumenter().shouldStart(parentContext, method.classAndMethod())) {
+      return returnValue;
+    }
+    Context context = MethodSingletons.instrumenter().start(parentContext, method.classAndMethod());
+    Scope scope = context.makeCurrent();
+
+    scope.close();
+    return method
+        .asyncOperationEndSupport()
+        .asyncEnd(context, method.classAndMethod(), returnValue, null);
+  }
+
+  /** The instrumented methods. */
+  @SuppressWarnings("unused")
+  private static class Target {
+
+    String syncMethod() {
+      return "result";
+    }
+
+    CompletableFuture<String> asyncMethod() {
+      return CompletableFuture.completedFuture("result");
+    }
+  }
+}
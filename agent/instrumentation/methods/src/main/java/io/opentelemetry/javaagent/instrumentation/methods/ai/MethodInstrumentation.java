@@ -17,11 +17,9 @@ import static net.bytebuddy.matcher.ElementMatchers.namedOneOf;
 
 import io.opentelemetry.context.Context;
 import io.opentelemetry.context.Scope;
-import io.opentelemetry.instrumentation.api.annotation.support.async.AsyncOperationEndSupport;
-import io.opentelemetry.instrumentation.api.incubator.semconv.util.ClassAndMethod;
 import io.opentelemetry.javaagent.extension.instrumentation.TypeInstrumentation;
 import io.opentelemetry.javaagent.extension.instrumentation.TypeTransformer;
-import java.lang.reflect.Method;
+import io.opentelemetry.javaagent.instrumentation.methods.ai.MethodSingletons.InstrumentedMethod;
 import java.util.Set;
 import net.bytebuddy.asm.Advice;
 import net.bytebuddy.description.type.TypeDescription;
@@ -61,24 +59,23 @@ public class MethodInstrumentation implements TypeInstrumentation {
     @Advice.OnMethodEnter(suppress = Throwable.class)
     public static void onEnter(
         @Advice.Origin("#t") Class<?> declaringClass,
-        @Advice.Origin("#m") String methodName,
-        @Advice.Local("otelMethod") ClassAndMethod classAndMethod,
+        @Advice.Origin("#m#d") String methodSignature,
+        @Advice.Local("otelMethod") InstrumentedMethod method,
         @Advice.Local("otelContext") Context context,
         @Advice.Local("otelScope") Scope scope) {
       Context parentContext = currentContext();
-      classAndMethod = ClassAndMethod.create(declaringClass, methodName);
-      if (!MethodSingletons.instrumenter().shouldStart(parentContext, classAndMethod)) {
+      method = MethodSingletons.instrumentedMethod(declaringClass, methodSignature);
+      if (!MethodSingletons.instrumenter().shouldStart(parentContext, method.classAndMethod())) {
         return;
       }
 
-      context = MethodSingletons.instrumenter().start(parentContext, classAndMethod);
+      context = MethodSingletons.instrumenter().start(parentContext, method.classAndMethod());
       scope = context.makeCurrent();
     }
 
     @Advice.OnMethodExit(onThrowable = Throwable.class, suppress = Throwable.class)
     public static void stopSpan(
-        @Advice.Origin Method method,
-        @Advice.Local("otelMethod") ClassAndMethod classAndMethod,
+        @Advice.Local("otelMethod") InstrumentedMethod method,
         @Advice.Local("otelContext") Context context,
         @Advice.Local("otelScope") Scope scope,
         @Advice.Return(typing = Assigner.Typing.DYNAMIC, readOnly = false) Object returnValue,
@@ -86,9 +83,9 @@ public class MethodInstrumentation implements TypeInstrumentation {
       scope.close();
 
       returnValue =
-          AsyncOperationEndSupport.create(
-                  MethodSingletons.instrumenter(), Void.class, method.getReturnType())
-              .asyncEnd(context, classAndMethod, returnValue, throwable);
+          method
+              .asyncOperationEndSupport()
+              .asyncEnd(context, method.classAndMethod(), returnValue, throwable);
     }
 
     private MethodAdvice() {}
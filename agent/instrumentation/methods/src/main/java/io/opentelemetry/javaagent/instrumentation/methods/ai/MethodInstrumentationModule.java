@@ -51,7 +51,9 @@ public class MethodInstrumentationModule extends InstrumentationModule {
         ? emptyList()
         : asList(
             "io.opentelemetry.javaagent.instrumentation.methods.ai.MethodSingletons",
-            "io.opentelemetry.javaagent.instrumentation.methods.ai.MethodSingletons$MethodSpanKindExtractor");
+            "io.opentelemetry.javaagent.instrumentation.methods.ai.MethodSingletons$MethodSpanKindExtractor",
+            "io.opentelemetry.javaagent.instrumentation.methods.ai.MethodSingletons$InstrumentedMethod",
+            "io.opentelemetry.javaagent.instrumentation.methods.ai.MethodSingletons$InstrumentedMethods");
   }
 
   @Override
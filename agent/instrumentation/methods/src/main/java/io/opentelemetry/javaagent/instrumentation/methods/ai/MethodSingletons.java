@@ -12,12 +12,15 @@ package io.opentelemetry.javaagent.instrumentation.methods.ai;
 import io.opentelemetry.api.GlobalOpenTelemetry;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.instrumentation.api.annotation.support.async.AsyncOperationEndSupport;
 import io.opentelemetry.instrumentation.api.incubator.semconv.code.CodeAttributesExtractor;
 import io.opentelemetry.instrumentation.api.incubator.semconv.code.CodeAttributesGetter;
 import io.opentelemetry.instrumentation.api.incubator.semconv.code.CodeSpanNameExtractor;
 import io.opentelemetry.instrumentation.api.incubator.semconv.util.ClassAndMethod;
 import io.opentelemetry.instrumentation.api.instrumenter.Instrumenter;
 import io.opentelemetry.instrumentation.api.instrumenter.SpanKindExtractor;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public final class MethodSingletons {
   private static final String INSTRUMENTATION_NAME = "io.opentelemetry.methods";
@@ -41,10 +44,106 @@ public final class MethodSingletons {
     // END APPLICATION INSIGHTS MODIFICATIONS
   }
 
+  private static final InstrumentedMethods INSTRUMENTED_METHODS = new InstrumentedMethods();
+
   public static Instrumenter<ClassAndMethod, Void> instrumenter() {
     return INSTRUMENTER;
   }
 
+  // START APPLICATION INSIGHTS MODIFICATIONS
+
+  /**
+   * Returns what the advice needs for an instrumented method, which is only computed the first time
+   * that method is called.
+   *
+   * @param methodSignature the method name followed by its descriptor, which the advice gets as a
+   *     constant that is rendered when the method is transformed
+   */
+  public static InstrumentedMethod instrumentedMethod(
+      Class<?> declaringClass, String methodSignature) {
+    ConcurrentMap<String, InstrumentedMethod> methods = INSTRUMENTED_METHODS.get(declaringClass);
+    InstrumentedMethod method = methods.get(methodSignature);
+    if (method == null) {
+      method =
+          methods.computeIfAbsent(
+              methodSignature, signature -> new InstrumentedMethod(declaringClass, signature));
+    }
+    return method;
+  }
+
+  public static final class InstrumentedMethod {
+
+    private final ClassAndMethod classAndMethod;
+    private final AsyncOperationEndSupport<ClassAndMethod, Void> asyncOperationEndSupport;
+
+    private InstrumentedMethod(Class<?> declaringClass, String methodSignature) {
+      int descriptorStart = methodSignature.indexOf('(');
+      classAndMethod =
+          ClassAndMethod.create(declaringClass, methodSignature.substring(0, descriptorStart));
+      asyncOperationEndSupport =
+          AsyncOperationEndSupport.create(
+              INSTRUMENTER,
+              Void.class,
+              returnType(declaringClass, methodSignature.substring(descriptorStart)));
+    }
+
+    public ClassAndMethod classAndMethod() {
+      return classAndMethod;
+    }
+
+    public AsyncOperationEndSupport<ClassAndMethod, Void> asyncOperationEndSupport() {
+      return asyncOperationEndSupport;
+    }
+
+    private static Class<?> returnType(Class<?> declaringClass, String methodDescriptor) {
+      String returnDescriptor = methodDescriptor.substring(methodDescriptor.indexOf(')') + 1);
+      switch (returnDescriptor.charAt(0)) {
+        case 'V':
+          return void.class;
+        case 'Z':
+          return boolean.class;
+        case 'B':
+          return byte.class;
+        case 'C':
+          return char.class;
+        case 'S':
+          return short.class;
+        case 'I':
+          return int.class;
+        case 'J':
+          return long.class;
+        case 'F':
+          return float.class;
+        case 'D':
+          return double.class;
+        default:
+          break;
+      }
+      String className =
+          returnDescriptor.charAt(0) == 'L'
+              ? returnDescriptor.substring(1, returnDescriptor.length() - 1)
+              : returnDescriptor;
+      try {
+        return Class.forName(className.replace('/', '.'), false, declaringClass.getClassLoader());
+      } catch (ClassNotFoundException e) {
+        // the return type is always resolvable from the declaring class, but if it somehow isn't
+        // then no async end strategy applies, same as for any other type that isn't async
+        return Object.class;
+      }
+    }
+  }
+
+  private static class InstrumentedMethods
+      extends ClassValue<ConcurrentMap<String, InstrumentedMethod>> {
+
+    @Override
+    protected ConcurrentMap<String, InstrumentedMethod> computeValue(Class<?> type) {
+      return new ConcurrentHashMap<>();
+    }
+  }
+
+  // END APPLICATION INSIGHTS MODIFICATIONS
+
   // START APPLICATION INSIGHTS MODIFICATIONS
   private static class MethodSpanKindExtractor implements SpanKindExtractor<ClassAndMethod> {
 
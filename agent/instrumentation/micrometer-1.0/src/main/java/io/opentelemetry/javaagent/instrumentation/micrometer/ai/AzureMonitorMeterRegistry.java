@@ -3,8 +3,9 @@
 
 package io.opentelemetry.javaagent.instrumentation.micrometer.ai;
 
-import static com.microsoft.applicationinsights.agent.bootstrap.MicrometerUtil.trackMetric;
+import static com.microsoft.applicationinsights.agent.bootstrap.MicrometerUtil.trackMetrics;
 
+import com.microsoft.applicationinsights.agent.bootstrap.MicrometerUtil.Metric;
 import io.micrometer.core.instrument.Clock;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.DistributionSummary;
@@ -19,7 +20,10 @@ import io.micrometer.core.instrument.TimeGauge;
 import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.step.StepMeterRegistry;
 import io.micrometer.core.lang.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -29,6 +33,11 @@ public class AzureMonitorMeterRegistry extends StepMeterRegistry {
   public static final AzureMonitorMeterRegistry INSTANCE =
       new AzureMonitorMeterRegistry(Clock.SYSTEM);
 
+  // dimensions and names only depend on the meter id, so they are computed once per meter rather
+  // than on every publish, and dropped once a meter is no longer in the registry
+  private final Map<Meter.Id, CachedMeter> cachedMeters = new HashMap<>();
+  private long publishGeneration;
+
   // visible for testing
   public AzureMonitorMeterRegistry(Clock clock) {
     super(AzureMonitorRegistryConfig.INSTANCE, clock);
@@ -42,149 +51,186 @@ public class AzureMonitorMeterRegistry extends StepMeterRegistry {
   }
 
   @Override
-  protected void publish() {
-    for (Meter meter : getMeters()) {
+  protected synchronized void publish() {
+    List<Meter> meters = getMeters();
+    List<Metric> metrics = new ArrayList<>(meters.size());
+    long generation = ++publishGeneration;
+    for (Meter meter : meters) {
+      CachedMeter cachedMeter = getCachedMeter(meter, generation);
       if (meter instanceof TimeGauge) {
-        trackTimeGauge((TimeGauge) meter);
+        trackTimeGauge((TimeGauge) meter, cachedMeter, metrics);
       } else if (meter instanceof Gauge) {
-        trackGauge((Gauge) meter);
+        trackGauge((Gauge) meter, cachedMeter, metrics);
       } else if (meter instanceof Counter) {
-        trackCounter((Counter) meter);
+        trackCounter((Counter) meter, cachedMeter, metrics);
       } else if (meter instanceof Timer) {
-        trackTimer((Timer) meter);
+        trackTimer((Timer) meter, cachedMeter, metrics);
       } else if (meter instanceof DistributionSummary) {
-        trackDistributionSummary((DistributionSummary) meter);
+        trackDistributionSummary((DistributionSummary) meter, cachedMeter, metrics);
       } else if (meter instanceof LongTaskTimer) {
-        trackLongTaskTimer((LongTaskTimer) meter);
+        trackLongTaskTimer((LongTaskTimer) meter, cachedMeter, metrics);
       } else if (meter instanceof FunctionCounter) {
-        trackFunctionCounter((FunctionCounter) meter);
+        trackFunctionCounter((FunctionCounter) meter, cachedMeter, metrics);
       } else if (meter instanceof FunctionTimer) {
-        trackFunctionTimer((FunctionTimer) meter);
+        trackFunctionTimer((FunctionTimer) meter, cachedMeter, metrics);
       } else {
-        trackMeter(meter);
+        trackMeter(meter, cachedMeter, metrics);
       }
     }
+    if (cachedMeters.size() > meters.size()) {
+      // meters were removed from the registry since they were last published
+      cachedMeters.values().removeIf(cachedMeter -> cachedMeter.generation != generation);
+    }
+    trackMetrics(metrics);
+  }
+
+  private CachedMeter getCachedMeter(Meter meter, long generation) {
+    CachedMeter cachedMeter = cachedMeters.get(meter.getId());
+    if (cachedMeter == null) {
+      cachedMeter = new CachedMeter(getName(meter), getProperties(meter));
+      cachedMeters.put(meter.getId(), cachedMeter);
+    }
+    cachedMeter.generation = generation;
+    return cachedMeter;
   }
 
-  private void trackTimeGauge(TimeGauge gauge) {
-    trackMetric(
-        getName(gauge),
-        getNamespace(),
-        gauge.value(getBaseTimeUnit()),
-        null,
-        null,
-        null,
-        getProperties(gauge));
+  private void trackTimeGauge(TimeGauge gauge, CachedMeter cachedMeter, List<Metric> metrics) {
+    metrics.add(
+        new Metric(
+            cachedMeter.name,
+            getNamespace(),
+            gauge.value(getBaseTimeUnit()),
+            null,
+            null,
+            null,
+            cachedMeter.properties));
   }
 
-  private void trackGauge(Gauge gauge) {
-    trackMetric(
-        getName(gauge), getNamespace(), gauge.value(), null, null, null, getProperties(gauge));
+  private static void trackGauge(Gauge gauge, CachedMeter cachedMeter, List<Metric> metrics) {
+    metrics.add(
+        new Metric(
+            cachedMeter.name,
+            getNamespace(),
+            gauge.value(),
+            null,
+            null,
+            null,
+            cachedMeter.properties));
   }
 
-  private void trackCounter(Counter counter) {
-    trackMetric(
-        getName(counter),
-        getNamespace(),
-        counter.count(),
-        null,
-        null,
-        null,
-        getProperties(counter));
+  private static void trackCounter(Counter counter, CachedMeter cachedMeter, List<Metric> metrics) {
+    metrics.add(
+        new Metric(
+            cachedMeter.name,
+            getNamespace(),
+            counter.count(),
+            null,
+            null,
+            null,
+            cachedMeter.properties));
   }
 
-  private void trackTimer(Timer timer) {
+  private void trackTimer(Timer timer, CachedMeter cachedMeter, List<Metric> metrics) {
     long count = timer.count();
     if (count == 0) {
       // important not to send explicit count of 0 because breeze converts that to 1
       return;
     }
     // min is not supported, see https://github.com/micrometer-metrics/micrometer/issues/457
-    trackMetric(
-        getName(timer),
-        getNamespace(),
-        timer.totalTime(getBaseTimeUnit()),
-        castCountToInt(count),
-        null,
-        timer.max(getBaseTimeUnit()),
-        getProperties(timer));
+    metrics.add(
+        new Metric(
+            cachedMeter.name,
+            getNamespace(),
+            timer.totalTime(getBaseTimeUnit()),
+            castCountToInt(count),
+            null,
+            timer.max(getBaseTimeUnit()),
+            cachedMeter.properties));
   }
 
-  private void trackDistributionSummary(DistributionSummary summary) {
+  private static void trackDistributionSummary(
+      DistributionSummary summary, CachedMeter cachedMeter, List<Metric> metrics) {
     long count = summary.count();
     if (count == 0) {
       // important not to send explicit count of 0 because breeze converts that to 1
       return;
     }
     // min is not supported, see https://github.com/micrometer-metrics/micrometer/issues/457
-    trackMetric(
-        getName(summary),
-        getNamespace(),
-        summary.totalAmount(),
-        castCountToInt(count),
-        null,
-        summary.max(),
-        getProperties(summary));
-  }
-
-  private void trackLongTaskTimer(LongTaskTimer timer) {
-    Map<String, String> properties = getProperties(timer);
-    trackMetric(
-        getName(timer, "active"),
-        getNamespace(),
-        timer.activeTasks(),
-        null,
-        null,
-        null,
-        properties);
-    trackMetric(
-        getName(timer, "duration"),
-        getNamespace(),
-        timer.duration(getBaseTimeUnit()),
-        null,
-        null,
-        null,
-        properties);
-  }
-
-  private void trackFunctionCounter(FunctionCounter counter) {
-    trackMetric(
-        getName(counter),
-        getNamespace(),
-        counter.count(),
-        null,
-        null,
-        null,
-        getProperties(counter));
-  }
-
-  private void trackFunctionTimer(FunctionTimer timer) {
+    metrics.add(
+        new Metric(
+            cachedMeter.name,
+            getNamespace(),
+            summary.totalAmount(),
+            castCountToInt(count),
+            null,
+            summary.max(),
+            cachedMeter.properties));
+  }
+
+  private void trackLongTaskTimer(
+      LongTaskTimer timer, CachedMeter cachedMeter, List<Metric> metrics) {
+    metrics.add(
+        new Metric(
+            getName(timer, "active"),
+            getNamespace(),
+            timer.activeTasks(),
+            null,
+            null,
+            null,
+            cachedMeter.properties));
+    metrics.add(
+        new Metric(
+            getName(timer, "duration"),
+            getNamespace(),
+            timer.duration(getBaseTimeUnit()),
+            null,
+            null,
+            null,
+            cachedMeter.properties));
+  }
+
+  private static void trackFunctionCounter(
+      FunctionCounter counter, CachedMeter cachedMeter, List<Metric> metrics) {
+    metrics.add(
+        new Metric(
+            cachedMeter.name,
+            getNamespace(),
+            counter.count(),
+            null,
+            null,
+            null,
+            cachedMeter.properties));
+  }
+
+  private void trackFunctionTimer(
+      FunctionTimer timer, CachedMeter cachedMeter, List<Metric> metrics) {
     double count = timer.count();
     if (count == 0) {
       // important not to send explicit count of 0 because breeze converts that to 1
       return;
     }
-    trackMetric(
-        getName(timer),
-        getNamespace(),
-        timer.totalTime(getBaseTimeUnit()),
-        castCountToInt(count),
-        null,
-        null,
-        getProperties(timer));
-  }
-
-  private void trackMeter(Meter meter) {
-    Map<String, String> properties = getProperties(meter);
+    metrics.add(
+        new Metric(
+            cachedMeter.name,
+            getNamespace(),
+            timer.totalTime(getBaseTimeUnit()),
+            castCountToInt(count),
+            null,
+            null,
+            cachedMeter.properties));
+  }
+
+  private void trackMeter(Meter meter, CachedMeter cachedMeter, List<Metric> metrics) {
     for (Measurement measurement : meter.measure()) {
-      trackMetric(
-          getName(meter, measurement.getStatistic().toString().toLowerCase(Locale.ROOT)),
-          getNamespace(),
-          measurement.getValue(),
-          null,
-          null,
-          null,
-          properties);
+      metrics.add(
+          new Metric(
+              getName(meter, measurement.getStatistic().toString().toLowerCase(Locale.ROOT)),
+              getNamespace(),
+              measurement.getValue(),
+              null,
+              null,
+              null,
+              cachedMeter.properties));
     }
   }
 
@@ -208,11 +254,16 @@ public class AzureMonitorMeterRegistry extends StepMeterRegistry {
   }
 
   private Map<String, String> getProperties(Meter meter) {
+    List<Tag> tags = getConventionTags(meter.getId());
+    if (tags.isEmpty()) {
+      return Collections.emptyMap();
+    }
     Map<String, String> properties = new HashMap<>();
-    for (Tag tag : getConventionTags(meter.getId())) {
+    for (Tag tag : tags) {
       properties.put(tag.getKey(), tag.getValue());
     }
-    return properties;
+    // shared by every metric tracked for this meter, across publishes
+    return Collections.unmodifiableMap(properties);
   }
 
   private static int castCountToInt(long count) {
@@ -222,4 +273,17 @@ public class AzureMonitorMeterRegistry extends StepMeterRegistry {
   private static int castCountToInt(double count) {
     return count < Integer.MAX_VALUE ? (int) count : Integer.MAX_VALUE;
   }
+
+  private static class CachedMeter {
+
+    private final String name;
+    private final Map<String, String> properties;
+    // the last publish that saw this meter
+    private long generation;
+
+    private CachedMeter(String name, Map<String, String> properties) {
+      this.name = name;
+      this.properties = properties;
+    }
+  }
 }
@@ -2,6 +2,7 @@
 // Licensed under the MIT License.
 
 import com.microsoft.applicationinsights.agent.bootstrap.MicrometerUtil;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -10,6 +11,7 @@ import javax.annotation.Nullable;
 public class AgentTestingMicrometerDelegate implements MicrometerUtil.MicrometerUtilDelegate {
 
   private final List<Measurement> measurements = new CopyOnWriteArrayList<>();
+  private final List<List<String>> publishes = new CopyOnWriteArrayList<>();
 
   @Override
   public void trackMetric(
@@ -23,14 +25,37 @@ public class AgentTestingMicrometerDelegate implements MicrometerUtil.Micrometer
     measurements.add(new Measurement(name, namespace, value, count, min, max, properties));
   }
 
+  @Override
+  public void trackMetrics(List<MicrometerUtil.Metric> metrics) {
+    List<String> names = new ArrayList<>();
+    for (MicrometerUtil.Metric metric : metrics) {
+      names.add(metric.getName());
+      trackMetric(
+          metric.getName(),
+          metric.getNamespace(),
+          metric.getValue(),
+          metric.getCount(),
+          metric.getMin(),
+          metric.getMax(),
+          metric.getProperties());
+    }
+    publishes.add(names);
+  }
+
   public void reset() {
     measurements.clear();
+    publishes.clear();
   }
 
   public List<Measurement> getMeasurements() {
     return measurements;
   }
 
+  // the names of the metrics passed to each bulk call
+  public List<List<String>> getPublishes() {
+    return publishes;
+  }
+
   public static class Measurement {
 
     public final String name;
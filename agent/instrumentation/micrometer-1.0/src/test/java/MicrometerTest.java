@@ -3,6 +3,7 @@
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.awaitility.Awaitility.await;
 
 import com.microsoft.applicationinsights.agent.bootstrap.MicrometerUtil;
@@ -91,6 +92,43 @@ class MicrometerTest {
     assertThat(measurement.namespace).isNull();
   }
 
+  @Test
+  void shouldReuseDimensionsAcrossPublishes() {
+    // given
+    CompositeMeterRegistry registry = Metrics.globalRegistry;
+
+    // when
+    Gauge.builder("test-tagged-gauge", () -> 33.0).tag("tag1", "value1").register(registry);
+
+    // then
+    await().until(() -> getMeasurements("test-tagged-gauge").size() >= 2);
+
+    List<AgentTestingMicrometerDelegate.Measurement> measurements =
+        getMeasurements("test-tagged-gauge");
+    assertThat(measurements.get(0).properties).containsOnly(entry("tag1", "value1"));
+    assertThat(measurements.get(1).properties).isSameAs(measurements.get(0).properties);
+  }
+
+  @Test
+  void shouldPublishAllMetersOfAStepInOneCall() {
+    // given
+    CompositeMeterRegistry registry = Metrics.globalRegistry;
+
+    // when
+    Gauge.builder("test-bulk-gauge1", () -> 1.0).register(registry);
+    Gauge.builder("test-bulk-gauge2", () -> 2.0).register(registry);
+
+    // then
+    await()
+        .until(
+            () ->
+                delegate.getPublishes().stream()
+                    .anyMatch(
+                        names ->
+                            names.contains("test-bulk-gauge1")
+                                && names.contains("test-bulk-gauge2")));
+  }
+
   @Disabled
   @Test
   void shouldCaptureCounter() {
@@ -266,13 +304,16 @@ class MicrometerTest {
   }
 
   private static AgentTestingMicrometerDelegate.Measurement getLastMeasurement(String name) {
-    List<AgentTestingMicrometerDelegate.Measurement> measurements =
-        delegate.getMeasurements().stream()
-            .filter(measurement -> measurement.name.equals(name) && measurement.value != 0)
-            .collect(Collectors.toList());
+    List<AgentTestingMicrometerDelegate.Measurement> measurements = getMeasurements(name);
     if (measurements.isEmpty()) {
       return null;
     }
     return measurements.get(measurements.size() - 1);
   }
+
+  private static List<AgentTestingMicrometerDelegate.Measurement> getMeasurements(String name) {
+    return delegate.getMeasurements().stream()
+        .filter(measurement -> measurement.name.equals(name) && measurement.value != 0)
+        .collect(Collectors.toList());
+  }
 }
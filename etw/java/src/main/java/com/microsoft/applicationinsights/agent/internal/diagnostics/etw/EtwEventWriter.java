@@ -0,0 +1,15 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.agent.internal.diagnostics.etw;
+
+import com.microsoft.applicationinsights.agent.internal.diagnostics.etw.events.model.IpaEtwEventBase;
+
+/**
+ * Writes events to ETW. This is implemented by {@link EtwProvider}, and abstracted so that the
+ * code writing the events can be tested without the native library.
+ */
+public interface EtwEventWriter {
+
+  void writeEvent(IpaEtwEventBase event) throws ApplicationInsightsEtwException;
+}
@@ -9,7 +9,7 @@ import java.io.IOException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class EtwProvider {
+public class EtwProvider implements EtwEventWriter {
   private static final String LIB_FILENAME_32_BIT = "applicationinsights-java-etw-provider-x86.dll";
   private static final String LIB_FILENAME_64_BIT =
       "applicationinsights-java-etw-provider-x86-64.dll";
@@ -62,6 +62,7 @@ public class EtwProvider {
 
   private native void cppWriteEvent(IpaEtwEventBase event) throws ApplicationInsightsEtwException;
 
+  @Override
   public void writeEvent(IpaEtwEventBase event) throws ApplicationInsightsEtwException {
     cppWriteEvent(event);
   }
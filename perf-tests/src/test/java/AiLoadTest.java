@@ -0,0 +1,194 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.samples.petclinic.PetClinicApplication;
+
+/**
+ * Measures the overhead of the agent on the PetClinic app under a fixed request rate, by running
+ * the same load against the app without and then with the agent, which exports to the smoke test
+ * mocked ingestion.
+ *
+ * <p>Run with {@code ./gradlew loadTest} (after {@code ./gradlew assemble} in the root project),
+ * the load and the mocked ingestion behavior can be configured through the system properties
+ * below, e.g. {@code ./gradlew loadTest -DloadTest.ingestionFailureRate=0.1}. The results are
+ * written to {@code build/load-test/results.txt}.
+ */
+@Tag("load")
+class AiLoadTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AiLoadTest.class);
+
+  private static final int REQUESTS_PER_SECOND = Integer.getInteger("loadTest.rps", 200);
+  private static final Duration WARMUP =
+      Duration.ofSeconds(Long.getLong("loadTest.warmupSeconds", 60));
+  private static final Duration MEASUREMENT =
+      Duration.ofSeconds(Long.getLong("loadTest.durationSeconds", 60));
+  private static final long INGESTION_DELAY_MILLIS =
+      Long.getLong("loadTest.ingestionDelayMillis", 0);
+  private static final double INGESTION_FAILURE_RATE =
+      Double.parseDouble(System.getProperty("loadTest.ingestionFailureRate", "0"));
+
+  private static final int APP_PORT = 8080;
+  private static final int JMX_PORT = 9010;
+  private static final String APP_URL = "http://localhost:" + APP_PORT;
+
+  // a mix of pages that query the database and render templates, so that each request also
+  // produces dependency telemetry
+  private static final List<String> PATHS =
+      Arrays.asList("/owners?lastName=", "/owners/1", "/vets.html", "/owners/find");
+
+  private static final String CONNECTION_STRING =
+      "InstrumentationKey=00000000-0000-0000-0000-0000000000ff;"
+          + "IngestionEndpoint="
+          + FakeIngestion.URL
+          + ";LiveEndpoint="
+          + FakeIngestion.URL;
+
+  @Test
+  void agentOverhead() throws Exception {
+    try (FakeIngestion ingestion =
+        new FakeIngestion(INGESTION_DELAY_MILLIS, INGESTION_FAILURE_RATE)) {
+      RunResult baseline = run("baseline", new ArrayList<>(), ingestion);
+      List<String> agentJvmArgs = new ArrayList<>();
+      agentJvmArgs.add("-javaagent:build/applicationinsights-agent.jar");
+      RunResult agent = run("agent", agentJvmArgs, ingestion);
+
+      FakeIngestion.Stats stats =
+          ingestion.awaitRequests(agent.load.requests, Duration.ofSeconds(30));
+      report(baseline, agent, stats);
+    }
+  }
+
+  private static RunResult run(String name, List<String> jvmArgs, FakeIngestion ingestion)
+      throws Exception {
+    Map<String, String> env = new LinkedHashMap<>();
+    env.put(
+        "APPLICATIONINSIGHTS_CONFIGURATION_CONTENT",
+        "{\"connectionString\": \"" + CONNECTION_STRING + "\"}");
+    try (MonitoredJvm app =
+        MonitoredJvm.start(
+            jvmArgs,
+            PetClinicApplication.class.getName(),
+            List.of("--server.port=" + APP_PORT),
+            env,
+            JMX_PORT,
+            MonitoredJvm.logFile(name))) {
+      app.awaitReady(APP_URL + "/actuator/health", Duration.ofMinutes(2));
+
+      LoadGenerator loadGenerator = new LoadGenerator(APP_URL, PATHS, REQUESTS_PER_SECOND);
+      LOG.info("{}: warming up for {}", name, WARMUP);
+      loadGenerator.run(WARMUP);
+      // let the telemetry from the warmup be exported, and then only count telemetry from the
+      // measured requests
+      TimeUnit.SECONDS.sleep(10);
+      ingestion.reset();
+      LOG.info("{}: measuring for {}", name, MEASUREMENT);
+      MonitoredJvm.Usage before = app.usage();
+      LoadGenerator.Result load = loadGenerator.run(MEASUREMENT);
+      MonitoredJvm.Usage after = app.usage();
+      return new RunResult(
+          load, after.cpuCoresSince(before), after.allocationMbPerSecondSince(before));
+    }
+  }
+
+  private static void report(RunResult baseline, RunResult agent, FakeIngestion.Stats stats)
+      throws IOException {
+    Map<String, String> results = new LinkedHashMap<>();
+    for (double percentile : new double[] {0.50, 0.99}) {
+      String suffix = "P" + Math.round(percentile * 100);
+      double baselineLatency = baseline.load.latencyPercentileMillis(percentile);
+      double agentLatency = agent.load.latencyPercentileMillis(percentile);
+      results.put("latency" + suffix + "BaselineMs", format(baselineLatency));
+      results.put("latency" + suffix + "AgentMs", format(agentLatency));
+      results.put("latency" + suffix + "DeltaMs", format(agentLatency - baselineLatency));
+    }
+    results.put("cpuBaselineCores", format(baseline.cpuCores));
+    results.put("cpuAgentCores", format(agent.cpuCores));
+    results.put("cpuDeltaCores", format(agent.cpuCores - baseline.cpuCores));
+    results.put("allocationBaselineMbPerSec", format(baseline.allocationMbPerSecond));
+    results.put("allocationAgentMbPerSec", format(agent.allocationMbPerSecond));
+    results.put(
+        "allocationDeltaMbPerSec",
+        format(agent.allocationMbPerSecond - baseline.allocationMbPerSecond));
+    results.put("requestErrorsBaseline", String.valueOf(baseline.load.errors));
+    results.put("requestErrorsAgent", String.valueOf(agent.load.errors));
+    // requests are never sampled out here, so every request that didn't reach the ingestion was
+    // dropped by the export queue (or failed all retries when failures are injected)
+    long received = stats.count("RequestData");
+    results.put("requestTelemetrySent", String.valueOf(agent.load.requests));
+    results.put("requestTelemetryReceived", String.valueOf(received));
+    results.put(
+        "requestTelemetryDropped", String.valueOf(Math.max(0, agent.load.requests - received)));
+    results.put("ingestionFailedPosts", String.valueOf(stats.failedPosts()));
+    results.put("endToEndDelayP50Ms", String.valueOf(stats.delayMillis("RequestData", "P50")));
+    results.put("endToEndDelayP99Ms", String.valueOf(stats.delayMillis("RequestData", "P99")));
+    results.put("endToEndDelayMaxMs", String.valueOf(stats.delayMillis("RequestData", "Max")));
+
+    StringBuilder report = new StringBuilder();
+    report.append("requestsPerSecond=").append(REQUESTS_PER_SECOND).append('\n');
+    report.append("ingestionDelayMillis=").append(INGESTION_DELAY_MILLIS).append('\n');
+    report.append("ingestionFailureRate=").append(INGESTION_FAILURE_RATE).append('\n');
+    for (Map.Entry<String, String> entry : results.entrySet()) {
+      report.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+    }
+    Path resultsFile = Paths.get("build/load-test/results.txt");
+    Files.writeString(resultsFile, report);
+    LOG.info("load test results:\n{}", report);
+
+    if (System.getenv("PERF_TEST_URL_PATTERN") != null) {
+      Date date = new Date();
+      PerfResultSender.send(
+          date, "SDKPerfJavaLoad", "LatencyP99DeltaJava", results.get("latencyP99DeltaMs"), "ms");
+      PerfResultSender.send(
+          date, "SDKPerfJavaLoad", "CpuDeltaJava", results.get("cpuDeltaCores"), "cores");
+      PerfResultSender.send(
+          date,
+          "SDKPerfJavaLoad",
+          "AllocationRateDeltaJava",
+          results.get("allocationDeltaMbPerSec"),
+          "MB/s");
+      PerfResultSender.send(
+          date,
+          "SDKPerfJavaLoad",
+          "RequestTelemetryDroppedJava",
+          results.get("requestTelemetryDropped"),
+          "count");
+      PerfResultSender.send(
+          date, "SDKPerfJavaLoad", "EndToEndDelayP99Java", results.get("endToEndDelayP99Ms"), "ms");
+    }
+  }
+
+  private static String format(double value) {
+    return String.format(Locale.ROOT, "%.3f", value);
+  }
+
+  private static class RunResult {
+
+    private final LoadGenerator.Result load;
+    private final double cpuCores;
+    private final double allocationMbPerSecond;
+
+    private RunResult(LoadGenerator.Result load, double cpuCores, double allocationMbPerSecond) {
+      this.load = load;
+      this.cpuCores = cpuCores;
+      this.allocationMbPerSecond = allocationMbPerSecond;
+    }
+  }
+}
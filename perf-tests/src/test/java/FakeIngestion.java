@@ -0,0 +1,145 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The smoke test {@code MockedAppInsightsIngestionServer}, started in its own process (it is built
+ * with the rest of the agent, and its dependencies would clash with the app's), and read through
+ * its stats endpoint.
+ */
+class FakeIngestion implements AutoCloseable {
+
+  static final String URL = "http://localhost:6060/";
+
+  private static final String MAIN_CLASS =
+      "com.microsoft.applicationinsights.smoketest.fakeingestion.MockedAppInsightsIngestionServer";
+
+  // written by ./gradlew assemble in the root project
+  private static final Path CLASSPATH_FILE =
+      Paths.get("../smoke-tests/framework/build/runtime-classpath.txt");
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final HttpClient client = HttpClient.newHttpClient();
+  private final Process process;
+
+  FakeIngestion(long responseDelayMillis, double failureRate) throws Exception {
+    if (!Files.exists(CLASSPATH_FILE)) {
+      throw new IllegalStateException(
+          CLASSPATH_FILE + " not found, run ./gradlew assemble in the root project first");
+    }
+    List<String> command = new ArrayList<>();
+    command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+    command.add("-DfakeIngestion.loadTest=true");
+    command.add("-DfakeIngestion.responseDelayMillis=" + responseDelayMillis);
+    command.add("-DfakeIngestion.failureRate=" + failureRate);
+    command.add("-DfakeIngestion.retainItems=false");
+    command.add("-cp");
+    command.add(Files.readString(CLASSPATH_FILE).trim());
+    command.add(MAIN_CLASS);
+    process =
+        new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(MonitoredJvm.logFile("fake-ingestion").toFile())
+            .start();
+    try {
+      awaitReady();
+    } catch (Exception e) {
+      process.destroyForcibly();
+      throw e;
+    }
+  }
+
+  private void awaitReady() throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+    while (System.nanoTime() < deadline) {
+      try {
+        get("");
+        return;
+      } catch (IOException e) {
+        // not listening yet
+      }
+      TimeUnit.MILLISECONDS.sleep(200);
+    }
+    throw new IllegalStateException("timed out waiting for the fake ingestion");
+  }
+
+  void reset() throws IOException, InterruptedException {
+    get("stats/reset");
+  }
+
+  Stats stats() throws IOException, InterruptedException {
+    return new Stats(objectMapper.readTree(get("stats")));
+  }
+
+  /**
+   * Waits until the given number of requests has been received, or until no more requests have
+   * been received for a while (the rest were dropped or are still being retried).
+   */
+  Stats awaitRequests(long expected, Duration quietPeriod)
+      throws IOException, InterruptedException {
+    Stats stats = stats();
+    long lastChange = System.nanoTime();
+    while (stats.count("RequestData") < expected
+        && System.nanoTime() - lastChange < quietPeriod.toNanos()) {
+      TimeUnit.SECONDS.sleep(1);
+      Stats current = stats();
+      if (current.count("RequestData") != stats.count("RequestData")) {
+        lastChange = System.nanoTime();
+      }
+      stats = current;
+    }
+    return stats;
+  }
+
+  private String get(String path) throws IOException, InterruptedException {
+    HttpRequest request = HttpRequest.newBuilder(URI.create(URL + path)).build();
+    HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    if (response.statusCode() != 200) {
+      throw new IOException("unexpected status code " + response.statusCode());
+    }
+    return response.body();
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    process.destroy();
+    if (!process.waitFor(30, TimeUnit.SECONDS)) {
+      process.destroyForcibly();
+    }
+  }
+
+  static class Stats {
+
+    private final JsonNode json;
+
+    private Stats(JsonNode json) {
+      this.json = json;
+    }
+
+    long count(String type) {
+      return json.path("types").path(type).path("count").asLong();
+    }
+
+    long delayMillis(String type, String percentile) {
+      return json.path("types").path(type).path("delay" + percentile + "Millis").asLong();
+    }
+
+    long failedPosts() {
+      return json.path("failedPosts").asLong();
+    }
+  }
+}
@@ -0,0 +1,98 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a fixed request rate against the app, regardless of how quickly it responds (open model).
+ *
+ * <p>Latency is measured from the time each request was scheduled to be sent rather than from when
+ * it was actually sent, so that a slow app can't hide its latency by slowing down the load.
+ */
+class LoadGenerator {
+
+  private final HttpClient client =
+      HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+  private final List<URI> uris;
+  private final int requestsPerSecond;
+
+  LoadGenerator(String baseUrl, List<String> paths, int requestsPerSecond) {
+    this.uris = new ArrayList<>();
+    for (String path : paths) {
+      uris.add(URI.create(baseUrl + path));
+    }
+    this.requestsPerSecond = requestsPerSecond;
+  }
+
+  Result run(Duration duration) throws InterruptedException {
+    long intervalNanos = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+    int requests = (int) (duration.toNanos() / intervalNanos);
+    long[] latencyNanos = new long[requests];
+    AtomicLong errors = new AtomicLong();
+    List<CompletableFuture<?>> futures = new ArrayList<>(requests);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < requests; i++) {
+      long scheduled = start + i * intervalNanos;
+      long delay = scheduled - System.nanoTime();
+      if (delay > 0) {
+        LockSupport.parkNanos(delay);
+      }
+      int index = i;
+      HttpRequest request =
+          HttpRequest.newBuilder(uris.get(i % uris.size())).timeout(Duration.ofSeconds(30)).build();
+      futures.add(
+          client
+              .sendAsync(request, HttpResponse.BodyHandlers.discarding())
+              .whenComplete(
+                  (response, t) -> {
+                    latencyNanos[index] = System.nanoTime() - scheduled;
+                    if (t != null || response.statusCode() != 200) {
+                      errors.incrementAndGet();
+                    }
+                  }));
+    }
+    try {
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+          .exceptionally(t -> null)
+          .get(1, TimeUnit.MINUTES);
+    } catch (Exception e) {
+      throw new IllegalStateException("requests did not complete", e);
+    }
+    return new Result(requests, errors.get(), latencyNanos);
+  }
+
+  static class Result {
+
+    final int requests;
+    final long errors;
+    private final long[] sortedLatencyNanos;
+
+    private Result(int requests, long errors, long[] latencyNanos) {
+      this.requests = requests;
+      this.errors = errors;
+      this.sortedLatencyNanos = latencyNanos.clone();
+      Arrays.sort(sortedLatencyNanos);
+    }
+
+    double latencyPercentileMillis(double percentile) {
+      if (sortedLatencyNanos.length == 0) {
+        return 0;
+      }
+      int index = (int) Math.ceil(sortedLatencyNanos.length * percentile) - 1;
+      long nanos = sortedLatencyNanos[Math.max(0, index)];
+      return nanos / 1_000_000.0;
+    }
+  }
+}
@@ -0,0 +1,174 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+import com.sun.management.OperatingSystemMXBean;
+import com.sun.management.ThreadMXBean;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServerConnection;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+
+/**
+ * A JVM started in its own process, whose CPU time and allocated bytes are read over JMX, so that
+ * the numbers only reflect the app (and the agent, when attached) and not the load generator.
+ */
+class MonitoredJvm implements AutoCloseable {
+
+  private final Process process;
+  private final JMXConnector jmxConnector;
+  private final OperatingSystemMXBean operatingSystem;
+  private final ThreadMXBean threads;
+
+  static MonitoredJvm start(
+      List<String> jvmArgs,
+      String mainClass,
+      List<String> args,
+      Map<String, String> env,
+      int jmxPort,
+      Path logFile)
+      throws IOException, InterruptedException {
+    List<String> command = new ArrayList<>();
+    command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+    command.addAll(jvmArgs);
+    command.add("-Dcom.sun.management.jmxremote.port=" + jmxPort);
+    command.add("-Dcom.sun.management.jmxremote.rmi.port=" + jmxPort);
+    command.add("-Dcom.sun.management.jmxremote.authenticate=false");
+    command.add("-Dcom.sun.management.jmxremote.ssl=false");
+    command.add("-Djava.rmi.server.hostname=localhost");
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(mainClass);
+    command.addAll(args);
+
+    ProcessBuilder processBuilder = new ProcessBuilder(command);
+    processBuilder.environment().putAll(env);
+    processBuilder.redirectErrorStream(true);
+    processBuilder.redirectOutput(logFile.toFile());
+    Process process = processBuilder.start();
+    try {
+      return new MonitoredJvm(process, connect(jmxPort));
+    } catch (IOException | InterruptedException | RuntimeException e) {
+      process.destroyForcibly();
+      throw e;
+    }
+  }
+
+  private MonitoredJvm(Process process, JMXConnector jmxConnector) throws IOException {
+    this.process = process;
+    this.jmxConnector = jmxConnector;
+    MBeanServerConnection connection = jmxConnector.getMBeanServerConnection();
+    operatingSystem =
+        ManagementFactory.newPlatformMXBeanProxy(
+            connection,
+            ManagementFactory.OPERATING_SYSTEM_MXBEAN_NAME,
+            OperatingSystemMXBean.class);
+    threads =
+        ManagementFactory.newPlatformMXBeanProxy(
+            connection, ManagementFactory.THREAD_MXBEAN_NAME, ThreadMXBean.class);
+  }
+
+  private static JMXConnector connect(int jmxPort) throws IOException, InterruptedException {
+    JMXServiceURL url =
+        new JMXServiceURL("service:jmx:rmi:///jndi/rmi://localhost:" + jmxPort + "/jmxrmi");
+    long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+    while (true) {
+      try {
+        return JMXConnectorFactory.connect(url);
+      } catch (IOException e) {
+        if (System.nanoTime() > deadline) {
+          throw e;
+        }
+        TimeUnit.MILLISECONDS.sleep(200);
+      }
+    }
+  }
+
+  /** Waits until the given url responds with 200. */
+  void awaitReady(String url, Duration timeout) throws IOException, InterruptedException {
+    HttpClient client = HttpClient.newHttpClient();
+    HttpRequest request = HttpRequest.newBuilder(URI.create(url)).build();
+    long deadline = System.nanoTime() + timeout.toNanos();
+    while (System.nanoTime() < deadline) {
+      if (!process.isAlive()) {
+        throw new IllegalStateException("process exited with " + process.exitValue());
+      }
+      try {
+        if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+          return;
+        }
+      } catch (IOException e) {
+        // not listening yet
+      }
+      TimeUnit.MILLISECONDS.sleep(500);
+    }
+    throw new IllegalStateException("timed out waiting for " + url);
+  }
+
+  Usage usage() {
+    long allocatedBytes = 0;
+    for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+      // -1 for threads that have terminated since their ids were read
+      allocatedBytes += Math.max(0, allocated);
+    }
+    return new Usage(System.nanoTime(), operatingSystem.getProcessCpuTime(), allocatedBytes);
+  }
+
+  @Override
+  public void close() throws IOException, InterruptedException {
+    try {
+      jmxConnector.close();
+    } finally {
+      process.destroy();
+      if (!process.waitFor(30, TimeUnit.SECONDS)) {
+        process.destroyForcibly();
+      }
+    }
+  }
+
+  static Path logFile(String name) {
+    File dir = new File("build/load-test");
+    dir.mkdirs();
+    return new File(dir, name + ".log").toPath();
+  }
+
+  /**
+   * CPU time and allocated bytes at a point in time. Allocations are summed over the live threads,
+   * so allocations by threads that terminate in between two snapshots are not included.
+   */
+  static class Usage {
+
+    private final long nanoTime;
+    private final long cpuNanos;
+    private final long allocatedBytes;
+
+    private Usage(long nanoTime, long cpuNanos, long allocatedBytes) {
+      this.nanoTime = nanoTime;
+      this.cpuNanos = cpuNanos;
+      this.allocatedBytes = allocatedBytes;
+    }
+
+    /** Average number of cores used since the earlier snapshot. */
+    double cpuCoresSince(Usage earlier) {
+      return (cpuNanos - earlier.cpuNanos) / (double) (nanoTime - earlier.nanoTime);
+    }
+
+    double allocationMbPerSecondSince(Usage earlier) {
+      double seconds = (nanoTime - earlier.nanoTime) / 1e9;
+      return (allocatedBytes - earlier.allocatedBytes) / (1024.0 * 1024.0) / seconds;
+    }
+  }
+}
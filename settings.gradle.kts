@@ -40,6 +40,7 @@ include(":agent:agent-profiler:agent-alerting")
 
 include(":agent:agent-bootstrap")
 include(":agent:agent-tooling")
+include(":agent:agent-tooling-benchmarks")
 include(":agent:agent-for-testing")
 hideFromDependabot(":agent:instrumentation:applicationinsights-web-2.3")
 include(":agent:instrumentation:azure-functions")
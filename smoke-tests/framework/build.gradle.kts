@@ -6,6 +6,22 @@ tasks {
   named("spotbugsMain") {
     enabled = false
   }
+
+  // the perf-tests load harness is a separate build, which starts the mocked ingestion in its own
+  // process using this classpath
+  val writeRuntimeClasspath by registering {
+    val runtimeClasspath = sourceSets.main.get().runtimeClasspath
+    val outputFile = layout.buildDirectory.file("runtime-classpath.txt")
+    inputs.files(runtimeClasspath)
+    outputs.file(outputFile)
+    doLast {
+      outputFile.get().asFile.writeText(runtimeClasspath.asPath)
+    }
+  }
+
+  named("assemble") {
+    dependsOn(writeRuntimeClasspath)
+  }
 }
 
 dependencies {
@@ -0,0 +1,92 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.applicationinsights.smoketest.fakeingestion;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the telemetry received by the mocked ingestion, along with the delay between each item's
+ * timestamp and the time it was received, so that load tests don't need to retain every item.
+ */
+class IngestionStats {
+
+  // delays are recorded with millisecond resolution up to this bound, and clamped above it
+  private static final int MAX_TRACKED_DELAY_MILLIS = 120_000;
+
+  private final ConcurrentMap<String, TypeStats> types = new ConcurrentHashMap<>();
+  private final LongAdder failedPosts = new LongAdder();
+
+  void record(String type, long delayMillis) {
+    types.computeIfAbsent(type, t -> new TypeStats()).record(delayMillis);
+  }
+
+  void recordFailedPost() {
+    failedPosts.increment();
+  }
+
+  void reset() {
+    types.clear();
+    failedPosts.reset();
+  }
+
+  /** Returns a snapshot, which is serialized as the response of the stats endpoint. */
+  Map<String, Object> snapshot() {
+    Map<String, Object> typeSnapshots = new TreeMap<>();
+    for (Map.Entry<String, TypeStats> entry : types.entrySet()) {
+      typeSnapshots.put(entry.getKey(), entry.getValue().snapshot());
+    }
+    Map<String, Object> snapshot = new TreeMap<>();
+    snapshot.put("types", typeSnapshots);
+    snapshot.put("failedPosts", failedPosts.sum());
+    return snapshot;
+  }
+
+  private static class TypeStats {
+
+    private final LongAdder count = new LongAdder();
+    private final AtomicLongArray delayHistogram =
+        new AtomicLongArray(MAX_TRACKED_DELAY_MILLIS + 1);
+    private final LongAccumulator maxDelay = new LongAccumulator(Math::max, 0);
+
+    private void record(long delayMillis) {
+      count.increment();
+      long delay = Math.max(0, delayMillis);
+      delayHistogram.incrementAndGet((int) Math.min(delay, MAX_TRACKED_DELAY_MILLIS));
+      maxDelay.accumulate(delay);
+    }
+
+    private Map<String, Object> snapshot() {
+      long[] histogram = new long[delayHistogram.length()];
+      long total = 0;
+      for (int i = 0; i < histogram.length; i++) {
+        histogram[i] = delayHistogram.get(i);
+        total += histogram[i];
+      }
+      Map<String, Object> snapshot = new TreeMap<>();
+      snapshot.put("count", count.sum());
+      snapshot.put("delayP50Millis", percentile(histogram, total, 0.50));
+      snapshot.put("delayP99Millis", percentile(histogram, total, 0.99));
+      snapshot.put("delayMaxMillis", maxDelay.get());
+      return snapshot;
+    }
+
+    private static long percentile(long[] histogram, long total, double percentile) {
+      long rank = (long) Math.ceil(total * percentile);
+      long seen = 0;
+      for (int i = 0; i < histogram.length; i++) {
+        seen += histogram[i];
+        if (seen >= rank && seen > 0) {
+          return i;
+        }
+      }
+      return 0;
+    }
+  }
+}
@@ -287,9 +287,29 @@ public class MockedAppInsightsIngestionServer {
     return quickPulseServlet.getPostBodies();
   }
 
+  /**
+   * Starts the mocked ingestion standalone, e.g. for the perf-tests load harness. Setting {@code
+   * fakeIngestion.loadTest} to true enables load test mode, which collects the stats that are served
+   * at {@code /stats}, and which can be configured through system properties:
+   *
+   * <ul>
+   *   <li>{@code fakeIngestion.responseDelayMillis}: delay before responding to each export
+   *   <li>{@code fakeIngestion.failureRate}: fraction of exports that are rejected (0 to 1)
+   *   <li>{@code fakeIngestion.failureStatusCode}: status code of rejected exports (503)
+   *   <li>{@code fakeIngestion.retainItems}: set to false to only keep the stats that are served
+   *       at {@code /stats}, which avoids holding on to every item under load
+   * </ul>
+   */
   @SuppressWarnings("SystemOut")
   public static void main(String[] args) throws Exception {
     MockedAppInsightsIngestionServer i = new MockedAppInsightsIngestionServer();
+    if (Boolean.getBoolean("fakeIngestion.loadTest")) {
+      i.enableLoadTestMode(
+          Boolean.parseBoolean(System.getProperty("fakeIngestion.retainItems", "true")),
+          Long.getLong("fakeIngestion.responseDelayMillis", 0),
+          Double.parseDouble(System.getProperty("fakeIngestion.failureRate", "0")),
+          Integer.getInteger("fakeIngestion.failureStatusCode", 503));
+    }
     System.out.println("Starting mocked ingestion on port " + DEFAULT_PORT);
     Runtime.getRuntime()
         .addShutdownHook(
@@ -312,6 +332,16 @@ public class MockedAppInsightsIngestionServer {
     servlet.setRequestLoggingEnabled(enabled);
   }
 
+  /**
+   * Collects the stats that are served at {@code /stats}, delays each export by the given time, and
+   * rejects the given fraction of exports with the given status code. The smoke tests don't enable
+   * this, so that they keep the baseline cost and behavior.
+   */
+  public void enableLoadTestMode(
+      boolean retainItems, long responseDelayMillis, double failureRate, int failureStatusCode) {
+    servlet.enableLoadTestMode(retainItems, responseDelayMillis, failureRate, failureStatusCode);
+  }
+
   public void setQuickPulseRequestLoggingEnabled(boolean enabled) {
     quickPulseServlet.setRequestLoggingEnabled(enabled);
   }
@@ -13,14 +13,17 @@ import com.microsoft.applicationinsights.smoketest.schemav2.Envelope;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.StringWriter;
+import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Predicate;
 import java.util.zip.GZIPInputStream;
+import javax.annotation.Nullable;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -34,6 +37,18 @@ class MockedAppInsightsIngestionServlet extends HttpServlet {
 
   private volatile boolean loggingEnabled;
 
+  // only collected in load test mode, so that the smoke tests don't pay for parsing each item's
+  // timestamp and for the delay histograms
+  @Nullable private volatile IngestionStats stats;
+
+  // load test mode only: load tests only need the stats and not the items themselves
+  private volatile boolean retainItems = true;
+
+  // load test mode only: latency and error injection
+  private volatile long responseDelayMillis;
+  private volatile double failureRate;
+  private volatile int failureStatusCode = 503;
+
   MockedAppInsightsIngestionServlet() {
     type2envelope = MultimapBuilder.treeKeys().arrayListValues().build();
   }
@@ -49,6 +64,10 @@ class MockedAppInsightsIngestionServlet extends HttpServlet {
     synchronized (multimapLock) {
       type2envelope.clear();
     }
+    IngestionStats stats = this.stats;
+    if (stats != null) {
+      stats.reset();
+    }
   }
 
   boolean hasData() {
@@ -99,6 +118,11 @@ class MockedAppInsightsIngestionServlet extends HttpServlet {
 
   @Override
   protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    IngestionStats stats = this.stats;
+    if (stats != null && injectLatencyAndErrors(stats, resp)) {
+      return;
+    }
+
     String contentEncoding = req.getHeader("content-encoding");
     Readable reader;
     if ("gzip".equals(contentEncoding)) {
@@ -113,16 +137,44 @@ class MockedAppInsightsIngestionServlet extends HttpServlet {
     resp.setContentType("application/json");
     logit("raw payload:\n\n" + body + "\n");
 
+    long receivedMillis = stats == null ? 0 : System.currentTimeMillis();
     String[] lines = body.split("\n");
     for (String line : lines) {
       Envelope envelope = JsonHelper.GSON.fromJson(line.trim(), Envelope.class);
       String baseType = envelope.getData().getBaseType();
-      synchronized (multimapLock) {
-        type2envelope.put(baseType, envelope);
+      if (stats != null && envelope.getTime() != null) {
+        stats.record(baseType, receivedMillis - getTimeMillis(envelope));
+      }
+      if (stats == null || retainItems) {
+        synchronized (multimapLock) {
+          type2envelope.put(baseType, envelope);
+        }
       }
     }
   }
 
+  // returns true if the export was rejected
+  private boolean injectLatencyAndErrors(IngestionStats stats, HttpServletResponse resp) {
+    if (responseDelayMillis > 0) {
+      try {
+        TimeUnit.MILLISECONDS.sleep(responseDelayMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+      // the agent is expected to retry (or persist to disk) the whole batch
+      stats.recordFailedPost();
+      resp.setStatus(failureStatusCode);
+      return true;
+    }
+    return false;
+  }
+
+  private static long getTimeMillis(Envelope envelope) {
+    return OffsetDateTime.parse(envelope.getTime()).toInstant().toEpochMilli();
+  }
+
   @Override
   protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
     if (req.getPathInfo().startsWith("/api/profiles/") && req.getPathInfo().endsWith("/appId")) {
@@ -137,6 +189,18 @@ class MockedAppInsightsIngestionServlet extends HttpServlet {
       return;
     }
 
+    IngestionStats stats = this.stats;
+    if (stats != null && "/stats".equals(req.getPathInfo())) {
+      resp.setContentType("application/json");
+      resp.getWriter().append(JsonHelper.GSON.toJson(stats.snapshot()));
+      return;
+    }
+
+    if (stats != null && "/stats/reset".equals(req.getPathInfo())) {
+      resetData();
+      return;
+    }
+
     if ("/".equals(req.getPathInfo())) {
       // just to help with debugging when hitting the endpoint manually
       resp.getWriter().append("Fake AI Endpoint Online");
@@ -148,4 +212,14 @@ class MockedAppInsightsIngestionServlet extends HttpServlet {
   public void setRequestLoggingEnabled(boolean enabled) {
     loggingEnabled = enabled;
   }
+
+  void enableLoadTestMode(
+      boolean retainItems, long responseDelayMillis, double failureRate, int failureStatusCode) {
+    this.retainItems = retainItems;
+    this.responseDelayMillis = responseDelayMillis;
+    this.failureRate = failureRate;
+    this.failureStatusCode = failureStatusCode;
+    // published last, the other fields are only read once the stats are seen
+    stats = new IngestionStats();
+  }
 }